@@ -0,0 +1,48 @@
+package com.github.frapontillo.pulse.crowd.social.benchmark;
+
+import com.github.frapontillo.pulse.crowd.social.extraction.ExtractionParameters;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the parsing of {@link ExtractionParameters} from their JSON configuration.
+ *
+ * @author Francesco Pontillo
+ */
+@State(Scope.Benchmark) @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1) @Measurement(iterations = 5, time = 1) @Fork(1)
+public class ExtractionParametersBenchmark {
+    private static final String JSON = "{\"source\": \"twitter\", "
+            + "\"query\": [\"pizza\", \"mozzarella\", \"burrata\", \"panzerotti\"], "
+            + "\"from\": \"frapontillo\", \"references\": [\"swapUniba\"], "
+            + "\"since\": \"2017-01-01T00:00:00Z\", \"until\": \"2017-02-01T00:00:00Z\", "
+            + "\"language\": \"it\", \"tags\": [\"food\", \"bari\"], \"parallelism\": 4}";
+
+    private JsonElement json;
+    private ExtractionParameters parameters;
+
+    @Setup public void setUp() {
+        json = new JsonParser().parse(JSON);
+        parameters = new ExtractionParameters();
+    }
+
+    @Benchmark public ExtractionParameters buildFromJsonElement() {
+        return parameters.buildFromJsonElement(json);
+    }
+
+    @Benchmark public ExtractionParameters parseAndBuild() {
+        return parameters.buildFromJsonElement(new JsonParser().parse(JSON));
+    }
+}
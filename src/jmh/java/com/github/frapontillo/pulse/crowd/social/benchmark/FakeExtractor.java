@@ -0,0 +1,75 @@
+package com.github.frapontillo.pulse.crowd.social.benchmark;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.extraction.ExtractionParameters;
+import com.github.frapontillo.pulse.crowd.social.extraction.IExtractor;
+import com.github.frapontillo.pulse.crowd.social.util.Checker;
+import rx.Observable;
+
+import java.util.List;
+
+/**
+ * In-memory {@link IExtractor} that serves a fixed corpus of messages, filtered by the given
+ * parameters as a real implementation would do.
+ *
+ * @author Francesco Pontillo
+ */
+public class FakeExtractor extends IExtractor {
+    private final List<Message> corpus;
+
+    public FakeExtractor(List<Message> corpus) {
+        this.corpus = corpus;
+    }
+
+    @Override public String getName() {
+        return "fake-extractor";
+    }
+
+    @Override public long getMaximumQueryParameters() {
+        return 100;
+    }
+
+    @Override public boolean getSupportQuery() {
+        return true;
+    }
+
+    @Override public boolean getSupportGeoLocation() {
+        return true;
+    }
+
+    @Override public boolean getSupportFrom() {
+        return true;
+    }
+
+    @Override public boolean getSupportTo() {
+        return true;
+    }
+
+    @Override public boolean getSupportReference() {
+        return true;
+    }
+
+    @Override public boolean getSupportSince() {
+        return true;
+    }
+
+    @Override public boolean getSupportUntil() {
+        return true;
+    }
+
+    @Override public boolean getSupportLanguage() {
+        return true;
+    }
+
+    @Override public boolean getSupportLocale() {
+        return true;
+    }
+
+    @Override public boolean mustSpecifyToOrFrom() {
+        return false;
+    }
+
+    @Override protected Observable<Message> getMessages(ExtractionParameters parameters) {
+        return Observable.from(corpus).filter(Checker.checkAll(parameters));
+    }
+}
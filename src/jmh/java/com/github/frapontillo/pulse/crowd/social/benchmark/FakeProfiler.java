@@ -0,0 +1,31 @@
+package com.github.frapontillo.pulse.crowd.social.benchmark;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Profile;
+import com.github.frapontillo.pulse.crowd.social.profile.IProfiler;
+import com.github.frapontillo.pulse.crowd.social.profile.ProfileParameters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory {@link IProfiler} that builds a {@link Profile} for every requested username.
+ *
+ * @author Francesco Pontillo
+ */
+public class FakeProfiler extends IProfiler {
+
+    @Override public String getName() {
+        return "fake-profiler";
+    }
+
+    @Override public List<Profile> getProfiles(ProfileParameters parameters) {
+        List<Profile> profiles = new ArrayList<>(parameters.getProfiles().size());
+        for (String username : parameters.getProfiles()) {
+            Profile profile = new Profile();
+            profile.setUsername(username);
+            profile.setSource(parameters.getSource());
+            profiles.add(profile);
+        }
+        return profiles;
+    }
+}
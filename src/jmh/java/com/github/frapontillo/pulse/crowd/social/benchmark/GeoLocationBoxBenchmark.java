@@ -0,0 +1,57 @@
+package com.github.frapontillo.pulse.crowd.social.benchmark;
+
+import com.github.frapontillo.pulse.crowd.social.extraction.GeoLocationBox;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the construction of {@link GeoLocationBox}es and their
+ * {@link GeoLocationBox#contains(Double, Double)} check.
+ *
+ * @author Francesco Pontillo
+ */
+@State(Scope.Benchmark) @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1) @Measurement(iterations = 5, time = 1) @Fork(1)
+public class GeoLocationBoxBenchmark {
+    private static final int POINTS = 1024;
+
+    private GeoLocationBox box;
+    private Double[] longitudes;
+    private Double[] latitudes;
+    private int index;
+
+    @Setup public void setUp() {
+        box = new GeoLocationBox(16.8719, 41.1171, 10);
+        Random random = new Random(42);
+        longitudes = new Double[POINTS];
+        latitudes = new Double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            longitudes[i] = 16.6 + random.nextDouble() * 0.6;
+            latitudes[i] = 40.9 + random.nextDouble() * 0.4;
+        }
+    }
+
+    @Benchmark public GeoLocationBox constructFromCenter() {
+        return new GeoLocationBox(16.8719, 41.1171, 10);
+    }
+
+    @Benchmark public GeoLocationBox constructFromCorners() {
+        return new GeoLocationBox(16.75, 41.05, 16.95, 41.2);
+    }
+
+    @Benchmark public boolean contains() {
+        int i = index++ & (POINTS - 1);
+        return box.contains(longitudes[i], latitudes[i]);
+    }
+}
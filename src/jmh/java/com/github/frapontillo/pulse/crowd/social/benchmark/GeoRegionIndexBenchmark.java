@@ -0,0 +1,85 @@
+package com.github.frapontillo.pulse.crowd.social.benchmark;
+
+import com.github.frapontillo.pulse.crowd.social.extraction.GeoLocationBox;
+import com.github.frapontillo.pulse.crowd.social.geo.GeoRegion;
+import com.github.frapontillo.pulse.crowd.social.geo.GeoRegionIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares finding all the regions containing a point with a {@link GeoRegionIndex} against
+ * checking every {@link GeoLocationBox}, with city-sized regions spread over Europe.
+ *
+ * @author Francesco Pontillo
+ */
+@State(Scope.Benchmark) @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1) @Measurement(iterations = 5, time = 1) @Fork(1)
+public class GeoRegionIndexBenchmark {
+    private static final int POINTS = 1024;
+
+    @Param({"100", "10000"}) private int regions;
+
+    private List<GeoLocationBox> boxes;
+    private GeoRegionIndex index;
+    private double[] longitudes;
+    private double[] latitudes;
+    private int point;
+
+    @Setup public void setUp() {
+        Random random = new Random(42);
+        boxes = new ArrayList<>(regions);
+        List<GeoRegion> geoRegions = new ArrayList<>(regions);
+        for (int i = 0; i < regions; i++) {
+            GeoLocationBox box = new GeoLocationBox(-10 + random.nextDouble() * 40,
+                    35 + random.nextDouble() * 25, 5 + random.nextDouble() * 25);
+            boxes.add(box);
+            geoRegions.add(GeoRegion.box("city" + i, box));
+        }
+        index = new GeoRegionIndex(geoRegions);
+        longitudes = new double[POINTS];
+        latitudes = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            longitudes[i] = -10 + random.nextDouble() * 40;
+            latitudes[i] = 35 + random.nextDouble() * 25;
+        }
+    }
+
+    @Benchmark public int linearScan() {
+        int i = point++ & (POINTS - 1);
+        Double longitude = longitudes[i];
+        Double latitude = latitudes[i];
+        int matches = 0;
+        for (GeoLocationBox box : boxes) {
+            if (box.contains(longitude, latitude)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark public int index() {
+        int i = point++ & (POINTS - 1);
+        int[] matches = new int[1];
+        index.forEachMatch(longitudes[i], latitudes[i], region -> matches[0]++);
+        return matches[0];
+    }
+
+    @Benchmark public List<String> indexTags() {
+        int i = point++ & (POINTS - 1);
+        return index.getTags(longitudes[i], latitudes[i]);
+    }
+}
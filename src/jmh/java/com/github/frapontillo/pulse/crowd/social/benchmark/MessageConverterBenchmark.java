@@ -0,0 +1,93 @@
+package com.github.frapontillo.pulse.crowd.social.benchmark;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.extraction.ConversionContext;
+import com.github.frapontillo.pulse.crowd.social.extraction.ExtractionParameters;
+import com.github.frapontillo.pulse.crowd.social.extraction.MessageConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@link MessageConverter#addFromExtractor(List, List)} over raw
+ * objects of a fake social network, against the streaming conversion. Run with
+ * {@code -prof gc} to also get the allocation rate.
+ *
+ * @author Francesco Pontillo
+ */
+@State(Scope.Benchmark) @BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1) @Measurement(iterations = 5, time = 1) @Fork(1)
+public class MessageConverterBenchmark {
+    @Param({"100", "10000"}) public int messages;
+
+    private List<RawMessage> originals;
+    private MessageConverter<RawMessage> converter;
+    private HashMap<String, Object> additionalData;
+    private ConversionContext context;
+
+    /**
+     * A raw message, as returned by the API of a social network.
+     */
+    public static class RawMessage {
+        private final String id;
+        private final String text;
+        private final String user;
+        private final long time;
+
+        RawMessage(String id, String text, String user, long time) {
+            this.id = id;
+            this.text = text;
+            this.user = user;
+            this.time = time;
+        }
+    }
+
+    @Setup public void setUp() {
+        List<Message> corpus = new MessageCorpus(42).messages(messages, "benchmark");
+        originals = new ArrayList<>(messages);
+        for (Message message : corpus) {
+            originals.add(new RawMessage(message.getoId(), message.getText(),
+                    message.getFromUser(), message.getDate().getTime()));
+        }
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setSource("benchmark");
+        parameters.setTags("tag1", "tag2");
+        converter = new MessageConverter<RawMessage>(parameters) {
+            @Override protected Message fromSpecificExtractor(RawMessage original,
+                    HashMap<String, Object> additionalData) {
+                Message message = new Message();
+                message.setoId(original.id);
+                message.setText(original.text);
+                message.setFromUser(original.user);
+                message.setDate(new Date(original.time));
+                return message;
+            }
+        };
+        additionalData = new HashMap<>();
+        additionalData.put(MessageConverter.DATA_SOURCE, "benchmark");
+        context = new ConversionContext().setSource("benchmark");
+    }
+
+    @Benchmark public List<Message> addFromExtractor() {
+        return converter.addFromExtractor(originals, new ArrayList<>(originals.size()),
+                additionalData);
+    }
+
+    @Benchmark public int stream() {
+        return converter.stream(originals.iterator(), context).count().toBlocking().single();
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.frapontillo.pulse.crowd.social.benchmark;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator of synthetic messages and keywords for the benchmarks.
+ *
+ * @author Francesco Pontillo
+ */
+public class MessageCorpus {
+    private static final String[] WORDS = {"the", "match", "city", "traffic", "concert", "rain",
+            "election", "goal", "train", "strike", "festival", "coffee", "market", "school",
+            "beach", "storm", "museum", "pizza", "derby", "parliament", "airport", "street"};
+    private static final String[] LANGUAGES = {"it", "en", "es", "fr"};
+    private static final long START = 1483228800000L;
+    private static final long DAY = 24 * 3600 * 1000L;
+
+    private final Random random;
+
+    public MessageCorpus(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Generate random messages spread over a month, with 10 to 30 words each, around Bari.
+     *
+     * @param size   The number of messages.
+     * @param source The source of the messages.
+     *
+     * @return A {@link List} of new {@link Message}s.
+     */
+    public List<Message> messages(int size, String source) {
+        List<Message> messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Message message = new Message();
+            message.setoId(Integer.toString(i));
+            message.setSource(source);
+            message.setText(text(10 + random.nextInt(20)));
+            message.setFromUser(user());
+            message.setToUsers(Arrays.asList(user(), user()));
+            message.setRefUsers(Arrays.asList(user(), user(), user()));
+            message.setDate(new Date(START + (long) (random.nextDouble() * 30 * DAY)));
+            message.setLanguage(LANGUAGES[random.nextInt(LANGUAGES.length)]);
+            message.setLongitude(16.5 + random.nextDouble() * 0.4);
+            message.setLatitude(40.9 + random.nextDouble() * 0.4);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    /**
+     * Generate random keywords that rarely occur in the generated messages.
+     *
+     * @param size The number of keywords.
+     *
+     * @return A {@link List} of keywords.
+     */
+    public List<String> keywords(int size) {
+        List<String> keywords = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            keywords.add(WORDS[random.nextInt(WORDS.length)] + "#" + i);
+        }
+        // make sure some messages match
+        keywords.set(0, "goal");
+        return keywords;
+    }
+
+    public String user() {
+        return "user" + random.nextInt(1000);
+    }
+
+    public Date date(int day) {
+        return new Date(START + day * DAY);
+    }
+
+    private String text(int words) {
+        StringBuilder builder = new StringBuilder(words * 8);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return builder.toString();
+    }
+}
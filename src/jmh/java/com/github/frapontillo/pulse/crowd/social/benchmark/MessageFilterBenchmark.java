@@ -0,0 +1,85 @@
+package com.github.frapontillo.pulse.crowd.social.benchmark;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.extraction.ExtractionParameters;
+import com.github.frapontillo.pulse.crowd.social.extraction.GeoLocationBox;
+import com.github.frapontillo.pulse.crowd.social.util.Checker;
+import com.github.frapontillo.pulse.crowd.social.util.CompiledMessageFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rx.functions.Func1;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the chain of {@link Checker} predicates against a {@link CompiledMessageFilter} built
+ * from the same parameters, over a corpus of synthetic messages.
+ *
+ * @author Francesco Pontillo
+ */
+@State(Scope.Benchmark) @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1) @Measurement(iterations = 5, time = 1) @Fork(1)
+public class MessageFilterBenchmark {
+    @Param({"10", "100", "1000"}) public int keywords;
+
+    @Param({"100", "10000"}) public int messages;
+
+    private List<Message> corpus;
+    private List<Func1<Message, Boolean>> chain;
+    private CompiledMessageFilter compiled;
+
+    @Setup public void setUp() {
+        MessageCorpus generator = new MessageCorpus(42);
+        corpus = generator.messages(messages, "benchmark");
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setQuery(generator.keywords(keywords));
+        parameters.setSince(generator.date(5));
+        parameters.setUntil(generator.date(25));
+        parameters.setLanguage("it");
+        parameters.setGeoLocationBox(new GeoLocationBox(16.5, 40.9, 16.8, 41.2));
+        chain = Arrays.asList(Checker.checkNonNullMessage(), Checker.checkQuery(parameters),
+                Checker.checkFromUser(parameters), Checker.checkToUser(parameters),
+                Checker.checkReferencedUsers(parameters), Checker.checkUntilDate(parameters),
+                Checker.checkSinceDate(parameters), Checker.checkLanguage(parameters),
+                Checker.checkLocation(parameters));
+        compiled = new CompiledMessageFilter(parameters);
+    }
+
+    @Benchmark public int checkerChain() {
+        int accepted = 0;
+        for (Message message : corpus) {
+            boolean matches = true;
+            for (Func1<Message, Boolean> check : chain) {
+                if (!check.call(message)) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    @Benchmark public int compiledFilter() {
+        int accepted = 0;
+        for (Message message : corpus) {
+            if (compiled.test(message)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+}
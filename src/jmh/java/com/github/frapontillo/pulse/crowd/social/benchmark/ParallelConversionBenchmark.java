@@ -0,0 +1,83 @@
+package com.github.frapontillo.pulse.crowd.social.benchmark;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.extraction.ExtractionParameters;
+import com.github.frapontillo.pulse.crowd.social.extraction.MessageConverter;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the sequential and the parallel chunked conversion of a page of raw JSON messages,
+ * where parsing dominates the conversion cost.
+ *
+ * @author Francesco Pontillo
+ */
+@State(Scope.Benchmark) @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1) @Measurement(iterations = 5, time = 1) @Fork(1)
+public class ParallelConversionBenchmark {
+    @Param({"1000"}) public int messages;
+
+    @Param({"16", "64", "256"}) public int chunkSize;
+
+    private List<String> originals;
+    private MessageConverter<String> converter;
+
+    @Setup public void setUp() {
+        List<Message> corpus = new MessageCorpus(42).messages(messages, "benchmark");
+        originals = new ArrayList<>(messages);
+        for (Message message : corpus) {
+            JsonObject json = new JsonObject();
+            json.addProperty("id", message.getoId());
+            json.addProperty("text", message.getText());
+            json.addProperty("user", message.getFromUser());
+            json.addProperty("time", message.getDate().getTime());
+            json.addProperty("lang", message.getLanguage());
+            originals.add(json.toString());
+        }
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setSource("benchmark");
+        converter = new MessageConverter<String>(parameters) {
+            @Override protected Message fromSpecificExtractor(String original,
+                    HashMap<String, Object> additionalData) {
+                JsonObject json = new JsonParser().parse(original).getAsJsonObject();
+                Message message = new Message();
+                message.setoId(json.get("id").getAsString());
+                message.setText(json.get("text").getAsString());
+                message.setFromUser(json.get("user").getAsString());
+                message.setDate(new Date(json.get("time").getAsLong()));
+                message.setLanguage(json.get("lang").getAsString());
+                return message;
+            }
+
+            @Override public boolean isThreadSafe() {
+                return true;
+            }
+        };
+    }
+
+    @Benchmark public List<Message> sequential() {
+        return converter.addFromExtractor(originals, new ArrayList<>(messages), null);
+    }
+
+    @Benchmark public List<Message> parallel() {
+        return converter.addFromExtractorParallel(originals, new ArrayList<>(messages), null,
+                chunkSize);
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.frapontillo.pulse.crowd.social.benchmark;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.extraction.ExtractionParameters;
+import com.github.frapontillo.pulse.crowd.social.profile.ProfileParameters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rx.Observable;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end benchmark of the extraction and profiling pipelines, driven by {@link FakeExtractor}
+ * and {@link FakeProfiler} so that only the plugin plumbing is measured.
+ *
+ * @author Francesco Pontillo
+ */
+@State(Scope.Benchmark) @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1) @Measurement(iterations = 5, time = 1) @Fork(1)
+public class PipelineBenchmark {
+    @Param({"10000"}) public int messages;
+
+    @Param({"1", "4"}) public int parallelism;
+
+    private List<Message> corpus;
+    private FakeExtractor extractor;
+    private FakeProfiler profiler;
+    private ExtractionParameters extractionParameters;
+    private ProfileParameters profileParameters;
+
+    @Setup public void setUp() {
+        MessageCorpus generator = new MessageCorpus(42);
+        corpus = generator.messages(messages, "benchmark");
+        extractor = new FakeExtractor(corpus);
+        profiler = new FakeProfiler();
+
+        extractionParameters = new ExtractionParameters();
+        extractionParameters.setSource("benchmark");
+        extractionParameters.setQuery(generator.keywords(200));
+        extractionParameters.setSince(generator.date(0));
+        extractionParameters.setUntil(generator.date(30));
+        extractionParameters.setParallelism(parallelism);
+        extractionParameters.setShards(parallelism);
+
+        profileParameters = new ProfileParameters();
+        profileParameters.setSource("benchmark");
+        profileParameters.setConcurrency(parallelism);
+    }
+
+    @Benchmark public int extract() {
+        return Observable.<Void>empty().compose(extractor.transform(extractionParameters))
+                .count().toBlocking().single();
+    }
+
+    @Benchmark public int profile() {
+        return Observable.from(corpus).compose(profiler.transform(profileParameters)).count()
+                .toBlocking().single();
+    }
+
+    @Benchmark public int extractAndProfile() {
+        return Observable.<Void>empty().compose(extractor.transform(extractionParameters))
+                .compose(profiler.transform(profileParameters)).count().toBlocking().single();
+    }
+}
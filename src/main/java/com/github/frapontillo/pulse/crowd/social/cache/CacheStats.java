@@ -0,0 +1,100 @@
+package com.github.frapontillo.pulse.crowd.social.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe counters describing the effectiveness of a cache.
+ *
+ * @author Francesco Pontillo
+ */
+public class CacheStats {
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+
+    public void recordHit(boolean fromDisk) {
+        hits.incrementAndGet();
+        if (fromDisk) {
+            diskHits.incrementAndGet();
+        }
+    }
+
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    public void recordEvictions(long count) {
+        evictions.addAndGet(count);
+    }
+
+    public void recordExpiration() {
+        expirations.incrementAndGet();
+    }
+
+    public void recordRevalidation() {
+        revalidations.incrementAndGet();
+    }
+
+    /**
+     * Get the number of lookups that found a valid entry, in memory or on disk.
+     *
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of hits that had to be read from disk.
+     *
+     * @return The number of disk hits.
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of entries removed to keep the cache within its size bounds.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Get the number of entries removed because they were older than the time to live.
+     *
+     * @return The number of expirations.
+     */
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    /**
+     * Get the number of expired entries confirmed as unchanged by their source and reused.
+     *
+     * @return The number of revalidations.
+     */
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+
+    public double getHitRate() {
+        long lookups = getHits() + getMisses();
+        return (lookups == 0) ? 0 : (double) getHits() / lookups;
+    }
+
+    @Override public String toString() {
+        return String.format("hits=%d (disk=%d), misses=%d, hitRate=%.3f, evictions=%d, " +
+                        "expirations=%d, revalidations=%d", getHits(), getDiskHits(), getMisses(),
+                getHitRate(), getEvictions(), getExpirations(), getRevalidations());
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.frapontillo.pulse.crowd.social.cache;
+
+/**
+ * A response of a source endpoint, with the validators needed to revalidate it.
+ *
+ * @author Francesco Pontillo
+ */
+public class CachedResponse {
+    private static final CachedResponse NOT_MODIFIED = new CachedResponse(null, null, -1, 0);
+
+    private final String body;
+    private final String etag;
+    private final long lastModified;
+    private final long time;
+
+    /**
+     * Create a new response.
+     *
+     * @param body         The body of the response.
+     * @param etag         The value of the ETag header, or null if missing.
+     * @param lastModified The value of the Last-Modified header in epoch milliseconds, or -1 if
+     *                     missing.
+     */
+    public CachedResponse(String body, String etag, long lastModified) {
+        this(body, etag, lastModified, System.currentTimeMillis());
+    }
+
+    CachedResponse(String body, String etag, long lastModified, long time) {
+        this.body = body;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.time = time;
+    }
+
+    /**
+     * Get the response a {@link ResponseFetcher} returns when the source answered a conditional
+     * request with 304 Not Modified.
+     *
+     * @return The not modified marker.
+     */
+    public static CachedResponse notModified() {
+        return NOT_MODIFIED;
+    }
+
+    public boolean isNotModified() {
+        return this == NOT_MODIFIED;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return The ETag to send in the If-None-Match header, or null if missing.
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * @return The time to send in the If-Modified-Since header, or -1 if missing.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Check whether the source can be asked if the response changed, instead of sending it again.
+     *
+     * @return true if the response has an ETag or a Last-Modified time.
+     */
+    public boolean hasValidators() {
+        return etag != null || lastModified >= 0;
+    }
+
+    /**
+     * @return The time the response was fetched or last revalidated, in epoch milliseconds.
+     */
+    public long getTime() {
+        return time;
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.frapontillo.pulse.crowd.social.cache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The kinds of source endpoints whose responses are stored in a {@link ResponseCache}, each with
+ * its own default time to live: search results change quickly, profiles slowly.
+ *
+ * @author Francesco Pontillo
+ */
+public enum EndpointType {
+    /**
+     * Message searches and timelines.
+     */
+    SEARCH(TimeUnit.MINUTES.toMillis(5)),
+    /**
+     * Replies and conversations.
+     */
+    REPLIES(TimeUnit.MINUTES.toMillis(30)),
+    /**
+     * User profiles and their connections.
+     */
+    PROFILE(TimeUnit.DAYS.toMillis(1)),
+    /**
+     * Any other endpoint.
+     */
+    OTHER(TimeUnit.HOURS.toMillis(1));
+
+    private final long defaultTtl;
+
+    EndpointType(long defaultTtl) {
+        this.defaultTtl = defaultTtl;
+    }
+
+    /**
+     * Get the time after which responses must be revalidated, unless configured otherwise.
+     *
+     * @return The default time to live, in milliseconds.
+     */
+    public long getDefaultTtl() {
+        return defaultTtl;
+    }
+
+    /**
+     * Parse a type from its case-insensitive name.
+     *
+     * @param value        The name of the type, may be null.
+     * @param defaultValue The type to return if the value is null or empty.
+     *
+     * @return The parsed {@link EndpointType}.
+     * @throws IllegalArgumentException if the value isn't a valid type name.
+     */
+    public static EndpointType fromString(String value, EndpointType defaultValue) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return EndpointType.valueOf(value.trim().toUpperCase());
+    }
+}
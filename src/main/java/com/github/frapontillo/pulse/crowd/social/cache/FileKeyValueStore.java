@@ -0,0 +1,366 @@
+package com.github.frapontillo.pulse.crowd.social.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal embedded key-value store, persisted as an append-only log of timestamped records.
+ * <p/>
+ * Only the position of each record is kept in memory, while values are read from the file when
+ * requested. Overwritten and removed records are discarded when the store is compacted, which
+ * also drops expired entries and the oldest entries exceeding the maximum size. When the store
+ * is opened, a record left incomplete by a crash, or with invalid lengths, is dropped together
+ * with everything after it.
+ * <p/>
+ * All the methods are synchronized, so the store can be shared among threads.
+ *
+ * @author Francesco Pontillo
+ */
+public class FileKeyValueStore implements Closeable {
+    private static final int TOMBSTONE = -1;
+
+    private final File file;
+    private final int maxEntries;
+    private final Map<String, Entry> index;
+    private RandomAccessFile data;
+    private long records;
+    private long liveBytes;
+
+    /**
+     * Open a store, creating its file if it doesn't exist.
+     *
+     * @param file       The {@link File} the store is persisted to.
+     * @param maxEntries The maximum number of entries kept after a compaction.
+     *
+     * @throws IOException if the file can't be read or created.
+     */
+    public FileKeyValueStore(File file, int maxEntries) throws IOException {
+        this.file = file;
+        this.maxEntries = maxEntries;
+        this.index = new HashMap<>();
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory " + parent + ".");
+        }
+        load();
+        this.data = new RandomAccessFile(file, "rw");
+        this.data.seek(this.data.length());
+    }
+
+    /**
+     * Get the value of a key, if it was stored after the given time.
+     *
+     * @param key      The key to look for.
+     * @param minTime  The minimum storage time, in epoch milliseconds, of valid entries.
+     * @param consumer The {@link EntryConsumer} receiving the value and its storage time.
+     *
+     * @return true if a valid value was found.
+     * @throws IOException if the value can't be read.
+     */
+    public synchronized boolean get(String key, long minTime, EntryConsumer consumer)
+            throws IOException {
+        return getBytes(key, minTime,
+                (value, time) -> consumer.accept(new String(value, StandardCharsets.UTF_8), time));
+    }
+
+    /**
+     * Get the raw value of a key, if it was stored after the given time.
+     *
+     * @param key      The key to look for.
+     * @param minTime  The minimum storage time, in epoch milliseconds, of valid entries.
+     * @param consumer The {@link BytesConsumer} receiving the value and its storage time.
+     *
+     * @return true if a valid value was found.
+     * @throws IOException if the value can't be read.
+     */
+    public synchronized boolean getBytes(String key, long minTime, BytesConsumer consumer)
+            throws IOException {
+        Entry entry = index.get(key);
+        if (entry == null || entry.time < minTime) {
+            return false;
+        }
+        long end = data.getFilePointer();
+        byte[] value = new byte[entry.valueLength];
+        try {
+            data.seek(entry.valueOffset);
+            data.readFully(value);
+        } finally {
+            data.seek(end);
+        }
+        consumer.accept(value, entry.time);
+        return true;
+    }
+
+    /**
+     * Store the value of a key, replacing any previous one.
+     *
+     * @param key   The key to store.
+     * @param value The value to store.
+     * @param time  The storage time, in epoch milliseconds.
+     *
+     * @throws IOException if the value can't be written.
+     */
+    public synchronized void put(String key, String value, long time) throws IOException {
+        putBytes(key, value.getBytes(StandardCharsets.UTF_8), time);
+    }
+
+    /**
+     * Store the raw value of a key, replacing any previous one.
+     *
+     * @param key   The key to store.
+     * @param value The value to store.
+     * @param time  The storage time, in epoch milliseconds.
+     *
+     * @throws IOException if the value can't be written.
+     */
+    public synchronized void putBytes(String key, byte[] value, long time) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long offset = data.getFilePointer();
+        data.writeInt(keyBytes.length);
+        data.write(keyBytes);
+        data.writeLong(time);
+        data.writeInt(value.length);
+        data.write(value);
+        indexPut(key, new Entry(offset + 16 + keyBytes.length, value.length, time));
+        records++;
+    }
+
+    /**
+     * Remove a key from the store.
+     *
+     * @param key The key to remove.
+     *
+     * @throws IOException if the removal can't be written.
+     */
+    public synchronized void remove(String key) throws IOException {
+        if (indexRemove(key) == null) {
+            return;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(keyBytes.length);
+        data.write(keyBytes);
+        data.writeLong(System.currentTimeMillis());
+        data.writeInt(TOMBSTONE);
+        records++;
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Get the total size of the live values, excluding keys and overwritten records.
+     *
+     * @return The size of the values, in bytes.
+     */
+    public synchronized long getValueBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * Rewrite the store file with the live entries only, dropping the ones stored before the given
+     * time and the oldest ones exceeding the maximum size.
+     * The new file replaces the old one atomically.
+     *
+     * @param minTime The minimum storage time, in epoch milliseconds, of entries to keep.
+     *
+     * @return The number of live entries dropped because of the size bound.
+     * @throws IOException if the store can't be rewritten.
+     */
+    public synchronized long compact(long minTime) throws IOException {
+        return compact(minTime, maxEntries, Long.MAX_VALUE);
+    }
+
+    /**
+     * Rewrite the store file with the live entries only, dropping the ones stored before the given
+     * time and the oldest ones exceeding the given bounds.
+     * The new file replaces the old one atomically.
+     *
+     * @param minTime    The minimum storage time, in epoch milliseconds, of entries to keep.
+     * @param entries    The maximum number of entries to keep.
+     * @param valueBytes The maximum total size of the values to keep, in bytes.
+     *
+     * @return The number of live entries dropped because of the size bounds.
+     * @throws IOException if the store can't be rewritten.
+     */
+    public synchronized long compact(long minTime, int entries, long valueBytes)
+            throws IOException {
+        List<Map.Entry<String, Entry>> live = new ArrayList<>(index.size());
+        long bytes = 0;
+        for (Map.Entry<String, Entry> entry : index.entrySet()) {
+            if (entry.getValue().time >= minTime) {
+                live.add(entry);
+                bytes += entry.getValue().valueLength;
+            }
+        }
+        long evicted = 0;
+        if (live.size() > entries || bytes > valueBytes) {
+            live.sort((a, b) -> Long.compare(b.getValue().time, a.getValue().time));
+            int kept = 0;
+            bytes = 0;
+            while (kept < live.size() && kept < entries &&
+                    bytes + live.get(kept).getValue().valueLength <= valueBytes) {
+                bytes += live.get(kept).getValue().valueLength;
+                kept++;
+            }
+            evicted = live.size() - kept;
+            live = live.subList(0, kept);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            byte[] value = new byte[0];
+            for (Map.Entry<String, Entry> entry : live) {
+                Entry e = entry.getValue();
+                if (value.length < e.valueLength) {
+                    value = new byte[e.valueLength];
+                }
+                data.seek(e.valueOffset);
+                data.readFully(value, 0, e.valueLength);
+                byte[] keyBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(keyBytes.length);
+                out.write(keyBytes);
+                out.writeLong(e.time);
+                out.writeInt(e.valueLength);
+                out.write(value, 0, e.valueLength);
+            }
+        }
+        data.close();
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        index.clear();
+        liveBytes = 0;
+        load();
+        data = new RandomAccessFile(file, "rw");
+        data.seek(data.length());
+        return evicted;
+    }
+
+    /**
+     * Check whether the file holds enough overwritten or removed records to be worth compacting.
+     *
+     * @return true if a compaction is recommended.
+     */
+    public synchronized boolean needsCompaction() {
+        return records > 2L * index.size() + 1024 || index.size() > maxEntries;
+    }
+
+    @Override public synchronized void close() throws IOException {
+        data.close();
+    }
+
+    private void load() throws IOException {
+        records = 0;
+        if (!file.exists()) {
+            return;
+        }
+        long length = file.length();
+        long offset = 0;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            // every record holds at least a key length, a time and a value length
+            while (length - offset >= 16) {
+                int keyLength = in.readInt();
+                if (keyLength < 0 || keyLength > length - offset - 16) {
+                    break;
+                }
+                byte[] keyBytes = new byte[keyLength];
+                in.readFully(keyBytes);
+                long time = in.readLong();
+                int valueLength = in.readInt();
+                long valueOffset = offset + 16 + keyLength;
+                if (valueLength < TOMBSTONE || valueLength > length - valueOffset) {
+                    break;
+                }
+                String key = new String(keyBytes, StandardCharsets.UTF_8);
+                if (valueLength == TOMBSTONE) {
+                    indexRemove(key);
+                    offset = valueOffset;
+                } else {
+                    skipFully(in, valueLength);
+                    indexPut(key, new Entry(valueOffset, valueLength, time));
+                    offset = valueOffset + valueLength;
+                }
+                records++;
+            }
+        } catch (EOFException e) {
+            // the file was shortened while reading it, drop the rest as below
+        }
+        if (offset < length) {
+            // a record was being written when the process died, or the file is corrupted from
+            // here: drop the rest, so that new records are appended right after the valid ones
+            try (RandomAccessFile truncate = new RandomAccessFile(file, "rw")) {
+                truncate.setLength(offset);
+            }
+        }
+    }
+
+    private void indexPut(String key, Entry entry) {
+        Entry previous = index.put(key, entry);
+        if (previous != null) {
+            liveBytes -= previous.valueLength;
+        }
+        liveBytes += entry.valueLength;
+    }
+
+    private Entry indexRemove(String key) {
+        Entry previous = index.remove(key);
+        if (previous != null) {
+            liveBytes -= previous.valueLength;
+        }
+        return previous;
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        int skipped = 0;
+        while (skipped < length) {
+            int count = in.skipBytes(length - skipped);
+            if (count <= 0) {
+                throw new EOFException();
+            }
+            skipped += count;
+        }
+    }
+
+    /**
+     * Callback receiving a value read from the store.
+     */
+    public interface EntryConsumer {
+        void accept(String value, long time);
+    }
+
+    /**
+     * Callback receiving a raw value read from the store.
+     */
+    public interface BytesConsumer {
+        void accept(byte[] value, long time);
+    }
+
+    private static class Entry {
+        private final long valueOffset;
+        private final int valueLength;
+        private final long time;
+
+        private Entry(long valueOffset, int valueLength, long time) {
+            this.valueOffset = valueOffset;
+            this.valueLength = valueLength;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.github.frapontillo.pulse.crowd.social.cache;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Profile;
+import com.github.frapontillo.pulse.crowd.social.profile.ProfileKey;
+import com.github.frapontillo.pulse.util.PulseLogger;
+import com.google.gson.Gson;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A two-tier cache of {@link Profile}s, keyed by {@link ProfileKey}.
+ * <p/>
+ * The most recently used profiles are kept in a size-bounded LRU memory tier, while all the
+ * profiles are persisted in a {@link FileKeyValueStore} so that they can be reused across runs.
+ * Entries older than the time to live are considered missing.
+ * Profiles are stored in their JSON form, so every lookup returns a new instance that callers are
+ * free to modify.
+ *
+ * @author Francesco Pontillo
+ */
+public class ProfileCache implements Closeable {
+    private static final Logger logger = PulseLogger.getLogger(ProfileCache.class);
+    private static final Gson gson = new Gson();
+
+    private final long ttl;
+    private final FileKeyValueStore store;
+    private final Map<String, CachedValue> memory;
+    private final CacheStats stats;
+
+    /**
+     * Create a new profile cache.
+     *
+     * @param file          The {@link File} backing the disk tier, or null for a memory-only
+     *                      cache.
+     * @param memoryEntries The maximum number of profiles kept in memory.
+     * @param diskEntries   The maximum number of profiles kept on disk.
+     * @param ttl           The time to live of the entries, in milliseconds, or 0 if entries
+     *                      never expire.
+     *
+     * @throws IOException if the disk tier can't be opened.
+     */
+    public ProfileCache(File file, int memoryEntries, int diskEntries, long ttl)
+            throws IOException {
+        this.ttl = ttl;
+        this.stats = new CacheStats();
+        this.store = (file != null) ? new FileKeyValueStore(file, diskEntries) : null;
+        this.memory = new LinkedHashMap<String, CachedValue>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<String, CachedValue> eldest) {
+                if (size() > memoryEntries) {
+                    // entries still live on disk, so only count them if there is no disk tier
+                    if (store == null) {
+                        stats.recordEvictions(1);
+                    }
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Look for a profile in the cache, first in memory and then on disk.
+     *
+     * @param key The {@link ProfileKey} of the profile.
+     *
+     * @return The cached {@link Profile}, or null if it isn't cached or it expired.
+     */
+    public synchronized Profile get(ProfileKey key) {
+        String storeKey = toStoreKey(key);
+        long minTime = getMinTime();
+        CachedValue cached = memory.get(storeKey);
+        if (cached != null) {
+            if (cached.time >= minTime) {
+                stats.recordHit(false);
+                return gson.fromJson(cached.json, Profile.class);
+            }
+            memory.remove(storeKey);
+            stats.recordExpiration();
+        }
+        if (store != null) {
+            CachedValue[] found = new CachedValue[1];
+            try {
+                store.get(storeKey, minTime,
+                        (json, time) -> found[0] = new CachedValue(json, time));
+            } catch (IOException e) {
+                logger.warn("Cannot read profile " + key + " from the cache.", e);
+            }
+            if (found[0] != null) {
+                memory.put(storeKey, found[0]);
+                stats.recordHit(true);
+                return gson.fromJson(found[0].json, Profile.class);
+            }
+        }
+        stats.recordMiss();
+        return null;
+    }
+
+    /**
+     * Store a profile in the cache.
+     *
+     * @param key     The {@link ProfileKey} of the profile.
+     * @param profile The {@link Profile} to store.
+     */
+    public synchronized void put(ProfileKey key, Profile profile) {
+        String storeKey = toStoreKey(key);
+        CachedValue value = new CachedValue(gson.toJson(profile), System.currentTimeMillis());
+        memory.put(storeKey, value);
+        if (store != null) {
+            try {
+                store.put(storeKey, value.json, value.time);
+            } catch (IOException e) {
+                logger.warn("Cannot write profile " + key + " to the cache.", e);
+            }
+        }
+    }
+
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Close the cache, compacting the disk tier if it holds too many stale records.
+     *
+     * @throws IOException if the disk tier can't be compacted or closed.
+     */
+    @Override public synchronized void close() throws IOException {
+        if (store == null) {
+            return;
+        }
+        try {
+            if (store.needsCompaction()) {
+                stats.recordEvictions(store.compact(getMinTime()));
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    private long getMinTime() {
+        return (ttl > 0) ? System.currentTimeMillis() - ttl : Long.MIN_VALUE;
+    }
+
+    private static String toStoreKey(ProfileKey key) {
+        return key.getSource() + '\u0000' + key.getId();
+    }
+
+    private static class CachedValue {
+        private final String json;
+        private final long time;
+
+        private CachedValue(String json, long time) {
+            this.json = json;
+            this.time = time;
+        }
+    }
+}
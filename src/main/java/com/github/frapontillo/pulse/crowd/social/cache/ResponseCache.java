@@ -0,0 +1,328 @@
+package com.github.frapontillo.pulse.crowd.social.cache;
+
+import com.github.frapontillo.pulse.util.PulseLogger;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An on-disk cache of the responses of source endpoints, so that repeated and overlapping
+ * extractions are mostly served locally.
+ * <p/>
+ * Responses are keyed by {@link EndpointType} and normalized request (see
+ * {@link #getRequestKey(String, Map)}), and stored gzip-compressed in a
+ * {@link FileKeyValueStore}. Responses younger than the time to live of their endpoint type are
+ * returned without contacting the source; older ones are revalidated with their ETag or
+ * Last-Modified time, when the source provided them, and only downloaded again if they changed.
+ * Expired responses are kept for revalidation, while the oldest ones are evicted as soon as the
+ * cache exceeds its maximum number of entries or bytes.
+ * <p/>
+ * Caches opened with {@link #open(File, int, long, Map)} are shared by all the plugins using the
+ * same file, and closed when every user {@link #release() released} them or when the JVM exits.
+ *
+ * @author Francesco Pontillo
+ */
+public class ResponseCache implements Closeable {
+    public static final int DEFAULT_MAX_ENTRIES = 100000;
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final Logger logger = PulseLogger.getLogger(ResponseCache.class);
+    private static final int VERSION = 1;
+    private static final Map<File, ResponseCache> caches = new HashMap<>();
+    private static boolean hookRegistered;
+
+    private final File file;
+    private final FileKeyValueStore store;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Map<EndpointType, Long> ttls;
+    private final CacheStats stats;
+    // the number of users of a shared cache, guarded by the class lock
+    private int users;
+
+    /**
+     * Open a response cache, creating its file if it doesn't exist.
+     *
+     * @param file       The {@link File} the cache is persisted to.
+     * @param maxEntries The maximum number of responses kept.
+     * @param maxBytes   The maximum size of the compressed responses kept, in bytes.
+     * @param ttls       The time to live of the responses of each {@link EndpointType}, in
+     *                   milliseconds; missing types use {@link EndpointType#getDefaultTtl()}.
+     *
+     * @throws IOException if the file can't be read or created.
+     */
+    public ResponseCache(File file, int maxEntries, long maxBytes, Map<EndpointType, Long> ttls)
+            throws IOException {
+        this.file = file;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.ttls = new EnumMap<>(EndpointType.class);
+        if (ttls != null) {
+            this.ttls.putAll(ttls);
+        }
+        this.stats = new CacheStats();
+        this.store = new FileKeyValueStore(file, maxEntries);
+    }
+
+    /**
+     * Get the shared cache persisted to a file, opening it if needed. The bounds and the times to
+     * live are only used when the cache is opened, and a warning is logged if they differ from
+     * the ones of a cache that is already open.
+     * <p/>
+     * Every call must be followed by a {@link #release()} when the caller is done with the
+     * cache.
+     *
+     * @param file       The {@link File} the cache is persisted to.
+     * @param maxEntries The maximum number of responses kept.
+     * @param maxBytes   The maximum size of the compressed responses kept, in bytes.
+     * @param ttls       The time to live of the responses of each {@link EndpointType}.
+     *
+     * @return The shared {@link ResponseCache}.
+     * @throws IOException if the file can't be read or created.
+     */
+    public static synchronized ResponseCache open(File file, int maxEntries, long maxBytes,
+            Map<EndpointType, Long> ttls) throws IOException {
+        File key = file.getAbsoluteFile();
+        ResponseCache cache = caches.get(key);
+        if (cache == null) {
+            cache = new ResponseCache(key, maxEntries, maxBytes, ttls);
+            caches.put(key, cache);
+            if (!hookRegistered) {
+                Runtime.getRuntime().addShutdownHook(new Thread(ResponseCache::closeAll));
+                hookRegistered = true;
+            }
+        } else if (!cache.hasSettings(maxEntries, maxBytes, ttls)) {
+            logger.warn("The response cache " + key + " is already open with different " +
+                    "settings, keeping " + cache.maxEntries + " entries, " + cache.maxBytes +
+                    " bytes and times to live " + cache.ttls + ".");
+        }
+        cache.users++;
+        return cache;
+    }
+
+    /**
+     * Release a cache got from {@link #open(File, int, long, Map)}, closing it when it has no
+     * more users.
+     *
+     * @throws IOException if the file can't be compacted or closed.
+     */
+    public void release() throws IOException {
+        synchronized (ResponseCache.class) {
+            if (--users > 0) {
+                return;
+            }
+        }
+        close();
+    }
+
+    private boolean hasSettings(int maxEntries, long maxBytes, Map<EndpointType, Long> ttls) {
+        Map<EndpointType, Long> requested = (ttls != null) ? ttls : Collections.emptyMap();
+        return this.maxEntries == maxEntries && this.maxBytes == maxBytes &&
+                this.ttls.equals(requested);
+    }
+
+    private static void closeAll() {
+        List<ResponseCache> open;
+        synchronized (ResponseCache.class) {
+            open = new ArrayList<>(caches.values());
+        }
+        for (ResponseCache cache : open) {
+            try {
+                cache.close();
+            } catch (IOException e) {
+                logger.warn("Cannot close the response cache " + cache.file + ".", e);
+            }
+        }
+    }
+
+    /**
+     * Build the normalized key of a request, so that the same request always hits the same
+     * entry: parameters are sorted by name, null ones are dropped and collections are sorted.
+     *
+     * @param endpoint   The endpoint, e.g. its URL without the query string.
+     * @param parameters The parameters of the request, may be null.
+     *
+     * @return The key of the request.
+     */
+    public static String getRequestKey(String endpoint, Map<String, ?> parameters) {
+        StringBuilder key = new StringBuilder(endpoint.trim());
+        if (parameters == null) {
+            return key.toString();
+        }
+        char separator = '?';
+        for (Map.Entry<String, ?> parameter : new TreeMap<>(parameters).entrySet()) {
+            if (parameter.getValue() == null) {
+                continue;
+            }
+            key.append(separator).append(parameter.getKey()).append('=');
+            if (parameter.getValue() instanceof Collection) {
+                List<String> values = new ArrayList<>();
+                for (Object value : (Collection<?>) parameter.getValue()) {
+                    values.add(String.valueOf(value).trim());
+                }
+                Collections.sort(values);
+                key.append(String.join(",", values));
+            } else {
+                key.append(parameter.getValue().toString().trim());
+            }
+            separator = '&';
+        }
+        return key.toString();
+    }
+
+    /**
+     * Get the body of a response, from the cache if it's still fresh, or from the source
+     * otherwise, revalidating the cached response if possible.
+     *
+     * @param type       The {@link EndpointType} of the request.
+     * @param requestKey The normalized key of the request, see
+     *                   {@link #getRequestKey(String, Map)}.
+     * @param fetcher    The {@link ResponseFetcher} performing the request.
+     *
+     * @return The body of the response.
+     * @throws IOException if the request fails.
+     */
+    public String fetch(EndpointType type, String requestKey, ResponseFetcher fetcher)
+            throws IOException {
+        String key = type.name() + '\u0000' + requestKey;
+        CachedResponse cached = read(key);
+        long now = System.currentTimeMillis();
+        if (cached != null) {
+            if (now - cached.getTime() < getTtl(type)) {
+                stats.recordHit(true);
+                return cached.getBody();
+            }
+            stats.recordExpiration();
+        }
+        CachedResponse stale = (cached != null && cached.hasValidators()) ? cached : null;
+        CachedResponse response = fetcher.fetch(stale);
+        if (response.isNotModified()) {
+            if (stale == null) {
+                throw new IOException("The source answered Not Modified to a new request.");
+            }
+            response = new CachedResponse(stale.getBody(), stale.getEtag(),
+                    stale.getLastModified(), now);
+            stats.recordRevalidation();
+        } else {
+            stats.recordMiss();
+        }
+        write(key, response);
+        return response.getBody();
+    }
+
+    /**
+     * Get the time to live of the responses of an endpoint type.
+     *
+     * @param type The {@link EndpointType}.
+     *
+     * @return The time to live, in milliseconds.
+     */
+    public long getTtl(EndpointType type) {
+        Long ttl = ttls.get(type);
+        return (ttl != null) ? ttl : type.getDefaultTtl();
+    }
+
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Close the cache, compacting its file if it holds too many stale records.
+     *
+     * @throws IOException if the file can't be compacted or closed.
+     */
+    @Override public void close() throws IOException {
+        synchronized (ResponseCache.class) {
+            caches.remove(file.getAbsoluteFile(), this);
+        }
+        synchronized (this) {
+            try {
+                if (store.needsCompaction()) {
+                    stats.recordEvictions(store.compact(Long.MIN_VALUE, maxEntries, maxBytes));
+                }
+            } finally {
+                store.close();
+            }
+        }
+    }
+
+    private CachedResponse read(String key) {
+        CachedResponse[] found = new CachedResponse[1];
+        try {
+            store.getBytes(key, Long.MIN_VALUE, (value, time) -> {
+                try {
+                    found[0] = decode(value, time);
+                } catch (IOException e) {
+                    logger.warn("Cannot decode the cached response " + key + ".", e);
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Cannot read the cached response " + key + ".", e);
+        }
+        return found[0];
+    }
+
+    private void write(String key, CachedResponse response) {
+        try {
+            store.putBytes(key, encode(response), response.getTime());
+            synchronized (this) {
+                // evict down to 90% of the bounds, so that compactions aren't too frequent
+                if (store.size() > maxEntries || store.getValueBytes() > maxBytes) {
+                    stats.recordEvictions(store.compact(Long.MIN_VALUE,
+                            (int) (maxEntries * 0.9), (long) (maxBytes * 0.9)));
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Cannot write the cached response " + key + ".", e);
+        }
+    }
+
+    private static byte[] encode(CachedResponse response) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeByte(VERSION);
+            out.writeBoolean(response.getEtag() != null);
+            if (response.getEtag() != null) {
+                out.writeUTF(response.getEtag());
+            }
+            out.writeLong(response.getLastModified());
+            byte[] body = response.getBody().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(body.length);
+            out.write(body);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static CachedResponse decode(byte[] value, long time) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new GZIPInputStream(new ByteArrayInputStream(value)))) {
+            int version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported cached response version " + version + ".");
+            }
+            String etag = in.readBoolean() ? in.readUTF() : null;
+            long lastModified = in.readLong();
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new CachedResponse(new String(body, StandardCharsets.UTF_8), etag,
+                    lastModified, time);
+        }
+    }
+}
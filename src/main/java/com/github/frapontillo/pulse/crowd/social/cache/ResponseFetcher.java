@@ -0,0 +1,23 @@
+package com.github.frapontillo.pulse.crowd.social.cache;
+
+import java.io.IOException;
+
+/**
+ * Performs a request to a source endpoint on behalf of a {@link ResponseCache}.
+ *
+ * @author Francesco Pontillo
+ */
+@FunctionalInterface public interface ResponseFetcher {
+
+    /**
+     * Request a response from the source.
+     *
+     * @param stale The expired cached response, whose validators should be sent as
+     *              If-None-Match and If-Modified-Since headers, or null if there is none.
+     *
+     * @return The fetched {@link CachedResponse}, or {@link CachedResponse#notModified()} if the
+     * source confirmed the stale response is still valid.
+     * @throws IOException if the request fails.
+     */
+    CachedResponse fetch(CachedResponse stale) throws IOException;
+}
@@ -0,0 +1,51 @@
+package com.github.frapontillo.pulse.crowd.social.distinct;
+
+import com.github.frapontillo.pulse.crowd.social.util.BloomFilter;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A {@link DistinctFilter} backed by a {@link BloomFilter}, using a fixed amount of memory.
+ * A key seen for the first time is wrongly considered as repeated (and dropped) with the
+ * configured false positive probability, as long as the number of keys stays within the expected
+ * number of insertions.
+ *
+ * @author Francesco Pontillo
+ */
+public class BloomDistinctFilter implements DistinctFilter {
+    private final BloomFilter filter;
+
+    public BloomDistinctFilter(long expectedInsertions, double falsePositiveRate) {
+        this.filter = new BloomFilter(expectedInsertions, falsePositiveRate);
+    }
+
+    private BloomDistinctFilter(BloomFilter filter) {
+        this.filter = filter;
+    }
+
+    @Override public boolean add(long hash) {
+        return filter.put(hash);
+    }
+
+    @Override public long size() {
+        return filter.getInsertions();
+    }
+
+    @Override public long getMemoryUsage() {
+        return filter.getMemoryUsage();
+    }
+
+    @Override public DistinctMode getMode() {
+        return DistinctMode.APPROXIMATE;
+    }
+
+    @Override public void write(DataOutputStream out) throws IOException {
+        filter.write(out);
+    }
+
+    static BloomDistinctFilter read(DataInputStream in) throws IOException {
+        return new BloomDistinctFilter(BloomFilter.read(in));
+    }
+}
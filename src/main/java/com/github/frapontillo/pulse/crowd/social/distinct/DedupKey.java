@@ -0,0 +1,34 @@
+package com.github.frapontillo.pulse.crowd.social.distinct;
+
+/**
+ * The available keys identifying repeated messages, see {@link MessageDeduplicator}.
+ *
+ * @author Francesco Pontillo
+ */
+public enum DedupKey {
+    /**
+     * The source and the original identifier of the message.
+     */
+    ID,
+    /**
+     * A fingerprint of the normalized text of the message, regardless of its source, so that the
+     * same content extracted from different sources is only kept once.
+     */
+    CONTENT;
+
+    /**
+     * Parse a key from its case-insensitive name.
+     *
+     * @param value        The name of the key, may be null.
+     * @param defaultValue The key to return if the value is null or empty.
+     *
+     * @return The parsed {@link DedupKey}.
+     * @throws IllegalArgumentException if the value isn't a valid key name.
+     */
+    public static DedupKey fromString(String value, DedupKey defaultValue) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return DedupKey.valueOf(value.trim().toUpperCase());
+    }
+}
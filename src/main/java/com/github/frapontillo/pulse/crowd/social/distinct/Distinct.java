@@ -0,0 +1,150 @@
+package com.github.frapontillo.pulse.crowd.social.distinct;
+
+import com.github.frapontillo.pulse.crowd.social.util.Hashing;
+import com.github.frapontillo.pulse.util.PulseLogger;
+import org.apache.logging.log4j.Logger;
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Func0;
+import rx.functions.Func1;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Memory-bounded replacement for {@link Observable#distinct(Func1)}, which keeps every key it has
+ * seen for the whole life of the stream.
+ * Keys are hashed to 64 bits and handed to a pluggable {@link DistinctFilter}.
+ *
+ * @author Francesco Pontillo
+ */
+public class Distinct {
+    public static final long DEFAULT_EXPECTED_KEYS = 1000000;
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+    public static final int DEFAULT_WINDOW_SIZE = 100000;
+
+    private static final Logger logger = PulseLogger.getLogger(Distinct.class);
+
+    /**
+     * Build a {@link Observable.Transformer} that drops the elements whose key was already seen
+     * according to a new {@link DistinctFilter} for every subscription.
+     * The memory used by the filter is logged when the stream completes.
+     *
+     * @param name          A name for the stage, used for logging.
+     * @param keySelector   The function returning the key of an element.
+     * @param filterFactory The factory of the {@link DistinctFilter} to use.
+     * @param <T>           The type of the stream elements.
+     *
+     * @return A {@link Observable.Transformer} emitting distinct elements only.
+     */
+    public static <T> Observable.Transformer<T, T> by(String name,
+            Func1<? super T, ? extends CharSequence> keySelector,
+            Func0<? extends DistinctFilter> filterFactory) {
+        return byHash(name, element -> Hashing.hash64(keySelector.call(element)), filterFactory);
+    }
+
+    /**
+     * Build a {@link Observable.Transformer} that drops the elements whose key hash was already
+     * seen according to a new {@link DistinctFilter} for every subscription.
+     * The memory used by the filter is logged when the stream completes.
+     *
+     * @param name          A name for the stage, used for logging.
+     * @param hashSelector  The function returning the 64-bit hash of the key of an element.
+     * @param filterFactory The factory of the {@link DistinctFilter} to use.
+     * @param <T>           The type of the stream elements.
+     *
+     * @return A {@link Observable.Transformer} emitting distinct elements only.
+     */
+    public static <T> Observable.Transformer<T, T> byHash(String name,
+            Func1<? super T, Long> hashSelector, Func0<? extends DistinctFilter> filterFactory) {
+        return observable -> observable.lift(subscriber -> {
+            DistinctFilter filter = filterFactory.call();
+            return new Subscriber<T>(subscriber) {
+                @Override public void onNext(T element) {
+                    if (filter.add(hashSelector.call(element))) {
+                        subscriber.onNext(element);
+                    } else {
+                        request(1);
+                    }
+                }
+
+                @Override public void onCompleted() {
+                    logger.info("Distinct stage \"{}\" remembered {} keys using {} bytes.", name,
+                            filter.size(), filter.getMemoryUsage());
+                    subscriber.onCompleted();
+                }
+
+                @Override public void onError(Throwable e) {
+                    subscriber.onError(e);
+                }
+            };
+        });
+    }
+
+    /**
+     * Build a factory of {@link DistinctFilter}s according to the given settings.
+     *
+     * @param mode              The {@link DistinctMode} to use, or null for
+     *                          {@link DistinctMode#EXACT}.
+     * @param expectedKeys      The expected number of distinct keys, or null for the default.
+     * @param falsePositiveRate The false positive rate of {@link DistinctMode#APPROXIMATE}
+     *                          filters, or null for the default.
+     * @param windowSize        The number of keys per window of {@link DistinctMode#WINDOWED}
+     *                          filters, or null.
+     * @param windowMillis      The duration in milliseconds of a window of
+     *                          {@link DistinctMode#WINDOWED} filters, or null.
+     *
+     * @return A {@link Func0} creating a new {@link DistinctFilter} at every call.
+     */
+    public static Func0<DistinctFilter> filterFactory(DistinctMode mode, Long expectedKeys,
+            Double falsePositiveRate, Integer windowSize, Long windowMillis) {
+        long expected = (expectedKeys != null && expectedKeys > 0) ? expectedKeys :
+                DEFAULT_EXPECTED_KEYS;
+        if (mode == DistinctMode.APPROXIMATE) {
+            double rate = (falsePositiveRate != null) ? falsePositiveRate :
+                    DEFAULT_FALSE_POSITIVE_RATE;
+            return () -> new BloomDistinctFilter(expected, rate);
+        } else if (mode == DistinctMode.WINDOWED) {
+            long millis = (windowMillis != null && windowMillis > 0) ? windowMillis : 0;
+            int size = (windowSize != null && windowSize > 0) ? windowSize :
+                    (millis > 0 ? 0 : DEFAULT_WINDOW_SIZE);
+            return () -> new WindowedDistinctFilter(size, millis);
+        }
+        return ExactDistinctFilter::new;
+    }
+
+    /**
+     * Write the mode and the state of a {@link DistinctFilter}.
+     *
+     * @param out    The {@link DataOutputStream} to write to.
+     * @param filter The {@link DistinctFilter} to write.
+     *
+     * @throws IOException if the filter can't be written.
+     */
+    public static void write(DataOutputStream out, DistinctFilter filter) throws IOException {
+        out.writeByte(filter.getMode().ordinal());
+        filter.write(out);
+    }
+
+    /**
+     * Read a {@link DistinctFilter} written by {@link #write(DataOutputStream, DistinctFilter)},
+     * whatever its mode.
+     *
+     * @param in The {@link DataInputStream} to read from.
+     *
+     * @return The restored {@link DistinctFilter}.
+     * @throws IOException if the filter can't be read.
+     */
+    public static DistinctFilter read(DataInputStream in) throws IOException {
+        int mode = in.readByte();
+        if (mode == DistinctMode.EXACT.ordinal()) {
+            return ExactDistinctFilter.read(in);
+        } else if (mode == DistinctMode.APPROXIMATE.ordinal()) {
+            return BloomDistinctFilter.read(in);
+        } else if (mode == DistinctMode.WINDOWED.ordinal()) {
+            return WindowedDistinctFilter.read(in);
+        }
+        throw new IOException("Unknown distinct filter mode " + mode + ".");
+    }
+}
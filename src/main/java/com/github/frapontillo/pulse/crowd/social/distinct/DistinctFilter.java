@@ -0,0 +1,59 @@
+package com.github.frapontillo.pulse.crowd.social.distinct;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A stateful filter that remembers the 64-bit hashes of the keys it has seen, used to drop
+ * repeated elements from a stream without keeping the original keys in memory.
+ * <p/>
+ * Implementations are not required to be thread-safe, as every stream subscription gets its own
+ * filter.
+ * <p/>
+ * The state of a filter can be saved with {@link Distinct#write(DataOutputStream, DistinctFilter)}
+ * and restored in a later run with {@link Distinct#read(java.io.DataInputStream)}.
+ *
+ * @author Francesco Pontillo
+ */
+public interface DistinctFilter {
+
+    /**
+     * Record a key hash as seen.
+     *
+     * @param hash The 64-bit hash of the key.
+     *
+     * @return true if the key must be considered as seen for the first time.
+     */
+    boolean add(long hash);
+
+    /**
+     * Get the number of keys currently remembered by the filter (an approximation for
+     * probabilistic filters).
+     *
+     * @return The number of remembered keys.
+     */
+    long size();
+
+    /**
+     * Get an approximation of the heap memory used by the filter.
+     *
+     * @return The used memory, in bytes.
+     */
+    long getMemoryUsage();
+
+    /**
+     * Get the {@link DistinctMode} this filter implements.
+     *
+     * @return The {@link DistinctMode} of the filter.
+     */
+    DistinctMode getMode();
+
+    /**
+     * Write the state of the filter, without its mode.
+     *
+     * @param out The {@link DataOutputStream} to write to.
+     *
+     * @throws IOException if the state can't be written.
+     */
+    void write(DataOutputStream out) throws IOException;
+}
@@ -0,0 +1,37 @@
+package com.github.frapontillo.pulse.crowd.social.distinct;
+
+/**
+ * The available strategies for removing repeated elements from a stream.
+ *
+ * @author Francesco Pontillo
+ */
+public enum DistinctMode {
+    /**
+     * Remember the hash of every key, see {@link ExactDistinctFilter}.
+     */
+    EXACT,
+    /**
+     * Use a fixed-size probabilistic filter, see {@link BloomDistinctFilter}.
+     */
+    APPROXIMATE,
+    /**
+     * Only remember the most recent keys, see {@link WindowedDistinctFilter}.
+     */
+    WINDOWED;
+
+    /**
+     * Parse a mode from its case-insensitive name.
+     *
+     * @param value        The name of the mode, may be null.
+     * @param defaultValue The mode to return if the value is null or empty.
+     *
+     * @return The parsed {@link DistinctMode}.
+     * @throws IllegalArgumentException if the value isn't a valid mode name.
+     */
+    public static DistinctMode fromString(String value, DistinctMode defaultValue) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return DistinctMode.valueOf(value.trim().toUpperCase());
+    }
+}
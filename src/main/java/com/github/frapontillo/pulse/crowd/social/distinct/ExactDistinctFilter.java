@@ -0,0 +1,61 @@
+package com.github.frapontillo.pulse.crowd.social.distinct;
+
+import com.github.frapontillo.pulse.crowd.social.util.CheckpointFile;
+import com.github.frapontillo.pulse.crowd.social.util.LongHashSet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A {@link DistinctFilter} that remembers every key hash in a primitive {@link LongHashSet}.
+ * It never forgets a key and only treats two different keys as the same one if their 64-bit
+ * hashes collide.
+ *
+ * @author Francesco Pontillo
+ */
+public class ExactDistinctFilter implements DistinctFilter {
+    private final LongHashSet seen;
+
+    public ExactDistinctFilter() {
+        this.seen = new LongHashSet();
+    }
+
+    public ExactDistinctFilter(int expectedSize) {
+        this.seen = new LongHashSet(expectedSize);
+    }
+
+    /**
+     * Create a filter on top of an existing set of hashes, e.g. restored from a checkpoint. The
+     * set is updated as new keys are added to the filter.
+     *
+     * @param seen The {@link LongHashSet} of the hashes already seen.
+     */
+    public ExactDistinctFilter(LongHashSet seen) {
+        this.seen = seen;
+    }
+
+    @Override public boolean add(long hash) {
+        return seen.add(hash);
+    }
+
+    @Override public long size() {
+        return seen.size();
+    }
+
+    @Override public long getMemoryUsage() {
+        return seen.getMemoryUsage();
+    }
+
+    @Override public DistinctMode getMode() {
+        return DistinctMode.EXACT;
+    }
+
+    @Override public void write(DataOutputStream out) throws IOException {
+        CheckpointFile.writeSet(out, seen);
+    }
+
+    static ExactDistinctFilter read(DataInputStream in) throws IOException {
+        return new ExactDistinctFilter(CheckpointFile.readSet(in));
+    }
+}
@@ -0,0 +1,206 @@
+package com.github.frapontillo.pulse.crowd.social.distinct;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.util.CheckpointFile;
+import com.github.frapontillo.pulse.crowd.social.util.Hashing;
+import com.github.frapontillo.pulse.util.PulseLogger;
+import org.apache.logging.log4j.Logger;
+import rx.Observable;
+import rx.functions.Action0;
+import rx.functions.Func0;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A stage dropping repeated {@link Message}s, identified by a {@link DedupKey} and remembered
+ * as 64-bit hashes by a {@link DistinctFilter}.
+ * <p/>
+ * If a state file is given, the filter is restored from it when the stage is subscribed and
+ * saved back when the stream terminates or is unsubscribed, so that messages delivered by a
+ * previous run are dropped as well. Subscriptions sharing the same state file must not overlap.
+ *
+ * @author Francesco Pontillo
+ */
+public class MessageDeduplicator {
+    private static final int MAGIC = 0x44445031; // "DDP1"
+
+    private static final Logger logger = PulseLogger.getLogger(MessageDeduplicator.class);
+
+    private final String name;
+    private final DedupKey key;
+    private final Func0<? extends DistinctFilter> filterFactory;
+    private final File state;
+
+    /**
+     * Create a new deduplication stage.
+     *
+     * @param name          A name for the stage, used for logging.
+     * @param key           The {@link DedupKey} identifying repeated messages.
+     * @param filterFactory The factory of the {@link DistinctFilter} to use when there is no
+     *                      saved state.
+     * @param state         The {@link File} to persist the filter to, or null.
+     */
+    public MessageDeduplicator(String name, DedupKey key,
+            Func0<? extends DistinctFilter> filterFactory, File state) {
+        this.name = name;
+        this.key = key;
+        this.filterFactory = filterFactory;
+        this.state = state;
+    }
+
+    /**
+     * Build a {@link Observable.Transformer} that drops the messages already seen by the current
+     * subscription or, if the stage has a state file, by the previous ones.
+     *
+     * @return A {@link Observable.Transformer} emitting distinct messages only.
+     */
+    public Observable.Transformer<Message, Message> deduplicate() {
+        return messages -> Observable.defer(() -> {
+            DistinctFilter filter;
+            try {
+                filter = loadFilter();
+            } catch (IOException e) {
+                return Observable.error(e);
+            }
+            AtomicLong dropped = new AtomicLong();
+            AtomicBoolean terminated = new AtomicBoolean();
+            Action0 terminate = () -> {
+                if (terminated.compareAndSet(false, true)) {
+                    saveFilter(filter, dropped.get());
+                }
+            };
+            return messages.filter(message -> {
+                boolean isNew;
+                synchronized (filter) {
+                    isNew = filter.add(hash(message));
+                }
+                if (!isNew) {
+                    dropped.incrementAndGet();
+                }
+                return isNew;
+            }).doOnTerminate(terminate).doOnUnsubscribe(terminate);
+        });
+    }
+
+    /**
+     * Get the hash of a message according to the key of this stage.
+     *
+     * @param message The {@link Message} to hash.
+     *
+     * @return The 64-bit hash of the message key.
+     */
+    public long hash(Message message) {
+        return (key == DedupKey.CONTENT) ? getFingerprint(message) : getIdHash(message);
+    }
+
+    /**
+     * Get the hash of the source and the original identifier of a message.
+     *
+     * @param message The {@link Message} to hash.
+     *
+     * @return The 64-bit hash of the message identity.
+     */
+    public static long getIdHash(Message message) {
+        return Hashing.hash64(message.getSource(), message.getoId());
+    }
+
+    /**
+     * Get the hash of the normalized text of a message (see {@link #normalize(String)}), or the
+     * hash of its identity if the message has no text.
+     *
+     * @param message The {@link Message} to hash.
+     *
+     * @return The 64-bit fingerprint of the message content.
+     */
+    public static long getFingerprint(Message message) {
+        String text = normalize(message.getText());
+        return text.isEmpty() ? getIdHash(message) : Hashing.hash64(text);
+    }
+
+    /**
+     * Normalize a text so that trivial variations of the same content are equal: links are
+     * removed, letters are lower-cased and any run of other characters becomes a single space.
+     *
+     * @param text The text to normalize, may be null.
+     *
+     * @return The normalized text, empty if there is nothing left.
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        int length = text.length();
+        StringBuilder normalized = new StringBuilder(length);
+        int i = 0;
+        while (i < length) {
+            if ((i == 0 || Character.isWhitespace(text.charAt(i - 1))) && isLink(text, i)) {
+                while (i < length && !Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+                continue;
+            }
+            char c = text.charAt(i++);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+            } else if (normalized.length() > 0 &&
+                    normalized.charAt(normalized.length() - 1) != ' ') {
+                normalized.append(' ');
+            }
+        }
+        if (normalized.length() > 0 && normalized.charAt(normalized.length() - 1) == ' ') {
+            normalized.setLength(normalized.length() - 1);
+        }
+        return normalized.toString();
+    }
+
+    private static boolean isLink(String text, int start) {
+        return text.regionMatches(true, start, "http://", 0, 7) ||
+                text.regionMatches(true, start, "https://", 0, 8) ||
+                text.regionMatches(true, start, "www.", 0, 4);
+    }
+
+    /**
+     * Restore the filter from the state file, or create a new one if there is no state or the
+     * state was saved with a different key.
+     */
+    private DistinctFilter loadFilter() throws IOException {
+        if (state != null) {
+            DistinctFilter filter = CheckpointFile.load(state, MAGIC, in -> {
+                int savedKey = in.readByte();
+                if (savedKey != key.ordinal()) {
+                    logger.warn("Ignoring the deduplication state {}, saved with a different key.",
+                            state);
+                    return null;
+                }
+                return Distinct.read(in);
+            });
+            if (filter != null) {
+                logger.info("Deduplication stage \"{}\" restored {} keys from {}.", name,
+                        filter.size(), state);
+                return filter;
+            }
+        }
+        return filterFactory.call();
+    }
+
+    private void saveFilter(DistinctFilter filter, long dropped) {
+        synchronized (filter) {
+            logger.info("Deduplication stage \"{}\" dropped {} messages, remembering {} keys " +
+                    "using {} bytes.", name, dropped, filter.size(), filter.getMemoryUsage());
+            if (state == null) {
+                return;
+            }
+            try {
+                CheckpointFile.save(state, MAGIC, out -> {
+                    out.writeByte(key.ordinal());
+                    Distinct.write(out, filter);
+                });
+            } catch (IOException e) {
+                logger.warn("Cannot save the deduplication state " + state + ".", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.frapontillo.pulse.crowd.social.distinct;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.metrics.Counter;
+import com.github.frapontillo.pulse.crowd.social.metrics.Metrics;
+import com.github.frapontillo.pulse.crowd.social.util.MinHash;
+import com.github.frapontillo.pulse.util.PulseLogger;
+import org.apache.logging.log4j.Logger;
+import rx.Observable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A stage collapsing near-duplicate messages, such as retweets, copy-pastes and spam, detected by
+ * a {@link NearDuplicateIndex} over the text of the most recent messages.
+ * <p/>
+ * The identifier of a cluster is the original identifier of its first message.
+ * In {@link NearDuplicateMode#DROP} mode only the first message of every cluster is emitted,
+ * with the custom tag {@code cluster:<id>}, and the dropped ones are counted by the
+ * {@code <name>.nearDuplicates} counter; the number of near-duplicates of every single cluster
+ * is lost, since the kept message is emitted before its near-duplicates arrive. In
+ * {@link NearDuplicateMode#MARK} mode every message is emitted with the custom tags
+ * {@code cluster:<id>} and {@code cluster-index:<position>}, where the position is a running
+ * count of the messages of the cluster up to the tagged one, starting from 1: the size of a
+ * cluster is the highest position among its messages, computed downstream.
+ *
+ * @author Francesco Pontillo
+ */
+public class NearDuplicateCollapser {
+    public static final String CLUSTER_TAG_PREFIX = "cluster:";
+    public static final String CLUSTER_INDEX_TAG_PREFIX = "cluster-index:";
+    public static final double DEFAULT_THRESHOLD = 0.8;
+    public static final int DEFAULT_WINDOW_SIZE = 10000;
+
+    // 16 bands of 4 hashes find the texts with a similarity of 0.8 more than 99.9% of the times
+    private static final MinHash minHash = new MinHash(16, 4, 5);
+    private static final Logger logger = PulseLogger.getLogger(NearDuplicateCollapser.class);
+
+    private final String name;
+    private final NearDuplicateMode mode;
+    private final double threshold;
+    private final int windowSize;
+
+    /**
+     * Create a new near-duplicate stage.
+     *
+     * @param name       A name for the stage, used for logging and metrics.
+     * @param mode       The {@link NearDuplicateMode} to use.
+     * @param threshold  The minimum similarity of near-duplicates, or null for
+     *                   {@link #DEFAULT_THRESHOLD}.
+     * @param windowSize The number of recent messages to compare against, or null for
+     *                   {@link #DEFAULT_WINDOW_SIZE}.
+     */
+    public NearDuplicateCollapser(String name, NearDuplicateMode mode, Double threshold,
+            Integer windowSize) {
+        this.name = name;
+        this.mode = mode;
+        this.threshold = (threshold != null) ? threshold : DEFAULT_THRESHOLD;
+        this.windowSize = (windowSize != null && windowSize > 0) ? windowSize :
+                DEFAULT_WINDOW_SIZE;
+    }
+
+    /**
+     * Build a {@link Observable.Transformer} collapsing the near-duplicate messages with a new
+     * {@link NearDuplicateIndex} for every subscription.
+     *
+     * @return A {@link Observable.Transformer} dropping or marking near-duplicates.
+     */
+    public Observable.Transformer<Message, Message> collapse() {
+        Counter dropped = Metrics.getRegistry().counter(name + ".nearDuplicates");
+        return messages -> Observable.defer(() -> {
+            NearDuplicateIndex index = new NearDuplicateIndex(minHash, threshold, windowSize);
+            Observable<Message> collapsed;
+            if (mode == NearDuplicateMode.MARK) {
+                collapsed = messages.map(message -> {
+                    tag(message, index.add(message.getoId(), message.getText()));
+                    return message;
+                });
+            } else {
+                collapsed = messages.filter(message -> {
+                    NearDuplicateIndex.Cluster cluster =
+                            index.add(message.getoId(), message.getText());
+                    if (cluster.getSize() > 1) {
+                        dropped.increment();
+                        return false;
+                    }
+                    tag(message, cluster, false);
+                    return true;
+                });
+            }
+            return collapsed.doOnCompleted(() -> logger.info(
+                    "Near-duplicate stage \"{}\" remembered {} messages using {} bytes.", name,
+                    index.size(), index.getMemoryUsage()));
+        });
+    }
+
+    /**
+     * Add the tags of a cluster to the custom tags of a message, copying them so that lists
+     * shared among messages aren't modified.
+     *
+     * @param message The {@link Message} to tag.
+     * @param cluster The {@link NearDuplicateIndex.Cluster} of the message.
+     */
+    public static void tag(Message message, NearDuplicateIndex.Cluster cluster) {
+        tag(message, cluster, true);
+    }
+
+    /**
+     * Add the tags of a cluster to the custom tags of a message, replacing the cluster tags it
+     * may already have.
+     *
+     * @param message      The {@link Message} to tag.
+     * @param cluster      The {@link NearDuplicateIndex.Cluster} of the message.
+     * @param includeIndex Whether to add the position of the message in the cluster.
+     */
+    public static void tag(Message message, NearDuplicateIndex.Cluster cluster,
+            boolean includeIndex) {
+        List<String> customTags = message.getCustomTags();
+        List<String> tagged = new ArrayList<>(
+                ((customTags != null) ? customTags.size() : 0) + 2);
+        if (customTags != null) {
+            for (String tag : customTags) {
+                if (!tag.startsWith(CLUSTER_TAG_PREFIX) &&
+                        !tag.startsWith(CLUSTER_INDEX_TAG_PREFIX)) {
+                    tagged.add(tag);
+                }
+            }
+        }
+        tagged.add(CLUSTER_TAG_PREFIX + cluster.getId());
+        if (includeIndex) {
+            tagged.add(CLUSTER_INDEX_TAG_PREFIX + cluster.getSize());
+        }
+        message.setCustomTags(tagged);
+    }
+}
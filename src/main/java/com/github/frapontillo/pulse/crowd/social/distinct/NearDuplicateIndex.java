@@ -0,0 +1,147 @@
+package com.github.frapontillo.pulse.crowd.social.distinct;
+
+import com.github.frapontillo.pulse.crowd.social.util.LongIntHashMap;
+import com.github.frapontillo.pulse.crowd.social.util.MinHash;
+
+/**
+ * A sliding window of the most recent texts, grouping them into clusters of near-duplicates.
+ * <p/>
+ * Every text is normalized (see {@link MessageDeduplicator#normalize(String)}) and reduced to a
+ * {@link MinHash} signature, whose band keys point to the latest text of the window with the
+ * same band. A text joins the cluster of the first of those candidates whose estimated
+ * similarity reaches the threshold, or starts a new cluster. When the window is full, the oldest
+ * text is forgotten; a cluster lives as long as any of its texts is in the window.
+ * <p/>
+ * This class is not thread-safe.
+ *
+ * @author Francesco Pontillo
+ */
+public class NearDuplicateIndex {
+    private final MinHash minHash;
+    private final double threshold;
+    private final long[][] signatures;
+    private final long[][] bandKeys;
+    private final Cluster[] clusters;
+    private final LongIntHashMap buckets;
+    private long added;
+
+    /**
+     * A cluster of near-duplicate texts.
+     */
+    public static class Cluster {
+        private final String id;
+        private int size;
+
+        private Cluster(String id) {
+            this.id = id;
+            this.size = 1;
+        }
+
+        /**
+         * Get the identifier of the cluster, that is the identifier of its first text.
+         *
+         * @return The cluster identifier.
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Get the number of texts that joined the cluster so far.
+         *
+         * @return The size of the cluster.
+         */
+        public int getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * Create a new, empty index.
+     *
+     * @param minHash    The {@link MinHash} computing the signatures.
+     * @param threshold  The minimum estimated similarity of near-duplicates, in (0, 1].
+     * @param windowSize The number of texts remembered.
+     */
+    public NearDuplicateIndex(MinHash minHash, double threshold, int windowSize) {
+        if (threshold <= 0 || threshold > 1) {
+            throw new IllegalArgumentException(
+                    "The similarity threshold must be in (0, 1], was " + threshold + ".");
+        }
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("The window size must be positive.");
+        }
+        this.minHash = minHash;
+        this.threshold = threshold;
+        this.signatures = new long[windowSize][];
+        this.bandKeys = new long[windowSize][];
+        this.clusters = new Cluster[windowSize];
+        this.buckets = new LongIntHashMap(windowSize * minHash.getBands());
+    }
+
+    /**
+     * Add a text to the window.
+     *
+     * @param id   The identifier of the text, used as cluster identifier if it starts a new one.
+     * @param text The text, may be null.
+     *
+     * @return The {@link Cluster} the text joined: a new one with size 1 if it has no
+     * near-duplicate in the window. Texts with nothing left after normalization always start a
+     * new cluster and aren't remembered.
+     */
+    public Cluster add(String id, String text) {
+        long[] signature = minHash.signature(MessageDeduplicator.normalize(text));
+        if (signature == null) {
+            return new Cluster(id);
+        }
+        long[] keys = minHash.getBandKeys(signature);
+        Cluster cluster = null;
+        for (long key : keys) {
+            int slot = buckets.get(key);
+            if (slot != LongIntHashMap.MISSING &&
+                    MinHash.similarity(signatures[slot], signature) >= threshold) {
+                cluster = clusters[slot];
+                cluster.size++;
+                break;
+            }
+        }
+        if (cluster == null) {
+            cluster = new Cluster(id);
+        }
+        int slot = (int) (added++ % signatures.length);
+        if (signatures[slot] != null) {
+            // forget the oldest text, unless a more recent one took over its buckets
+            for (long key : bandKeys[slot]) {
+                if (buckets.get(key) == slot) {
+                    buckets.remove(key);
+                }
+            }
+        }
+        signatures[slot] = signature;
+        bandKeys[slot] = keys;
+        clusters[slot] = cluster;
+        for (long key : keys) {
+            buckets.put(key, slot);
+        }
+        return cluster;
+    }
+
+    /**
+     * Get the number of texts currently remembered.
+     *
+     * @return The number of texts in the window.
+     */
+    public int size() {
+        return (int) Math.min(added, signatures.length);
+    }
+
+    /**
+     * Get an approximation of the heap memory used by the index.
+     *
+     * @return The used memory, in bytes.
+     */
+    public long getMemoryUsage() {
+        long perText = 8L * (minHash.getBands() * minHash.getRows() + minHash.getBands()) + 64;
+        return perText * size() + 24L * signatures.length + buckets.getMemoryUsage();
+    }
+}
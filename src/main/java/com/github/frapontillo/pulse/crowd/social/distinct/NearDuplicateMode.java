@@ -0,0 +1,34 @@
+package com.github.frapontillo.pulse.crowd.social.distinct;
+
+/**
+ * What to do with near-duplicate messages, see {@link NearDuplicateCollapser}.
+ *
+ * @author Francesco Pontillo
+ */
+public enum NearDuplicateMode {
+    /**
+     * Only emit the first message of every cluster of near-duplicates, tagged with its cluster;
+     * the number of dropped near-duplicates is only counted for all the clusters together.
+     */
+    DROP,
+    /**
+     * Emit every message, tagged with its cluster and its position in the cluster.
+     */
+    MARK;
+
+    /**
+     * Parse a mode from its case-insensitive name.
+     *
+     * @param value        The name of the mode, may be null.
+     * @param defaultValue The mode to return if the value is null or empty.
+     *
+     * @return The parsed {@link NearDuplicateMode}.
+     * @throws IllegalArgumentException if the value isn't a valid mode name.
+     */
+    public static NearDuplicateMode fromString(String value, NearDuplicateMode defaultValue) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return NearDuplicateMode.valueOf(value.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.frapontillo.pulse.crowd.social.distinct;
+
+import com.github.frapontillo.pulse.crowd.social.util.CheckpointFile;
+import com.github.frapontillo.pulse.crowd.social.util.LongHashSet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A {@link DistinctFilter} that only remembers recent keys, bounded by count and/or by time.
+ * <p/>
+ * Keys are kept in two generations: when the current generation reaches the window size, or when
+ * the window time elapses, the previous generation is dropped and the current one takes its
+ * place. A key is therefore remembered for at least one window and at most two windows, and the
+ * filter never holds more than twice the window size.
+ * <p/>
+ * A restored filter keeps the start time of its current generation, so the time elapsed between
+ * two runs counts towards the window time.
+ *
+ * @author Francesco Pontillo
+ */
+public class WindowedDistinctFilter implements DistinctFilter {
+    private final int windowSize;
+    private final long windowMillis;
+
+    private LongHashSet current;
+    private LongHashSet previous;
+    private long generationStart;
+
+    /**
+     * Create a new windowed filter.
+     *
+     * @param windowSize   The number of keys per window, or 0 for no count bound.
+     * @param windowMillis The duration of a window in milliseconds, or 0 for no time bound.
+     */
+    public WindowedDistinctFilter(int windowSize, long windowMillis) {
+        if (windowSize <= 0 && windowMillis <= 0) {
+            throw new IllegalArgumentException(
+                    "A windowed distinct filter needs a window size or a window time.");
+        }
+        this.windowSize = windowSize;
+        this.windowMillis = windowMillis;
+        this.current = newGeneration();
+        this.previous = newGeneration();
+        this.generationStart = System.currentTimeMillis();
+    }
+
+    private WindowedDistinctFilter(int windowSize, long windowMillis, LongHashSet current,
+            LongHashSet previous, long generationStart) {
+        this.windowSize = windowSize;
+        this.windowMillis = windowMillis;
+        this.current = current;
+        this.previous = previous;
+        this.generationStart = generationStart;
+    }
+
+    @Override public boolean add(long hash) {
+        if (windowMillis > 0) {
+            long now = System.currentTimeMillis();
+            if (now - generationStart >= windowMillis) {
+                // if more than two windows elapsed, nothing should be remembered
+                rotate(now - generationStart >= 2 * windowMillis);
+                generationStart = now;
+            }
+        }
+        if (previous.contains(hash) || !current.add(hash)) {
+            return false;
+        }
+        if (windowSize > 0 && current.size() >= windowSize) {
+            rotate(false);
+            generationStart = System.currentTimeMillis();
+        }
+        return true;
+    }
+
+    @Override public long size() {
+        return current.size() + previous.size();
+    }
+
+    @Override public long getMemoryUsage() {
+        return current.getMemoryUsage() + previous.getMemoryUsage();
+    }
+
+    @Override public DistinctMode getMode() {
+        return DistinctMode.WINDOWED;
+    }
+
+    @Override public void write(DataOutputStream out) throws IOException {
+        out.writeInt(windowSize);
+        out.writeLong(windowMillis);
+        out.writeLong(generationStart);
+        CheckpointFile.writeSet(out, current);
+        CheckpointFile.writeSet(out, previous);
+    }
+
+    static WindowedDistinctFilter read(DataInputStream in) throws IOException {
+        int windowSize = in.readInt();
+        long windowMillis = in.readLong();
+        long generationStart = in.readLong();
+        LongHashSet current = CheckpointFile.readSet(in);
+        LongHashSet previous = CheckpointFile.readSet(in);
+        return new WindowedDistinctFilter(windowSize, windowMillis, current, previous,
+                generationStart);
+    }
+
+    private void rotate(boolean dropAll) {
+        LongHashSet dropped = previous;
+        dropped.clear();
+        if (dropAll) {
+            current.clear();
+        }
+        previous = current;
+        current = dropped;
+    }
+
+    private LongHashSet newGeneration() {
+        return windowSize > 0 ? new LongHashSet(windowSize) : new LongHashSet();
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.frapontillo.pulse.crowd.social.exception;
+
+/**
+ * Thrown by plugin implementations when the API of a source rejects a request because its rate
+ * limit was exceeded (e.g. an HTTP 429 response). It is unchecked so that it can be thrown from
+ * any implementation method and inside {@link rx.Observable} chains, where it is handled by the
+ * {@link com.github.frapontillo.pulse.crowd.social.ratelimit.RateLimiter} of the source.
+ *
+ * @author Francesco Pontillo
+ */
+public class RateLimitedException extends RuntimeException {
+    private final long retryAfter;
+
+    public RateLimitedException(String message) {
+        this(message, -1);
+    }
+
+    /**
+     * @param message    The detail message.
+     * @param retryAfter The number of milliseconds after which requests can be sent again, as
+     *                   reported by the source, or a negative value if unknown.
+     */
+    public RateLimitedException(String message, long retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.frapontillo.pulse.crowd.social.execution;
+
+/**
+ * The available kinds of threads the blocking calls to the sources are made from, see
+ * {@link ExecutionStrategies}.
+ *
+ * @author Francesco Pontillo
+ */
+public enum ExecutionMode {
+    /**
+     * A fixed pool of platform threads.
+     */
+    FIXED,
+    /**
+     * The growing pool of platform threads of {@link rx.schedulers.Schedulers#io()}.
+     */
+    ELASTIC,
+    /**
+     * A new virtual thread for every task, only available on JDK 21 or later.
+     */
+    VIRTUAL;
+
+    /**
+     * Parse a mode from its case-insensitive name.
+     *
+     * @param value        The name of the mode, may be null.
+     * @param defaultValue The mode to return if the value is null or empty.
+     *
+     * @return The parsed {@link ExecutionMode}.
+     * @throws IllegalArgumentException if the value isn't a valid mode name.
+     */
+    public static ExecutionMode fromString(String value, ExecutionMode defaultValue) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return ExecutionMode.valueOf(value.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,200 @@
+package com.github.frapontillo.pulse.crowd.social.execution;
+
+import com.github.frapontillo.pulse.crowd.social.metrics.MetricRegistry;
+import com.github.frapontillo.pulse.crowd.social.metrics.Metrics;
+import com.github.frapontillo.pulse.util.PulseLogger;
+import org.apache.logging.log4j.Logger;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The registry of the {@link ExecutionStrategy}s of this node, one per source. Every source
+ * runs on the threads of its own {@link ExecutionMode}, shared by all the sources with the same
+ * mode and created when the mode is first used.
+ * <p/>
+ * The mode of a source is chosen when its strategy is created, by the {@link SourceServices} of
+ * the source (see {@link SourceServices#getExecutionMode()}), and defaults to the one set by the
+ * system properties. The default modes and limits are read from system properties when a
+ * strategy is created:
+ * <ul>
+ * <li>{@code pulse.execution.mode=<fixed|elastic|virtual>} sets the default
+ * {@link ExecutionMode} ({@code elastic} by default, or if the mode is unknown);
+ * {@code virtual} falls back to {@code elastic} before JDK 21;</li>
+ * <li>{@code pulse.execution.mode.<source>=<fixed|elastic|virtual>} sets it for a single
+ * source;</li>
+ * <li>{@code pulse.execution.threads=<count>} sets the size of the {@code fixed} pool (4 threads
+ * per processor by default), when it is first used;</li>
+ * <li>{@code pulse.execution.maxCalls=<count>} sets the maximum number of concurrent calls to
+ * every source (unlimited by default);</li>
+ * <li>{@code pulse.execution.maxCalls.<source>=<count>} sets it for a single source.</li>
+ * </ul>
+ *
+ * @author Francesco Pontillo
+ */
+public class ExecutionStrategies {
+    private static final Logger logger = PulseLogger.getLogger(ExecutionStrategies.class);
+    private static final ConcurrentMap<String, ExecutionStrategy> strategies =
+            new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, ExecutionMode> modes = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<ExecutionMode, Scheduler> schedulers =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Get the strategy of a source, creating it with the mode and the limit configured by the
+     * system properties if the source was never used.
+     *
+     * @param source The name of the source.
+     *
+     * @return The {@link ExecutionStrategy} of the source.
+     */
+    public static ExecutionStrategy get(String source) {
+        return get(source, getDefaultMode(source));
+    }
+
+    /**
+     * Get the strategy of a source, creating it with some mode and the limit configured by the
+     * system properties if the source was never used. The mode of a strategy can't be changed
+     * once it is created.
+     *
+     * @param source The name of the source.
+     * @param mode   The {@link ExecutionMode} of the strategy, if it has to be created.
+     *
+     * @return The {@link ExecutionStrategy} of the source.
+     */
+    public static ExecutionStrategy get(String source, ExecutionMode mode) {
+        return strategies.computeIfAbsent(source, key -> {
+            ExecutionMode available = getAvailableMode(mode);
+            int maxCalls = Integer.getInteger("pulse.execution.maxCalls." + key,
+                    Integer.getInteger("pulse.execution.maxCalls", 0));
+            ExecutionStrategy strategy =
+                    new ExecutionStrategy(key, getScheduler(available), maxCalls);
+            modes.put(key, available);
+            register(strategy, key + ".execution.");
+            return strategy;
+        });
+    }
+
+    /**
+     * Get the mode of a source configured by the system properties, that is
+     * {@code pulse.execution.mode.<source>} or, if missing, {@code pulse.execution.mode}.
+     *
+     * @param source The name of the source.
+     *
+     * @return The configured {@link ExecutionMode}, or {@link ExecutionMode#ELASTIC} if none or
+     * an unknown one is configured.
+     */
+    public static ExecutionMode getDefaultMode(String source) {
+        String value = System.getProperty("pulse.execution.mode." + source,
+                System.getProperty("pulse.execution.mode"));
+        try {
+            return ExecutionMode.fromString(value, ExecutionMode.ELASTIC);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unknown execution mode {} for {}, using elastic threads.", value,
+                    source);
+            return ExecutionMode.ELASTIC;
+        }
+    }
+
+    private static void register(ExecutionStrategy strategy, String prefix) {
+        MetricRegistry registry = Metrics.getRegistry();
+        registry.gauge(prefix + "active", strategy::getActiveCalls);
+        registry.gauge(prefix + "waiting", strategy::getWaitingCalls);
+    }
+
+    /**
+     * Set the maximum number of concurrent calls to a source.
+     *
+     * @param source             The name of the source.
+     * @param maxConcurrentCalls The maximum number of concurrent calls, or 0 for no limit.
+     *
+     * @return The {@link ExecutionStrategy} of the source.
+     */
+    public static ExecutionStrategy configure(String source, int maxConcurrentCalls) {
+        ExecutionStrategy strategy = get(source);
+        strategy.setMaxConcurrentCalls(maxConcurrentCalls);
+        return strategy;
+    }
+
+    /**
+     * Get the kind of threads used by the strategy of a source, creating the strategy if the
+     * source was never used.
+     *
+     * @param source The name of the source.
+     *
+     * @return The {@link ExecutionMode} in use, which is {@link ExecutionMode#ELASTIC} if
+     * {@link ExecutionMode#VIRTUAL} was requested before JDK 21.
+     */
+    public static ExecutionMode getMode(String source) {
+        get(source);
+        return modes.get(source);
+    }
+
+    /**
+     * Get the mode to use instead of some requested one, which is {@link ExecutionMode#ELASTIC}
+     * if virtual threads aren't available.
+     */
+    private static ExecutionMode getAvailableMode(ExecutionMode mode) {
+        if (mode == ExecutionMode.VIRTUAL && getScheduler(ExecutionMode.VIRTUAL) == null) {
+            logger.warn("Virtual threads need JDK 21 or later, using elastic threads.");
+            return ExecutionMode.ELASTIC;
+        }
+        return (mode != null) ? mode : ExecutionMode.ELASTIC;
+    }
+
+    /**
+     * Get the scheduler shared by the strategies of some mode, creating its threads when the mode
+     * is first used.
+     *
+     * @return The {@link Scheduler} of the mode, or null if the mode isn't available.
+     */
+    private static Scheduler getScheduler(ExecutionMode mode) {
+        if (mode == ExecutionMode.ELASTIC) {
+            return Schedulers.io();
+        }
+        return schedulers.computeIfAbsent(mode, key -> {
+            ExecutorService executor;
+            if (key == ExecutionMode.VIRTUAL) {
+                executor = newVirtualThreadExecutor();
+            } else {
+                int threads = Integer.getInteger("pulse.execution.threads",
+                        4 * Runtime.getRuntime().availableProcessors());
+                executor = Executors.newFixedThreadPool(Math.max(threads, 1),
+                        new DaemonFactory());
+            }
+            return (executor != null) ? Schedulers.from(executor) : null;
+        });
+    }
+
+    /**
+     * Create an executor starting a virtual thread per task through reflection, so that this
+     * class still compiles and runs on older JDKs.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates named daemon threads, so that the fixed pool doesn't keep the JVM alive.
+     */
+    private static class DaemonFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "pulse-execution-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
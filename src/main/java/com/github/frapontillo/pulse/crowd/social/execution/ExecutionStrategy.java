@@ -0,0 +1,134 @@
+package com.github.frapontillo.pulse.crowd.social.execution;
+
+import rx.Scheduler;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Controls where and how many blocking calls are made to a source, shared by all the plugins
+ * and pipelines using the same source (see {@link ExecutionStrategies}).
+ * <p/>
+ * Plugins subscribe their blocking work on {@link #getScheduler()}, and make every blocking call
+ * to the source through {@link #execute(BlockingCall)}, which waits while the source already has
+ * {@link #getMaxConcurrentCalls()} calls running. Waiting on a virtual thread costs almost
+ * nothing, so with {@link ExecutionMode#VIRTUAL} thousands of calls can be in flight while only
+ * the configured number of them reach the source.
+ *
+ * @author Francesco Pontillo
+ */
+public class ExecutionStrategy {
+    private final String source;
+    private final Scheduler scheduler;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private volatile int maxConcurrentCalls;
+    private volatile Semaphore permits;
+
+    /**
+     * A blocking call to a source.
+     *
+     * @param <T> The type of the result.
+     * @param <E> The type of the exception thrown by the call.
+     */
+    public interface BlockingCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /**
+     * Create a new strategy.
+     *
+     * @param source             The name of the source.
+     * @param scheduler          The {@link Scheduler} blocking work is subscribed on.
+     * @param maxConcurrentCalls The maximum number of concurrent calls, or 0 for no limit.
+     */
+    public ExecutionStrategy(String source, Scheduler scheduler, int maxConcurrentCalls) {
+        this.source = source;
+        this.scheduler = scheduler;
+        setMaxConcurrentCalls(maxConcurrentCalls);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Get the {@link Scheduler} to subscribe the blocking work of the source on.
+     *
+     * @return The {@link Scheduler} of the configured {@link ExecutionMode}.
+     */
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    /**
+     * Set the maximum number of concurrent calls to the source. Calls already running or
+     * waiting keep the previous limit.
+     *
+     * @param maxConcurrentCalls The maximum number of concurrent calls, or 0 for no limit.
+     */
+    public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+        this.maxConcurrentCalls = Math.max(maxConcurrentCalls, 0);
+        this.permits = (maxConcurrentCalls > 0) ? new Semaphore(maxConcurrentCalls, true) : null;
+    }
+
+    /**
+     * Make a blocking call to the source from the current thread, as soon as the number of
+     * running calls allows it.
+     *
+     * @param call The {@link BlockingCall} to make.
+     * @param <T>  The type of the result.
+     * @param <E>  The type of the exception thrown by the call.
+     *
+     * @return The result of the call.
+     * @throws E                     if the call fails.
+     * @throws CancellationException if the thread is interrupted while waiting.
+     */
+    public <T, E extends Exception> T execute(BlockingCall<T, E> call) throws E {
+        Semaphore semaphore = permits;
+        if (semaphore != null) {
+            waiting.incrementAndGet();
+            try {
+                semaphore.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException(
+                        "Interrupted while waiting to call " + source + ".");
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+        active.incrementAndGet();
+        try {
+            return call.call();
+        } finally {
+            active.decrementAndGet();
+            if (semaphore != null) {
+                semaphore.release();
+            }
+        }
+    }
+
+    /**
+     * Get the number of calls currently running.
+     *
+     * @return The number of running calls.
+     */
+    public int getActiveCalls() {
+        return active.get();
+    }
+
+    /**
+     * Get the number of calls waiting for a running one to end.
+     *
+     * @return The number of waiting calls.
+     */
+    public int getWaitingCalls() {
+        return waiting.get();
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.frapontillo.pulse.crowd.social.execution;
+
+import com.github.frapontillo.pulse.crowd.social.exception.RateLimitedException;
+import com.github.frapontillo.pulse.crowd.social.metrics.PluginMetrics;
+import com.github.frapontillo.pulse.crowd.social.ratelimit.RateLimiter;
+import com.github.frapontillo.pulse.crowd.social.ratelimit.RateLimiters;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The services of a source, shared by all the plugins with the same name:
+ * <ul>
+ * <li>its {@link RateLimiter}, whose quota implementations can set with
+ * {@link RateLimiters#configure(String, double, double)}, reporting the rate limit information
+ * returned by their API and throwing {@link RateLimitedException} when a request is
+ * rejected;</li>
+ * <li>its {@link ExecutionStrategy}: blocking calls to the source are made on its threads and
+ * within its concurrency limit, which implementations can set with
+ * {@link ExecutionStrategies#configure(String, int)};</li>
+ * <li>the {@link PluginMetrics} of each of its implementation calls, exported through
+ * {@link com.github.frapontillo.pulse.crowd.social.metrics.Metrics}.</li>
+ * </ul>
+ * The services of a source can be customized by subclassing this class and registering an
+ * instance with {@link #register(SourceServices)} before the source is first used, e.g. to
+ * choose its {@link ExecutionMode}.
+ *
+ * @author Francesco Pontillo
+ */
+public class SourceServices {
+    private static final ConcurrentMap<String, SourceServices> services =
+            new ConcurrentHashMap<>();
+
+    private final String source;
+    private final ConcurrentMap<String, PluginMetrics> metrics = new ConcurrentHashMap<>();
+    private volatile ExecutionStrategy executionStrategy;
+
+    protected SourceServices(String source) {
+        this.source = source;
+    }
+
+    /**
+     * Get the services of a source.
+     *
+     * @param source The name of the source.
+     *
+     * @return The {@link SourceServices} of the source.
+     */
+    public static SourceServices get(String source) {
+        return services.computeIfAbsent(source, SourceServices::new);
+    }
+
+    /**
+     * Register the services of a source, replacing the ones that were already registered.
+     * Services that were already created, such as the {@link ExecutionStrategy} of the source,
+     * are kept.
+     *
+     * @param sourceServices The {@link SourceServices} of the source.
+     *
+     * @return The registered {@link SourceServices}.
+     */
+    public static SourceServices register(SourceServices sourceServices) {
+        services.put(sourceServices.getSource(), sourceServices);
+        return sourceServices;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return RateLimiters.get(source);
+    }
+
+    /**
+     * Get the execution strategy of the source, creating it with {@link #getExecutionMode()} if
+     * the source was never used.
+     *
+     * @return The {@link ExecutionStrategy} of the source.
+     */
+    public ExecutionStrategy getExecutionStrategy() {
+        ExecutionStrategy strategy = executionStrategy;
+        if (strategy == null) {
+            strategy = ExecutionStrategies.get(source, getExecutionMode());
+            executionStrategy = strategy;
+        }
+        return strategy;
+    }
+
+    /**
+     * Get the kind of threads the strategy of the source is created with. Subclasses can
+     * override it to choose the mode of their source.
+     *
+     * @return The {@link ExecutionMode} configured for the source by the system properties, see
+     * {@link ExecutionStrategies#getDefaultMode(String)}.
+     */
+    protected ExecutionMode getExecutionMode() {
+        return ExecutionStrategies.getDefaultMode(source);
+    }
+
+    /**
+     * Get the metrics of an implementation call of the source, creating them on first use.
+     *
+     * @param call The name of the implementation call, e.g. {@code getMessages}.
+     *
+     * @return The {@link PluginMetrics} of the call.
+     */
+    public PluginMetrics getMetrics(String call) {
+        return metrics.computeIfAbsent(call, key -> new PluginMetrics(source, key));
+    }
+}
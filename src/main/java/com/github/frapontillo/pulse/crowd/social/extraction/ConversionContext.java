@@ -0,0 +1,110 @@
+package com.github.frapontillo.pulse.crowd.social.extraction;
+
+import java.util.HashMap;
+
+/**
+ * Additional data passed to a {@link MessageConverter} along with each converted element.
+ * <p/>
+ * A context can be reused across all the elements of a page (or of a whole extraction) instead of
+ * allocating a new {@link HashMap} for every call. The map view returned by {@link #asMap()} is
+ * cached and only rebuilt after the context changes.
+ *
+ * @author Francesco Pontillo
+ */
+public class ConversionContext {
+    private final HashMap<String, Object> data;
+    private HashMap<String, Object> map;
+
+    public ConversionContext() {
+        data = new HashMap<>();
+    }
+
+    /**
+     * Get the id of the comment the converted messages reply to.
+     *
+     * @return The {@link MessageConverter#DATA_REPLY_TO_COMMENT} value, or null.
+     */
+    public String getReplyToComment() {
+        return (String) get(MessageConverter.DATA_REPLY_TO_COMMENT);
+    }
+
+    public ConversionContext setReplyToComment(String replyToComment) {
+        return put(MessageConverter.DATA_REPLY_TO_COMMENT, replyToComment);
+    }
+
+    /**
+     * Get the user the converted messages reply to.
+     *
+     * @return The {@link MessageConverter#DATA_REPLY_TO_USER} value, or null.
+     */
+    public String getReplyToUser() {
+        return (String) get(MessageConverter.DATA_REPLY_TO_USER);
+    }
+
+    public ConversionContext setReplyToUser(String replyToUser) {
+        return put(MessageConverter.DATA_REPLY_TO_USER, replyToUser);
+    }
+
+    /**
+     * Get the source-specific data attached to the converted messages.
+     *
+     * @return The {@link MessageConverter#DATA_SOURCE} value, or null.
+     */
+    public Object getSource() {
+        return get(MessageConverter.DATA_SOURCE);
+    }
+
+    public ConversionContext setSource(Object source) {
+        return put(MessageConverter.DATA_SOURCE, source);
+    }
+
+    public Object get(String key) {
+        return data.get(key);
+    }
+
+    /**
+     * Set a value in the context, or remove it if the value is null.
+     *
+     * @param key   The key of the value.
+     * @param value The value to set.
+     *
+     * @return The same {@link ConversionContext}, for chaining.
+     */
+    public ConversionContext put(String key, Object value) {
+        if (value == null) {
+            data.remove(key);
+        } else {
+            data.put(key, value);
+        }
+        map = null;
+        return this;
+    }
+
+    /**
+     * Remove all the values from the context, so that it can be reused.
+     *
+     * @return The same {@link ConversionContext}, for chaining.
+     */
+    public ConversionContext clear() {
+        data.clear();
+        map = null;
+        return this;
+    }
+
+    /**
+     * Get the context as the additional data map expected by
+     * {@link MessageConverter#fromSpecificExtractor(Object, HashMap)}. The map is shared by all
+     * the calls until the context changes, so converters must not modify it.
+     *
+     * @return A {@link HashMap} with the context values, or null if the context is empty.
+     */
+    public HashMap<String, Object> asMap() {
+        if (data.isEmpty()) {
+            return null;
+        }
+        if (map == null) {
+            map = new HashMap<>(data);
+        }
+        return map;
+    }
+}
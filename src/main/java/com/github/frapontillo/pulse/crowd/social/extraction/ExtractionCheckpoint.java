@@ -0,0 +1,280 @@
+package com.github.frapontillo.pulse.crowd.social.extraction;
+
+import com.github.frapontillo.pulse.crowd.social.util.CheckpointFile;
+import com.github.frapontillo.pulse.crowd.social.util.LongHashSet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The progress of an extraction, periodically saved to a file so that a crashed extraction can be
+ * resumed (see {@link ExtractionParameters#isResume()}). A checkpoint holds:
+ * <ul>
+ * <li>the completed tasks (sub-queries, time windows or tiles), with the number of messages
+ * they produced, so that planners can be replayed without extracting them again;</li>
+ * <li>the last pagination cursor of each running task whose previous messages were all
+ * delivered;</li>
+ * <li>the hashes of all the delivered messages, so that none is emitted twice.</li>
+ * </ul>
+ * The set of delivered messages must only be accessed by the thread delivering messages, which
+ * is also the one that saves the checkpoint.
+ *
+ * @author Francesco Pontillo
+ */
+public class ExtractionCheckpoint {
+    private static final int MAGIC = 0x45584331; // "EXC1"
+
+    private final File file;
+    private final Map<String, Long> completed;
+    private final Map<String, String> cursors;
+    private final LongHashSet emitted;
+    private long lastSave;
+
+    private ExtractionCheckpoint(File file, Map<String, Long> completed,
+            Map<String, String> cursors, LongHashSet emitted) {
+        this.file = file;
+        this.completed = completed;
+        this.cursors = cursors;
+        this.emitted = emitted;
+        this.lastSave = System.currentTimeMillis();
+    }
+
+    /**
+     * Create an empty checkpoint, for a new extraction.
+     *
+     * @param file The {@link File} the checkpoint is saved to.
+     *
+     * @return A new {@link ExtractionCheckpoint}.
+     */
+    public static ExtractionCheckpoint create(File file) {
+        return new ExtractionCheckpoint(file, new HashMap<>(), new HashMap<>(), new LongHashSet());
+    }
+
+    /**
+     * Load a checkpoint from a file, or create an empty one if the file doesn't exist.
+     *
+     * @param file The {@link File} the checkpoint is saved to.
+     *
+     * @return The loaded {@link ExtractionCheckpoint}.
+     * @throws IOException if the file can't be read.
+     */
+    public static ExtractionCheckpoint load(File file) throws IOException {
+        ExtractionCheckpoint checkpoint = CheckpointFile.load(file, MAGIC, in -> read(file, in));
+        return (checkpoint != null) ? checkpoint : create(file);
+    }
+
+    private static ExtractionCheckpoint read(File file, DataInputStream in) throws IOException {
+        Map<String, Long> completed = new HashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            completed.put(CheckpointFile.readString(in), in.readLong());
+        }
+        Map<String, String> cursors = new HashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            cursors.put(CheckpointFile.readString(in), CheckpointFile.readString(in));
+        }
+        return new ExtractionCheckpoint(file, completed, cursors, CheckpointFile.readSet(in));
+    }
+
+    /**
+     * Get the key identifying a task across runs of the same extraction.
+     *
+     * @param parameters The {@link ExtractionParameters} of the task.
+     *
+     * @return The key of the task.
+     */
+    public static String getTaskKey(ExtractionParameters parameters) {
+        return WatermarkStore.getQueryKey(parameters) + "|since=" +
+                ((parameters.getSince() != null) ? parameters.getSince().getTime() : "") +
+                "|until=" +
+                ((parameters.getUntil() != null) ? parameters.getUntil().getTime() : "");
+    }
+
+    /**
+     * Get the number of messages produced by a completed task.
+     *
+     * @param key The key of the task.
+     *
+     * @return The number of messages, or null if the task wasn't completed.
+     */
+    public synchronized Long getCompletedCount(String key) {
+        return completed.get(key);
+    }
+
+    /**
+     * Get the last cursor of a task whose previous messages were all delivered.
+     *
+     * @param key The key of the task.
+     *
+     * @return The cursor, or null if the task must start from the beginning.
+     */
+    public synchronized String getCursor(String key) {
+        return cursors.get(key);
+    }
+
+    private synchronized void setCursor(String key, String cursor) {
+        cursors.put(key, cursor);
+    }
+
+    private synchronized void complete(String key, long count) {
+        completed.put(key, count);
+        cursors.remove(key);
+    }
+
+    /**
+     * Get the hashes of the delivered messages.
+     *
+     * @return The {@link LongHashSet} of the delivered messages.
+     */
+    public LongHashSet getEmitted() {
+        return emitted;
+    }
+
+    /**
+     * Start tracking the progress of a task.
+     *
+     * @param key The key of the task.
+     *
+     * @return A new {@link Progress}.
+     */
+    public Progress track(String key) {
+        return new Progress(key);
+    }
+
+    /**
+     * Save the checkpoint if at least some time has passed since the last save.
+     *
+     * @param intervalMillis The minimum time between two saves, in milliseconds.
+     *
+     * @throws IOException if the checkpoint can't be written.
+     */
+    public void saveIfDue(long intervalMillis) throws IOException {
+        if (System.currentTimeMillis() - lastSave >= intervalMillis) {
+            save();
+        }
+    }
+
+    /**
+     * Save the checkpoint to its file.
+     *
+     * @throws IOException if the checkpoint can't be written.
+     */
+    public void save() throws IOException {
+        Map<String, Long> completedCopy;
+        Map<String, String> cursorsCopy;
+        synchronized (this) {
+            completedCopy = new HashMap<>(completed);
+            cursorsCopy = new HashMap<>(cursors);
+        }
+        CheckpointFile.save(file, MAGIC, out -> write(out, completedCopy, cursorsCopy));
+        lastSave = System.currentTimeMillis();
+    }
+
+    private void write(DataOutputStream out, Map<String, Long> completed,
+            Map<String, String> cursors) throws IOException {
+        out.writeInt(completed.size());
+        for (Map.Entry<String, Long> entry : completed.entrySet()) {
+            CheckpointFile.writeString(out, entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+        out.writeInt(cursors.size());
+        for (Map.Entry<String, String> entry : cursors.entrySet()) {
+            CheckpointFile.writeString(out, entry.getKey());
+            CheckpointFile.writeString(out, entry.getValue());
+        }
+        CheckpointFile.writeSet(out, emitted);
+    }
+
+    /**
+     * Delete the checkpoint file, once the extraction has completed.
+     *
+     * @throws IOException if the file can't be deleted.
+     */
+    public void delete() throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot delete the checkpoint " + file + ".");
+        }
+    }
+
+    /**
+     * The progress of a running task. Messages are counted when they are fetched and again when
+     * they are delivered, so that cursors and completions are only committed to the checkpoint
+     * once all the messages fetched before them have been delivered.
+     */
+    public class Progress {
+        private final String key;
+        private final ArrayDeque<PendingCursor> pendingCursors;
+        private long fetched;
+        private long delivered;
+        private boolean finished;
+
+        private Progress(String key) {
+            this.key = key;
+            this.pendingCursors = new ArrayDeque<>();
+        }
+
+        /**
+         * Count a message fetched by the task.
+         */
+        public synchronized void fetch() {
+            fetched++;
+        }
+
+        /**
+         * Record the cursor the task could continue from, after all the messages fetched so far.
+         *
+         * @param cursor The pagination cursor.
+         */
+        public synchronized void cursor(String cursor) {
+            pendingCursors.add(new PendingCursor(cursor, fetched));
+            commit();
+        }
+
+        /**
+         * Count a message of the task as delivered, whether it was emitted or dropped as a
+         * duplicate.
+         */
+        public synchronized void deliver() {
+            delivered++;
+            commit();
+        }
+
+        /**
+         * Mark the task as finished: it will be completed as soon as all its messages are
+         * delivered.
+         *
+         * @return The number of messages fetched by the task.
+         */
+        public synchronized long finish() {
+            finished = true;
+            commit();
+            return fetched;
+        }
+
+        private void commit() {
+            String cursor = null;
+            while (!pendingCursors.isEmpty() && pendingCursors.peek().fetched <= delivered) {
+                cursor = pendingCursors.poll().cursor;
+            }
+            if (finished && delivered >= fetched) {
+                complete(key, fetched);
+            } else if (cursor != null) {
+                setCursor(key, cursor);
+            }
+        }
+    }
+
+    private static class PendingCursor {
+        private final String cursor;
+        private final long fetched;
+
+        private PendingCursor(String cursor, long fetched) {
+            this.cursor = cursor;
+            this.fetched = fetched;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.github.frapontillo.pulse.crowd.social.extraction;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.exception.SocialException;
+import com.github.frapontillo.pulse.crowd.social.util.CompiledMessageFilter;
+import com.github.frapontillo.pulse.util.PulseLogger;
+import org.apache.logging.log4j.Logger;
+import rx.Observable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A front-end running many extraction jobs against the same {@link IExtractor} with as few
+ * upstream extractions as possible.
+ * <p/>
+ * Jobs asking for the same users, references, language, locale and location are compatible,
+ * and compatible jobs whose time intervals overlap or touch are merged into a single upstream
+ * extraction with the union of their query terms and time intervals, which
+ * {@link IExtractor#extract(ExtractionParameters)} then splits according to
+ * {@link IExtractor#getMaximumQueryParameters()}, so that the API calls grow with the number of
+ * distinct terms rather than with the number of jobs. Every upstream message is routed to
+ * each job of its group whose {@link CompiledMessageFilter} accepts it, as a copy with the tags
+ * of the job (see {@link MessageCopier}).
+ * <p/>
+ * Upstream extractions are shared and start as soon as all the jobs of their group are
+ * subscribed; the slowest job of a group drives the pace of the others. Incremental and
+ * checkpoint options of the jobs, as well as their distinct state files, are ignored, as merged
+ * extractions have no single owner.
+ *
+ * @author Francesco Pontillo
+ */
+public class ExtractionMultiplexer {
+    private final Logger logger = PulseLogger.getLogger(ExtractionMultiplexer.class);
+
+    private final IExtractor extractor;
+
+    public ExtractionMultiplexer(IExtractor extractor) {
+        this.extractor = extractor;
+    }
+
+    /**
+     * Extract the messages of many jobs.
+     *
+     * @param jobs The {@link ExtractionParameters} of each job.
+     *
+     * @return The {@link Observable}s of the messages of each job, in the same order as the jobs.
+     * Every one of them must be subscribed for the extractions to start.
+     */
+    public List<Observable<Message>> extract(List<ExtractionParameters> jobs) {
+        List<List<Integer>> groups = group(jobs);
+        logger.info("Multiplexing {} jobs into {} upstream extractions.", jobs.size(),
+                groups.size());
+        List<Observable<Message>> outputs = new ArrayList<>(jobs.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            outputs.add(null);
+        }
+        for (List<Integer> group : groups) {
+            List<ExtractionParameters> groupJobs = new ArrayList<>(group.size());
+            group.forEach(job -> groupJobs.add(jobs.get(job)));
+            ExtractionParameters merged = merge(groupJobs);
+            merged.setSource(extractor.getName());
+            Observable<Message> upstream = Observable.defer(() -> {
+                try {
+                    return extractor.extract(merged);
+                } catch (SocialException e) {
+                    return Observable.error(e);
+                }
+            }).publish().autoConnect(group.size());
+            for (int job : group) {
+                outputs.set(job, route(upstream, jobs.get(job)));
+            }
+        }
+        return outputs;
+    }
+
+    /**
+     * Group the jobs that can share an upstream extraction: jobs with the same
+     * {@link #getGroupKey(ExtractionParameters)} whose time intervals overlap or touch, directly
+     * or through other jobs of the group. Disjoint intervals are never merged, so that the
+     * upstream extractions don't crawl the time between them.
+     *
+     * @param jobs The {@link ExtractionParameters} of each job.
+     *
+     * @return The groups, as lists of indexes of the jobs.
+     */
+    public static List<List<Integer>> group(List<ExtractionParameters> jobs) {
+        Map<String, List<Integer>> compatible = new LinkedHashMap<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            compatible.computeIfAbsent(getGroupKey(jobs.get(i)), key -> new ArrayList<>())
+                    .add(i);
+        }
+        List<List<Integer>> groups = new ArrayList<>();
+        for (List<Integer> indexes : compatible.values()) {
+            List<Integer> sorted = new ArrayList<>(indexes);
+            sorted.sort(Comparator.comparingLong(job -> getSince(jobs.get(job))));
+            List<Integer> group = null;
+            long until = Long.MIN_VALUE;
+            for (int job : sorted) {
+                if (group == null || getSince(jobs.get(job)) > until) {
+                    group = new ArrayList<>();
+                    groups.add(group);
+                    until = Long.MIN_VALUE;
+                }
+                group.add(job);
+                until = Math.max(until, getUntil(jobs.get(job)));
+            }
+        }
+        groups.forEach(Collections::sort);
+        return groups;
+    }
+
+    private static long getSince(ExtractionParameters job) {
+        return (job.getSince() != null) ? job.getSince().getTime() : Long.MIN_VALUE;
+    }
+
+    private static long getUntil(ExtractionParameters job) {
+        return (job.getUntil() != null) ? job.getUntil().getTime() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Get the key of the jobs that can be merged with a job: all of its query parameters but the
+     * query terms and the time interval.
+     *
+     * @param job The {@link ExtractionParameters} of the job.
+     *
+     * @return The group key of the job.
+     */
+    public static String getGroupKey(ExtractionParameters job) {
+        ExtractionParameters key = job.copy();
+        key.setSource(null);
+        key.setQuery(null);
+        return WatermarkStore.getQueryKey(key);
+    }
+
+    /**
+     * Merge compatible jobs into the parameters of a single upstream extraction, with the union of
+     * their query terms and the smallest time interval containing all of theirs, see
+     * {@link #group(List)}. The other options are taken from the first job.
+     *
+     * @param jobs The compatible jobs to merge.
+     *
+     * @return The merged {@link ExtractionParameters}.
+     */
+    public static ExtractionParameters merge(List<ExtractionParameters> jobs) {
+        ExtractionParameters merged = jobs.get(0).copy();
+        merged.setTags((List<String>) null);
+        merged.setWatermarks(null);
+        merged.setSinceId(null);
+        merged.setCursor(null);
+        merged.setCheckpoint(null);
+        merged.setResume(null);
+        merged.setDistinctState(null);
+        Map<String, String> terms = new LinkedHashMap<>();
+        boolean anyTerm = false;
+        Date since = merged.getSince();
+        Date until = merged.getUntil();
+        for (ExtractionParameters job : jobs) {
+            List<String> query = job.getQuery();
+            if (query == null || query.isEmpty()) {
+                anyTerm = true;
+            } else {
+                for (String term : query) {
+                    terms.putIfAbsent(term.trim().toLowerCase(Locale.ROOT), term.trim());
+                }
+            }
+            since = (since == null || job.getSince() == null) ? null :
+                    (job.getSince().before(since) ? job.getSince() : since);
+            until = (until == null || job.getUntil() == null) ? null :
+                    (job.getUntil().after(until) ? job.getUntil() : until);
+        }
+        merged.setQuery(anyTerm ? null : new ArrayList<>(terms.values()));
+        merged.setSince(since);
+        merged.setUntil(until);
+        return merged;
+    }
+
+    private Observable<Message> route(Observable<Message> upstream, ExtractionParameters job) {
+        ExtractionParameters parameters = job.copy();
+        parameters.setSource(extractor.getName());
+        CompiledMessageFilter filter = new CompiledMessageFilter(parameters, false);
+        MessageCopier copier = new MessageCopier(parameters);
+        return upstream.filter(filter).map(copier::fromExtractor)
+                .compose(extractor.collapseNearDuplicates(parameters));
+    }
+}
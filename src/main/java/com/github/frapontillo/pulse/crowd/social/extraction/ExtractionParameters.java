@@ -2,16 +2,28 @@ package com.github.frapontillo.pulse.crowd.social.extraction;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
+import com.github.frapontillo.pulse.crowd.social.cache.EndpointType;
+import com.github.frapontillo.pulse.crowd.social.cache.ResponseCache;
 import com.github.frapontillo.pulse.crowd.social.converter.GeoLocationBoxConverter;
 import com.github.frapontillo.pulse.crowd.social.converter.ISO8601DateConverter;
+import com.github.frapontillo.pulse.crowd.social.distinct.DedupKey;
+import com.github.frapontillo.pulse.crowd.social.distinct.Distinct;
+import com.github.frapontillo.pulse.crowd.social.distinct.DistinctFilter;
+import com.github.frapontillo.pulse.crowd.social.distinct.DistinctMode;
+import com.github.frapontillo.pulse.crowd.social.distinct.NearDuplicateMode;
 import com.github.frapontillo.pulse.spi.IPluginConfig;
 import com.github.frapontillo.pulse.spi.PluginConfigHelper;
 import com.github.frapontillo.pulse.util.StringUtil;
 import com.google.gson.JsonElement;
+import rx.functions.Func0;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 /**
@@ -19,6 +31,11 @@ import java.util.regex.Pattern;
  */
 @Parameters(separators = "=")
 public class ExtractionParameters implements IPluginConfig<ExtractionParameters> {
+    public static final int DEFAULT_SHARD_TARGET = 5000;
+    public static final int DEFAULT_TILE_DEPTH = 6;
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 30;
+    public static final int DEFAULT_PREFETCH = 2;
+
     private final Pattern REGEX_NO_QUOTE = Pattern.compile("^(?!\").*(?!\")$");
 
     @Parameter(names = "-source", description = "Source for extraction")
@@ -57,6 +74,119 @@ public class ExtractionParameters implements IPluginConfig<ExtractionParameters>
     @Parameter(names = "-tags", description = "Tags to add to extracted messages")
     private List<String> tags;
 
+    @Parameter(names = "-parallelism",
+            description = "Maximum number of sub-queries extracted at the same time")
+    private Integer parallelism;
+
+    @Parameter(names = "-shards",
+            description = "Number of time windows the [since, until] interval is split into")
+    private Integer shards;
+
+    @Parameter(names = "-shardMode",
+            description = "How time windows are sized: fixed or adaptive")
+    private String shardMode;
+
+    @Parameter(names = "-shardTarget",
+            description = "Number of messages per time window targeted by the adaptive mode")
+    private Integer shardTarget;
+
+    @Parameter(names = "-tiles",
+            description = "Number of times the location box is split into four tiles up front")
+    private Integer tiles;
+
+    @Parameter(names = "-tileDepth",
+            description = "Maximum number of times the location box can be split into tiles")
+    private Integer tileDepth;
+
+    @Parameter(names = "-tileSaturation",
+            description = "Number of messages after which a tile is split into four tiles")
+    private Integer tileSaturation;
+
+    @Parameter(names = "-tileMap",
+            description = "File where the number of messages per tile is kept across runs")
+    private String tileMap;
+
+    @Parameter(names = "-watermarks",
+            description = "File where the last extracted message of each query is kept, to only "
+                    + "extract newer messages in the next runs")
+    private String watermarks;
+
+    @Parameter(names = "-sinceId",
+            description = "Identifier of the last message already extracted")
+    private String sinceId;
+
+    @Parameter(names = "-cursor",
+            description = "Pagination cursor the extraction must continue from")
+    private String cursor;
+
+    @Parameter(names = "-checkpoint",
+            description = "File where the progress is periodically saved, to resume it later")
+    private String checkpoint;
+
+    @Parameter(names = "-resume", description = "Resume from the last checkpoint, if any",
+            arity = 1) private Boolean resume;
+
+    @Parameter(names = "-checkpointInterval",
+            description = "Minimum number of seconds between two checkpoints")
+    private Long checkpointInterval;
+
+    @Parameter(names = "-prefetch",
+            description = "Maximum number of pages fetched ahead of the consumer")
+    private Integer prefetch;
+
+    @Parameter(names = "-responseCache",
+            description = "File where the responses of the source are cached")
+    private String responseCache;
+
+    @Parameter(names = "-responseCacheSize",
+            description = "Maximum size of the response cache, in megabytes")
+    private Long responseCacheSize;
+
+    @Parameter(names = "-responseCacheTtl",
+            description = "Seconds after which cached responses are revalidated, per endpoint " +
+                    "type, e.g. search=300")
+    private List<String> responseCacheTtl;
+
+    @Parameter(names = "-distinct",
+            description = "Strategy to remove repeated messages: exact, approximate or windowed")
+    private String distinct;
+
+    @Parameter(names = "-distinctKey",
+            description = "What identifies repeated messages: id (source and id) or content")
+    private String distinctKey;
+
+    @Parameter(names = "-distinctExpected",
+            description = "Expected number of distinct messages, to size the distinct filter")
+    private Long distinctExpected;
+
+    @Parameter(names = "-distinctFpp",
+            description = "False positive rate of the approximate distinct filter")
+    private Double distinctFpp;
+
+    @Parameter(names = "-distinctWindow",
+            description = "Number of messages remembered by the windowed distinct filter")
+    private Integer distinctWindow;
+
+    @Parameter(names = "-distinctWindowTime",
+            description = "Milliseconds messages are remembered by the windowed distinct filter")
+    private Long distinctWindowTime;
+
+    @Parameter(names = "-distinctState",
+            description = "File where the distinct filter is saved, to drop messages of past runs")
+    private String distinctState;
+
+    @Parameter(names = "-nearDuplicates",
+            description = "What to do with messages with almost the same text: drop or mark")
+    private String nearDuplicates;
+
+    @Parameter(names = "-nearDuplicateThreshold",
+            description = "Minimum text similarity of near-duplicate messages, in (0, 1]")
+    private Double nearDuplicateThreshold;
+
+    @Parameter(names = "-nearDuplicateWindow",
+            description = "Number of recent messages near-duplicates are looked for in")
+    private Integer nearDuplicateWindow;
+
     public String getSource() {
         return source;
     }
@@ -101,6 +231,373 @@ public class ExtractionParameters implements IPluginConfig<ExtractionParameters>
         return tags;
     }
 
+    /**
+     * Get the maximum number of sub-queries that can be extracted at the same time, when the
+     * parameters are split by the extractor.
+     *
+     * @return The configured parallelism, or 1 if unspecified.
+     */
+    public int getParallelism() {
+        return (parallelism == null || parallelism < 1) ? 1 : parallelism;
+    }
+
+    public void setParallelism(Integer parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Get the number of time windows the [since, until] interval is split into.
+     * In {@link TimeShardMode#ADAPTIVE} mode, this only sizes the first windows.
+     *
+     * @return The configured number of shards, or 1 if the interval must not be split.
+     */
+    public int getShards() {
+        return (shards == null || shards < 1) ? 1 : shards;
+    }
+
+    public void setShards(Integer shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Get the strategy used to size the time windows.
+     *
+     * @return The configured {@link TimeShardMode}, or {@link TimeShardMode#FIXED} if
+     * unspecified.
+     */
+    public TimeShardMode getShardMode() {
+        return TimeShardMode.fromString(shardMode, TimeShardMode.FIXED);
+    }
+
+    public void setShardMode(String shardMode) {
+        this.shardMode = shardMode;
+    }
+
+    /**
+     * Get the number of messages per time window targeted by the adaptive mode.
+     *
+     * @return The configured target, or {@link #DEFAULT_SHARD_TARGET} if unspecified.
+     */
+    public int getShardTarget() {
+        return (shardTarget == null || shardTarget < 1) ? DEFAULT_SHARD_TARGET : shardTarget;
+    }
+
+    public void setShardTarget(Integer shardTarget) {
+        this.shardTarget = shardTarget;
+    }
+
+    /**
+     * Get the number of times the location box is split into four tiles before extracting it.
+     *
+     * @return The configured number of splits, or 0 if unspecified.
+     */
+    public int getTiles() {
+        return (tiles == null || tiles < 0) ? 0 : tiles;
+    }
+
+    public void setTiles(Integer tiles) {
+        this.tiles = tiles;
+    }
+
+    /**
+     * Get the maximum number of times the location box can be split into tiles.
+     *
+     * @return The configured depth, or {@link #DEFAULT_TILE_DEPTH} if unspecified.
+     */
+    public int getTileDepth() {
+        return (tileDepth == null || tileDepth < 0) ? DEFAULT_TILE_DEPTH : tileDepth;
+    }
+
+    public void setTileDepth(Integer tileDepth) {
+        this.tileDepth = tileDepth;
+    }
+
+    /**
+     * Get the number of messages after which a tile is considered saturated and is split.
+     *
+     * @return The configured saturation, or 0 if tiles must never be split dynamically.
+     */
+    public int getTileSaturation() {
+        return (tileSaturation == null || tileSaturation < 0) ? 0 : tileSaturation;
+    }
+
+    public void setTileSaturation(Integer tileSaturation) {
+        this.tileSaturation = tileSaturation;
+    }
+
+    /**
+     * Get the path of the file where the number of messages per tile is kept across runs.
+     *
+     * @return The path of the tile density map, or null.
+     */
+    public String getTileMap() {
+        return tileMap;
+    }
+
+    public void setTileMap(String tileMap) {
+        this.tileMap = tileMap;
+    }
+
+    /**
+     * Get the path of the file where the watermark of each query is kept across runs. If set,
+     * the extraction is incremental (see {@link WatermarkStore}).
+     *
+     * @return The path of the watermark store, or null.
+     */
+    public String getWatermarks() {
+        return watermarks;
+    }
+
+    public void setWatermarks(String watermarks) {
+        this.watermarks = watermarks;
+    }
+
+    /**
+     * Get the identifier of the last message already extracted, which implementations can use as
+     * a cursor to only fetch newer messages.
+     *
+     * @return The original identifier of the last extracted message, or null.
+     */
+    public String getSinceId() {
+        return sinceId;
+    }
+
+    public void setSinceId(String sinceId) {
+        this.sinceId = sinceId;
+    }
+
+    /**
+     * Get the implementation-specific pagination cursor the extraction must continue from, as
+     * reported by {@link IExtractor#reportCursor(ExtractionParameters, String)} before a
+     * checkpoint.
+     *
+     * @return The cursor, or null if the extraction must start from the first page.
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * Get the path of the file where the progress of the extraction is periodically saved.
+     *
+     * @return The checkpoint file path, or null if no checkpoint must be saved.
+     */
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(String checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Check whether the extraction must continue from the last checkpoint instead of starting over.
+     *
+     * @return true if the extraction must be resumed.
+     */
+    public boolean isResume() {
+        return resume != null && resume;
+    }
+
+    public void setResume(Boolean resume) {
+        this.resume = resume;
+    }
+
+    /**
+     * Get the minimum time between two checkpoints.
+     *
+     * @return The interval in seconds, or {@link #DEFAULT_CHECKPOINT_INTERVAL} if unspecified.
+     */
+    public long getCheckpointInterval() {
+        return (checkpointInterval == null || checkpointInterval < 0) ?
+                DEFAULT_CHECKPOINT_INTERVAL : checkpointInterval;
+    }
+
+    public void setCheckpointInterval(Long checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Get the maximum number of pages a {@link PaginatedExtractor} keeps in memory.
+     *
+     * @return The number of pages, or {@link #DEFAULT_PREFETCH} if unspecified.
+     */
+    public int getPrefetch() {
+        return (prefetch == null || prefetch < 1) ? DEFAULT_PREFETCH : prefetch;
+    }
+
+    public void setPrefetch(Integer prefetch) {
+        this.prefetch = prefetch;
+    }
+
+    public String getResponseCache() {
+        return responseCache;
+    }
+
+    public void setResponseCache(String responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Get the maximum size of the compressed responses in the response cache.
+     *
+     * @return The size in bytes, or {@link ResponseCache#DEFAULT_MAX_BYTES} if unspecified.
+     */
+    public long getResponseCacheBytes() {
+        return (responseCacheSize == null || responseCacheSize < 1) ?
+                ResponseCache.DEFAULT_MAX_BYTES : responseCacheSize * 1024 * 1024;
+    }
+
+    public void setResponseCacheSize(Long responseCacheSize) {
+        this.responseCacheSize = responseCacheSize;
+    }
+
+    /**
+     * Parse the time to live of the cached responses of each endpoint type, given as
+     * {@code type=seconds} pairs.
+     *
+     * @return A {@link Map} from {@link EndpointType} to milliseconds, empty if unspecified.
+     * @throws IllegalArgumentException if a pair isn't valid.
+     */
+    public Map<EndpointType, Long> getResponseCacheTtls() {
+        Map<EndpointType, Long> ttls = new EnumMap<>(EndpointType.class);
+        if (responseCacheTtl == null) {
+            return ttls;
+        }
+        for (String pair : responseCacheTtl) {
+            String[] parts = pair.split("=");
+            if (parts.length != 2 || parts[0].trim().isEmpty()) {
+                throw new IllegalArgumentException("Invalid response cache TTL " + pair + ".");
+            }
+            ttls.put(EndpointType.fromString(parts[0], null),
+                    TimeUnit.SECONDS.toMillis(Long.parseLong(parts[1].trim())));
+        }
+        return ttls;
+    }
+
+    public void setResponseCacheTtl(List<String> responseCacheTtl) {
+        this.responseCacheTtl = responseCacheTtl;
+    }
+
+    /**
+     * Check whether any option of the distinct stage was given, in which case repeated messages
+     * are removed even from extractions that aren't split.
+     *
+     * @return true if the distinct stage was explicitly configured.
+     */
+    public boolean isDistinct() {
+        return distinct != null || distinctKey != null || distinctState != null;
+    }
+
+    /**
+     * Get the strategy to remove repeated messages.
+     *
+     * @return The configured {@link DistinctMode}, or {@link DistinctMode#EXACT} if unspecified.
+     */
+    public DistinctMode getDistinctMode() {
+        return DistinctMode.fromString(distinct, DistinctMode.EXACT);
+    }
+
+    public void setDistinct(String distinct) {
+        this.distinct = distinct;
+    }
+
+    /**
+     * Get what identifies repeated messages.
+     *
+     * @return The configured {@link DedupKey}, or {@link DedupKey#ID} if unspecified.
+     */
+    public DedupKey getDistinctKey() {
+        return DedupKey.fromString(distinctKey, DedupKey.ID);
+    }
+
+    public void setDistinctKey(String distinctKey) {
+        this.distinctKey = distinctKey;
+    }
+
+    public Long getDistinctExpected() {
+        return distinctExpected;
+    }
+
+    public void setDistinctExpected(Long distinctExpected) {
+        this.distinctExpected = distinctExpected;
+    }
+
+    public Double getDistinctFpp() {
+        return distinctFpp;
+    }
+
+    public void setDistinctFpp(Double distinctFpp) {
+        this.distinctFpp = distinctFpp;
+    }
+
+    public Integer getDistinctWindow() {
+        return distinctWindow;
+    }
+
+    public void setDistinctWindow(Integer distinctWindow) {
+        this.distinctWindow = distinctWindow;
+    }
+
+    public Long getDistinctWindowTime() {
+        return distinctWindowTime;
+    }
+
+    public void setDistinctWindowTime(Long distinctWindowTime) {
+        this.distinctWindowTime = distinctWindowTime;
+    }
+
+    public String getDistinctState() {
+        return distinctState;
+    }
+
+    public void setDistinctState(String distinctState) {
+        this.distinctState = distinctState;
+    }
+
+    /**
+     * Build a factory of {@link DistinctFilter}s from the distinct settings of these parameters.
+     *
+     * @return A {@link Func0} creating a new {@link DistinctFilter} at every call.
+     */
+    public Func0<DistinctFilter> getDistinctFilterFactory() {
+        return Distinct.filterFactory(getDistinctMode(), distinctExpected, distinctFpp,
+                distinctWindow, distinctWindowTime);
+    }
+
+    /**
+     * Get what to do with near-duplicate messages.
+     *
+     * @return The configured {@link NearDuplicateMode}, or null if near-duplicates are kept.
+     */
+    public NearDuplicateMode getNearDuplicates() {
+        return NearDuplicateMode.fromString(nearDuplicates, null);
+    }
+
+    public void setNearDuplicates(String nearDuplicates) {
+        this.nearDuplicates = nearDuplicates;
+    }
+
+    public Double getNearDuplicateThreshold() {
+        return nearDuplicateThreshold;
+    }
+
+    public void setNearDuplicateThreshold(Double nearDuplicateThreshold) {
+        this.nearDuplicateThreshold = nearDuplicateThreshold;
+    }
+
+    public Integer getNearDuplicateWindow() {
+        return nearDuplicateWindow;
+    }
+
+    public void setNearDuplicateWindow(Integer nearDuplicateWindow) {
+        this.nearDuplicateWindow = nearDuplicateWindow;
+    }
+
     public void setTo(String to) {
         this.to = to;
     }
@@ -149,6 +646,60 @@ public class ExtractionParameters implements IPluginConfig<ExtractionParameters>
         this.tags = Arrays.asList(tags);
     }
 
+    /**
+     * Create a copy of these parameters, whose lists can be modified without affecting the
+     * original ones.
+     *
+     * @return A new {@link ExtractionParameters} with the same values.
+     */
+    public ExtractionParameters copy() {
+        ExtractionParameters copy = new ExtractionParameters();
+        copy.source = source;
+        copy.query = copyList(query);
+        copy.geoLocationBox = geoLocationBox;
+        copy.from = from;
+        copy.to = to;
+        copy.references = copyList(references);
+        copy.since = since;
+        copy.until = until;
+        copy.language = language;
+        copy.locale = locale;
+        copy.tags = copyList(tags);
+        copy.parallelism = parallelism;
+        copy.shards = shards;
+        copy.shardMode = shardMode;
+        copy.shardTarget = shardTarget;
+        copy.tiles = tiles;
+        copy.tileDepth = tileDepth;
+        copy.tileSaturation = tileSaturation;
+        copy.tileMap = tileMap;
+        copy.watermarks = watermarks;
+        copy.sinceId = sinceId;
+        copy.cursor = cursor;
+        copy.checkpoint = checkpoint;
+        copy.resume = resume;
+        copy.checkpointInterval = checkpointInterval;
+        copy.prefetch = prefetch;
+        copy.responseCache = responseCache;
+        copy.responseCacheSize = responseCacheSize;
+        copy.responseCacheTtl = copyList(responseCacheTtl);
+        copy.distinct = distinct;
+        copy.distinctKey = distinctKey;
+        copy.distinctExpected = distinctExpected;
+        copy.distinctFpp = distinctFpp;
+        copy.distinctWindow = distinctWindow;
+        copy.distinctWindowTime = distinctWindowTime;
+        copy.distinctState = distinctState;
+        copy.nearDuplicates = nearDuplicates;
+        copy.nearDuplicateThreshold = nearDuplicateThreshold;
+        copy.nearDuplicateWindow = nearDuplicateWindow;
+        return copy;
+    }
+
+    private static List<String> copyList(List<String> list) {
+        return (list != null) ? new ArrayList<>(list) : null;
+    }
+
     private List<String> multipleStrings(String input) {
         if (StringUtil.isNullOrEmpty(input)) {
             return null;
@@ -0,0 +1,44 @@
+package com.github.frapontillo.pulse.crowd.social.extraction;
+
+/**
+ * Splits the extraction of some {@link ExtractionParameters} into smaller extractions, that can be
+ * run concurrently and whose results are merged.
+ * <p/>
+ * Planners can produce new extractions depending on the results of the previous ones, so an
+ * empty {@link #poll()} doesn't mean that the planner is done until {@link #isDone()} says so.
+ * Implementations must be thread-safe.
+ *
+ * @author Francesco Pontillo
+ */
+public interface ExtractionPlanner {
+
+    /**
+     * Check whether the original parameters are actually split into multiple extractions.
+     *
+     * @return true if the planner produces more than one extraction.
+     */
+    boolean isSplit();
+
+    /**
+     * Get the next extraction to run, if one is ready.
+     *
+     * @return The {@link ExtractionParameters} of the next extraction, or null if none is ready.
+     */
+    ExtractionParameters poll();
+
+    /**
+     * Check whether the planner has nothing left to produce, meaning that no extraction is ready
+     * and no running extraction can cause new ones.
+     *
+     * @return true if the planner is done.
+     */
+    boolean isDone();
+
+    /**
+     * Report the completion of an extraction produced by this planner.
+     *
+     * @param parameters The {@link ExtractionParameters} returned by {@link #poll()}.
+     * @param count      The number of extracted messages.
+     */
+    void record(ExtractionParameters parameters, long count);
+}
@@ -0,0 +1,117 @@
+package com.github.frapontillo.pulse.crowd.social.extraction;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily collects the extractions produced by some {@link ExtractionPlanner}s, as a blocking
+ * {@link Iterable} suitable for {@link rx.Observable#from(Iterable)}.
+ * <p/>
+ * Since planners can produce new extractions when running ones complete, the iterator waits for
+ * completions when no extraction is ready, and only ends when all the planners are done or the
+ * queue is cancelled.
+ *
+ * @author Francesco Pontillo
+ */
+class ExtractionTaskQueue implements Iterable<ExtractionTaskQueue.Task> {
+    private static final long WAIT_MILLIS = 100;
+
+    private final List<ExtractionPlanner> planners;
+    private int current;
+    private volatile boolean cancelled;
+
+    ExtractionTaskQueue(List<ExtractionPlanner> planners) {
+        this.planners = planners;
+    }
+
+    /**
+     * Report the completion of a task, possibly making new tasks available.
+     *
+     * @param task  The completed {@link Task}.
+     * @param count The number of extracted messages.
+     */
+    void complete(Task task, long count) {
+        task.planner.record(task.parameters, count);
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Stop producing tasks, waking up any waiting consumer.
+     */
+    void cancel() {
+        cancelled = true;
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    private synchronized Task take() {
+        while (!cancelled) {
+            boolean done = true;
+            // round-robin among planners, so that all sub-queries make progress
+            for (int i = 0; i < planners.size(); i++) {
+                ExtractionPlanner planner = planners.get((current + i) % planners.size());
+                ExtractionParameters parameters = planner.poll();
+                if (parameters != null) {
+                    current = (current + i + 1) % planners.size();
+                    return new Task(planner, parameters);
+                }
+                done &= planner.isDone();
+            }
+            if (done) {
+                return null;
+            }
+            try {
+                wait(WAIT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    @Override public Iterator<Task> iterator() {
+        return new Iterator<Task>() {
+            private Task next;
+            private boolean ended;
+
+            @Override public boolean hasNext() {
+                if (next == null && !ended) {
+                    next = take();
+                    ended = (next == null);
+                }
+                return next != null;
+            }
+
+            @Override public Task next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Task task = next;
+                next = null;
+                return task;
+            }
+        };
+    }
+
+    /**
+     * An extraction produced by a planner.
+     */
+    static class Task {
+        private final ExtractionPlanner planner;
+        private final ExtractionParameters parameters;
+
+        private Task(ExtractionPlanner planner, ExtractionParameters parameters) {
+            this.planner = planner;
+            this.parameters = parameters;
+        }
+
+        ExtractionParameters getParameters() {
+            return parameters;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.frapontillo.pulse.crowd.social.extraction;
+
+import com.github.frapontillo.pulse.crowd.social.util.AtomicFiles;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The number of messages extracted from each tile of the observed areas, persisted to a JSON file
+ * so that later extractions of the same area can start from the right tiles.
+ * <p/>
+ * Areas are identified by their bounding box, and tiles by their quad-tree key relative to the
+ * area (see {@link GeoTilePlanner}).
+ *
+ * @author Francesco Pontillo
+ */
+public class GeoDensityMap {
+    private static final Gson gson = new Gson();
+    private static final Type MAP_TYPE = new TypeToken<Map<String, Map<String, Long>>>() {
+    }.getType();
+
+    private final File file;
+    private final Map<String, Map<String, Long>> densities;
+
+    private GeoDensityMap(File file, Map<String, Map<String, Long>> densities) {
+        this.file = file;
+        this.densities = densities;
+    }
+
+    /**
+     * Load a density map from a file, or create an empty one if the file doesn't exist.
+     *
+     * @param file The {@link File} the map is persisted to.
+     *
+     * @return The loaded {@link GeoDensityMap}.
+     * @throws IOException if the file can't be read.
+     */
+    public static GeoDensityMap load(File file) throws IOException {
+        String json = AtomicFiles.read(file);
+        Map<String, Map<String, Long>> densities = null;
+        if (json != null) {
+            densities = gson.fromJson(json, MAP_TYPE);
+        }
+        return new GeoDensityMap(file, (densities != null) ? densities : new HashMap<>());
+    }
+
+    /**
+     * Get the key identifying an area.
+     *
+     * @param box The {@link GeoLocationBox} of the area.
+     *
+     * @return The key of the area.
+     */
+    public static String getAreaKey(GeoLocationBox box) {
+        double[][] bbox = box.getBoundingBox();
+        return String.format(Locale.ROOT, "%.6f,%.6f,%.6f,%.6f", bbox[0][0], bbox[0][1],
+                bbox[1][0], bbox[1][1]);
+    }
+
+    /**
+     * Get the number of messages last extracted from a tile.
+     *
+     * @param area The key of the area.
+     * @param tile The quad-tree key of the tile.
+     *
+     * @return The number of messages, or null if the tile was never extracted.
+     */
+    public synchronized Long get(String area, String tile) {
+        Map<String, Long> tiles = densities.get(area);
+        return (tiles != null) ? tiles.get(tile) : null;
+    }
+
+    /**
+     * Record the number of messages extracted from a tile.
+     *
+     * @param area  The key of the area.
+     * @param tile  The quad-tree key of the tile.
+     * @param count The number of messages.
+     */
+    public synchronized void record(String area, String tile, long count) {
+        densities.computeIfAbsent(area, key -> new HashMap<>()).put(tile, count);
+    }
+
+    /**
+     * Persist the map to its file.
+     *
+     * @throws IOException if the file can't be written.
+     */
+    public synchronized void save() throws IOException {
+        AtomicFiles.write(file, gson.toJson(densities, MAP_TYPE));
+    }
+}
@@ -1,6 +1,10 @@
 package com.github.frapontillo.pulse.crowd.social.extraction;
 
 /**
+ * A rectangular geographic area, built from its center and distance or from its south-west and
+ * north-east corners. Areas whose west longitude is greater than the east one cross the
+ * antimeridian.
+ *
  * @author Francesco Pontillo
  */
 public class GeoLocationBox {
@@ -89,10 +93,66 @@ public class GeoLocationBox {
         this.location = location;
     }
 
+    /**
+     * Check whether a point lies in the box. Points without coordinates are always accepted,
+     * while points with a single coordinate are always rejected.
+     *
+     * @param longitude The longitude of the point, may be null.
+     * @param latitude  The latitude of the point, may be null.
+     *
+     * @return true if the point is in the box or has no coordinates.
+     */
     public boolean contains(Double longitude, Double latitude) {
-        return (longitude == null && latitude == null) ||
-                (longitude >= boundingBox[0][0] && longitude <= boundingBox[1][0] &&
-                        latitude >= boundingBox[0][1] && latitude <= boundingBox[1][1]);
+        if (longitude == null || latitude == null) {
+            return longitude == null && latitude == null;
+        }
+        return latitude >= boundingBox[0][1] && latitude <= boundingBox[1][1] &&
+                containsLongitude(boundingBox[0][0], boundingBox[1][0], longitude);
+    }
+
+    /**
+     * Check whether a longitude lies between a west and an east longitude, going east from the
+     * west one, so that ranges across the antimeridian are supported both as west greater than
+     * east (e.g. 170, -170) and as values out of [-180, 180] (e.g. 170, 190).
+     *
+     * @param west      The west longitude of the range.
+     * @param east      The east longitude of the range.
+     * @param longitude The longitude to check.
+     *
+     * @return true if the longitude is in the range.
+     */
+    public static boolean containsLongitude(double west, double east, double longitude) {
+        if (west <= east && west >= -180 && east <= 180) {
+            return longitude >= west && longitude <= east;
+        }
+        if (east - west >= 360) {
+            return true;
+        }
+        west = normalizeLongitude(west);
+        east = normalizeLongitude(east);
+        longitude = normalizeLongitude(longitude);
+        if (west <= east) {
+            return longitude >= west && longitude <= east;
+        }
+        return longitude >= west || longitude <= east;
+    }
+
+    /**
+     * Bring a longitude into the [-180, 180) range.
+     *
+     * @param longitude The longitude, in degrees.
+     *
+     * @return The equivalent longitude in [-180, 180).
+     */
+    public static double normalizeLongitude(double longitude) {
+        if (longitude >= -180 && longitude < 180) {
+            return longitude;
+        }
+        double normalized = (longitude + 180) % 360;
+        if (normalized < 0) {
+            normalized += 360;
+        }
+        return normalized - 180;
     }
 
     /**
@@ -132,8 +192,12 @@ public class GeoLocationBox {
         double lng1 = Math.toRadians(boundingBox[0][0]);
         double lat2 = Math.toRadians(boundingBox[1][1]);
         double lng2 = Math.toRadians(boundingBox[1][0]);
+        if (lng2 < lng1) {
+            // the box crosses the antimeridian, measure the center going east
+            lng2 += 2 * Math.PI;
+        }
         latitude = Math.toDegrees(lat2 - (lat2 - lat1) / 2);
-        longitude = Math.toDegrees(lng2 - (lng2 - lng1) / 2);
+        longitude = normalizeLongitude(Math.toDegrees(lng2 - (lng2 - lng1) / 2));
         // TODO: both the following solutions are approximate, find out why
         distance = (Math.toRadians(latitude) - lat1) * EARTH_RADIUS;
         /* ALTERNATIVE APPROACH
@@ -0,0 +1,162 @@
+package com.github.frapontillo.pulse.crowd.social.extraction;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Splits the {@link GeoLocationBox} of some {@link ExtractionParameters} into a quad-tree of
+ * tiles, extracted separately.
+ * <p/>
+ * The box is first split {@link ExtractionParameters#getTiles()} times. Then, whenever a tile
+ * yields at least {@link ExtractionParameters#getTileSaturation()} messages (meaning that the
+ * source probably capped its results), the tile is split into four more tiles, up to
+ * {@link ExtractionParameters#getTileDepth()} levels. Tiles that were saturated in previous runs,
+ * according to the {@link GeoDensityMap}, are split right away.
+ * <p/>
+ * Tiles are identified by quad-tree keys: the root box has an empty key, and every split appends
+ * the index of the child tile, 0 to 3 for south-west, south-east, north-west and north-east.
+ * Messages in a split tile are extracted again by its children, so the caller must remove the
+ * resulting duplicates.
+ *
+ * @author Francesco Pontillo
+ */
+public class GeoTilePlanner implements ExtractionPlanner {
+    private final ExtractionParameters parameters;
+    private final GeoDensityMap densityMap;
+    private final String area;
+    private final double[][] box;
+    private final Deque<String> ready;
+    private final Map<ExtractionParameters, String> running;
+
+    /**
+     * Create a new tile planner.
+     *
+     * @param parameters The {@link ExtractionParameters} to split, with a {@link GeoLocationBox}.
+     * @param densityMap The {@link GeoDensityMap} of the previous runs, or null.
+     */
+    public GeoTilePlanner(ExtractionParameters parameters, GeoDensityMap densityMap) {
+        this.parameters = parameters;
+        this.densityMap = densityMap;
+        this.area = GeoDensityMap.getAreaKey(parameters.getGeoLocationBox());
+        this.box = parameters.getGeoLocationBox().getBoundingBox();
+        this.ready = new ArrayDeque<>();
+        this.running = new IdentityHashMap<>();
+        plan("");
+    }
+
+    /**
+     * Check whether some parameters must be split into tiles.
+     *
+     * @param parameters Some {@link ExtractionParameters}.
+     *
+     * @return true if the parameters have a location and tiling is enabled.
+     */
+    public static boolean isTiled(ExtractionParameters parameters) {
+        return parameters.getGeoLocationBox() != null &&
+                (parameters.getTiles() > 0 || parameters.getTileSaturation() > 0);
+    }
+
+    @Override public boolean isSplit() {
+        return ready.size() > 1 || parameters.getTileSaturation() > 0;
+    }
+
+    @Override public synchronized ExtractionParameters poll() {
+        String tile = ready.poll();
+        if (tile == null) {
+            return null;
+        }
+        ExtractionParameters tileParameters = parameters.copy();
+        tileParameters.setGeoLocationBox(getTileBox(tile));
+        running.put(tileParameters, tile);
+        return tileParameters;
+    }
+
+    @Override public synchronized boolean isDone() {
+        return ready.isEmpty() && running.isEmpty();
+    }
+
+    @Override public synchronized void record(ExtractionParameters tileParameters, long count) {
+        String tile = running.remove(tileParameters);
+        if (tile == null) {
+            return;
+        }
+        if (densityMap != null) {
+            densityMap.record(area, tile, count);
+        }
+        if (isSaturated(count) && tile.length() < parameters.getTileDepth()) {
+            split(tile);
+        }
+    }
+
+    /**
+     * Add a tile to the ready ones, or its children if the tile must be split.
+     */
+    private void plan(String tile) {
+        boolean split = tile.length() < parameters.getTiles();
+        if (!split && densityMap != null && tile.length() < parameters.getTileDepth()) {
+            Long count = densityMap.get(area, tile);
+            split = (count != null && isSaturated(count));
+        }
+        if (split) {
+            for (int i = 0; i < 4; i++) {
+                plan(tile + i);
+            }
+        } else {
+            ready.add(tile);
+        }
+    }
+
+    private void split(String tile) {
+        for (int i = 0; i < 4; i++) {
+            ready.add(tile + i);
+        }
+    }
+
+    private boolean isSaturated(long count) {
+        return parameters.getTileSaturation() > 0 && count >= parameters.getTileSaturation();
+    }
+
+    /**
+     * Compute the box of a tile from its quad-tree key. Boxes crossing the antimeridian are
+     * unwrapped before being split, so that their tiles cover the same side of the globe.
+     *
+     * @param tile The quad-tree key of the tile.
+     *
+     * @return The {@link GeoLocationBox} of the tile.
+     */
+    GeoLocationBox getTileBox(String tile) {
+        double swLng = box[0][0];
+        double swLat = box[0][1];
+        double neLng = box[1][0];
+        double neLat = box[1][1];
+        if (neLng < swLng) {
+            neLng += 360;
+        }
+        for (int i = 0; i < tile.length(); i++) {
+            int child = tile.charAt(i) - '0';
+            double midLng = (swLng + neLng) / 2;
+            double midLat = (swLat + neLat) / 2;
+            if ((child & 1) == 0) {
+                neLng = midLng;
+            } else {
+                swLng = midLng;
+            }
+            if ((child & 2) == 0) {
+                neLat = midLat;
+            } else {
+                swLat = midLat;
+            }
+        }
+        return new GeoLocationBox(wrapLongitude(swLng), swLat, wrapLongitude(neLng), neLat);
+    }
+
+    /**
+     * Bring an unwrapped longitude back into range, keeping the edges already in range as they
+     * are.
+     */
+    private static double wrapLongitude(double longitude) {
+        return (longitude > 180) ? GeoLocationBox.normalizeLongitude(longitude) : longitude;
+    }
+}
@@ -1,18 +1,47 @@
 package com.github.frapontillo.pulse.crowd.social.extraction;
 
 import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.cache.EndpointType;
+import com.github.frapontillo.pulse.crowd.social.cache.ResponseCache;
+import com.github.frapontillo.pulse.crowd.social.cache.ResponseFetcher;
+import com.github.frapontillo.pulse.crowd.social.distinct.MessageDeduplicator;
+import com.github.frapontillo.pulse.crowd.social.distinct.NearDuplicateCollapser;
 import com.github.frapontillo.pulse.crowd.social.exception.InvalidParametersSocialException;
 import com.github.frapontillo.pulse.crowd.social.exception.MissingParametersSocialException;
+import com.github.frapontillo.pulse.crowd.social.exception.RateLimitedException;
 import com.github.frapontillo.pulse.crowd.social.exception.SocialException;
+import com.github.frapontillo.pulse.crowd.social.exception.TooComplexParametersSocialException;
+import com.github.frapontillo.pulse.crowd.social.execution.ExecutionStrategy;
+import com.github.frapontillo.pulse.crowd.social.execution.SourceServices;
+import com.github.frapontillo.pulse.crowd.social.metrics.PluginMetrics;
+import com.github.frapontillo.pulse.crowd.social.ratelimit.RateLimiter;
 import com.github.frapontillo.pulse.spi.IPlugin;
 import com.github.frapontillo.pulse.util.PulseLogger;
 import com.github.frapontillo.pulse.util.StringUtil;
 import org.apache.logging.log4j.Logger;
 import rx.Observable;
+import rx.Scheduler;
 import rx.Subscriber;
+import rx.functions.Action0;
 import rx.observers.SafeSubscriber;
+import rx.schedulers.Schedulers;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author Francesco
@@ -20,6 +49,22 @@ import java.util.List;
 public abstract class IExtractor extends IPlugin<Void, Message, ExtractionParameters> {
 
     private final Logger logger = PulseLogger.getLogger(IExtractor.class);
+    private final Map<ExtractionParameters, ExtractionCheckpoint.Progress> runningTasks =
+            Collections.synchronizedMap(new IdentityHashMap<>());
+    private final ConcurrentMap<String, OpenedCache> responseCaches = new ConcurrentHashMap<>();
+
+    /**
+     * A {@link ResponseCache} opened by this extractor, with the number of running extractions
+     * using it.
+     */
+    private static class OpenedCache {
+        private final ResponseCache cache;
+        private int extractions;
+
+        private OpenedCache(ResponseCache cache) {
+            this.cache = cache;
+        }
+    }
 
     /**
      * Returns the maximum number of parameters that this extractor supports per each query.
@@ -175,12 +220,586 @@ public abstract class IExtractor extends IPlugin<Void, Message, ExtractionParame
      */
     protected abstract Observable<Message> getMessages(ExtractionParameters parameters);
 
+    /**
+     * Split some extraction parameters into sub-queries that don't exceed
+     * {@link #getMaximumQueryParameters()}, counted as the number of query terms plus the number
+     * of referenced users.
+     * Query terms are alternatives, so they are spread among the sub-queries, while all the
+     * referenced users must be part of every sub-query.
+     *
+     * @param parameters Some {@link ExtractionParameters} set.
+     *
+     * @return A {@link List} of sub-queries, or a singleton list with the original parameters if
+     * they don't need to be split.
+     * @throws TooComplexParametersSocialException if the referenced users alone leave no room for
+     *                                             the query terms.
+     */
+    public List<ExtractionParameters> splitParameters(ExtractionParameters parameters)
+            throws TooComplexParametersSocialException {
+        long maximum = getMaximumQueryParameters();
+        List<String> query = parameters.getQuery();
+        int queryCount = (query != null) ? query.size() : 0;
+        int referenceCount =
+                (parameters.getReferences() != null) ? parameters.getReferences().size() : 0;
+        if (maximum <= 0 || queryCount + referenceCount <= maximum) {
+            return Collections.singletonList(parameters);
+        }
+        if (queryCount == 0 || referenceCount >= maximum) {
+            throw new TooComplexParametersSocialException(maximum, queryCount + referenceCount);
+        }
+        int chunkSize = (int) (maximum - referenceCount);
+        List<ExtractionParameters> split = new ArrayList<>();
+        for (int i = 0; i < queryCount; i += chunkSize) {
+            ExtractionParameters subQuery = parameters.copy();
+            int end = Math.min(i + chunkSize, queryCount);
+            subQuery.setQuery(new ArrayList<>(query.subList(i, end)));
+            split.add(subQuery);
+        }
+        return split;
+    }
+
+    /**
+     * Extract the messages matching some parameters, splitting them into smaller extractions:
+     * <ul>
+     * <li>into sub-queries, if they exceed {@link #getMaximumQueryParameters()};</li>
+     * <li>into location tiles, if tiling is enabled (see {@link GeoTilePlanner});</li>
+     * <li>otherwise into time windows, if {@link ExtractionParameters#getShards()} is greater
+     * than 1 (see {@link TimeShardPlanner}).</li>
+     * </ul>
+     * Smaller extractions are run {@link ExtractionParameters#getParallelism()} at a time and
+     * their results are merged, dropping the messages with the same source and original
+     * identifier.
+     * <p/>
+     * If {@link ExtractionParameters#getWatermarks()} is set, the extraction is incremental: it
+     * starts from the date of the latest messages extracted by the previous successful run of
+     * the same query, skipping the ones sent at that instant that were already extracted, and
+     * the new latest messages are recorded when the extraction completes.
+     * <p/>
+     * If {@link ExtractionParameters#getResponseCache()} is set, the {@link ResponseCache} is
+     * opened once, when the extraction is subscribed, used by all its requests and released when
+     * the extraction terminates or is unsubscribed; the returned {@link Observable} fails with a
+     * {@link SocialException} if the cache can't be opened.
+     * <p/>
+     * If {@link ExtractionParameters#getCheckpoint()} is set, the progress of the extraction is
+     * periodically saved to an {@link ExtractionCheckpoint}, and
+     * {@link ExtractionParameters#isResume()} continues a failed extraction from it without
+     * emitting the messages that were already delivered.
+     * <p/>
+     * Repeated messages of split extractions that aren't checkpointed are removed by a
+     * {@link MessageDeduplicator} configured by the distinct options of the parameters, which
+     * also applies to extractions that aren't split if any of those options is given.
+     *
+     * @param parameters {@link ExtractionParameters} to search for.
+     *
+     * @return {@link rx.Observable<Message>}
+     * @throws SocialException if the parameters can't be split.
+     */
+    protected Observable<Message> extract(ExtractionParameters parameters) throws SocialException {
+        Observable<Message> messages = extractIncremental(parameters);
+        if (parameters.getResponseCache() == null) {
+            return messages;
+        }
+        return Observable.defer(() -> {
+            try {
+                openResponseCache(parameters);
+            } catch (SocialException e) {
+                return Observable.error(e);
+            }
+            AtomicBoolean released = new AtomicBoolean();
+            Action0 release = () -> {
+                if (released.compareAndSet(false, true)) {
+                    releaseResponseCache(parameters);
+                }
+            };
+            return messages.doOnTerminate(release).doOnUnsubscribe(release);
+        });
+    }
+
+    /**
+     * Extract the messages matching some parameters, starting from their watermark if
+     * {@link ExtractionParameters#getWatermarks()} is set.
+     *
+     * @param parameters {@link ExtractionParameters} to search for.
+     *
+     * @return {@link rx.Observable<Message>}
+     * @throws SocialException if the parameters can't be split.
+     */
+    private Observable<Message> extractIncremental(ExtractionParameters parameters)
+            throws SocialException {
+        WatermarkStore store = loadWatermarks(parameters);
+        if (store == null) {
+            return extractSplit(parameters);
+        }
+        String key = WatermarkStore.getQueryKey(parameters);
+        WatermarkStore.Watermark watermark = store.get(key);
+        ExtractionParameters incremental = parameters;
+        if (watermark != null && (parameters.getSince() == null ||
+                parameters.getSince().getTime() < watermark.getDate())) {
+            if (parameters.getUntil() != null &&
+                    parameters.getUntil().getTime() <= watermark.getDate()) {
+                logger.info("Messages until {} were already extracted.", parameters.getUntil());
+                return Observable.empty();
+            }
+            incremental = parameters.copy();
+            incremental.setSince(new Date(watermark.getDate()));
+            incremental.setSinceId(watermark.getId());
+            logger.info("Extracting messages since {} (id {}).", incremental.getSince(),
+                    watermark.getId());
+        }
+        // messages sent at the watermark instant were already extracted by the previous run
+        Set<String> boundary = (watermark != null) ?
+                new HashSet<>(watermark.getIds()) : Collections.emptySet();
+        Observable<Message> messages = extractSplit(incremental);
+        return Observable.defer(() -> {
+            LatestMessage latest = new LatestMessage();
+            return messages.filter(message -> !boundary.contains(message.getoId()))
+                    .doOnNext(latest::offer)
+                    .doOnCompleted(() -> saveWatermark(store, key, latest.get()));
+        });
+    }
+
+    private Observable<Message> extractSplit(ExtractionParameters parameters)
+            throws SocialException {
+        List<ExtractionParameters> subQueries = splitParameters(parameters);
+        ExtractionCheckpoint checkpoint = loadCheckpoint(parameters);
+        GeoDensityMap densityMap = loadDensityMap(parameters);
+        List<ExtractionPlanner> planners = new ArrayList<>(subQueries.size());
+        boolean split = false;
+        for (ExtractionParameters subQuery : subQueries) {
+            ExtractionPlanner planner;
+            if (GeoTilePlanner.isTiled(subQuery)) {
+                planner = new GeoTilePlanner(subQuery, densityMap);
+            } else {
+                planner = new TimeShardPlanner(subQuery);
+            }
+            split |= planner.isSplit();
+            planners.add(planner);
+        }
+        if (subQueries.size() == 1 && !split && checkpoint == null) {
+            Observable<Message> messages = getMessages(subQueries.get(0))
+                    .compose(getMetrics().call()).compose(limitMessages());
+            if (parameters.isDistinct()) {
+                messages = messages.compose(buildDeduplicator(parameters).deduplicate());
+            }
+            return messages;
+        }
+        logger.info("Splitting the extraction into {} sub-queries.", subQueries.size());
+        return Observable.defer(() -> {
+            ExtractionTaskQueue queue = new ExtractionTaskQueue(planners);
+            Scheduler scheduler = getExecutionStrategy().getScheduler();
+            // tasks are requested one at a time by flatMap, only when a running one completes, so
+            // that planners can use the results observed so far (concatMap would prefetch them);
+            // waiting for them must not take one of the threads the tasks run on
+            Observable<ExtractionTaskQueue.Task> tasks =
+                    Observable.from(queue).subscribeOn(Schedulers.io())
+                            .doOnUnsubscribe(queue::cancel);
+            int parallelism = parameters.getParallelism();
+            Observable<Message> messages;
+            if (checkpoint != null) {
+                Observable<TaskMessage> taskMessages;
+                if (parallelism > 1) {
+                    taskMessages = tasks.flatMap(task -> runTask(queue, task, checkpoint)
+                            .subscribeOn(scheduler), parallelism);
+                } else {
+                    taskMessages = tasks.flatMap(task -> runTask(queue, task, checkpoint), 1);
+                }
+                messages = taskMessages.lift(
+                        deliver(checkpoint, parameters.getCheckpointInterval() * 1000));
+            } else {
+                if (parallelism > 1) {
+                    messages = tasks.flatMap(
+                            task -> runTask(queue, task).subscribeOn(scheduler),
+                            parallelism);
+                } else {
+                    messages = tasks.flatMap(task -> runTask(queue, task), 1);
+                }
+                messages = messages.compose(buildDeduplicator(parameters).deduplicate());
+            }
+            if (densityMap != null) {
+                messages = messages.doOnTerminate(() -> saveDensityMap(densityMap));
+            }
+            return messages;
+        });
+    }
+
+    private Observable<Message> runTask(ExtractionTaskQueue queue,
+            ExtractionTaskQueue.Task task) {
+        return Observable.defer(() -> {
+            AtomicLong count = new AtomicLong();
+            return getMessages(task.getParameters()).compose(getMetrics().call())
+                    .compose(limitMessages())
+                    .doOnNext(message -> count.incrementAndGet())
+                    .doOnCompleted(() -> queue.complete(task, count.get()));
+        });
+    }
+
+    /**
+     * Run a task while tracking its progress in a checkpoint: tasks completed by a previous run
+     * are skipped, and interrupted ones continue from their last cursor.
+     */
+    private Observable<TaskMessage> runTask(ExtractionTaskQueue queue,
+            ExtractionTaskQueue.Task task, ExtractionCheckpoint checkpoint) {
+        return Observable.defer(() -> {
+            String key = ExtractionCheckpoint.getTaskKey(task.getParameters());
+            Long count = checkpoint.getCompletedCount(key);
+            if (count != null) {
+                queue.complete(task, count);
+                return Observable.empty();
+            }
+            ExtractionParameters parameters = task.getParameters().copy();
+            String cursor = checkpoint.getCursor(key);
+            if (cursor != null) {
+                parameters.setCursor(cursor);
+            }
+            ExtractionCheckpoint.Progress progress = checkpoint.track(key);
+            runningTasks.put(parameters, progress);
+            return getMessages(parameters).compose(getMetrics().call())
+                    .compose(limitMessages()).map(message -> {
+                progress.fetch();
+                return new TaskMessage(message, progress);
+            }).doOnCompleted(() -> queue.complete(task, progress.finish()))
+                    .doOnTerminate(() -> runningTasks.remove(parameters));
+        });
+    }
+
+    /**
+     * Limit the calls to {@link #getMessages(ExtractionParameters)} with
+     * {@link #getRateLimiter()}: every subscription acquires a permit, and is made again after a
+     * {@link RateLimitedException} thrown before any message.
+     * <p/>
+     * Implementations acquiring a permit and retrying each of their own requests, like
+     * {@link PaginatedExtractor}, should leave the messages untouched instead, so that rejected
+     * requests are only retried in one place.
+     *
+     * @return A {@link Observable.Transformer} limiting the calls.
+     */
+    protected Observable.Transformer<Message, Message> limitMessages() {
+        return getRateLimiter().limit(1, getExecutionStrategy().getScheduler());
+    }
+
+    /**
+     * Emit the messages of the tracked tasks that were never delivered before, recording them
+     * in the checkpoint and saving it periodically. The checkpoint is saved when the extraction
+     * fails and deleted when it completes.
+     */
+    private Observable.Operator<Message, TaskMessage> deliver(ExtractionCheckpoint checkpoint,
+            long intervalMillis) {
+        return child -> new Subscriber<TaskMessage>(child) {
+            @Override public void onNext(TaskMessage taskMessage) {
+                long hash = MessageDeduplicator.getIdHash(taskMessage.message);
+                if (checkpoint.getEmitted().add(hash)) {
+                    child.onNext(taskMessage.message);
+                } else {
+                    request(1);
+                }
+                taskMessage.progress.deliver();
+                try {
+                    checkpoint.saveIfDue(intervalMillis);
+                } catch (IOException e) {
+                    logger.warn("Cannot save the extraction checkpoint.", e);
+                }
+            }
+
+            @Override public void onCompleted() {
+                try {
+                    checkpoint.delete();
+                } catch (IOException e) {
+                    logger.warn("Cannot delete the extraction checkpoint.", e);
+                }
+                child.onCompleted();
+            }
+
+            @Override public void onError(Throwable e) {
+                try {
+                    checkpoint.save();
+                } catch (IOException ioe) {
+                    logger.warn("Cannot save the extraction checkpoint.", ioe);
+                }
+                child.onError(e);
+            }
+        };
+    }
+
+    /**
+     * Report the pagination cursor an extraction could continue from, after all the messages
+     * emitted so far by {@link #getMessages(ExtractionParameters)} for the same parameters.
+     * Implementations should call this after emitting each page, and continue from
+     * {@link ExtractionParameters#getCursor()} when it is set. Cursors are only saved when the
+     * extraction is checkpointed, and ignored otherwise.
+     *
+     * @param parameters The {@link ExtractionParameters} given to
+     *                   {@link #getMessages(ExtractionParameters)}.
+     * @param cursor     The cursor of the next page.
+     */
+    protected void reportCursor(ExtractionParameters parameters, String cursor) {
+        ExtractionCheckpoint.Progress progress = runningTasks.get(parameters);
+        if (progress != null) {
+            progress.cursor(cursor);
+        }
+    }
+
+    /**
+     * Build the stage collapsing the near-duplicate messages of an extraction, as configured by
+     * {@link ExtractionParameters#getNearDuplicates()}.
+     *
+     * @param parameters The {@link ExtractionParameters} of the extraction.
+     *
+     * @return A {@link Observable.Transformer} dropping or marking near-duplicates, or leaving
+     * the messages untouched if the stage isn't enabled.
+     */
+    Observable.Transformer<Message, Message> collapseNearDuplicates(
+            ExtractionParameters parameters) {
+        if (parameters.getNearDuplicates() == null) {
+            return messages -> messages;
+        }
+        return new NearDuplicateCollapser(getName(), parameters.getNearDuplicates(),
+                parameters.getNearDuplicateThreshold(), parameters.getNearDuplicateWindow())
+                .collapse();
+    }
+
+    private MessageDeduplicator buildDeduplicator(ExtractionParameters parameters) {
+        File state = (parameters.getDistinctState() != null) ?
+                new File(parameters.getDistinctState()) : null;
+        return new MessageDeduplicator(getName() + " messages", parameters.getDistinctKey(),
+                parameters.getDistinctFilterFactory(), state);
+    }
+
+    private ExtractionCheckpoint loadCheckpoint(ExtractionParameters parameters)
+            throws SocialException {
+        if (parameters.getCheckpoint() == null) {
+            return null;
+        }
+        File file = new File(parameters.getCheckpoint());
+        if (!parameters.isResume()) {
+            return ExtractionCheckpoint.create(file);
+        }
+        try {
+            ExtractionCheckpoint checkpoint = ExtractionCheckpoint.load(file);
+            logger.info("Resuming the extraction with {} messages already delivered.",
+                    checkpoint.getEmitted().size());
+            return checkpoint;
+        } catch (IOException | RuntimeException e) {
+            throw new InvalidParametersSocialException(
+                    "Cannot load the checkpoint " + file + ": " + e.getMessage());
+        }
+    }
+
+    private GeoDensityMap loadDensityMap(ExtractionParameters parameters) {
+        if (parameters.getTileMap() == null) {
+            return null;
+        }
+        try {
+            return GeoDensityMap.load(new File(parameters.getTileMap()));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Cannot load the tile density map, starting from an empty one.", e);
+            return null;
+        }
+    }
+
+    private void saveDensityMap(GeoDensityMap densityMap) {
+        try {
+            densityMap.save();
+        } catch (IOException e) {
+            logger.warn("Cannot save the tile density map.", e);
+        }
+    }
+
+    private WatermarkStore loadWatermarks(ExtractionParameters parameters) {
+        if (parameters.getWatermarks() == null) {
+            return null;
+        }
+        try {
+            return WatermarkStore.load(new File(parameters.getWatermarks()));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Cannot load the watermarks, extracting all the messages.", e);
+            return null;
+        }
+    }
+
+    private void saveWatermark(WatermarkStore store, String key,
+            WatermarkStore.Watermark watermark) {
+        if (watermark == null) {
+            return;
+        }
+        store.update(key, watermark);
+        try {
+            store.save();
+        } catch (IOException e) {
+            logger.warn("Cannot save the watermarks.", e);
+        }
+    }
+
+    /**
+     * A message fetched by a task tracked in a checkpoint.
+     */
+    private static class TaskMessage {
+        private final Message message;
+        private final ExtractionCheckpoint.Progress progress;
+
+        private TaskMessage(Message message, ExtractionCheckpoint.Progress progress) {
+            this.message = message;
+            this.progress = progress;
+        }
+    }
+
+    /**
+     * Keeps track of the latest messages seen by an extraction, all sent at the same instant.
+     */
+    private static class LatestMessage {
+        private final Set<String> ids = new LinkedHashSet<>();
+        private long date = Long.MIN_VALUE;
+
+        private synchronized void offer(Message message) {
+            if (message.getDate() == null || message.getDate().getTime() < date) {
+                return;
+            }
+            if (message.getDate().getTime() > date) {
+                date = message.getDate().getTime();
+                ids.clear();
+            }
+            ids.add(message.getoId());
+        }
+
+        private synchronized WatermarkStore.Watermark get() {
+            return (!ids.isEmpty()) ? new WatermarkStore.Watermark(date, ids) : null;
+        }
+    }
+
+    /**
+     * @return The {@link RateLimiter} of the source of this plugin, see {@link SourceServices}.
+     */
+    protected RateLimiter getRateLimiter() {
+        return SourceServices.get(getName()).getRateLimiter();
+    }
+
+    /**
+     * @return The {@link ExecutionStrategy} of the source of this plugin, see
+     * {@link SourceServices}.
+     */
+    protected ExecutionStrategy getExecutionStrategy() {
+        return SourceServices.get(getName()).getExecutionStrategy();
+    }
+
+    /**
+     * Get a response from the source, through the {@link ResponseCache} configured by
+     * {@link ExtractionParameters#getResponseCache()}, if any. Implementations should perform
+     * all their requests through this method, passing the validators of the stale response to
+     * the source when the {@link ResponseFetcher} receives one.
+     *
+     * @param parameters The {@link ExtractionParameters} of the extraction.
+     * @param type       The {@link EndpointType} of the request, determining its time to live.
+     * @param requestKey The normalized key of the request, see
+     *                   {@link ResponseCache#getRequestKey(String, Map)}.
+     * @param fetcher    The {@link ResponseFetcher} performing the request.
+     *
+     * @return The body of the response.
+     * @throws IOException if the request fails or the cache can't be opened.
+     */
+    protected String fetchResponse(ExtractionParameters parameters, EndpointType type,
+            String requestKey, ResponseFetcher fetcher) throws IOException {
+        if (parameters.getResponseCache() == null) {
+            return fetcher.fetch(null).getBody();
+        }
+        OpenedCache opened;
+        try {
+            // not opened by extract if called by a subclass directly: open it once and keep it
+            opened = responseCaches.computeIfAbsent(parameters.getResponseCache(),
+                    path -> new OpenedCache(openCache(parameters)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return opened.cache.fetch(type, requestKey, fetcher);
+    }
+
+    /**
+     * Open the {@link ResponseCache} configured by some extraction parameters for a new
+     * extraction, so that its requests don't need to parse its settings and open it again. The
+     * cache is opened only if no running extraction is already using it.
+     *
+     * @param parameters The {@link ExtractionParameters} of the extraction.
+     *
+     * @throws SocialException if the cache settings are invalid or the cache can't be opened.
+     */
+    private void openResponseCache(ExtractionParameters parameters) throws SocialException {
+        try {
+            responseCaches.compute(parameters.getResponseCache(), (path, opened) -> {
+                if (opened == null) {
+                    opened = new OpenedCache(openCache(parameters));
+                }
+                opened.extractions++;
+                return opened;
+            });
+        } catch (UncheckedIOException | IllegalArgumentException e) {
+            String message = (e instanceof UncheckedIOException) ?
+                    e.getCause().getMessage() : e.getMessage();
+            throw new SocialException("Cannot open the response cache " +
+                    parameters.getResponseCache() + ": " + message);
+        }
+    }
+
+    /**
+     * Release the {@link ResponseCache} of an extraction that terminated, closing it and
+     * removing it from the opened ones when no other running extraction is using it.
+     *
+     * @param parameters The {@link ExtractionParameters} of the extraction.
+     */
+    private void releaseResponseCache(ExtractionParameters parameters) {
+        List<ResponseCache> unused = new ArrayList<>(1);
+        responseCaches.computeIfPresent(parameters.getResponseCache(), (path, opened) -> {
+            if (--opened.extractions > 0) {
+                return opened;
+            }
+            unused.add(opened.cache);
+            return null;
+        });
+        for (ResponseCache cache : unused) {
+            try {
+                cache.release();
+            } catch (IOException e) {
+                logger.warn("Cannot close the response cache.", e);
+            }
+        }
+    }
+
+    /**
+     * Open the {@link ResponseCache} configured by some extraction parameters.
+     *
+     * @param parameters The {@link ExtractionParameters} of the extraction.
+     *
+     * @return The opened {@link ResponseCache}.
+     * @throws UncheckedIOException     if the cache can't be opened.
+     * @throws IllegalArgumentException if the cache settings are invalid.
+     */
+    private static ResponseCache openCache(ExtractionParameters parameters) {
+        try {
+            return ResponseCache.open(new File(parameters.getResponseCache()),
+                    ResponseCache.DEFAULT_MAX_ENTRIES, parameters.getResponseCacheBytes(),
+                    parameters.getResponseCacheTtls());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The {@link PluginMetrics} of this plugin, see {@link SourceServices}.
+     */
+    protected PluginMetrics getMetrics() {
+        return SourceServices.get(getName()).getMetrics("getMessages");
+    }
+
     @Override
     protected Observable.Operator<Message, Void> getOperator(ExtractionParameters parameters) {
         return subscriber -> new SafeSubscriber<>(new Subscriber<Object>() {
             @Override public void onCompleted() {
                 parameters.setSource(getName());
-                getMessages(parameters).subscribe(subscriber);
+                Observable<Message> messages;
+                try {
+                    messages = extract(parameters);
+                } catch (SocialException e) {
+                    onError(e);
+                    return;
+                }
+                messages.compose(collapseNearDuplicates(parameters)).subscribe(subscriber);
             }
 
             @Override public void onError(Throwable e) {
@@ -1,24 +1,56 @@
 package com.github.frapontillo.pulse.crowd.social.extraction;
 
 import com.github.frapontillo.pulse.crowd.data.entity.Message;
-import com.github.frapontillo.pulse.rx.PulseSubscriber;
+import com.github.frapontillo.pulse.crowd.social.distinct.DedupKey;
+import com.github.frapontillo.pulse.crowd.social.distinct.DistinctFilter;
+import com.github.frapontillo.pulse.crowd.social.distinct.MessageDeduplicator;
+import com.github.frapontillo.pulse.crowd.social.execution.ExecutionStrategy;
+import com.github.frapontillo.pulse.crowd.social.execution.SourceServices;
+import com.github.frapontillo.pulse.crowd.social.metrics.PluginMetrics;
+import com.github.frapontillo.pulse.crowd.social.ratelimit.RateLimiter;
 import com.github.frapontillo.pulse.spi.IPlugin;
-import com.github.frapontillo.pulse.spi.VoidConfig;
 import rx.Observable;
+import rx.functions.Func1;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Crowd Pulse plugin to fetch message replies.
+ * <p/>
+ * By default replies are fetched for one message at a time; set
+ * {@link ReplyParameters#setConcurrency(Integer)} to fetch replies for several messages at once.
+ * Every message is always emitted before its own replies, and the output keeps the input order
+ * unless {@link ReplyParameters#setOrdered(Boolean)} is set to false. Replies are fetched on the
+ * scheduler of the {@link #getExecutionStrategy()} of the source, even one message at a time, and
+ * the strategy caps the number of concurrent calls across all the plugins using it.
+ * <p/>
+ * With a {@link ReplyParameters#getDepth()} greater than 1 whole threads are expanded: the
+ * replies to the replies are fetched level by level, with
+ * {@link #getReplies(List, ExtractionParameters)} called on batches of sibling messages, and
+ * emitted as soon as each batch is fetched, so that only the current path of the thread is kept
+ * in memory. Messages already emitted by any thread are dropped, and at most
+ * {@link ReplyParameters#getFanOut()} replies are kept for each message.
+ * <p/>
+ * Otherwise, as every input message is emitted again before its replies, the same message can be
+ * emitted more than once when it is also the reply of another input message; setting
+ * {@link ReplyParameters#setDistinct(String)} removes such repeated messages.
  *
  * @author Francesco Pontillo
  */
-public abstract class IReplyExtractor extends IPlugin<Message, Message, VoidConfig> {
+public abstract class IReplyExtractor extends IPlugin<Message, Message, ReplyParameters> {
 
     /**
      * Retrieve the replies for the given {@link Message}.
      * The replies should not include the input message, as it will be automatically emitted before
      * the replies.
+     * <p/>
+     * When the plugin runs with a concurrency greater than 1, this method is called from multiple
+     * threads at the same time, so implementations must be thread-safe.
      *
      * @param message    The {@link Message} to fetch replies for.
      * @param parameters The parameters that will be needed to properly convert the replies.
@@ -27,33 +59,291 @@ public abstract class IReplyExtractor extends IPlugin<Message, Message, VoidConf
      */
     public abstract List<Message> getReplies(Message message, ExtractionParameters parameters);
 
-    @Override protected Observable.Operator<Message, Message> getOperator(VoidConfig parameters) {
-        return subscriber -> new PulseSubscriber<Message>(subscriber) {
-            @Override public void onNext(Message message) {
-                reportElementAsStarted(message.getId());
-                ExtractionParameters newParams = new ExtractionParameters();
-                newParams.setSource(getName());
-                newParams.setTags(message.getCustomTags());
-                List<Message> replies = getReplies(message, newParams);
-                reportElementAsEnded(message.getId());
-                subscriber.onNext(message);
-                replies.forEach(subscriber::onNext);
+    /**
+     * Retrieve the replies for each of the given {@link Message}s, used when expanding threads.
+     * <p/>
+     * The default implementation calls {@link #getReplies(Message, ExtractionParameters)} once
+     * per message with the given parameters; implementations should override it if the source
+     * allows fetching the replies of multiple messages with fewer requests.
+     * When the plugin runs with a concurrency greater than 1, this method is called from multiple
+     * threads at the same time, so implementations must be thread-safe.
+     *
+     * @param messages   The {@link Message}s to fetch replies for, all with the same custom
+     *                   tags.
+     * @param parameters The parameters to convert the replies with, carrying the source of the
+     *                   plugin and the custom tags of the messages.
+     *
+     * @return A {@link Map} from the original identifier of each input message to the
+     * {@link List} of its replies.
+     */
+    public Map<String, List<Message>> getReplies(List<Message> messages,
+            ExtractionParameters parameters) {
+        Map<String, List<Message>> replies = new HashMap<>(messages.size() * 2);
+        for (Message message : messages) {
+            replies.put(message.getoId(), getReplies(message, parameters));
+        }
+        return replies;
+    }
+
+    /**
+     * @return The {@link RateLimiter} of the source of this plugin, see {@link SourceServices}.
+     */
+    protected RateLimiter getRateLimiter() {
+        return SourceServices.get(getName()).getRateLimiter();
+    }
+
+    /**
+     * @return The {@link ExecutionStrategy} of the source of this plugin, see
+     * {@link SourceServices}.
+     */
+    protected ExecutionStrategy getExecutionStrategy() {
+        return SourceServices.get(getName()).getExecutionStrategy();
+    }
+
+    /**
+     * @return The {@link PluginMetrics} of this plugin, see {@link SourceServices}.
+     */
+    protected PluginMetrics getMetrics() {
+        return SourceServices.get(getName()).getMetrics("getReplies");
+    }
+
+    @Override public Observable.Transformer<Message, Message> transform(ReplyParameters params) {
+        if (params != null && params.getDepth() > 1) {
+            return expandThreads(params);
+        }
+        Observable.Transformer<Message, Message> threads = fetchThreads(params);
+        if (params == null || !params.isDistinct()) {
+            return threads;
+        }
+        MessageDeduplicator deduplicator = new MessageDeduplicator(getName() + " replies",
+                DedupKey.ID, params.getDistinctFilterFactory(), null);
+        return messages -> messages.compose(threads).compose(deduplicator.deduplicate());
+    }
+
+    /**
+     * Fetch the direct replies of every input message, emitting each message followed by its
+     * replies.
+     *
+     * @param params The {@link ReplyParameters} the plugin was started with, may be null.
+     *
+     * @return A {@link Observable.Transformer} emitting every message followed by its replies.
+     */
+    private Observable.Transformer<Message, Message> fetchThreads(ReplyParameters params) {
+        int concurrency = (params != null) ? params.getConcurrency() : 1;
+        return messageObservable -> {
+            Observable<Message> threads;
+            if (concurrency <= 1) {
+                threads = messageObservable.concatMap(this::fetchThread);
+            } else if (params.isOrdered()) {
+                threads = messageObservable
+                        .concatMapEager(this::fetchThread, concurrency, concurrency);
+            } else {
+                threads = messageObservable.flatMap(this::fetchThread, concurrency);
             }
+            return threads.doOnCompleted(this::reportPluginAsCompleted)
+                    .doOnError(err -> reportPluginAsErrored());
+        };
+    }
 
-            @Override public void onCompleted() {
-                reportPluginAsCompleted();
-                super.onCompleted();
+    /**
+     * Expand the whole thread of every input message, up to the configured depth.
+     *
+     * @param params The {@link ReplyParameters} the plugin was started with.
+     *
+     * @return A {@link Observable.Transformer} emitting every message followed by its thread.
+     */
+    private Observable.Transformer<Message, Message> expandThreads(ReplyParameters params) {
+        int concurrency = params.getConcurrency();
+        return messageObservable -> Observable.defer(() -> {
+            // messages already emitted by any thread of this expansion
+            DistinctFilter emitted = params.getDistinctFilterFactory().call();
+            Func1<Message, Observable<Message>> expand =
+                    message -> expandThread(message, params, emitted);
+            Observable<Message> threads;
+            if (concurrency <= 1) {
+                threads = messageObservable.concatMap(expand);
+            } else if (params.isOrdered()) {
+                threads = messageObservable.concatMapEager(expand, concurrency, concurrency);
+            } else {
+                threads = messageObservable.flatMap(expand, concurrency);
             }
+            return threads.doOnCompleted(this::reportPluginAsCompleted)
+                    .doOnError(err -> reportPluginAsErrored());
+        });
+    }
 
-            @Override public void onError(Throwable e) {
-                reportPluginAsErrored();
-                super.onError(e);
+    /**
+     * Lazily expand the thread of a message, emitting the message first and then its replies,
+     * depth-first by batch.
+     *
+     * @param message The root {@link Message} of the thread.
+     * @param params  The {@link ReplyParameters} the plugin was started with.
+     * @param emitted The {@link DistinctFilter} of the messages emitted during this expansion.
+     *
+     * @return An {@link Observable} with the message followed by its thread.
+     */
+    private Observable<Message> expandThread(Message message, ReplyParameters params,
+            DistinctFilter emitted) {
+        boolean isNew;
+        synchronized (emitted) {
+            isNew = emitted.add(MessageDeduplicator.getIdHash(message));
+        }
+        if (!isNew) {
+            return Observable.empty();
+        }
+        return Observable.just(message).concatWith(
+                expandLevel(Collections.singletonList(message), 1, params, emitted));
+    }
+
+    /**
+     * Fetch the replies of some messages of the same thread level in batches, each batch
+     * followed by the expansion of its own replies.
+     */
+    private Observable<Message> expandLevel(List<Message> parents, int depth,
+            ReplyParameters params, DistinctFilter emitted) {
+        return Observable.from(parents).buffer(params.getBatchSize())
+                .concatMap(batch -> fetchLevel(batch, params, emitted).concatMap(replies -> {
+                    Observable<Message> level = Observable.from(replies);
+                    if (depth < params.getDepth() && replies.size() > 0) {
+                        level = level.concatWith(
+                                expandLevel(replies, depth + 1, params, emitted));
+                    }
+                    return level;
+                }));
+    }
+
+    /**
+     * Lazily fetch the new replies of a batch of sibling messages on the scheduler of the
+     * {@link ExecutionStrategy}.
+     */
+    private Observable<List<Message>> fetchLevel(List<Message> batch, ReplyParameters params,
+            DistinctFilter emitted) {
+        return Observable.defer(() -> Observable.just(getLevel(batch, params, emitted)))
+                .compose(getRateLimiter().limit(1, getExecutionStrategy().getScheduler()))
+                .subscribeOn(getExecutionStrategy().getScheduler());
+    }
+
+    /**
+     * Synchronously fetch the replies of a batch of sibling messages, keeping only the ones not
+     * emitted yet, up to the configured fan-out for each message.
+     */
+    private List<Message> getLevel(List<Message> batch, ReplyParameters params,
+            DistinctFilter emitted) {
+        batch.forEach(message -> reportElementAsStarted(message.getId()));
+        getMetrics().getBatchSizes().record(batch.size());
+        long start = getMetrics().start();
+        Map<String, List<Message>> replies;
+        try {
+            replies = getExecutionStrategy().execute(() -> fetchReplies(batch));
+        } finally {
+            getMetrics().stop(start);
+            batch.forEach(message -> reportElementAsEnded(message.getId()));
+        }
+        List<Message> level = new ArrayList<>();
+        int fanOut = params.getFanOut();
+        for (Message message : batch) {
+            List<Message> messageReplies = replies.get(message.getoId());
+            if (messageReplies == null) {
+                continue;
             }
-        };
+            int kept = 0;
+            for (Message reply : messageReplies) {
+                if (fanOut > 0 && kept >= fanOut) {
+                    break;
+                }
+                boolean isNew;
+                synchronized (emitted) {
+                    isNew = emitted.add(MessageDeduplicator.getIdHash(reply));
+                }
+                if (isNew) {
+                    level.add(reply);
+                    kept++;
+                }
+            }
+        }
+        getMetrics().getElements().add(level.size());
+        return level;
+    }
+
+    /**
+     * Synchronously fetch the replies of a batch of messages, calling
+     * {@link #getReplies(List, ExtractionParameters)} once for every group of messages with the
+     * same custom tags, so that replies are always converted with the tags of their message.
+     */
+    private Map<String, List<Message>> fetchReplies(List<Message> messages) {
+        Map<List<String>, List<Message>> groups = new LinkedHashMap<>();
+        for (Message message : messages) {
+            groups.computeIfAbsent(message.getCustomTags(), tags -> new ArrayList<>())
+                    .add(message);
+        }
+        if (groups.size() == 1) {
+            return getReplies(messages, buildParameters(messages.get(0)));
+        }
+        Map<String, List<Message>> replies = new HashMap<>(messages.size() * 2);
+        for (List<Message> group : groups.values()) {
+            replies.putAll(getReplies(group, buildParameters(group.get(0))));
+        }
+        return replies;
+    }
+
+    /**
+     * Build the parameters to convert the replies of a message with, or of a group of messages
+     * with its same custom tags, inheriting its tags.
+     */
+    private ExtractionParameters buildParameters(Message message) {
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setSource(getName());
+        parameters.setTags(message.getCustomTags());
+        return parameters;
+    }
+
+    /**
+     * Lazily fetch the replies of a message on the scheduler of the {@link ExecutionStrategy},
+     * emitting the message first and then all of its replies.
+     *
+     * @param message The {@link Message} to fetch replies for.
+     *
+     * @return An {@link Observable} with the message followed by its replies.
+     */
+    private Observable<Message> fetchThread(Message message) {
+        return Observable.defer(() -> Observable.from(getThread(message)))
+                .compose(getRateLimiter().limit(1, getExecutionStrategy().getScheduler()))
+                .subscribeOn(getExecutionStrategy().getScheduler());
+    }
+
+    /**
+     * Synchronously fetch the replies of a message, reporting its processing status.
+     *
+     * @param message The {@link Message} to fetch replies for.
+     *
+     * @return A {@link List<Message>} with the message followed by its replies.
+     */
+    private List<Message> getThread(Message message) {
+        reportElementAsStarted(message.getId());
+        ExtractionParameters newParams = buildParameters(message);
+        long start = getMetrics().start();
+        List<Message> replies;
+        try {
+            replies = getExecutionStrategy().execute(() -> getReplies(message, newParams));
+        } finally {
+            getMetrics().stop(start);
+            reportElementAsEnded(message.getId());
+        }
+        getMetrics().getElements().add(replies.size());
+        List<Message> thread = new ArrayList<>(replies.size() + 1);
+        thread.add(message);
+        thread.addAll(replies);
+        return thread;
+    }
+
+    @Override
+    protected Observable.Operator<Message, Message> getOperator(ReplyParameters parameters) {
+        // replies are fetched by transform on the execution strategy, no operator is needed
+        return null;
     }
 
-    @Override public VoidConfig getNewParameter() {
-        return new VoidConfig();
+    @Override public ReplyParameters getNewParameter() {
+        return new ReplyParameters();
     }
 
 }
@@ -1,12 +1,27 @@
 package com.github.frapontillo.pulse.crowd.social.extraction;
 
 import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.util.ChunkedConversion;
+import rx.Observable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
+ * Converts objects of a specific social network into {@link Message}s.
+ * <p/>
+ * Besides the list-based methods, {@link #stream(Iterator, ConversionContext)} and
+ * {@link #stream(Observable, ConversionContext)} convert elements lazily, one at a time, so that a
+ * large page is never duplicated into a full list of messages. All the messages of a stream share
+ * the same immutable list of custom tags, copied from the parameters when the stream is built.
+ * <p/>
+ * The other methods set the custom tags of the parameters as they are at every conversion, as
+ * they always did.
+ *
  * @author Francesco Pontillo
  */
 public abstract class MessageConverter<T> {
@@ -24,17 +39,24 @@ public abstract class MessageConverter<T> {
             HashMap<String, Object> additionalData);
 
     public Message fromExtractor(T original, HashMap<String, Object> additionalData) {
-        Message converted = fromSpecificExtractor(original, additionalData);
-        converted.setCustomTags(parameters.getTags());
-        converted.setSource(parameters.getSource());
-        return converted;
+        return decorate(fromSpecificExtractor(original, additionalData), parameters.getTags());
     }
 
     public Message fromExtractor(T original) {
-        Message converted = fromSpecificExtractor(original, null);
-        converted.setCustomTags(parameters.getTags());
-        converted.setSource(parameters.getSource());
-        return converted;
+        return decorate(fromSpecificExtractor(original, null), parameters.getTags());
+    }
+
+    /**
+     * Convert a single element using a reusable {@link ConversionContext}.
+     *
+     * @param original The element to convert.
+     * @param context  The additional data for the conversion, can be null.
+     *
+     * @return The converted {@link Message}.
+     */
+    public Message fromExtractor(T original, ConversionContext context) {
+        return decorate(fromSpecificExtractor(original,
+                (context == null) ? null : context.asMap()), parameters.getTags());
     }
 
     public List<Message> fromExtractor(List<T> originalList) {
@@ -54,4 +76,75 @@ public abstract class MessageConverter<T> {
             List<Message> addToList) {
         return addFromExtractor(originalList, addToList, null);
     }
+
+    /**
+     * Whether {@link #fromSpecificExtractor(Object, HashMap)} can be called from several threads
+     * at the same time. Converters that don't share mutable state (e.g. a non thread-safe parser)
+     * should override this to enable
+     * {@link #addFromExtractorParallel(List, List, HashMap, int)}.
+     *
+     * @return false by default.
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * Convert a list of elements in parallel, in chunks of {@code chunkSize} elements, on the
+     * common {@link ForkJoinPool}, keeping the order of the input. If the converter is not
+     * {@link #isThreadSafe() thread-safe}, the elements are converted sequentially.
+     *
+     * @param originalList   The elements to convert.
+     * @param addToList      The list to append the converted messages to.
+     * @param additionalData Additional data for the conversion, must not be modified.
+     * @param chunkSize      The maximum number of elements converted by a single task.
+     *
+     * @return The {@code addToList}.
+     */
+    public <L extends List> List<Message> addFromExtractorParallel(L originalList,
+            List<Message> addToList, HashMap<String, Object> additionalData, int chunkSize) {
+        if (!isThreadSafe()) {
+            return addFromExtractor(originalList, addToList, additionalData);
+        }
+        return ChunkedConversion.convert((List<?>) originalList, addToList,
+                original -> fromExtractor((T) original, additionalData), chunkSize,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Lazily convert the elements of an {@link Iterator}: each element is converted only when it
+     * is requested downstream. The returned {@link Observable} can only be subscribed once.
+     *
+     * @param originals The elements to convert.
+     * @param context   The additional data for the conversion, can be null.
+     *
+     * @return An {@link Observable} of converted {@link Message}s.
+     */
+    public Observable<Message> stream(Iterator<? extends T> originals, ConversionContext context) {
+        Iterable<T> iterable = () -> (Iterator<T>) originals;
+        return stream(Observable.from(iterable), context);
+    }
+
+    /**
+     * Convert the elements emitted by an {@link Observable} as they arrive.
+     *
+     * @param originals The elements to convert.
+     * @param context   The additional data for the conversion, can be null.
+     *
+     * @return An {@link Observable} of converted {@link Message}s.
+     */
+    public Observable<Message> stream(Observable<? extends T> originals,
+            ConversionContext context) {
+        List<String> parameterTags = parameters.getTags();
+        List<String> tags = (parameterTags == null) ? null :
+                Collections.unmodifiableList(new ArrayList<>(parameterTags));
+        return originals.map(original -> decorate(fromSpecificExtractor((T) original,
+                (context == null) ? null : context.asMap()), tags));
+    }
+
+    private Message decorate(Message converted, List<String> tags) {
+        converted.setCustomTags(tags);
+        converted.setSource(parameters.getSource());
+        return converted;
+    }
 }
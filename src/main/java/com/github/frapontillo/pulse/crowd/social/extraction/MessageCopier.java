@@ -0,0 +1,50 @@
+package com.github.frapontillo.pulse.crowd.social.extraction;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A {@link MessageConverter} of already converted {@link Message}s, creating a copy of every
+ * message with the tags and the source of its own {@link ExtractionParameters}, so that the same
+ * message can be delivered to several extractions without sharing any state.
+ * <p/>
+ * Fields are copied one by one, with new lists and dates, so new fields of {@link Message} must
+ * be copied here too.
+ *
+ * @author Francesco Pontillo
+ */
+public class MessageCopier extends MessageConverter<Message> {
+
+    public MessageCopier(ExtractionParameters parameters) {
+        super(parameters);
+    }
+
+    @Override protected Message fromSpecificExtractor(Message original,
+            HashMap<String, Object> additionalData) {
+        Message copy = new Message();
+        copy.setoId(original.getoId());
+        copy.setText(original.getText());
+        copy.setSource(original.getSource());
+        copy.setFromUser(original.getFromUser());
+        copy.setToUsers(copyList(original.getToUsers()));
+        copy.setRefUsers(copyList(original.getRefUsers()));
+        copy.setCustomTags(copyList(original.getCustomTags()));
+        copy.setDate((original.getDate() != null) ? new Date(original.getDate().getTime()) : null);
+        copy.setLanguage(original.getLanguage());
+        copy.setLatitude(original.getLatitude());
+        copy.setLongitude(original.getLongitude());
+        return copy;
+    }
+
+    @Override public boolean isThreadSafe() {
+        return true;
+    }
+
+    private static List<String> copyList(List<String> list) {
+        return (list != null) ? new ArrayList<>(list) : null;
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.frapontillo.pulse.crowd.social.extraction;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of messages fetched by a {@link PaginatedExtractor}, with the cursor of the next one.
+ *
+ * @author Francesco Pontillo
+ */
+public class Page {
+    private final List<Message> messages;
+    private final String nextCursor;
+
+    /**
+     * Create a new page.
+     *
+     * @param messages   The {@link List} of messages in the page, may be null if empty.
+     * @param nextCursor The cursor of the next page, or null if this is the last one.
+     */
+    public Page(List<Message> messages, String nextCursor) {
+        this.messages = (messages != null) ? messages : Collections.emptyList();
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Create the last page of an extraction.
+     *
+     * @param messages The {@link List} of messages in the page, may be null if empty.
+     *
+     * @return A new {@link Page} without a next cursor.
+     */
+    public static Page last(List<Message> messages) {
+        return new Page(messages, null);
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean isLast() {
+        return nextCursor == null;
+    }
+}
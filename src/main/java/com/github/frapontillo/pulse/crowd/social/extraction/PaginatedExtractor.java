@@ -0,0 +1,239 @@
+package com.github.frapontillo.pulse.crowd.social.extraction;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.exception.RateLimitedException;
+import com.github.frapontillo.pulse.crowd.social.exception.SocialException;
+import com.github.frapontillo.pulse.crowd.social.metrics.Metrics;
+import com.github.frapontillo.pulse.crowd.social.metrics.Timer;
+import com.github.frapontillo.pulse.crowd.social.ratelimit.RateLimiter;
+import rx.Observable;
+import rx.Producer;
+import rx.Scheduler;
+import rx.Subscriber;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link IExtractor} for sources returning messages in pages linked by a cursor.
+ * Implementations only fetch a single page in {@link #fetchPage(ExtractionParameters, String)},
+ * while the returned {@link Observable} drives the pagination from the downstream demand.
+ * <p/>
+ * Pages are fetched one at a time, on a worker of {@link #getExecutionStrategy()} and within its
+ * concurrency limit, as soon as a subscriber requests messages, and up to
+ * {@link ExtractionParameters#getPrefetch()} pages are kept ahead of it: memory stays bounded no
+ * matter how slow the subscriber is, and the source is not queried at all once it stops
+ * requesting. Every page acquires a permit from {@link #getRateLimiter()}, and is retried up
+ * to {@link RateLimiter#DEFAULT_RETRIES} times after a {@link RateLimitedException}, so the
+ * extraction as a whole is not limited again by {@link #limitMessages()}. The cursor of the next
+ * page is reported to {@link #reportCursor(ExtractionParameters, String)} once all the messages
+ * of a page have been emitted, so checkpointed extractions resume from the first page not
+ * delivered.
+ *
+ * @author Francesco Pontillo
+ */
+public abstract class PaginatedExtractor extends IExtractor {
+    private volatile Timer pageTimer;
+
+    /**
+     * Fetch a single page of messages. This is a blocking call, always made from a single
+     * thread at a time for the same extraction.
+     *
+     * @param parameters The {@link ExtractionParameters} of the extraction.
+     * @param cursor     The cursor of the page, or null for the first one.
+     *
+     * @return The fetched {@link Page}, null if there are no more messages.
+     *
+     * @throws SocialException If the page cannot be fetched.
+     */
+    protected abstract Page fetchPage(ExtractionParameters parameters, String cursor)
+            throws SocialException;
+
+    /**
+     * Get the messages of an extraction, starting from {@link ExtractionParameters#getCursor()}
+     * if it is set.
+     *
+     * @param parameters The {@link ExtractionParameters} to build the query with.
+     *
+     * @return An {@link Observable} respecting the downstream backpressure.
+     */
+    @Override public Observable<Message> getMessages(ExtractionParameters parameters) {
+        return Observable.create(subscriber -> {
+            Scheduler.Worker worker = getExecutionStrategy().getScheduler().createWorker();
+            subscriber.add(worker);
+            subscriber.setProducer(new PageProducer(subscriber, parameters, worker));
+        });
+    }
+
+    @Override protected Observable.Transformer<Message, Message> limitMessages() {
+        // pages are limited and retried one by one
+        return messages -> messages;
+    }
+
+    private Timer getPageTimer() {
+        Timer timer = pageTimer;
+        if (timer == null) {
+            timer = Metrics.getRegistry().timer(getMetrics().getName("fetchPage"));
+            pageTimer = timer;
+        }
+        return timer;
+    }
+
+    /**
+     * Emits the messages of the pages as requested, fetching new pages while less than the
+     * prefetch limit are buffered. Emissions are serialized by a work-in-progress counter, so
+     * the fields only read and written by {@link #drain()} need no further synchronization.
+     */
+    private final class PageProducer implements Producer {
+        private final Subscriber<? super Message> child;
+        private final ExtractionParameters parameters;
+        private final Scheduler.Worker worker;
+        private final int prefetch;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicInteger buffered = new AtomicInteger();
+        private final Queue<Page> pages = new ConcurrentLinkedQueue<>();
+        private volatile boolean started;
+        private volatile boolean fetching;
+        private volatile boolean done;
+        private volatile Throwable error;
+        // only accessed by the fetches, which never overlap
+        private String cursor;
+        // only accessed by drain()
+        private int index;
+        private boolean terminated;
+
+        private PageProducer(Subscriber<? super Message> child, ExtractionParameters parameters,
+                Scheduler.Worker worker) {
+            this.child = child;
+            this.parameters = parameters;
+            this.worker = worker;
+            this.prefetch = parameters.getPrefetch();
+            this.cursor = parameters.getCursor();
+        }
+
+        @Override public void request(long n) {
+            if (n < 0) {
+                throw new IllegalArgumentException("n >= 0 required but it was " + n);
+            }
+            if (n == 0) {
+                return;
+            }
+            long current;
+            long next;
+            do {
+                current = requested.get();
+                next = current + n;
+                if (next < 0) {
+                    next = Long.MAX_VALUE;
+                }
+            } while (!requested.compareAndSet(current, next));
+            started = true;
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (terminated || child.isUnsubscribed()) {
+                    pages.clear();
+                    return;
+                }
+                Throwable e = error;
+                if (e != null) {
+                    terminated = true;
+                    pages.clear();
+                    child.onError(e);
+                    return;
+                }
+                long r = requested.get();
+                long emitted = 0;
+                Page page;
+                while ((page = pages.peek()) != null) {
+                    List<Message> messages = page.getMessages();
+                    if (index == messages.size()) {
+                        pages.poll();
+                        index = 0;
+                        buffered.decrementAndGet();
+                        if (!page.isLast()) {
+                            reportCursor(parameters, page.getNextCursor());
+                        }
+                        continue;
+                    }
+                    if (emitted == r) {
+                        break;
+                    }
+                    child.onNext(messages.get(index++));
+                    emitted++;
+                    if (child.isUnsubscribed()) {
+                        return;
+                    }
+                }
+                if (emitted > 0 && r != Long.MAX_VALUE) {
+                    requested.addAndGet(-emitted);
+                }
+                if (done && pages.isEmpty()) {
+                    terminated = true;
+                    child.onCompleted();
+                    return;
+                }
+                if (started && !done && !fetching && buffered.get() < prefetch) {
+                    fetching = true;
+                    schedule(0);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void schedule(int attempt) {
+            long delay = getRateLimiter().reserve(1);
+            worker.schedule(() -> fetch(attempt), delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void fetch(int attempt) {
+            if (child.isUnsubscribed()) {
+                return;
+            }
+            Page page;
+            long start = System.nanoTime();
+            try {
+                page = getExecutionStrategy().execute(() -> fetchPage(parameters, cursor));
+                getRateLimiter().onSuccess();
+            } catch (RateLimitedException e) {
+                if (attempt < RateLimiter.DEFAULT_RETRIES) {
+                    getRateLimiter().onRateLimited(e.getRetryAfter());
+                    schedule(attempt + 1);
+                } else {
+                    error = e;
+                    drain();
+                }
+                return;
+            } catch (Throwable e) {
+                error = e;
+                drain();
+                return;
+            } finally {
+                getPageTimer().recordSince(start);
+            }
+            if (page == null) {
+                page = Page.last(null);
+            }
+            pages.offer(page);
+            buffered.incrementAndGet();
+            if (page.isLast()) {
+                done = true;
+            } else {
+                cursor = page.getNextCursor();
+            }
+            fetching = false;
+            drain();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.github.frapontillo.pulse.crowd.social.extraction;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.github.frapontillo.pulse.crowd.social.distinct.Distinct;
+import com.github.frapontillo.pulse.crowd.social.distinct.DistinctFilter;
+import com.github.frapontillo.pulse.crowd.social.distinct.DistinctMode;
+import com.github.frapontillo.pulse.spi.IPluginConfig;
+import com.github.frapontillo.pulse.spi.PluginConfigHelper;
+import com.google.gson.JsonElement;
+import rx.functions.Func0;
+
+/**
+ * Configuration for {@link IReplyExtractor} plugins.
+ *
+ * @author Francesco Pontillo
+ */
+@Parameters(separators = "=") public class ReplyParameters
+        implements IPluginConfig<ReplyParameters> {
+    public static final int DEFAULT_BATCH_SIZE = 20;
+
+    @Parameter(names = "-concurrency",
+            description = "Maximum number of reply fetches running at the same time")
+    private Integer concurrency;
+
+    @Parameter(names = "-ordered", description = "Emit replies in the same order as the input",
+            arity = 1) private Boolean ordered;
+
+    @Parameter(names = "-depth",
+            description = "Maximum depth of the replies fetched from the input messages")
+    private Integer depth;
+
+    @Parameter(names = "-fanOut", description = "Maximum number of replies kept per message")
+    private Integer fanOut;
+
+    @Parameter(names = "-batchSize",
+            description = "Maximum number of sibling messages whose replies are fetched at once")
+    private Integer batchSize;
+
+    @Parameter(names = "-distinct",
+            description = "Strategy to remove repeated replies: exact, approximate or windowed")
+    private String distinct;
+
+    /**
+     * Get the maximum number of in-flight reply fetches.
+     *
+     * @return The configured concurrency, or 1 if unspecified.
+     */
+    public int getConcurrency() {
+        return (concurrency == null || concurrency < 1) ? 1 : concurrency;
+    }
+
+    public void setConcurrency(Integer concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Check whether the output must keep the input order of the messages.
+     *
+     * @return true if the output is ordered (the default).
+     */
+    public boolean isOrdered() {
+        return ordered == null || ordered;
+    }
+
+    public void setOrdered(Boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    /**
+     * Get the maximum depth of the fetched replies: 1 only fetches the direct replies of the
+     * input messages, greater values also fetch the replies to the replies.
+     *
+     * @return The configured depth, or 1 if unspecified.
+     */
+    public int getDepth() {
+        return (depth == null || depth < 1) ? 1 : depth;
+    }
+
+    public void setDepth(Integer depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * Get the maximum number of replies kept for each message when expanding threads.
+     *
+     * @return The configured fan-out, or 0 if there is no limit.
+     */
+    public int getFanOut() {
+        return (fanOut == null || fanOut < 0) ? 0 : fanOut;
+    }
+
+    public void setFanOut(Integer fanOut) {
+        this.fanOut = fanOut;
+    }
+
+    /**
+     * Get the maximum number of messages of the same thread level whose replies are fetched with
+     * a single call to {@link IReplyExtractor#getReplies(java.util.List, ExtractionParameters)}.
+     *
+     * @return The configured batch size, or {@link #DEFAULT_BATCH_SIZE} if unspecified.
+     */
+    public int getBatchSize() {
+        return (batchSize == null || batchSize < 1) ? DEFAULT_BATCH_SIZE : batchSize;
+    }
+
+    public void setBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Check whether a distinct strategy was given, in which case repeated messages are removed
+     * even when whole threads aren't expanded.
+     *
+     * @return true if the distinct strategy was explicitly configured.
+     */
+    public boolean isDistinct() {
+        return distinct != null;
+    }
+
+    /**
+     * Get the strategy used to remove replies already emitted by other threads.
+     *
+     * @return The configured {@link DistinctMode}, or {@link DistinctMode#EXACT} if unspecified.
+     */
+    public DistinctMode getDistinctMode() {
+        return DistinctMode.fromString(distinct, DistinctMode.EXACT);
+    }
+
+    public void setDistinct(String distinct) {
+        this.distinct = distinct;
+    }
+
+    /**
+     * Build a factory of {@link DistinctFilter}s from the distinct settings of these parameters.
+     *
+     * @return A {@link Func0} creating a new {@link DistinctFilter} at every call.
+     */
+    public Func0<DistinctFilter> getDistinctFilterFactory() {
+        return Distinct.filterFactory(getDistinctMode(), null, null, null, null);
+    }
+
+    @Override public ReplyParameters buildFromJsonElement(JsonElement json) {
+        return PluginConfigHelper.buildFromJson(json, ReplyParameters.class);
+    }
+}
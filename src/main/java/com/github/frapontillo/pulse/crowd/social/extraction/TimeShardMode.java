@@ -0,0 +1,35 @@
+package com.github.frapontillo.pulse.crowd.social.extraction;
+
+/**
+ * The available strategies for splitting the [since, until] interval of an extraction into time
+ * windows.
+ *
+ * @author Francesco Pontillo
+ */
+public enum TimeShardMode {
+    /**
+     * Split the interval into windows of the same duration.
+     */
+    FIXED,
+    /**
+     * Size every window from the message density observed in the previous windows, so that
+     * windows hold a similar number of messages.
+     */
+    ADAPTIVE;
+
+    /**
+     * Parse a mode from its case-insensitive name.
+     *
+     * @param value        The name of the mode, may be null.
+     * @param defaultValue The mode to return if the value is null or empty.
+     *
+     * @return The parsed {@link TimeShardMode}.
+     * @throws IllegalArgumentException if the value isn't a valid mode name.
+     */
+    public static TimeShardMode fromString(String value, TimeShardMode defaultValue) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return TimeShardMode.valueOf(value.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.frapontillo.pulse.crowd.social.extraction;
+
+import java.util.Date;
+
+/**
+ * Splits the [since, until] interval of some {@link ExtractionParameters} into time windows,
+ * according to {@link ExtractionParameters#getShards()} and
+ * {@link ExtractionParameters#getShardMode()}.
+ * <p/>
+ * Windows are carved lazily, from since to until, every time {@link #poll()} is called.
+ * In {@link TimeShardMode#ADAPTIVE} mode the message counts reported through
+ * {@link #record(ExtractionParameters, long)} are used to size the following windows so that
+ * each one holds about {@link ExtractionParameters#getShardTarget()} messages.
+ * Consecutive windows share their boundary instant, so extractors with exclusive or coarse date
+ * bounds don't miss messages; the resulting duplicates must be removed by the caller.
+ * <p/>
+ * Parameters without both since and until, or with less than two shards, produce a single window
+ * holding the original parameters.
+ *
+ * @author Francesco Pontillo
+ */
+public class TimeShardPlanner implements ExtractionPlanner {
+    // windows are never shorter than a second, nor longer than this many initial windows
+    private static final long MIN_WINDOW = 1000;
+    private static final int MAX_GROWTH = 4;
+
+    private final ExtractionParameters parameters;
+    private final TimeShardMode mode;
+    private final long end;
+    private final long initialWindow;
+    private final long target;
+    private long nextStart;
+    private final boolean sharded;
+    private double density = -1;
+    private boolean single;
+
+    public TimeShardPlanner(ExtractionParameters parameters) {
+        this.parameters = parameters;
+        this.mode = parameters.getShardMode();
+        this.target = parameters.getShardTarget();
+        Date since = parameters.getSince();
+        Date until = parameters.getUntil();
+        if (since == null || until == null || parameters.getShards() <= 1 ||
+                !until.after(since)) {
+            this.single = true;
+            this.sharded = false;
+            this.end = 0;
+            this.initialWindow = 0;
+        } else {
+            this.sharded = true;
+            this.nextStart = since.getTime();
+            this.end = until.getTime();
+            long duration = end - nextStart;
+            this.initialWindow = Math.max(MIN_WINDOW,
+                    (duration + parameters.getShards() - 1) / parameters.getShards());
+        }
+    }
+
+    @Override public boolean isSplit() {
+        return sharded;
+    }
+
+    @Override public synchronized boolean isDone() {
+        return !single && nextStart >= end;
+    }
+
+    /**
+     * Carve the next time window.
+     *
+     * @return A copy of the parameters restricted to the next window, or null if the whole
+     * interval has been covered.
+     */
+    @Override public synchronized ExtractionParameters poll() {
+        if (single) {
+            single = false;
+            return parameters;
+        }
+        if (nextStart >= end) {
+            return null;
+        }
+        long window = initialWindow;
+        if (mode == TimeShardMode.ADAPTIVE && density >= 0) {
+            window = (density > 0) ? (long) (target / density) : window * MAX_GROWTH;
+            window = Math.max(MIN_WINDOW, Math.min(window, initialWindow * MAX_GROWTH));
+        }
+        long start = nextStart;
+        nextStart = (end - start <= window) ? end : start + window;
+        ExtractionParameters windowParameters = parameters.copy();
+        windowParameters.setSince(new Date(start));
+        windowParameters.setUntil(new Date(nextStart));
+        return windowParameters;
+    }
+
+    /**
+     * Report the number of messages extracted in a window, to size the following ones.
+     *
+     * @param window The parameters of the window, as returned by {@link #poll()}.
+     * @param count  The number of extracted messages.
+     */
+    @Override public synchronized void record(ExtractionParameters window, long count) {
+        if (window.getSince() == null || window.getUntil() == null) {
+            return;
+        }
+        long duration = Math.max(1, window.getUntil().getTime() - window.getSince().getTime());
+        // message density is usually correlated in time, so the latest window is the best guess
+        density = (double) count / duration;
+    }
+}
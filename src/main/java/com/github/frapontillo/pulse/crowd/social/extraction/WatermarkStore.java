@@ -0,0 +1,207 @@
+package com.github.frapontillo.pulse.crowd.social.extraction;
+
+import com.github.frapontillo.pulse.crowd.social.util.AtomicFiles;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The high-water mark of each extraction query, persisted to a JSON file so that the next run of
+ * the same query only extracts newer messages.
+ * <p/>
+ * Queries are identified by their source and normalized search criteria (see
+ * {@link #getQueryKey(ExtractionParameters)}), ignoring the time interval and the execution
+ * options.
+ * <p/>
+ * Many jobs can share the same file: saving a store merges its watermarks with the ones saved by
+ * the other jobs in the meantime, while holding a lock on the file.
+ *
+ * @author Francesco Pontillo
+ */
+public class WatermarkStore {
+    private static final Gson gson = new Gson();
+    private static final Type MAP_TYPE = new TypeToken<Map<String, Watermark>>() {
+    }.getType();
+
+    private final File file;
+    private final Map<String, Watermark> watermarks;
+
+    private WatermarkStore(File file, Map<String, Watermark> watermarks) {
+        this.file = file;
+        this.watermarks = watermarks;
+    }
+
+    /**
+     * The latest messages extracted by a query, all sent at the same instant.
+     */
+    public static class Watermark {
+        private long date;
+        private List<String> ids;
+
+        public Watermark(long date, Collection<String> ids) {
+            this.date = date;
+            this.ids = new ArrayList<>(ids);
+        }
+
+        /**
+         * @return The date of the latest messages, in milliseconds since the epoch.
+         */
+        public long getDate() {
+            return date;
+        }
+
+        /**
+         * @return The original identifier of the last of the latest messages.
+         */
+        public String getId() {
+            return (ids != null && !ids.isEmpty()) ? ids.get(ids.size() - 1) : null;
+        }
+
+        /**
+         * @return The original identifiers of all the latest messages, in extraction order.
+         */
+        public List<String> getIds() {
+            return (ids != null) ? Collections.unmodifiableList(ids) : Collections.emptyList();
+        }
+    }
+
+    /**
+     * Load a watermark store from a file, or create an empty one if the file doesn't exist.
+     *
+     * @param file The {@link File} the store is persisted to.
+     *
+     * @return The loaded {@link WatermarkStore}.
+     * @throws IOException if the file can't be read.
+     */
+    public static WatermarkStore load(File file) throws IOException {
+        return new WatermarkStore(file, read(file));
+    }
+
+    private static Map<String, Watermark> read(File file) throws IOException {
+        String json = AtomicFiles.read(file);
+        Map<String, Watermark> watermarks = null;
+        if (json != null) {
+            watermarks = gson.fromJson(json, MAP_TYPE);
+        }
+        return (watermarks != null) ? watermarks : new HashMap<>();
+    }
+
+    /**
+     * Get the key identifying a query: query terms and referenced users are compared regardless
+     * of their order and case.
+     *
+     * @param parameters The {@link ExtractionParameters} of the query.
+     *
+     * @return The key of the query.
+     */
+    public static String getQueryKey(ExtractionParameters parameters) {
+        StringBuilder key = new StringBuilder(String.valueOf(parameters.getSource()));
+        appendList(key, "query", parameters.getQuery());
+        append(key, "from", parameters.getFrom());
+        append(key, "to", parameters.getTo());
+        appendList(key, "ref", parameters.getReferences());
+        append(key, "language", parameters.getLanguage());
+        append(key, "locale", parameters.getLocale());
+        if (parameters.getGeoLocationBox() != null) {
+            append(key, "location", GeoDensityMap.getAreaKey(parameters.getGeoLocationBox()));
+        }
+        return key.toString();
+    }
+
+    private static void append(StringBuilder key, String name, String value) {
+        if (value != null) {
+            key.append('|').append(name).append('=').append(value.trim().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private static void appendList(StringBuilder key, String name, List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        List<String> normalized = new ArrayList<>(values.size());
+        for (String value : values) {
+            normalized.add(value.trim().toLowerCase(Locale.ROOT));
+        }
+        Collections.sort(normalized);
+        append(key, name, String.join(",", normalized));
+    }
+
+    /**
+     * Get the watermark of a query.
+     *
+     * @param key The key of the query.
+     *
+     * @return The {@link Watermark}, or null if the query was never extracted.
+     */
+    public synchronized Watermark get(String key) {
+        return watermarks.get(key);
+    }
+
+    /**
+     * Move the watermark of a query forward. Watermarks never move back, so older messages
+     * don't affect it, and the identifiers of messages sent at the same instant as the current
+     * watermark are added to it.
+     *
+     * @param key       The key of the query.
+     * @param watermark The new {@link Watermark}.
+     */
+    public synchronized void update(String key, Watermark watermark) {
+        merge(watermarks, key, watermark);
+    }
+
+    private static void merge(Map<String, Watermark> watermarks, String key,
+            Watermark watermark) {
+        Watermark current = watermarks.get(key);
+        if (current == null || watermark.getDate() > current.getDate()) {
+            watermarks.put(key, watermark);
+        } else if (watermark.getDate() == current.getDate()) {
+            Set<String> ids = new LinkedHashSet<>(current.getIds());
+            ids.addAll(watermark.getIds());
+            watermarks.put(key, new Watermark(current.getDate(), ids));
+        }
+    }
+
+    /**
+     * Persist the store to its file, merged with the watermarks saved to the same file by other
+     * stores since this one was loaded. The merged watermarks are also kept by this store.
+     *
+     * @throws IOException if the file can't be read or written.
+     */
+    public void save() throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory " + parent + ".");
+        }
+        // file locks are held by the whole process, so stores of this process take turns first
+        synchronized (WatermarkStore.class) {
+            try (FileChannel channel = FileChannel.open(new File(file.getPath() + ".lock")
+                    .toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                Map<String, Watermark> saved = read(file);
+                synchronized (this) {
+                    for (Map.Entry<String, Watermark> entry : watermarks.entrySet()) {
+                        merge(saved, entry.getKey(), entry.getValue());
+                    }
+                    AtomicFiles.write(file, gson.toJson(saved, MAP_TYPE));
+                    watermarks.clear();
+                    watermarks.putAll(saved);
+                }
+            }
+        }
+    }
+}
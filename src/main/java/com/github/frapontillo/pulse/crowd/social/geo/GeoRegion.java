@@ -0,0 +1,103 @@
+package com.github.frapontillo.pulse.crowd.social.geo;
+
+import com.github.frapontillo.pulse.crowd.social.extraction.GeoLocationBox;
+
+/**
+ * A named geographic area, either a rectangle or a polygon, to be indexed by a
+ * {@link GeoRegionIndex}.
+ *
+ * @author Francesco Pontillo
+ */
+public class GeoRegion {
+    private final String tag;
+    private final double west;
+    private final double south;
+    private final double east;
+    private final double north;
+    private final double[] polygon;
+
+    private GeoRegion(String tag, double west, double south, double east, double north,
+            double[] polygon) {
+        this.tag = tag;
+        this.west = west;
+        this.south = south;
+        this.east = east;
+        this.north = north;
+        this.polygon = polygon;
+    }
+
+    /**
+     * Create a rectangular region.
+     *
+     * @param tag The tag of the region, added to the messages located in it.
+     * @param box The {@link GeoLocationBox} of the region, may cross the antimeridian.
+     *
+     * @return A new {@link GeoRegion}.
+     */
+    public static GeoRegion box(String tag, GeoLocationBox box) {
+        double[][] bounds = box.getBoundingBox();
+        return new GeoRegion(tag, bounds[0][0], bounds[0][1], bounds[1][0], bounds[1][1], null);
+    }
+
+    /**
+     * Create a polygonal region. Polygons crossing the antimeridian must use longitudes beyond
+     * 180 (or below -180) to stay contiguous, e.g. 175, 185 instead of 175, -175.
+     *
+     * @param tag      The tag of the region, added to the messages located in it.
+     * @param vertices The vertices of the polygon as {longitude, latitude} pairs, at least 3.
+     *
+     * @return A new {@link GeoRegion}.
+     * @throws IllegalArgumentException if the polygon has less than 3 vertices.
+     */
+    public static GeoRegion polygon(String tag, double[][] vertices) {
+        if (vertices.length < 3) {
+            throw new IllegalArgumentException("A polygon needs at least 3 vertices.");
+        }
+        double[] polygon = new double[vertices.length * 2];
+        double west = Double.POSITIVE_INFINITY;
+        double south = Double.POSITIVE_INFINITY;
+        double east = Double.NEGATIVE_INFINITY;
+        double north = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < vertices.length; i++) {
+            double longitude = vertices[i][0];
+            double latitude = vertices[i][1];
+            polygon[2 * i] = longitude;
+            polygon[2 * i + 1] = latitude;
+            west = Math.min(west, longitude);
+            east = Math.max(east, longitude);
+            south = Math.min(south, latitude);
+            north = Math.max(north, latitude);
+        }
+        return new GeoRegion(tag, west, south, east, north, polygon);
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public double getWest() {
+        return west;
+    }
+
+    public double getSouth() {
+        return south;
+    }
+
+    public double getEast() {
+        return east;
+    }
+
+    public double getNorth() {
+        return north;
+    }
+
+    /**
+     * Get the vertices of a polygonal region.
+     *
+     * @return The interleaved longitudes and latitudes of the vertices, or null if the region is
+     * a rectangle.
+     */
+    double[] getPolygon() {
+        return polygon;
+    }
+}
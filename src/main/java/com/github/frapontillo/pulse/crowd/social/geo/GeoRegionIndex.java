@@ -0,0 +1,304 @@
+package com.github.frapontillo.pulse.crowd.social.geo;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.extraction.GeoLocationBox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable spatial index of many {@link GeoRegion}s, finding all the regions containing a
+ * point with a single lookup instead of checking every region.
+ * <p/>
+ * Regions are assigned to the cells of a uniform longitude/latitude grid, whose resolution is
+ * chosen from the typical size of the regions, stored in compressed sparse row form: looking up
+ * a point only checks the few regions overlapping its cell. Regions, polygon vertices and cells
+ * are all kept in primitive arrays, so lookups don't allocate and the index stays compact even
+ * with tens of thousands of regions. Instances are thread-safe.
+ *
+ * @author Francesco Pontillo
+ */
+public class GeoRegionIndex {
+    private static final int MAX_LEVEL = 10;
+    private static final long MAX_CELL_ENTRIES = 1 << 24;
+
+    private final String[] tags;
+    private final double[] west;
+    private final double[] south;
+    private final double[] east;
+    private final double[] north;
+    private final int[] polygonStart;
+    private final double[] vertices;
+    private final int columns;
+    private final int rows;
+    private final double cellSize;
+    private final int[] cellStart;
+    private final int[] cellRegions;
+
+    /**
+     * Build the index of some regions.
+     *
+     * @param regions The {@link GeoRegion}s to index.
+     */
+    public GeoRegionIndex(List<GeoRegion> regions) {
+        int size = regions.size();
+        tags = new String[size];
+        west = new double[size];
+        south = new double[size];
+        east = new double[size];
+        north = new double[size];
+        polygonStart = new int[size + 1];
+        int vertexCount = 0;
+        for (GeoRegion region : regions) {
+            if (region.getPolygon() != null) {
+                vertexCount += region.getPolygon().length;
+            }
+        }
+        vertices = new double[vertexCount];
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            GeoRegion region = regions.get(i);
+            tags[i] = region.getTag();
+            west[i] = region.getWest();
+            south[i] = region.getSouth();
+            east[i] = region.getEast();
+            north[i] = region.getNorth();
+            polygonStart[i] = offset;
+            if (region.getPolygon() != null) {
+                double[] polygon = region.getPolygon();
+                System.arraycopy(polygon, 0, vertices, offset, polygon.length);
+                offset += polygon.length;
+            }
+        }
+        polygonStart[size] = offset;
+
+        int level = chooseLevel();
+        while (level > 1 && countCellEntries(level) > MAX_CELL_ENTRIES) {
+            level--;
+        }
+        columns = 1 << level;
+        rows = 1 << (level - 1);
+        cellSize = 360.0 / columns;
+        cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < size; i++) {
+            forEachCell(i, cell -> cellStart[cell + 1]++);
+        }
+        for (int cell = 0; cell < columns * rows; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        cellRegions = new int[cellStart[columns * rows]];
+        int[] next = Arrays.copyOf(cellStart, columns * rows);
+        for (int i = 0; i < size; i++) {
+            int region = i;
+            forEachCell(i, cell -> cellRegions[next[cell]++] = region);
+        }
+    }
+
+    public int size() {
+        return tags.length;
+    }
+
+    /**
+     * Get the tag of a region.
+     *
+     * @param region The position of the region in the list the index was built from.
+     *
+     * @return The tag of the region.
+     */
+    public String getTag(int region) {
+        return tags[region];
+    }
+
+    /**
+     * Find all the regions containing a point, in the order of the list the index was built
+     * from.
+     *
+     * @param longitude The longitude of the point.
+     * @param latitude  The latitude of the point.
+     * @param consumer  The {@link IntConsumer} receiving the position of each matching region.
+     */
+    public void forEachMatch(double longitude, double latitude, IntConsumer consumer) {
+        if (!(latitude >= -90 && latitude <= 90) || Double.isNaN(longitude)) {
+            return;
+        }
+        int cell = getCell(GeoLocationBox.normalizeLongitude(longitude), latitude);
+        for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+            int region = cellRegions[i];
+            if (contains(region, longitude, latitude)) {
+                consumer.accept(region);
+            }
+        }
+    }
+
+    /**
+     * Get the tags of all the regions containing a point.
+     *
+     * @param longitude The longitude of the point, may be null.
+     * @param latitude  The latitude of the point, may be null.
+     *
+     * @return The {@link List} of matching tags, empty if the point has no coordinates.
+     */
+    public List<String> getTags(Double longitude, Double latitude) {
+        if (longitude == null || latitude == null) {
+            return Collections.emptyList();
+        }
+        List<String> matches = new ArrayList<>(2);
+        forEachMatch(longitude, latitude, region -> matches.add(tags[region]));
+        return matches;
+    }
+
+    /**
+     * Add the tags of all the regions containing a message to its custom tags, copying them so
+     * that lists shared among messages aren't modified.
+     *
+     * @param message The {@link Message} to tag.
+     *
+     * @return true if the message is located in at least one region.
+     */
+    public boolean tag(Message message) {
+        List<String> matches = getTags(message.getLongitude(), message.getLatitude());
+        if (matches.isEmpty()) {
+            return false;
+        }
+        List<String> customTags = message.getCustomTags();
+        List<String> tagged = new ArrayList<>(
+                ((customTags != null) ? customTags.size() : 0) + matches.size());
+        if (customTags != null) {
+            tagged.addAll(customTags);
+        }
+        for (String match : matches) {
+            if (!tagged.contains(match)) {
+                tagged.add(match);
+            }
+        }
+        message.setCustomTags(tagged);
+        return true;
+    }
+
+    private boolean contains(int region, double longitude, double latitude) {
+        if (latitude < south[region] || latitude > north[region] ||
+                !GeoLocationBox.containsLongitude(west[region], east[region], longitude)) {
+            return false;
+        }
+        int start = polygonStart[region];
+        int end = polygonStart[region + 1];
+        if (start == end) {
+            return true;
+        }
+        // polygons across the antimeridian use longitudes beyond 180, try the shifted point too
+        return containsInPolygon(start, end, longitude, latitude) ||
+                (east[region] > 180 &&
+                        containsInPolygon(start, end, longitude + 360, latitude)) ||
+                (west[region] < -180 &&
+                        containsInPolygon(start, end, longitude - 360, latitude));
+    }
+
+    /**
+     * Check whether a point lies in a polygon by counting the crossings of a ray from the point.
+     */
+    private boolean containsInPolygon(int start, int end, double longitude, double latitude) {
+        boolean inside = false;
+        for (int i = start, j = end - 2; i < end; j = i, i += 2) {
+            double lngI = vertices[i];
+            double latI = vertices[i + 1];
+            double lngJ = vertices[j];
+            double latJ = vertices[j + 1];
+            if ((latI > latitude) != (latJ > latitude) &&
+                    longitude < (lngJ - lngI) * (latitude - latI) / (latJ - latI) + lngI) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    private int getCell(double longitude, double latitude) {
+        return getRow(latitude, rows, cellSize) * columns + getColumn(longitude, columns, cellSize);
+    }
+
+    private static int getColumn(double longitude, int columns, double cellSize) {
+        int column = (int) ((longitude + 180) / cellSize);
+        return Math.max(0, Math.min(columns - 1, column));
+    }
+
+    private static int getRow(double latitude, int rows, double cellSize) {
+        int row = (int) ((latitude + 90) / cellSize);
+        return Math.max(0, Math.min(rows - 1, row));
+    }
+
+    /**
+     * Choose the grid level whose cells have about the median size of the regions.
+     */
+    private int chooseLevel() {
+        if (tags.length == 0) {
+            return 1;
+        }
+        double[] spans = new double[tags.length];
+        for (int i = 0; i < tags.length; i++) {
+            spans[i] = Math.max(getLongitudeSpan(i), north[i] - south[i]);
+        }
+        Arrays.sort(spans);
+        double median = Math.max(spans[spans.length / 2], 1e-9);
+        int level = (int) Math.floor(Math.log(360 / median) / Math.log(2));
+        return Math.max(1, Math.min(MAX_LEVEL, level));
+    }
+
+    private double getLongitudeSpan(int region) {
+        double span = east[region] - west[region];
+        if (span < 0) {
+            span += 360;
+        }
+        return Math.min(span, 360);
+    }
+
+    private long countCellEntries(int level) {
+        int levelColumns = 1 << level;
+        int levelRows = 1 << (level - 1);
+        double levelCellSize = 360.0 / levelColumns;
+        long total = 0;
+        for (int i = 0; i < tags.length; i++) {
+            long columnCount = Math.min(levelColumns,
+                    (long) Math.ceil(getLongitudeSpan(i) / levelCellSize) + 1);
+            long rowCount = getRow(north[i], levelRows, levelCellSize) -
+                    getRow(south[i], levelRows, levelCellSize) + 1;
+            total += columnCount * Math.max(rowCount, 0);
+        }
+        return total;
+    }
+
+    /**
+     * Call a consumer with every cell overlapped by the bounds of a region.
+     */
+    private void forEachCell(int region, IntConsumer consumer) {
+        int rowStart = getRow(Math.max(south[region], -90), rows, cellSize);
+        int rowEnd = getRow(Math.min(north[region], 90), rows, cellSize);
+        int columnStart;
+        int columnEnd;
+        if (getLongitudeSpan(region) >= 360 - cellSize) {
+            columnStart = 0;
+            columnEnd = columns - 1;
+        } else {
+            columnStart = getColumn(GeoLocationBox.normalizeLongitude(west[region]), columns,
+                    cellSize);
+            columnEnd = getColumn(GeoLocationBox.normalizeLongitude(east[region]), columns,
+                    cellSize);
+        }
+        for (int row = rowStart; row <= rowEnd; row++) {
+            if (columnStart <= columnEnd) {
+                for (int column = columnStart; column <= columnEnd; column++) {
+                    consumer.accept(row * columns + column);
+                }
+            } else {
+                // the region crosses the antimeridian
+                for (int column = columnStart; column < columns; column++) {
+                    consumer.accept(row * columns + column);
+                }
+                for (int column = 0; column <= columnEnd; column++) {
+                    consumer.accept(row * columns + column);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.frapontillo.pulse.crowd.social.metrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Appends the metrics to a CSV file with a {@code timestamp,metric,value} row per value, so that
+ * metrics created while running don't change the file layout.
+ *
+ * @author Francesco Pontillo
+ */
+public class CsvReporter extends ScheduledReporter {
+    private static final String HEADER = "timestamp,metric,value\n";
+
+    private final File file;
+
+    public CsvReporter(MetricRegistry registry, File file) {
+        super(registry);
+        this.file = file;
+    }
+
+    @Override protected void report(long timestamp, SortedMap<String, Double> values)
+            throws IOException {
+        boolean isNew = !file.exists() || file.length() == 0;
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true),
+                StandardCharsets.UTF_8)) {
+            if (isNew) {
+                writer.write(HEADER);
+            }
+            for (Map.Entry<String, Double> entry : values.entrySet()) {
+                writer.write(String.format(Locale.ROOT, "%d,%s,%s\n", timestamp, entry.getKey(),
+                        entry.getValue()));
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.frapontillo.pulse.crowd.social.metrics;
+
+/**
+ * A metric whose value is read on demand, e.g. the size of a queue.
+ *
+ * @author Francesco Pontillo
+ */
+@FunctionalInterface public interface Gauge extends Metric {
+    Number getValue();
+}
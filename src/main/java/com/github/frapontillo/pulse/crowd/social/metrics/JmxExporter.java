@@ -0,0 +1,93 @@
+package com.github.frapontillo.pulse.crowd.social.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Exposes the values of a {@link MetricRegistry} (see {@link MetricValues}) as the read-only
+ * attributes of a single MBean, computed when they are read, so that metrics created while
+ * running show up without registering them one by one.
+ *
+ * @author Francesco Pontillo
+ */
+public class JmxExporter implements DynamicMBean {
+    public static final String OBJECT_NAME =
+            "com.github.frapontillo.pulse.crowd.social:type=Metrics";
+
+    private final MetricRegistry registry;
+
+    public JmxExporter(MetricRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Register the exporter in the platform {@link MBeanServer}, replacing any previous one.
+     *
+     * @throws JMException if the MBean can't be registered.
+     */
+    public void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+    }
+
+    @Override public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Double value = MetricValues.flatten(registry).get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override public AttributeList getAttributes(String[] attributes) {
+        SortedMap<String, Double> values = MetricValues.flatten(registry);
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            Double value = values.get(attribute);
+            if (value != null) {
+                list.add(new Attribute(attribute, value));
+            }
+        }
+        return list;
+    }
+
+    @Override public MBeanInfo getMBeanInfo() {
+        SortedMap<String, Double> values = MetricValues.flatten(registry);
+        List<MBeanAttributeInfo> attributes = new ArrayList<>(values.size());
+        for (Map.Entry<String, Double> entry : values.entrySet()) {
+            attributes.add(new MBeanAttributeInfo(entry.getKey(), Double.class.getName(),
+                    entry.getKey(), true, false, false));
+        }
+        return new MBeanInfo(getClass().getName(), "Crowd Pulse social plugin metrics",
+                attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, null, null);
+    }
+
+    @Override public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+    }
+
+    @Override public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override public Object invoke(String actionName, Object[] params, String[] signature)
+            throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.frapontillo.pulse.crowd.social.metrics;
+
+import com.github.frapontillo.pulse.util.PulseLogger;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Reports the metrics to the log, one line per value.
+ *
+ * @author Francesco Pontillo
+ */
+public class LogReporter extends ScheduledReporter {
+    private final Logger logger = PulseLogger.getLogger(LogReporter.class);
+
+    public LogReporter(MetricRegistry registry) {
+        super(registry);
+    }
+
+    @Override protected void report(long timestamp, SortedMap<String, Double> values) {
+        for (Map.Entry<String, Double> entry : values.entrySet()) {
+            logger.info("{} = {}", entry.getKey(), entry.getValue());
+        }
+    }
+}
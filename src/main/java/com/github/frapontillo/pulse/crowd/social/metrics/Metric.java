@@ -0,0 +1,9 @@
+package com.github.frapontillo.pulse.crowd.social.metrics;
+
+/**
+ * A metric that can be registered in a {@link MetricRegistry}.
+ *
+ * @author Francesco Pontillo
+ */
+public interface Metric {
+}
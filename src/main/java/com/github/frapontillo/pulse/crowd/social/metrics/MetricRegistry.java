@@ -0,0 +1,61 @@
+package com.github.frapontillo.pulse.crowd.social.metrics;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * A collection of named metrics. Metrics are created on first use and shared by everyone asking
+ * for the same name, which is usually prefixed by the name of the plugin (e.g.
+ * {@code twitter.getMessages}).
+ *
+ * @author Francesco Pontillo
+ */
+public class MetricRegistry {
+    private final ConcurrentSkipListMap<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+    public Counter counter(String name) {
+        return getOrCreate(name, Counter.class, Counter::new);
+    }
+
+    public Histogram histogram(String name) {
+        return getOrCreate(name, Histogram.class, Histogram::new);
+    }
+
+    public Timer timer(String name) {
+        return getOrCreate(name, Timer.class, Timer::new);
+    }
+
+    /**
+     * Register a gauge, replacing any previous metric with the same name.
+     *
+     * @param name  The name of the gauge.
+     * @param gauge The {@link Gauge}.
+     */
+    public void gauge(String name, Gauge gauge) {
+        metrics.put(name, gauge);
+    }
+
+    public void remove(String name) {
+        metrics.remove(name);
+    }
+
+    /**
+     * Get all the registered metrics.
+     *
+     * @return An unmodifiable view of the metrics, sorted by name.
+     */
+    public SortedMap<String, Metric> getMetrics() {
+        return Collections.unmodifiableSortedMap(metrics);
+    }
+
+    private <M extends Metric> M getOrCreate(String name, Class<M> type, Supplier<M> factory) {
+        Metric metric = metrics.computeIfAbsent(name, key -> factory.get());
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException(
+                    name + " is already registered as a " + metric.getClass().getSimpleName());
+        }
+        return type.cast(metric);
+    }
+}
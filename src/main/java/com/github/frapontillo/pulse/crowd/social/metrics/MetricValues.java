@@ -0,0 +1,84 @@
+package com.github.frapontillo.pulse.crowd.social.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Flattens the metrics of a {@link MetricRegistry} into numeric values, as used by the exporters:
+ * <ul>
+ * <li>counters and gauges as their value;</li>
+ * <li>histograms as {@code .count}, {@code .mean}, {@code .p50}, {@code .p95}, {@code .p99} and
+ * {@code .max};</li>
+ * <li>timers as histograms, in milliseconds.</li>
+ * </ul>
+ *
+ * @author Francesco Pontillo
+ */
+public class MetricValues {
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Get the current values of all the metrics.
+     *
+     * @param registry The {@link MetricRegistry}.
+     *
+     * @return The values by name, sorted by name.
+     */
+    public static SortedMap<String, Double> flatten(MetricRegistry registry) {
+        SortedMap<String, Double> values = new TreeMap<>();
+        for (Map.Entry<String, Metric> entry : registry.getMetrics().entrySet()) {
+            String name = entry.getKey();
+            Metric metric = entry.getValue();
+            if (metric instanceof Counter) {
+                values.put(name, (double) ((Counter) metric).getCount());
+            } else if (metric instanceof Gauge) {
+                Number value = getValue((Gauge) metric);
+                if (value != null) {
+                    values.put(name, value.doubleValue());
+                }
+            } else if (metric instanceof Histogram) {
+                putSnapshot(values, name, ((Histogram) metric).getSnapshot(), 1);
+            } else if (metric instanceof Timer) {
+                putSnapshot(values, name, ((Timer) metric).getSnapshot(), NANOS_PER_MILLI);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Get the number of events recorded by a metric, used to compute rates.
+     *
+     * @param metric The {@link Metric}.
+     *
+     * @return The count, or -1 if the metric doesn't count events.
+     */
+    public static long getCount(Metric metric) {
+        if (metric instanceof Counter) {
+            return ((Counter) metric).getCount();
+        } else if (metric instanceof Histogram) {
+            return ((Histogram) metric).getCount();
+        } else if (metric instanceof Timer) {
+            return ((Timer) metric).getCount();
+        }
+        return -1;
+    }
+
+    private static Number getValue(Gauge gauge) {
+        try {
+            return gauge.getValue();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static void putSnapshot(Map<String, Double> values, String name,
+            Histogram.Snapshot snapshot, double scale) {
+        values.put(name + ".count", (double) snapshot.getCount());
+        values.put(name + ".mean", snapshot.getMean() / scale);
+        values.put(name + ".p50", snapshot.getQuantile(0.5) / scale);
+        values.put(name + ".p95", snapshot.getQuantile(0.95) / scale);
+        values.put(name + ".p99", snapshot.getQuantile(0.99) / scale);
+        values.put(name + ".max", snapshot.getMax() / scale);
+    }
+}
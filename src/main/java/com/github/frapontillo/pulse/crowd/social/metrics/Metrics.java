@@ -0,0 +1,65 @@
+package com.github.frapontillo.pulse.crowd.social.metrics;
+
+import com.github.frapontillo.pulse.util.PulseLogger;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the {@link MetricRegistry} used by all the social plugins of this node.
+ * <p/>
+ * Exporters are started from system properties when the class is first used:
+ * <ul>
+ * <li>{@code pulse.metrics.jmx=true} registers a {@link JmxExporter};</li>
+ * <li>{@code pulse.metrics.csv=<file>} appends the metrics to a CSV file;</li>
+ * <li>{@code pulse.metrics.log=true} writes the metrics to the log;</li>
+ * <li>{@code pulse.metrics.period=<seconds>} sets the period of the CSV and log reports
+ * (60 seconds by default).</li>
+ * </ul>
+ *
+ * @author Francesco Pontillo
+ */
+public class Metrics {
+    public static final long DEFAULT_PERIOD = 60;
+
+    private static final Logger logger = PulseLogger.getLogger(Metrics.class);
+    private static volatile MetricRegistry registry = new MetricRegistry();
+
+    static {
+        startFromProperties();
+    }
+
+    public static MetricRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Replace the registry, e.g. to bridge the metrics to another system. Metrics already held
+     * by running plugins keep being updated in the previous registry.
+     *
+     * @param registry The new {@link MetricRegistry}.
+     */
+    public static void setRegistry(MetricRegistry registry) {
+        Metrics.registry = registry;
+    }
+
+    private static void startFromProperties() {
+        long period = Long.getLong("pulse.metrics.period", DEFAULT_PERIOD);
+        if (Boolean.getBoolean("pulse.metrics.jmx")) {
+            try {
+                new JmxExporter(registry).register();
+            } catch (JMException e) {
+                logger.warn("Cannot export the metrics to JMX.", e);
+            }
+        }
+        String csv = System.getProperty("pulse.metrics.csv");
+        if (csv != null) {
+            new CsvReporter(registry, new File(csv)).start(period, TimeUnit.SECONDS);
+        }
+        if (Boolean.getBoolean("pulse.metrics.log")) {
+            new LogReporter(registry).start(period, TimeUnit.SECONDS);
+        }
+    }
+}
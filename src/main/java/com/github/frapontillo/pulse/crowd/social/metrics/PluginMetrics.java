@@ -0,0 +1,141 @@
+package com.github.frapontillo.pulse.crowd.social.metrics;
+
+import rx.Observable;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The standard metrics of a plugin, named after the plugin and its main implementation call:
+ * <ul>
+ * <li>{@code <plugin>.<call>}: a {@link Timer} of the calls to the implementation;</li>
+ * <li>{@code <plugin>.<call>.inFlight}: the number of calls running;</li>
+ * <li>{@code <plugin>.elements}: a {@link Counter} of the produced elements;</li>
+ * <li>{@code <plugin>.batchSize}: a {@link Histogram} of the number of elements per call.</li>
+ * </ul>
+ *
+ * @author Francesco Pontillo
+ */
+public class PluginMetrics {
+    private final MetricRegistry registry;
+    private final String plugin;
+    private final Timer calls;
+    private final Counter elements;
+    private final Histogram batchSizes;
+    private final AtomicInteger inFlight;
+    private final ConcurrentMap<String, Set<Gauge>> summedGauges = new ConcurrentHashMap<>();
+
+    /**
+     * Create the metrics of a plugin in the current {@link Metrics#getRegistry()}.
+     *
+     * @param plugin The name of the plugin.
+     * @param call   The name of the implementation call, e.g. {@code getMessages}.
+     */
+    public PluginMetrics(String plugin, String call) {
+        this.registry = Metrics.getRegistry();
+        this.plugin = plugin;
+        this.calls = registry.timer(plugin + "." + call);
+        this.elements = registry.counter(plugin + ".elements");
+        this.batchSizes = registry.histogram(plugin + ".batchSize");
+        this.inFlight = new AtomicInteger();
+        registry.gauge(plugin + "." + call + ".inFlight", inFlight::get);
+    }
+
+    /**
+     * Get the name of a plugin-specific metric.
+     *
+     * @param name The name of the metric, relative to the plugin.
+     *
+     * @return The full name of the metric.
+     */
+    public String getName(String name) {
+        return plugin + "." + name;
+    }
+
+    /**
+     * Add the gauge of a pipeline to a plugin-specific gauge reporting the sum of the values of
+     * all the running pipelines of the plugin, e.g. the elements each of them is buffering.
+     * The plugin gauge is registered once, when its first pipeline is added.
+     *
+     * @param name  The name of the gauge, relative to the plugin.
+     * @param gauge The {@link Gauge} of the pipeline.
+     *
+     * @return A {@link Runnable} removing the pipeline from the gauge, to be called when it
+     * terminates.
+     */
+    public Runnable addToGauge(String name, Gauge gauge) {
+        Set<Gauge> gauges = summedGauges.computeIfAbsent(name, key -> {
+            Set<Gauge> pipelines = ConcurrentHashMap.newKeySet();
+            registry.gauge(getName(key), () -> {
+                long sum = 0;
+                for (Gauge pipeline : pipelines) {
+                    sum += pipeline.getValue().longValue();
+                }
+                return sum;
+            });
+            return pipelines;
+        });
+        gauges.add(gauge);
+        return () -> gauges.remove(gauge);
+    }
+
+    public Counter getElements() {
+        return elements;
+    }
+
+    public Histogram getBatchSizes() {
+        return batchSizes;
+    }
+
+    /**
+     * Start timing a blocking call.
+     *
+     * @return The start time, to be passed to {@link #stop(long)}.
+     */
+    public long start() {
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Stop timing a blocking call.
+     *
+     * @param start The start time returned by {@link #start()}.
+     */
+    public void stop(long start) {
+        calls.recordSince(start);
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Time an {@link Observable} call from its subscription to its termination or
+     * unsubscription, counting the emitted elements and recording their number as the batch
+     * size.
+     *
+     * @param <T> The type of the elements.
+     *
+     * @return A {@link rx.Observable.Transformer}.
+     */
+    public <T> Observable.Transformer<T, T> call() {
+        return observable -> Observable.defer(() -> {
+            long start = start();
+            AtomicBoolean stopped = new AtomicBoolean();
+            AtomicLong count = new AtomicLong();
+            Runnable stop = () -> {
+                if (stopped.compareAndSet(false, true)) {
+                    stop(start);
+                    batchSizes.record(count.get());
+                }
+            };
+            return observable.doOnNext(element -> {
+                count.incrementAndGet();
+                elements.increment();
+            })
+                    .doOnTerminate(stop::run).doOnUnsubscribe(stop::run);
+        });
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.frapontillo.pulse.crowd.social.metrics;
+
+import com.github.frapontillo.pulse.util.PulseLogger;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically exports the values of a {@link MetricRegistry} (see {@link MetricValues}),
+ * together with the per-second rate of every counter, histogram and timer since the previous
+ * report, as {@code .rate} values.
+ *
+ * @author Francesco Pontillo
+ */
+public abstract class ScheduledReporter implements Closeable {
+    private final Logger logger = PulseLogger.getLogger(ScheduledReporter.class);
+    private final MetricRegistry registry;
+    private final Map<String, Long> lastCounts;
+    private ScheduledExecutorService executor;
+    private long lastReport;
+
+    protected ScheduledReporter(MetricRegistry registry) {
+        this.registry = registry;
+        this.lastCounts = new HashMap<>();
+        this.lastReport = System.nanoTime();
+    }
+
+    /**
+     * Start reporting periodically on a daemon thread.
+     *
+     * @param period The time between two reports.
+     * @param unit   The {@link TimeUnit} of the period.
+     */
+    public synchronized void start(long period, TimeUnit unit) {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, getClass().getSimpleName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::reportSafely, period, period, unit);
+    }
+
+    /**
+     * Stop reporting, after a last report.
+     */
+    @Override public synchronized void close() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+            reportSafely();
+        }
+    }
+
+    private void reportSafely() {
+        try {
+            report();
+        } catch (Exception e) {
+            logger.warn("Cannot report the metrics.", e);
+        }
+    }
+
+    /**
+     * Report the current values of the metrics.
+     *
+     * @throws Exception if the values can't be exported.
+     */
+    public synchronized void report() throws Exception {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-9, (now - lastReport) / 1e9);
+        lastReport = now;
+        SortedMap<String, Double> values = MetricValues.flatten(registry);
+        for (Map.Entry<String, Metric> entry : registry.getMetrics().entrySet()) {
+            long count = MetricValues.getCount(entry.getValue());
+            if (count >= 0) {
+                Long last = lastCounts.put(entry.getKey(), count);
+                values.put(entry.getKey() + ".rate",
+                        (count - ((last != null) ? last : 0)) / seconds);
+            }
+        }
+        report(System.currentTimeMillis(), values);
+    }
+
+    /**
+     * Export some metric values.
+     *
+     * @param timestamp The time of the report, in milliseconds since the epoch.
+     * @param values    The values by name.
+     *
+     * @throws Exception if the values can't be exported.
+     */
+    protected abstract void report(long timestamp, SortedMap<String, Double> values)
+            throws Exception;
+}
@@ -0,0 +1,44 @@
+package com.github.frapontillo.pulse.crowd.social.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Histogram} of durations, recorded in nanoseconds.
+ *
+ * @author Francesco Pontillo
+ */
+public class Timer implements Metric {
+    private final Histogram histogram = new Histogram();
+
+    /**
+     * Record a duration.
+     *
+     * @param duration The duration.
+     * @param unit     The {@link TimeUnit} of the duration.
+     */
+    public void record(long duration, TimeUnit unit) {
+        histogram.record(unit.toNanos(duration));
+    }
+
+    /**
+     * Record the time elapsed since a start time taken with {@link System#nanoTime()}.
+     *
+     * @param startNanos The start time.
+     */
+    public void recordSince(long startNanos) {
+        histogram.record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    /**
+     * Take a snapshot of the recorded durations, in nanoseconds.
+     *
+     * @return A new {@link Histogram.Snapshot}.
+     */
+    public Histogram.Snapshot getSnapshot() {
+        return histogram.getSnapshot();
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.frapontillo.pulse.crowd.social.profile;
+
+import com.github.frapontillo.pulse.crowd.social.util.CheckpointFile;
+import com.github.frapontillo.pulse.crowd.social.util.LongHashSet;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A snapshot of a {@link ProfileGraphCrawler} crawl, saved to a file so that a crashed crawl can
+ * be resumed (see {@link ProfileParameters#isResume()}). It holds the hashes of the visited
+ * profiles and the frontier of profiles that were discovered but not yet expanded. Every visited
+ * profile that is not in the frontier was already emitted.
+ *
+ * @author Francesco Pontillo
+ */
+public class CrawlCheckpoint {
+    private static final int MAGIC = 0x43524331; // "CRC1"
+
+    private final LongHashSet visited;
+    private final List<Entry> frontier;
+    private final long discovered;
+
+    private CrawlCheckpoint(LongHashSet visited, List<Entry> frontier, long discovered) {
+        this.visited = visited;
+        this.frontier = frontier;
+        this.discovered = discovered;
+    }
+
+    /**
+     * A profile waiting to be expanded.
+     */
+    public static class Entry {
+        private final String username;
+        private final int depth;
+        private final long priority;
+
+        public Entry(String username, int depth, long priority) {
+            this.username = username;
+            this.depth = depth;
+            this.priority = priority;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public long getPriority() {
+            return priority;
+        }
+    }
+
+    /**
+     * Save a crawl snapshot, replacing the previous one.
+     *
+     * @param file       The checkpoint {@link File}.
+     * @param visited    The hashes of the visited profiles.
+     * @param frontier   The profiles waiting to be expanded.
+     * @param discovered The number of profiles discovered so far.
+     *
+     * @throws IOException if the checkpoint can't be written.
+     */
+    public static void save(File file, LongHashSet visited, List<Entry> frontier,
+            long discovered) throws IOException {
+        CheckpointFile.save(file, MAGIC, out -> {
+            CheckpointFile.writeSet(out, visited);
+            out.writeInt(frontier.size());
+            for (Entry entry : frontier) {
+                CheckpointFile.writeString(out, entry.username);
+                out.writeInt(entry.depth);
+                out.writeLong(entry.priority);
+            }
+            out.writeLong(discovered);
+        });
+    }
+
+    /**
+     * Load a crawl snapshot.
+     *
+     * @param file The checkpoint {@link File}.
+     *
+     * @return The loaded {@link CrawlCheckpoint}, or null if the file doesn't exist.
+     * @throws IOException if the file can't be read.
+     */
+    public static CrawlCheckpoint load(File file) throws IOException {
+        return CheckpointFile.load(file, MAGIC, CrawlCheckpoint::read);
+    }
+
+    private static CrawlCheckpoint read(DataInputStream in) throws IOException {
+        LongHashSet visited = CheckpointFile.readSet(in);
+        int size = in.readInt();
+        List<Entry> frontier = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            frontier.add(new Entry(CheckpointFile.readString(in), in.readInt(), in.readLong()));
+        }
+        return new CrawlCheckpoint(visited, frontier, in.readLong());
+    }
+
+    public LongHashSet getVisited() {
+        return visited;
+    }
+
+    public List<Entry> getFrontier() {
+        return frontier;
+    }
+
+    public long getDiscovered() {
+        return discovered;
+    }
+}
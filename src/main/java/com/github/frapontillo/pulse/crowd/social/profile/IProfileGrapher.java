@@ -1,19 +1,42 @@
 package com.github.frapontillo.pulse.crowd.social.profile;
 
 import com.github.frapontillo.pulse.crowd.data.entity.Profile;
-import com.github.frapontillo.pulse.rx.PulseSubscriber;
+import com.github.frapontillo.pulse.crowd.social.distinct.Distinct;
+import com.github.frapontillo.pulse.crowd.social.distinct.DistinctFilter;
+import com.github.frapontillo.pulse.crowd.social.execution.ExecutionStrategy;
+import com.github.frapontillo.pulse.crowd.social.execution.SourceServices;
+import com.github.frapontillo.pulse.crowd.social.metrics.PluginMetrics;
+import com.github.frapontillo.pulse.crowd.social.ratelimit.RateLimiter;
+import com.github.frapontillo.pulse.crowd.social.util.Hashing;
 import com.github.frapontillo.pulse.spi.IPlugin;
-import com.github.frapontillo.pulse.spi.VoidConfig;
 import rx.Observable;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Crowd Pulse plugin that enables fetching of a stream's profiles connections.
+ * <p/>
+ * Repeated input profiles are removed from the stream according to
+ * {@link ProfileParameters#getDistinctMode()}.
+ * Connections are fetched for batches of {@link ProfileParameters#getBatchSize()} profiles, one
+ * by default, and {@link ProfileParameters#getConcurrency()} batches can be fetched at the same
+ * time. If {@link ProfileParameters#getBatchTimespan()} is set, partial batches are also fetched
+ * after the given time.
+ * Every connected profile is emitted only once per graph expansion, even if it is connected to
+ * many input profiles.
+ * <p/>
+ * If {@link ProfileParameters#getDepth()} is greater than 1, the graph is crawled for multiple
+ * levels in a single pass by a {@link ProfileGraphCrawler}.
  *
  * @author Francesco Pontillo
  */
-public abstract class IProfileGrapher extends IPlugin<Profile, Profile, VoidConfig> {
+public abstract class IProfileGrapher extends IPlugin<Profile, Profile, ProfileParameters> {
+    public static final int DEFAULT_BATCH_SIZE = 1;
 
     /**
      * Retrieve the {@link Profile}s connected to a given {@link Profile}.
@@ -21,9 +44,11 @@ public abstract class IProfileGrapher extends IPlugin<Profile, Profile, VoidConf
      * This search is not recursive, which means it will only get one depth of level in the actual
      * graph.
      * <p/>
-     * If you want to another level of connections, simply apply this plugin again.
-     * At the end of the graph construction, you may want to apply the {@link Observable#distinct()}
-     * operator, since profiles can have common connections that are repeated in the stream.
+     * If you want more levels of connections, set {@link ProfileParameters#setDepth(Integer)}
+     * to crawl the graph with a {@link ProfileGraphCrawler}.
+     * At the end of the graph construction, you may want to remove repeated profiles (e.g. with
+     * {@link Distinct}), since profiles can have common connections that are repeated in the
+     * stream.
      *
      * @param profile    The {@link Profile} to fetch connections for.
      * @param parameters The {@link ProfileParameters} to use for the conversion.
@@ -32,46 +57,189 @@ public abstract class IProfileGrapher extends IPlugin<Profile, Profile, VoidConf
      */
     public abstract List<Profile> getConnections(Profile profile, ProfileParameters parameters);
 
-    @Override public Observable.Transformer<Profile, Profile> transform(VoidConfig params) {
-        return profileObservable -> profileObservable.distinct(Profile::getUsername)
-                .lift(getOperator(params));
+    /**
+     * Retrieve the {@link Profile}s connected to each of the given {@link Profile}s.
+     * <p/>
+     * The default implementation calls {@link #getConnections(Profile, ProfileParameters)} once
+     * per profile with the given parameters; implementations should override it if the source
+     * allows fetching the connections of multiple profiles with fewer requests.
+     * When the plugin runs with a concurrency greater than 1, this method is called from multiple
+     * threads at the same time, so implementations must be thread-safe.
+     *
+     * @param profiles   The {@link Profile}s to fetch connections for, all with the same custom
+     *                   tags.
+     * @param parameters The {@link ProfileParameters} to use for the conversion, carrying the
+     *                   custom tags of the profiles.
+     *
+     * @return A {@link Map} from the username of each input profile to the {@link List} of its
+     * connections, excluding the input profile.
+     */
+    public Map<String, List<Profile>> getConnections(List<Profile> profiles,
+            ProfileParameters parameters) {
+        Map<String, List<Profile>> connections = new HashMap<>(profiles.size() * 2);
+        for (Profile profile : profiles) {
+            connections.put(profile.getUsername(), getConnections(profile, parameters));
+        }
+        return connections;
     }
 
-    @Override protected Observable.Operator<Profile, Profile> getOperator(VoidConfig parameters) {
-        return subscriber -> new PulseSubscriber<Profile>(subscriber) {
-            @Override public void onNext(Profile profile) {
-                // do not graph profiles with existing connections
-                if (profile.getConnections() == null || profile.getConnections().size() == 0) {
-                    reportElementAsStarted(profile.getUsername());
-
-                    // build the appropriate profile parameters
-                    ProfileParameters params = new ProfileParameters();
-                    params.setSource(getName());
-                    params.setTags(profile.getCustomTags());
-                    // get the profiles and emit them
-                    List<Profile> connections = getConnections(profile, params);
-                    connections.forEach(
-                            connection -> profile.addConnections(connection.getUsername()));
+    @Override
+    public Observable.Transformer<Profile, Profile> transform(ProfileParameters params) {
+        ProfileParameters config = (params != null) ? params : getNewParameter();
+        int concurrency = config.getConcurrency();
+        if (config.getDepth() > 1) {
+            ProfileGraphCrawler crawler = new ProfileGraphCrawler(this, params);
+            return profileObservable -> crawler.crawl(profileObservable)
+                    .doOnCompleted(this::reportPluginAsCompleted)
+                    .doOnError(err -> reportPluginAsErrored());
+        }
+        return profileObservable -> Observable.defer(() -> {
+            // connections already emitted during this expansion
+            DistinctFilter emitted = config.getDistinctFilterFactory().call();
+            Observable<List<Profile>> batches = IProfiler.buffer(profileObservable.compose(
+                    Distinct.by(getName() + " profiles", Profile::getUsername,
+                            config.getDistinctFilterFactory())),
+                    config.getBatchSize(DEFAULT_BATCH_SIZE), config.getBatchTimespan());
+            Observable<Profile> graph;
+            if (concurrency > 1) {
+                graph = batches.flatMap(batch -> graphBatch(batch, emitted)
+                        .subscribeOn(getExecutionStrategy().getScheduler()), concurrency);
+            } else {
+                graph = batches.concatMap(batch -> graphBatch(batch, emitted)
+                        .subscribeOn(getExecutionStrategy().getScheduler()));
+            }
+            return graph.doOnCompleted(this::reportPluginAsCompleted)
+                    .doOnError(err -> reportPluginAsErrored());
+        });
+    }
 
-                    reportElementAsEnded(profile.getUsername());
-                    connections.forEach(subscriber::onNext);
+    /**
+     * Lazily fetch the connections of a batch of profiles, emitting the new connections of each
+     * profile before the profile itself.
+     *
+     * @param batch   The batch of {@link Profile}s to graph.
+     * @param emitted The {@link DistinctFilter} of the profiles emitted during this expansion,
+     *                shared among batches.
+     *
+     * @return An {@link Observable} emitting the connections and the input profiles.
+     */
+    private Observable<Profile> graphBatch(List<Profile> batch, DistinctFilter emitted) {
+        return Observable.defer(() -> {
+            // do not graph profiles with existing connections
+            List<Profile> toGraph = new ArrayList<>(batch.size());
+            synchronized (emitted) {
+                for (Profile profile : batch) {
+                    emitted.add(Hashing.hash64(profile.getUsername()));
+                    if (profile.getConnections() == null ||
+                            profile.getConnections().size() == 0) {
+                        toGraph.add(profile);
+                    }
                 }
-                subscriber.onNext(profile);
             }
-
-            @Override public void onCompleted() {
-                reportPluginAsCompleted();
-                super.onCompleted();
+            Map<String, List<Profile>> connections = Collections.emptyMap();
+            if (toGraph.size() > 0) {
+                toGraph.forEach(profile -> reportElementAsStarted(profile.getUsername()));
+                getMetrics().getBatchSizes().record(toGraph.size());
+                long start = getMetrics().start();
+                try {
+                    connections = getExecutionStrategy().execute(() -> fetchConnections(toGraph));
+                } finally {
+                    getMetrics().stop(start);
+                    toGraph.forEach(profile -> reportElementAsEnded(profile.getUsername()));
+                }
             }
-
-            @Override public void onError(Throwable e) {
-                reportPluginAsErrored();
-                super.onError(e);
+            List<Profile> output = new ArrayList<>(batch.size());
+            for (Profile profile : batch) {
+                List<Profile> profileConnections = connections.get(profile.getUsername());
+                if (profileConnections != null) {
+                    for (Profile connection : profileConnections) {
+                        profile.addConnections(connection.getUsername());
+                        boolean isNew;
+                        synchronized (emitted) {
+                            isNew = emitted.add(Hashing.hash64(connection.getUsername()));
+                        }
+                        if (isNew) {
+                            output.add(connection);
+                        }
+                    }
+                }
+                output.add(profile);
             }
-        };
+            getMetrics().getElements().add(output.size());
+            return Observable.from(output);
+        }).compose(getRateLimiter().limit(1, getExecutionStrategy().getScheduler()));
+    }
+
+    /**
+     * @return The {@link RateLimiter} of the source of this plugin, see {@link SourceServices}.
+     */
+    protected RateLimiter getRateLimiter() {
+        return SourceServices.get(getName()).getRateLimiter();
+    }
+
+    /**
+     * @return The {@link ExecutionStrategy} of the source of this plugin, see
+     * {@link SourceServices}.
+     */
+    protected ExecutionStrategy getExecutionStrategy() {
+        return SourceServices.get(getName()).getExecutionStrategy();
+    }
+
+    /**
+     * @return The {@link PluginMetrics} of this plugin, see {@link SourceServices}.
+     */
+    protected PluginMetrics getMetrics() {
+        return SourceServices.get(getName()).getMetrics("getConnections");
+    }
+
+    /**
+     * Synchronously fetch the connections of a batch of profiles, calling
+     * {@link #getConnections(List, ProfileParameters)} once for every group of profiles with the
+     * same custom tags, so that connections are always converted with the tags of their profile.
+     *
+     * @param profiles The {@link Profile}s to fetch connections for.
+     *
+     * @return A {@link Map} from the username of each profile to the {@link List} of its
+     * connections.
+     */
+    Map<String, List<Profile>> fetchConnections(List<Profile> profiles) {
+        Map<List<String>, List<Profile>> groups = new LinkedHashMap<>();
+        for (Profile profile : profiles) {
+            groups.computeIfAbsent(profile.getCustomTags(), tags -> new ArrayList<>())
+                    .add(profile);
+        }
+        if (groups.size() == 1) {
+            return getConnections(profiles, buildParameters(profiles.get(0)));
+        }
+        Map<String, List<Profile>> connections = new HashMap<>(profiles.size() * 2);
+        for (List<Profile> group : groups.values()) {
+            connections.putAll(getConnections(group, buildParameters(group.get(0))));
+        }
+        return connections;
+    }
+
+    /**
+     * Build the parameters to fetch the connections of a profile, or of a group of profiles with
+     * its same custom tags.
+     *
+     * @param profile The {@link Profile} to fetch connections for.
+     *
+     * @return The {@link ProfileParameters} carrying the source and the tags of the profile.
+     */
+    private ProfileParameters buildParameters(Profile profile) {
+        ProfileParameters params = new ProfileParameters();
+        params.setSource(getName());
+        params.setTags(profile.getCustomTags());
+        return params;
+    }
+
+    @Override
+    protected Observable.Operator<Profile, Profile> getOperator(ProfileParameters parameters) {
+        // connections are fetched in batches by transform, no operator is needed
+        return null;
     }
 
-    @Override public VoidConfig getNewParameter() {
-        return new VoidConfig();
+    @Override public ProfileParameters getNewParameter() {
+        return new ProfileParameters();
     }
 }
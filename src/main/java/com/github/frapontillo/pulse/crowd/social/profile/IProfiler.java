@@ -2,24 +2,52 @@ package com.github.frapontillo.pulse.crowd.social.profile;
 
 import com.github.frapontillo.pulse.crowd.data.entity.Message;
 import com.github.frapontillo.pulse.crowd.data.entity.Profile;
-import com.github.frapontillo.pulse.rx.RxUtil;
+import com.github.frapontillo.pulse.crowd.social.cache.CacheStats;
+import com.github.frapontillo.pulse.crowd.social.cache.ProfileCache;
+import com.github.frapontillo.pulse.crowd.social.distinct.Distinct;
+import com.github.frapontillo.pulse.crowd.social.execution.ExecutionStrategy;
+import com.github.frapontillo.pulse.crowd.social.execution.SourceServices;
+import com.github.frapontillo.pulse.crowd.social.metrics.MetricRegistry;
+import com.github.frapontillo.pulse.crowd.social.metrics.Metrics;
+import com.github.frapontillo.pulse.crowd.social.metrics.PluginMetrics;
+import com.github.frapontillo.pulse.crowd.social.ratelimit.RateLimiter;
 import com.github.frapontillo.pulse.spi.IPlugin;
+import com.github.frapontillo.pulse.util.PulseLogger;
+import org.apache.logging.log4j.Logger;
 import rx.Observable;
-import rx.Subscriber;
-import rx.observers.SafeSubscriber;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Crowd Pulse plugin interface to retrieve a stream of {@link Profile}s starting from a stream of
  * {@link Message}s.
+ * <p/>
+ * Profiles are fetched in batches of {@link ProfileParameters#getBatchSize()} usernames. If
+ * {@link ProfileParameters#getBatchTimespan()} is set, partial batches are also fetched after the
+ * given time, and if {@link ProfileParameters#getConcurrency()} is greater than 1 several batches
+ * are fetched at the same time.
+ * <p/>
+ * Repeated usernames are removed from the stream according to
+ * {@link ProfileParameters#getDistinctMode()}. If {@link ProfileParameters#getCache()} is set,
+ * profiles are looked up in a persistent {@link ProfileCache} first, and only the missing ones are
+ * fetched from the implementation.
  *
  * @author Francesco Pontillo
  */
 public abstract class IProfiler extends IPlugin<Message, Profile, ProfileParameters> {
 
+    private final Logger logger = PulseLogger.getLogger(IProfiler.class);
+
     /**
      * Gets a {@link List} of {@link Profile}s from the given parameters.
+     * <p/>
+     * When the plugin runs with a concurrency greater than 1, this method is called from multiple
+     * threads at the same time, so implementations must be thread-safe.
      *
      * @param parameters The input {@link ProfileParameters} containing the information to retrieve
      *                   the profiles.
@@ -30,41 +58,212 @@ public abstract class IProfiler extends IPlugin<Message, Profile, ProfileParamet
             throws ProfilerException;
 
     @Override public Observable.Transformer<Message, Profile> transform(ProfileParameters params) {
-        return messageObservable -> messageObservable.map(Message::getFromUser).distinct()
-                .buffer(100).lift(new Observable.Operator<List<Profile>, List<String>>() {
-                    @Override public Subscriber<? super List<String>> call(
-                            Subscriber<? super List<Profile>> subscriber) {
-                        return new SafeSubscriber<>(new Subscriber<List<String>>() {
-                            @Override public void onCompleted() {
-                                subscriber.onCompleted();
-                            }
-
-                            @Override public void onError(Throwable e) {
-                                subscriber.onError(e);
-                            }
-
-                            @Override public void onNext(List<String> profileNames) {
-                                ProfileParameters parameters = new ProfileParameters();
-                                parameters.setSource(getName());
-                                parameters.setProfiles(profileNames);
-                                if (params != null) {
-                                    parameters.setTags(params.getTags());
-                                }
-                                profileNames.forEach(IProfiler.this::reportElementAsStarted);
-                                List<Profile> profiles = null;
-                                try {
-                                    profiles = getProfiles(parameters);
-                                } catch (ProfilerException e) {
-                                    subscriber.onError(e);
-                                }
-                                profileNames.forEach(IProfiler.this::reportElementAsEnded);
-                                subscriber.onNext(profiles);
-                            }
-                        });
-                    }
-                }).filter(profile -> (profile != null)).compose(RxUtil.flatten())
-                .doOnCompleted(this::reportPluginAsCompleted)
-                .doOnError((err) -> reportPluginAsErrored());
+        ProfileParameters config = (params != null) ? params : getNewParameter();
+        return messageObservable -> {
+            Observable<String> usernames = messageObservable.map(Message::getFromUser).compose(
+                    Distinct.by(getName() + " profiles", username -> username,
+                            config.getDistinctFilterFactory()));
+            Observable<Profile> profiles;
+            if (config.getCache() == null) {
+                profiles = fetchProfiles(usernames, config, params);
+            } else {
+                profiles = Observable.using(() -> openCache(config),
+                        cache -> fetchProfiles(usernames, config, params, cache),
+                        this::closeCache);
+            }
+            return profiles.doOnCompleted(this::reportPluginAsCompleted)
+                    .doOnError((err) -> reportPluginAsErrored());
+        };
+    }
+
+    /**
+     * Fetch the profiles of the given usernames, looking them up in the cache first.
+     * Only the usernames missing from the cache are fetched from the implementation, and the
+     * fetched profiles are added to the cache.
+     *
+     * @param usernames The {@link Observable} of distinct usernames.
+     * @param config    The {@link ProfileParameters} holding the batching configuration.
+     * @param params    The {@link ProfileParameters} the plugin was started with, if any.
+     * @param cache     The {@link ProfileCache} to use.
+     *
+     * @return An {@link Observable} emitting the retrieved {@link Profile}s.
+     */
+    private Observable<Profile> fetchProfiles(Observable<String> usernames,
+            ProfileParameters config, ProfileParameters params, ProfileCache cache) {
+        return usernames.map(username -> new CacheLookup(username,
+                cache.get(new ProfileKey(getName(), username)))).publish(lookups -> {
+            Observable<Profile> hits =
+                    lookups.filter(lookup -> lookup.profile != null).map(lookup -> {
+                        reportElementAsStarted(lookup.username);
+                        if (params != null) {
+                            lookup.profile.setCustomTags(params.getTags());
+                        }
+                        reportElementAsEnded(lookup.username);
+                        return lookup.profile;
+                    });
+            Observable<Profile> misses = fetchProfiles(
+                    lookups.filter(lookup -> lookup.profile == null)
+                            .map(lookup -> lookup.username), config, params)
+                    .doOnNext(profile -> cache
+                            .put(new ProfileKey(getName(), profile.getUsername()), profile));
+            return Observable.merge(hits, misses);
+        });
+    }
+
+    /**
+     * Fetch the profiles of the given usernames from the implementation, in batches.
+     *
+     * @param usernames The {@link Observable} of distinct usernames.
+     * @param config    The {@link ProfileParameters} holding the batching configuration.
+     * @param params    The {@link ProfileParameters} the plugin was started with, if any.
+     *
+     * @return An {@link Observable} emitting the retrieved {@link Profile}s.
+     */
+    private Observable<Profile> fetchProfiles(Observable<String> usernames,
+            ProfileParameters config, ProfileParameters params) {
+        return Observable.defer(() -> {
+            // usernames waiting in the buffers of this pipeline for their batch to be fetched
+            AtomicLong buffered = new AtomicLong();
+            Runnable removeGauge = getMetrics().addToGauge("buffered", buffered::get);
+            Observable<List<String>> batches =
+                    buffer(usernames.doOnNext(username -> buffered.incrementAndGet()),
+                            config.getBatchSize(), config.getBatchTimespan())
+                            .doOnNext(names -> buffered.addAndGet(-names.size()));
+            int concurrency = config.getConcurrency();
+            Observable<Profile> profiles;
+            if (concurrency > 1) {
+                profiles = batches.flatMap(
+                        names -> fetchBatch(names, params)
+                                .subscribeOn(getExecutionStrategy().getScheduler()),
+                        concurrency);
+            } else {
+                profiles = batches.concatMap(names -> fetchBatch(names, params)
+                        .subscribeOn(getExecutionStrategy().getScheduler()));
+            }
+            return profiles.doOnTerminate(removeGauge::run).doOnUnsubscribe(removeGauge::run);
+        });
+    }
+
+    private ProfileCache openCache(ProfileParameters config) {
+        try {
+            ProfileCache cache = new ProfileCache(new File(config.getCache()),
+                    config.getCacheSize(), config.getCacheDiskSize(),
+                    TimeUnit.SECONDS.toMillis(config.getCacheTtl()));
+            CacheStats stats = cache.getStats();
+            MetricRegistry registry = Metrics.getRegistry();
+            registry.gauge(getMetrics().getName("cache.hits"), stats::getHits);
+            registry.gauge(getMetrics().getName("cache.diskHits"), stats::getDiskHits);
+            registry.gauge(getMetrics().getName("cache.misses"), stats::getMisses);
+            registry.gauge(getMetrics().getName("cache.hitRate"), stats::getHitRate);
+            registry.gauge(getMetrics().getName("cache.evictions"), stats::getEvictions);
+            registry.gauge(getMetrics().getName("cache.expirations"), stats::getExpirations);
+            return cache;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the profile cache.", e);
+        }
+    }
+
+    private void closeCache(ProfileCache cache) {
+        logger.info("Profile cache for {}: {}.", getName(), cache.getStats());
+        try {
+            cache.close();
+        } catch (IOException e) {
+            logger.warn("Cannot close the profile cache.", e);
+        }
+    }
+
+    /**
+     * Group some elements in batches of the given size, also flushing partial batches after the
+     * given time if it is positive.
+     *
+     * @param elements      The {@link Observable} of elements to group.
+     * @param batchSize     The maximum number of elements per batch.
+     * @param batchTimespan The milliseconds after which a partial batch is flushed, or 0 to only
+     *                      flush it when the stream completes.
+     * @param <T>           The type of the elements.
+     *
+     * @return An {@link Observable} of non-empty batches.
+     */
+    static <T> Observable<List<T>> buffer(Observable<T> elements, int batchSize,
+            long batchTimespan) {
+        if (batchTimespan <= 0) {
+            return elements.buffer(batchSize);
+        }
+        // timed buffers don't support backpressure, but they're bounded by the distinct elements
+        return elements.buffer(batchTimespan, TimeUnit.MILLISECONDS, batchSize)
+                .filter(batch -> batch.size() > 0).onBackpressureBuffer();
+    }
+
+    /**
+     * Lazily fetch the profiles for a batch of usernames.
+     *
+     * @param profileNames The usernames to fetch profiles for.
+     * @param params       The {@link ProfileParameters} the plugin was started with, if any.
+     *
+     * @return An {@link Observable} emitting the retrieved {@link Profile}s.
+     */
+    private Observable<Profile> fetchBatch(List<String> profileNames,
+            ProfileParameters params) {
+        return Observable.defer(() -> {
+            ProfileParameters parameters = new ProfileParameters();
+            parameters.setSource(getName());
+            parameters.setProfiles(profileNames);
+            if (params != null) {
+                parameters.setTags(params.getTags());
+            }
+            profileNames.forEach(IProfiler.this::reportElementAsStarted);
+            getMetrics().getBatchSizes().record(profileNames.size());
+            long start = getMetrics().start();
+            List<Profile> profiles;
+            try {
+                profiles = getExecutionStrategy().execute(() -> getProfiles(parameters));
+            } catch (ProfilerException e) {
+                return Observable.error(e);
+            } finally {
+                getMetrics().stop(start);
+                profileNames.forEach(IProfiler.this::reportElementAsEnded);
+            }
+            if (profiles == null) {
+                return Observable.empty();
+            }
+            getMetrics().getElements().add(profiles.size());
+            return Observable.from(profiles);
+        }).compose(getRateLimiter().limit(1, getExecutionStrategy().getScheduler()));
+    }
+
+    /**
+     * @return The {@link RateLimiter} of the source of this plugin, see {@link SourceServices}.
+     */
+    protected RateLimiter getRateLimiter() {
+        return SourceServices.get(getName()).getRateLimiter();
+    }
+
+    /**
+     * @return The {@link ExecutionStrategy} of the source of this plugin, see
+     * {@link SourceServices}.
+     */
+    protected ExecutionStrategy getExecutionStrategy() {
+        return SourceServices.get(getName()).getExecutionStrategy();
+    }
+
+    /**
+     * @return The {@link PluginMetrics} of this plugin, see {@link SourceServices}.
+     */
+    protected PluginMetrics getMetrics() {
+        return SourceServices.get(getName()).getMetrics("getProfiles");
+    }
+
+    /**
+     * The result of a cache lookup for a username.
+     */
+    private static class CacheLookup {
+        private final String username;
+        private final Profile profile;
+
+        private CacheLookup(String username, Profile profile) {
+            this.username = username;
+            this.profile = profile;
+        }
     }
 
     @Override
@@ -1,10 +1,12 @@
 package com.github.frapontillo.pulse.crowd.social.profile;
 
 import com.github.frapontillo.pulse.crowd.data.entity.Profile;
+import com.github.frapontillo.pulse.crowd.social.util.ChunkedConversion;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * @author Francesco Pontillo
@@ -45,4 +47,38 @@ public abstract class ProfileConverter<T> {
             List<Profile> addToList) {
         return addFromExtractor(originalList, addToList, null);
     }
+
+    /**
+     * Whether {@link #fromSpecificExtractor(Object, HashMap)} can be called from several threads
+     * at the same time. Converters that don't share mutable state (e.g. a non thread-safe parser)
+     * should override this to enable
+     * {@link #addFromExtractorParallel(List, List, HashMap, int)}.
+     *
+     * @return false by default.
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * Convert a list of elements in parallel, in chunks of {@code chunkSize} elements, on the
+     * common {@link ForkJoinPool}, keeping the order of the input. If the converter is not
+     * {@link #isThreadSafe() thread-safe}, the elements are converted sequentially.
+     *
+     * @param originalList   The elements to convert.
+     * @param addToList      The list to append the converted profiles to.
+     * @param additionalData Additional data for the conversion, must not be modified.
+     * @param chunkSize      The maximum number of elements converted by a single task.
+     *
+     * @return The {@code addToList}.
+     */
+    public <L extends List> List<Profile> addFromExtractorParallel(L originalList,
+            List<Profile> addToList, HashMap<String, Object> additionalData, int chunkSize) {
+        if (!isThreadSafe()) {
+            return addFromExtractor(originalList, addToList, additionalData);
+        }
+        return ChunkedConversion.convert((List<?>) originalList, addToList,
+                original -> fromExtractor((T) original, additionalData), chunkSize,
+                ForkJoinPool.commonPool());
+    }
 }
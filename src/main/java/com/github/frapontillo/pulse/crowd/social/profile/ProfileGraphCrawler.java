@@ -0,0 +1,426 @@
+package com.github.frapontillo.pulse.crowd.social.profile;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Profile;
+import com.github.frapontillo.pulse.crowd.social.distinct.DistinctFilter;
+import com.github.frapontillo.pulse.crowd.social.distinct.ExactDistinctFilter;
+import com.github.frapontillo.pulse.crowd.social.exception.RateLimitedException;
+import com.github.frapontillo.pulse.crowd.social.ratelimit.RateLimiter;
+import com.github.frapontillo.pulse.crowd.social.util.Hashing;
+import com.github.frapontillo.pulse.crowd.social.util.LongHashSet;
+import com.github.frapontillo.pulse.util.PulseLogger;
+import org.apache.logging.log4j.Logger;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.observers.SerializedSubscriber;
+import rx.subscriptions.Subscriptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Breadth-first crawler of the profile connections graph, built on top of an
+ * {@link IProfileGrapher}.
+ * <p/>
+ * Starting from the input profiles, the crawler fetches the connections of every discovered
+ * profile up to {@link ProfileParameters#getDepth()} levels, in a single pass and with a visited
+ * set shared among all levels. Profiles waiting to be expanded are kept in a frontier ordered by
+ * depth and then by {@link ProfileParameters#getPriority()}, and up to
+ * {@link ProfileParameters#getConcurrency()} batches of {@link ProfileParameters#getBatchSize()}
+ * profiles (one by default, as in {@link IProfileGrapher}) are expanded at the same time, as
+ * allowed by the {@link RateLimiter} of the grapher.
+ * The crawl stops discovering new profiles after
+ * {@link ProfileParameters#getMaxProfiles()}.
+ * <p/>
+ * Profiles are emitted as soon as they are complete: profiles at the maximum depth as soon as
+ * they are discovered, the others as soon as their connections have been fetched.
+ * <p/>
+ * If {@link ProfileParameters#getCheckpoint()} is set, the visited set and the frontier are
+ * periodically saved to a {@link CrawlCheckpoint}, and {@link ProfileParameters#isResume()}
+ * continues a failed crawl from it without emitting the same profiles again. In this case the
+ * visited set is always exact, regardless of {@link ProfileParameters#getDistinctMode()}, and
+ * profiles restored from the frontier only keep their username.
+ *
+ * @author Francesco Pontillo
+ */
+public class ProfileGraphCrawler {
+    public static final String PRIORITY_FOLLOWERS = "followers";
+
+    private static final Comparator<Node> FRONTIER_ORDER =
+            Comparator.<Node>comparingInt(node -> node.depth)
+                    .thenComparing(Comparator.<Node>comparingLong(node -> node.priority)
+                            .reversed()).thenComparingLong(node -> node.sequence);
+
+    private final Logger logger = PulseLogger.getLogger(ProfileGraphCrawler.class);
+    private final IProfileGrapher grapher;
+    private final ProfileParameters params;
+    private final ProfileParameters config;
+    private final Scheduler scheduler;
+
+    /**
+     * Create a new crawler.
+     *
+     * @param grapher The {@link IProfileGrapher} used to fetch connections.
+     * @param params  The {@link ProfileParameters} the plugin was started with, if any.
+     */
+    public ProfileGraphCrawler(IProfileGrapher grapher, ProfileParameters params) {
+        this.grapher = grapher;
+        this.params = params;
+        this.config = (params != null) ? params : grapher.getNewParameter();
+        this.scheduler = grapher.getExecutionStrategy().getScheduler();
+    }
+
+    /**
+     * Crawl the connections graph starting from the given profiles.
+     *
+     * @param seeds The {@link Observable} of input {@link Profile}s.
+     *
+     * @return An {@link Observable} of all the discovered {@link Profile}s, including the input
+     * ones, each emitted only once.
+     */
+    public Observable<Profile> crawl(Observable<Profile> seeds) {
+        return Observable.<Profile>create(subscriber -> {
+            CrawlCheckpoint checkpoint;
+            try {
+                checkpoint = loadCheckpoint();
+            } catch (IOException e) {
+                subscriber.onError(e);
+                return;
+            }
+            new Crawl(subscriber, checkpoint).start(seeds);
+        }).onBackpressureBuffer();
+    }
+
+    private CrawlCheckpoint loadCheckpoint() throws IOException {
+        if (config.getCheckpoint() == null || !config.isResume()) {
+            return null;
+        }
+        CrawlCheckpoint checkpoint = CrawlCheckpoint.load(new File(config.getCheckpoint()));
+        if (checkpoint != null) {
+            logger.info("Resuming the crawl with {} visited profiles and {} in the frontier.",
+                    checkpoint.getVisited().size(), checkpoint.getFrontier().size());
+        }
+        return checkpoint;
+    }
+
+    private long getPriority(Profile profile) {
+        if (PRIORITY_FOLLOWERS.equalsIgnoreCase(config.getPriority())) {
+            Integer followers = profile.getFollowers();
+            return (followers != null) ? followers : 0;
+        }
+        return 0;
+    }
+
+    private static boolean hasConnections(Profile profile) {
+        return profile.getConnections() != null && profile.getConnections().size() > 0;
+    }
+
+    /**
+     * The state of a single crawl, guarded by its own monitor.
+     */
+    private class Crawl {
+        private final Subscriber<? super Profile> child;
+        private final DistinctFilter visited;
+        private final PriorityQueue<Node> frontier;
+        private final File checkpointFile;
+        private final LongHashSet visitedSet;
+        private final Set<Node> running;
+        private final CrawlCheckpoint resumed;
+        private long lastSave;
+        private long discovered;
+        private long sequence;
+        private int inFlight;
+        private int emitting;
+        private boolean seedsCompleted;
+        private boolean terminated;
+
+        private Crawl(Subscriber<? super Profile> subscriber, CrawlCheckpoint resumed) {
+            this.child = new SerializedSubscriber<>(subscriber);
+            this.frontier = new PriorityQueue<>(16, FRONTIER_ORDER);
+            this.running = new HashSet<>();
+            this.resumed = resumed;
+            this.lastSave = System.currentTimeMillis();
+            if (config.getCheckpoint() != null) {
+                this.checkpointFile = new File(config.getCheckpoint());
+                this.visitedSet = (resumed != null) ? resumed.getVisited() : new LongHashSet();
+                this.visited = new ExactDistinctFilter(visitedSet);
+            } else {
+                this.checkpointFile = null;
+                this.visitedSet = null;
+                this.visited = config.getDistinctFilterFactory().call();
+            }
+            Runnable removeGauge = grapher.getMetrics().addToGauge("frontier", () -> {
+                synchronized (this) {
+                    return frontier.size();
+                }
+            });
+            child.add(Subscriptions.create(removeGauge::run));
+        }
+
+        private void start(Observable<Profile> seeds) {
+            if (resumed != null) {
+                List<Profile> toEmit = new ArrayList<>();
+                synchronized (this) {
+                    emitting++;
+                    restore(resumed);
+                    schedule(toEmit);
+                }
+                flush(toEmit);
+            }
+            child.add(seeds.subscribe(new Subscriber<Profile>() {
+                @Override public void onNext(Profile profile) {
+                    List<Profile> toEmit = new ArrayList<>();
+                    synchronized (Crawl.this) {
+                        emitting++;
+                        discover(profile, 0, true, toEmit);
+                        schedule(toEmit);
+                    }
+                    flush(toEmit);
+                }
+
+                @Override public void onCompleted() {
+                    List<Profile> toEmit = new ArrayList<>();
+                    synchronized (Crawl.this) {
+                        emitting++;
+                        seedsCompleted = true;
+                        schedule(toEmit);
+                    }
+                    flush(toEmit);
+                }
+
+                @Override public void onError(Throwable e) {
+                    fail(e);
+                }
+            }));
+        }
+
+        /**
+         * Put the frontier of a checkpoint back in the frontier. Must be called while holding
+         * the lock.
+         */
+        private void restore(CrawlCheckpoint checkpoint) {
+            discovered = checkpoint.getDiscovered();
+            for (CrawlCheckpoint.Entry entry : checkpoint.getFrontier()) {
+                Profile profile = new Profile();
+                profile.setUsername(entry.getUsername());
+                profile.setSource(grapher.getName());
+                if (params != null) {
+                    profile.setCustomTags(params.getTags());
+                }
+                frontier.add(new Node(profile, entry.getDepth(), entry.getPriority(),
+                        sequence++));
+            }
+        }
+
+        /**
+         * Handle a newly found profile, adding it to the frontier if it must be expanded or to
+         * the profiles to emit otherwise. Must be called while holding the lock.
+         */
+        private void discover(Profile profile, int depth, boolean isSeed, List<Profile> toEmit) {
+            if (!visited.add(Hashing.hash64(profile.getUsername()))) {
+                return;
+            }
+            if (!isSeed && isLimitReached()) {
+                return;
+            }
+            discovered++;
+            if (depth < config.getDepth() && !hasConnections(profile) && !isLimitReached()) {
+                frontier.add(new Node(profile, depth, getPriority(profile), sequence++));
+            } else {
+                toEmit.add(profile);
+            }
+        }
+
+        /**
+         * Start expanding as many frontier batches as allowed. Must be called while holding the
+         * lock.
+         */
+        private void schedule(List<Profile> toEmit) {
+            while (!terminated && inFlight < config.getConcurrency() && !frontier.isEmpty()) {
+                if (isLimitReached()) {
+                    // nothing new can be discovered, so emit the remaining profiles as they are
+                    while (!frontier.isEmpty()) {
+                        toEmit.add(frontier.poll().profile);
+                    }
+                    break;
+                }
+                int batchSize = config.getBatchSize(IProfileGrapher.DEFAULT_BATCH_SIZE);
+                List<Node> batch = new ArrayList<>(batchSize);
+                while (batch.size() < batchSize && !frontier.isEmpty()) {
+                    batch.add(frontier.poll());
+                }
+                inFlight++;
+                running.addAll(batch);
+                scheduleExpand(batch, 0);
+            }
+        }
+
+        /**
+         * Expand a batch on a new worker, as soon as the {@link RateLimiter} of the grapher
+         * allows it.
+         */
+        private void scheduleExpand(List<Node> batch, int attempt) {
+            long delay = grapher.getRateLimiter().reserve(1);
+            Scheduler.Worker worker = scheduler.createWorker();
+            worker.schedule(() -> {
+                try {
+                    expand(batch, attempt);
+                } finally {
+                    worker.unsubscribe();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void expand(List<Node> batch, int attempt) {
+            if (child.isUnsubscribed()) {
+                return;
+            }
+            List<Profile> profiles = new ArrayList<>(batch.size());
+            batch.forEach(node -> profiles.add(node.profile));
+            Map<String, List<Profile>> connections;
+            profiles.forEach(profile -> grapher.reportElementAsStarted(profile.getUsername()));
+            grapher.getMetrics().getBatchSizes().record(profiles.size());
+            long start = grapher.getMetrics().start();
+            try {
+                connections = grapher.getExecutionStrategy()
+                        .execute(() -> grapher.fetchConnections(profiles));
+                grapher.getRateLimiter().onSuccess();
+            } catch (RateLimitedException e) {
+                if (attempt < RateLimiter.DEFAULT_RETRIES) {
+                    grapher.getRateLimiter().onRateLimited(e.getRetryAfter());
+                    scheduleExpand(batch, attempt + 1);
+                } else {
+                    fail(e);
+                }
+                return;
+            } catch (Throwable e) {
+                fail(e);
+                return;
+            } finally {
+                grapher.getMetrics().stop(start);
+                profiles.forEach(profile -> grapher.reportElementAsEnded(profile.getUsername()));
+            }
+            List<Profile> toEmit = new ArrayList<>();
+            synchronized (this) {
+                inFlight--;
+                emitting++;
+                running.removeAll(batch);
+                for (Node node : batch) {
+                    List<Profile> nodeConnections = connections.get(node.profile.getUsername());
+                    if (nodeConnections == null) {
+                        nodeConnections = Collections.emptyList();
+                    }
+                    for (Profile connection : nodeConnections) {
+                        node.profile.addConnections(connection.getUsername());
+                        discover(connection, node.depth + 1, false, toEmit);
+                    }
+                    toEmit.add(node.profile);
+                }
+                schedule(toEmit);
+            }
+            flush(toEmit);
+        }
+
+        /**
+         * Emit the given profiles out of the lock, then complete the crawl if nothing else is
+         * pending.
+         */
+        private void flush(List<Profile> toEmit) {
+            toEmit.forEach(child::onNext);
+            boolean completed = false;
+            synchronized (this) {
+                emitting--;
+                if (!terminated && seedsCompleted && inFlight == 0 && emitting == 0 &&
+                        frontier.isEmpty()) {
+                    terminated = true;
+                    completed = true;
+                } else if (!terminated && emitting == 0 &&
+                        System.currentTimeMillis() - lastSave >=
+                                config.getCheckpointInterval() * 1000) {
+                    saveCheckpoint();
+                }
+            }
+            if (completed) {
+                deleteCheckpoint();
+                child.onCompleted();
+            }
+        }
+
+        /**
+         * Save the visited set and the frontier, including the batches being expanded. Must be
+         * called while holding the lock, when no discovered profile is waiting to be emitted.
+         */
+        private void saveCheckpoint() {
+            if (checkpointFile == null) {
+                return;
+            }
+            List<CrawlCheckpoint.Entry> entries = new ArrayList<>(frontier.size() + running.size());
+            for (Node node : frontier) {
+                entries.add(node.toEntry());
+            }
+            for (Node node : running) {
+                entries.add(node.toEntry());
+            }
+            try {
+                CrawlCheckpoint.save(checkpointFile, visitedSet, entries, discovered);
+            } catch (IOException e) {
+                logger.warn("Cannot save the crawl checkpoint.", e);
+            }
+            lastSave = System.currentTimeMillis();
+        }
+
+        private void deleteCheckpoint() {
+            if (checkpointFile != null && checkpointFile.exists() && !checkpointFile.delete()) {
+                logger.warn("Cannot delete the crawl checkpoint {}.", checkpointFile);
+            }
+        }
+
+        private void fail(Throwable e) {
+            synchronized (this) {
+                if (terminated) {
+                    return;
+                }
+                if (emitting == 0) {
+                    saveCheckpoint();
+                }
+                terminated = true;
+                frontier.clear();
+            }
+            child.onError(e);
+        }
+
+        private boolean isLimitReached() {
+            return config.getMaxProfiles() > 0 && discovered >= config.getMaxProfiles();
+        }
+    }
+
+    /**
+     * A profile waiting in the frontier to be expanded.
+     */
+    private static class Node {
+        private final Profile profile;
+        private final int depth;
+        private final long priority;
+        private final long sequence;
+
+        private Node(Profile profile, int depth, long priority, long sequence) {
+            this.profile = profile;
+            this.depth = depth;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        private CrawlCheckpoint.Entry toEntry() {
+            return new CrawlCheckpoint.Entry(profile.getUsername(), depth, priority);
+        }
+    }
+}
@@ -12,6 +12,14 @@ public class ProfileKey {
         this.id = id;
     }
 
+    public String getSource() {
+        return source;
+    }
+
+    public String getId() {
+        return id;
+    }
+
     @Override public boolean equals(Object obj) {
         if (!(obj instanceof ProfileKey)) {
             return false;
@@ -23,4 +31,8 @@ public class ProfileKey {
     @Override public int hashCode() {
         return source.hashCode() ^ id.hashCode();
     }
+
+    @Override public String toString() {
+        return source + ":" + id;
+    }
 }
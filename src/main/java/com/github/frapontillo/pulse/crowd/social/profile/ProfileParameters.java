@@ -2,9 +2,13 @@ package com.github.frapontillo.pulse.crowd.social.profile;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
+import com.github.frapontillo.pulse.crowd.social.distinct.Distinct;
+import com.github.frapontillo.pulse.crowd.social.distinct.DistinctFilter;
+import com.github.frapontillo.pulse.crowd.social.distinct.DistinctMode;
 import com.github.frapontillo.pulse.spi.IPluginConfig;
 import com.github.frapontillo.pulse.spi.PluginConfigHelper;
 import com.google.gson.JsonElement;
+import rx.functions.Func0;
 
 import java.util.List;
 
@@ -13,6 +17,11 @@ import java.util.List;
  */
 @Parameters(separators = "=") public class ProfileParameters
         implements IPluginConfig<ProfileParameters> {
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_CACHE_SIZE = 10000;
+    public static final int DEFAULT_CACHE_DISK_SIZE = 1000000;
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 30;
+
     @Parameter(names = "-source", description = "Source for extraction") private String source;
 
     @Parameter(names = "-profiles",
@@ -20,6 +29,74 @@ import java.util.List;
 
     @Parameter(names = "-tags", description = "Tags to add to profiles") private List<String> tags;
 
+    @Parameter(names = "-concurrency",
+            description = "Maximum number of profile batches fetched at the same time")
+    private Integer concurrency;
+
+    @Parameter(names = "-batchSize", description = "Maximum number of profiles per batch")
+    private Integer batchSize;
+
+    @Parameter(names = "-batchTimespan",
+            description = "Milliseconds after which a partial batch is fetched anyway")
+    private Long batchTimespan;
+
+    @Parameter(names = "-distinct",
+            description = "Strategy to remove repeated profiles: exact, approximate or windowed")
+    private String distinct;
+
+    @Parameter(names = "-distinctExpected",
+            description = "Expected number of distinct profiles, to size the distinct filter")
+    private Long distinctExpected;
+
+    @Parameter(names = "-distinctFpp",
+            description = "False positive rate of the approximate distinct filter")
+    private Double distinctFpp;
+
+    @Parameter(names = "-distinctWindow",
+            description = "Number of profiles remembered by the windowed distinct filter")
+    private Integer distinctWindow;
+
+    @Parameter(names = "-distinctWindowTime",
+            description = "Milliseconds profiles are remembered by the windowed distinct filter")
+    private Long distinctWindowTime;
+
+    @Parameter(names = "-depth",
+            description = "Maximum distance of the connections fetched from the input profiles")
+    private Integer depth;
+
+    @Parameter(names = "-maxProfiles",
+            description = "Maximum number of profiles discovered by a graph crawl")
+    private Long maxProfiles;
+
+    @Parameter(names = "-priority",
+            description = "Order in which profiles of the same depth are crawled: followers")
+    private String priority;
+
+    @Parameter(names = "-cache", description = "File where fetched profiles are cached")
+    private String cache;
+
+    @Parameter(names = "-cacheTtl",
+            description = "Seconds after which a cached profile is fetched again")
+    private Long cacheTtl;
+
+    @Parameter(names = "-cacheSize", description = "Maximum number of profiles cached in memory")
+    private Integer cacheSize;
+
+    @Parameter(names = "-cacheDiskSize",
+            description = "Maximum number of profiles cached on disk")
+    private Integer cacheDiskSize;
+
+    @Parameter(names = "-checkpoint",
+            description = "File where the progress is periodically saved, to resume it later")
+    private String checkpoint;
+
+    @Parameter(names = "-resume", description = "Resume from the last checkpoint, if any",
+            arity = 1) private Boolean resume;
+
+    @Parameter(names = "-checkpointInterval",
+            description = "Minimum number of seconds between two checkpoints")
+    private Long checkpointInterval;
+
     public String getSource() {
         return source;
     }
@@ -44,6 +121,247 @@ import java.util.List;
         this.tags = tags;
     }
 
+    /**
+     * Get the maximum number of batches that can be fetched at the same time.
+     *
+     * @return The configured concurrency, or 1 if unspecified.
+     */
+    public int getConcurrency() {
+        return (concurrency == null || concurrency < 1) ? 1 : concurrency;
+    }
+
+    public void setConcurrency(Integer concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Get the maximum number of profiles to fetch in a single batch.
+     *
+     * @return The configured batch size, or {@link #DEFAULT_BATCH_SIZE} if unspecified.
+     */
+    public int getBatchSize() {
+        return getBatchSize(DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Get the maximum number of profiles to fetch in a single batch.
+     *
+     * @param defaultBatchSize The batch size of the plugin, used if unspecified.
+     *
+     * @return The configured batch size, or the given one if unspecified.
+     */
+    public int getBatchSize(int defaultBatchSize) {
+        return (batchSize == null || batchSize < 1) ? defaultBatchSize : batchSize;
+    }
+
+    public void setBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Get the time, in milliseconds, after which a batch is flushed even if it isn't full.
+     *
+     * @return The configured timespan, or 0 if partial batches should only be flushed when the
+     * stream completes.
+     */
+    public long getBatchTimespan() {
+        return (batchTimespan == null || batchTimespan < 0) ? 0 : batchTimespan;
+    }
+
+    public void setBatchTimespan(Long batchTimespan) {
+        this.batchTimespan = batchTimespan;
+    }
+
+    /**
+     * Get the strategy used to remove repeated profiles from the stream.
+     *
+     * @return The configured {@link DistinctMode}, or {@link DistinctMode#EXACT} if unspecified.
+     */
+    public DistinctMode getDistinctMode() {
+        return DistinctMode.fromString(distinct, DistinctMode.EXACT);
+    }
+
+    public void setDistinct(String distinct) {
+        this.distinct = distinct;
+    }
+
+    public Long getDistinctExpected() {
+        return distinctExpected;
+    }
+
+    public void setDistinctExpected(Long distinctExpected) {
+        this.distinctExpected = distinctExpected;
+    }
+
+    public Double getDistinctFpp() {
+        return distinctFpp;
+    }
+
+    public void setDistinctFpp(Double distinctFpp) {
+        this.distinctFpp = distinctFpp;
+    }
+
+    public Integer getDistinctWindow() {
+        return distinctWindow;
+    }
+
+    public void setDistinctWindow(Integer distinctWindow) {
+        this.distinctWindow = distinctWindow;
+    }
+
+    public Long getDistinctWindowTime() {
+        return distinctWindowTime;
+    }
+
+    public void setDistinctWindowTime(Long distinctWindowTime) {
+        this.distinctWindowTime = distinctWindowTime;
+    }
+
+    /**
+     * Build a factory of {@link DistinctFilter}s from the distinct settings of these parameters.
+     *
+     * @return A {@link Func0} creating a new {@link DistinctFilter} at every call.
+     */
+    public Func0<DistinctFilter> getDistinctFilterFactory() {
+        return Distinct.filterFactory(getDistinctMode(), distinctExpected, distinctFpp,
+                distinctWindow, distinctWindowTime);
+    }
+
+    /**
+     * Get the maximum distance, in the connections graph, between the input profiles and the
+     * fetched connections.
+     *
+     * @return The configured depth, or 1 if unspecified.
+     */
+    public int getDepth() {
+        return (depth == null || depth < 1) ? 1 : depth;
+    }
+
+    public void setDepth(Integer depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * Get the maximum number of profiles that a graph crawl can discover.
+     *
+     * @return The configured maximum, or 0 if there is no limit.
+     */
+    public long getMaxProfiles() {
+        return (maxProfiles == null || maxProfiles < 0) ? 0 : maxProfiles;
+    }
+
+    public void setMaxProfiles(Long maxProfiles) {
+        this.maxProfiles = maxProfiles;
+    }
+
+    /**
+     * Get the criteria used to choose which profiles of the same depth are crawled first.
+     *
+     * @return The configured priority (e.g. "followers"), or null to crawl profiles in discovery
+     * order.
+     */
+    public String getPriority() {
+        return priority;
+    }
+
+    public void setPriority(String priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Get the path of the file where profiles are cached across runs.
+     *
+     * @return The cache file path, or null if profiles must not be cached.
+     */
+    public String getCache() {
+        return cache;
+    }
+
+    public void setCache(String cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Get the time to live of cached profiles.
+     *
+     * @return The time to live in seconds, or 0 if cached profiles never expire.
+     */
+    public long getCacheTtl() {
+        return (cacheTtl == null || cacheTtl < 0) ? 0 : cacheTtl;
+    }
+
+    public void setCacheTtl(Long cacheTtl) {
+        this.cacheTtl = cacheTtl;
+    }
+
+    /**
+     * Get the maximum number of profiles cached in memory.
+     *
+     * @return The configured size, or {@link #DEFAULT_CACHE_SIZE} if unspecified.
+     */
+    public int getCacheSize() {
+        return (cacheSize == null || cacheSize < 0) ? DEFAULT_CACHE_SIZE : cacheSize;
+    }
+
+    public void setCacheSize(Integer cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Get the maximum number of profiles cached on disk.
+     *
+     * @return The configured size, or {@link #DEFAULT_CACHE_DISK_SIZE} if unspecified.
+     */
+    public int getCacheDiskSize() {
+        return (cacheDiskSize == null || cacheDiskSize < 0) ? DEFAULT_CACHE_DISK_SIZE :
+                cacheDiskSize;
+    }
+
+    public void setCacheDiskSize(Integer cacheDiskSize) {
+        this.cacheDiskSize = cacheDiskSize;
+    }
+
+    /**
+     * Get the path of the file where the progress of the graph crawl is periodically saved.
+     *
+     * @return The checkpoint file path, or null if no checkpoint must be saved.
+     */
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(String checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Check whether the graph crawl must continue from the last checkpoint instead of starting
+     * over.
+     *
+     * @return true if the graph crawl must be resumed.
+     */
+    public boolean isResume() {
+        return resume != null && resume;
+    }
+
+    public void setResume(Boolean resume) {
+        this.resume = resume;
+    }
+
+    /**
+     * Get the minimum time between two checkpoints.
+     *
+     * @return The interval in seconds, or {@link #DEFAULT_CHECKPOINT_INTERVAL} if unspecified.
+     */
+    public long getCheckpointInterval() {
+        return (checkpointInterval == null || checkpointInterval < 0) ?
+                DEFAULT_CHECKPOINT_INTERVAL : checkpointInterval;
+    }
+
+    public void setCheckpointInterval(Long checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
     @Override public ProfileParameters buildFromJsonElement(JsonElement json) {
         return PluginConfigHelper.buildFromJson(json, ProfileParameters.class);
     }
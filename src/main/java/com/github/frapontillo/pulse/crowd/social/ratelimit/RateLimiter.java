@@ -0,0 +1,244 @@
+package com.github.frapontillo.pulse.crowd.social.ratelimit;
+
+import com.github.frapontillo.pulse.crowd.social.exception.RateLimitedException;
+import rx.Observable;
+import rx.Scheduler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A token bucket limiting the rate of the requests sent to a source, shared by all the plugins
+ * and pipelines using the same source (see {@link RateLimiters}).
+ * <p/>
+ * Acquiring permits never blocks: {@link #reserve(int)} books the permits and returns how long
+ * the caller has to wait before using them, and {@link #limit(int, Scheduler)} delays the
+ * subscription to an {@link Observable} by that time. Since reservations are served in order,
+ * concurrent pipelines share the quota fairly.
+ * <p/>
+ * The rate adapts to the feedback of the source: it is set from the rate limit headers reported
+ * through {@link #update(long, long)}, cut in half on every {@link RateLimitedException}, and
+ * slowly brought back to the configured rate by successful requests.
+ *
+ * @author Francesco Pontillo
+ */
+public class RateLimiter {
+    public static final int DEFAULT_RETRIES = 3;
+    private static final long DEFAULT_RETRY_AFTER = 1000;
+    private static final double RECOVERY = 0.05;
+    private static final double NANOS = 1e9;
+
+    private final String source;
+    private double maxRate;
+    private double rate;
+    private double burst;
+    private double tokens;
+    private long lastRefill;
+    private long blockedUntil;
+
+    private final long created;
+    private double offered;
+    private long acquired;
+    private long delayed;
+    private long waitNanos;
+    private long rateLimited;
+
+    /**
+     * Create a limiter.
+     *
+     * @param source           The source the limiter applies to.
+     * @param permitsPerSecond The maximum number of permits per second, or
+     *                         {@link Double#POSITIVE_INFINITY} for no limit.
+     * @param burst            The maximum number of permits that can be acquired at once after
+     *                         a period of inactivity.
+     */
+    public RateLimiter(String source, double permitsPerSecond, double burst) {
+        this.source = source;
+        this.created = System.nanoTime();
+        this.lastRefill = created;
+        this.blockedUntil = created;
+        configure(permitsPerSecond, burst);
+    }
+
+    /**
+     * Change the maximum rate of the limiter, e.g. when an implementation learns the quota of its
+     * API.
+     *
+     * @param permitsPerSecond The maximum number of permits per second.
+     * @param burst            The maximum number of permits acquired at once.
+     */
+    public synchronized void configure(double permitsPerSecond, double burst) {
+        refill(System.nanoTime());
+        this.maxRate = permitsPerSecond;
+        this.rate = permitsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.tokens = Math.min(tokens, this.burst);
+        if (acquired == 0) {
+            this.tokens = this.burst;
+            this.offered = this.burst;
+        }
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    private boolean isUnlimited() {
+        return Double.isInfinite(rate);
+    }
+
+    private void refill(long now) {
+        if (now > lastRefill && !isUnlimited()) {
+            double added = (now - lastRefill) * rate / NANOS;
+            offered += added;
+            tokens = Math.min(burst, tokens + added);
+        }
+        lastRefill = Math.max(lastRefill, now);
+    }
+
+    /**
+     * Reserve some permits, without blocking.
+     *
+     * @param permits The number of permits to reserve.
+     *
+     * @return The number of milliseconds the caller must wait before using the permits.
+     */
+    public synchronized long reserve(int permits) {
+        long now = System.nanoTime();
+        refill(now);
+        long wait = Math.max(0, blockedUntil - now);
+        if (!isUnlimited()) {
+            tokens -= permits;
+            if (tokens < 0) {
+                wait = Math.max(wait, (long) (-tokens / rate * NANOS));
+            }
+        }
+        acquired += permits;
+        if (wait > 0) {
+            delayed++;
+            waitNanos += wait;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(wait + 999999);
+    }
+
+    /**
+     * Update the rate from the rate limit information returned by the source, e.g. the
+     * {@code X-RateLimit-Remaining} and {@code X-RateLimit-Reset} headers: the remaining requests
+     * are spread until the reset time, and no permit is given before it if there are none left.
+     *
+     * @param remaining  The number of requests left in the current window.
+     * @param resetAfter The number of milliseconds before the window is reset.
+     */
+    public synchronized void update(long remaining, long resetAfter) {
+        long now = System.nanoTime();
+        refill(now);
+        if (remaining <= 0) {
+            blockedUntil = Math.max(blockedUntil, now + TimeUnit.MILLISECONDS.toNanos(resetAfter));
+            tokens = Math.min(tokens, 0);
+            return;
+        }
+        if (resetAfter > 0) {
+            double windowRate = remaining * 1000.0 / resetAfter;
+            rate = Math.min(maxRate, windowRate);
+        }
+        tokens = Math.min(tokens, remaining);
+    }
+
+    /**
+     * Slow down after the source rejected a request for exceeding its rate limit: the rate is cut
+     * in half and no permit is given for the time requested by the source.
+     *
+     * @param retryAfter The number of milliseconds to wait, or a negative value if unknown.
+     */
+    public synchronized void onRateLimited(long retryAfter) {
+        long now = System.nanoTime();
+        refill(now);
+        rateLimited++;
+        if (!isUnlimited()) {
+            rate = Math.max(rate / 2, getStep());
+        }
+        long blockFor = (retryAfter >= 0) ? retryAfter : DEFAULT_RETRY_AFTER;
+        blockedUntil = Math.max(blockedUntil, now + TimeUnit.MILLISECONDS.toNanos(blockFor));
+        tokens = Math.min(tokens, 0);
+    }
+
+    /**
+     * Record a successful request, bringing the rate back towards the configured one.
+     */
+    public synchronized void onSuccess() {
+        if (rate < maxRate) {
+            refill(System.nanoTime());
+            rate = Math.min(maxRate, rate + getStep());
+        }
+    }
+
+    /**
+     * Get the rate change applied on every successful request, relative to the configured rate
+     * or, for unlimited limiters, to the rate learned from the source.
+     */
+    private double getStep() {
+        return (Double.isInfinite(maxRate) ? rate : maxRate) * RECOVERY;
+    }
+
+    /**
+     * Get the current statistics of the limiter.
+     *
+     * @return A {@link RateLimiterStats} snapshot.
+     */
+    public synchronized RateLimiterStats getStats() {
+        refill(System.nanoTime());
+        double utilization = isUnlimited() || offered <= 0 ? Double.NaN : acquired / offered;
+        return new RateLimiterStats(source, rate, acquired, delayed,
+                TimeUnit.NANOSECONDS.toMillis(waitNanos), rateLimited, utilization);
+    }
+
+    /**
+     * Delay the subscription to an {@link Observable} until some permits are available. Permits
+     * are reserved again at every subscription.
+     *
+     * @param permits   The number of permits to acquire.
+     * @param scheduler The {@link Scheduler} the delayed subscriptions are made on, which should
+     *                  be the one the {@link Observable} would be subscribed on otherwise.
+     * @param <T>       The type of the elements.
+     *
+     * @return A {@link rx.Observable.Transformer}.
+     */
+    public <T> Observable.Transformer<T, T> throttle(int permits, Scheduler scheduler) {
+        return observable -> Observable.defer(() -> {
+            long wait = reserve(permits);
+            return (wait > 0) ?
+                    observable.delaySubscription(wait, TimeUnit.MILLISECONDS, scheduler) :
+                    observable;
+        });
+    }
+
+    /**
+     * Throttle an {@link Observable} (see {@link #throttle(int, Scheduler)}) and subscribe to it
+     * again when it fails with a {@link RateLimitedException} before emitting anything, up to
+     * {@link #DEFAULT_RETRIES} times. Successful completions are reported with
+     * {@link #onSuccess()}.
+     *
+     * @param permits   The number of permits to acquire at every subscription.
+     * @param scheduler The {@link Scheduler} the delayed subscriptions are made on.
+     * @param <T>       The type of the elements.
+     *
+     * @return A {@link rx.Observable.Transformer}.
+     */
+    public <T> Observable.Transformer<T, T> limit(int permits, Scheduler scheduler) {
+        return observable -> Observable.defer(() -> {
+            AtomicBoolean emitted = new AtomicBoolean();
+            return observable.compose(this.<T>throttle(permits, scheduler))
+                    .doOnNext(element -> emitted.set(true))
+                    .doOnCompleted(this::onSuccess)
+                    .retryWhen(errors -> errors.zipWith(Observable.range(1, DEFAULT_RETRIES + 1),
+                            (error, attempt) -> {
+                                if (!(error instanceof RateLimitedException) || emitted.get() ||
+                                        attempt > DEFAULT_RETRIES) {
+                                    return Observable.error(error);
+                                }
+                                onRateLimited(((RateLimitedException) error).getRetryAfter());
+                                return Observable.just(attempt);
+                            }).flatMap(retry -> retry));
+        });
+    }
+}
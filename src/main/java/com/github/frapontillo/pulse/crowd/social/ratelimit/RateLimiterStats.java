@@ -0,0 +1,82 @@
+package com.github.frapontillo.pulse.crowd.social.ratelimit;
+
+import java.util.Locale;
+
+/**
+ * A snapshot of the statistics of a {@link RateLimiter}.
+ *
+ * @author Francesco Pontillo
+ */
+public class RateLimiterStats {
+    private final String source;
+    private final double rate;
+    private final long acquired;
+    private final long delayed;
+    private final long waitMillis;
+    private final long rateLimited;
+    private final double utilization;
+
+    RateLimiterStats(String source, double rate, long acquired, long delayed, long waitMillis,
+            long rateLimited, double utilization) {
+        this.source = source;
+        this.rate = rate;
+        this.acquired = acquired;
+        this.delayed = delayed;
+        this.waitMillis = waitMillis;
+        this.rateLimited = rateLimited;
+        this.utilization = utilization;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return The current number of permits per second, possibly infinite.
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * @return The number of permits acquired.
+     */
+    public long getAcquired() {
+        return acquired;
+    }
+
+    /**
+     * @return The number of acquisitions that had to wait.
+     */
+    public long getDelayed() {
+        return delayed;
+    }
+
+    /**
+     * @return The total time acquisitions had to wait, in milliseconds.
+     */
+    public long getWaitMillis() {
+        return waitMillis;
+    }
+
+    /**
+     * @return The number of requests rejected by the source for exceeding its rate limit.
+     */
+    public long getRateLimited() {
+        return rateLimited;
+    }
+
+    /**
+     * @return The ratio between the acquired permits and the permits made available since the
+     * limiter was created, or NaN if the limiter is unlimited.
+     */
+    public double getUtilization() {
+        return utilization;
+    }
+
+    @Override public String toString() {
+        return String.format(Locale.ROOT, "%s: %.3f permits/s, %d acquired, %d delayed " +
+                        "(%d ms), %d rate limited, %.1f%% utilization", source, rate, acquired,
+                delayed, waitMillis, rateLimited, utilization * 100);
+    }
+}
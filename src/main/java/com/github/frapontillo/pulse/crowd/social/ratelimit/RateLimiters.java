@@ -0,0 +1,73 @@
+package com.github.frapontillo.pulse.crowd.social.ratelimit;
+
+import com.github.frapontillo.pulse.crowd.social.metrics.MetricRegistry;
+import com.github.frapontillo.pulse.crowd.social.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The registry of the {@link RateLimiter}s of this node, one per source, so that all the plugins
+ * and pipelines using the same source share its quota.
+ *
+ * @author Francesco Pontillo
+ */
+public class RateLimiters {
+    private static final ConcurrentMap<String, RateLimiter> limiters = new ConcurrentHashMap<>();
+
+    /**
+     * Get the limiter of a source, creating an unlimited one if the source was never configured.
+     * Unlimited limiters still pause after a {@link
+     * com.github.frapontillo.pulse.crowd.social.exception.RateLimitedException}.
+     *
+     * @param source The name of the source.
+     *
+     * @return The {@link RateLimiter} of the source.
+     */
+    public static RateLimiter get(String source) {
+        return limiters.computeIfAbsent(source, key -> {
+            RateLimiter limiter = new RateLimiter(key, Double.POSITIVE_INFINITY, 1);
+            register(limiter, key + ".rateLimiter.");
+            return limiter;
+        });
+    }
+
+    private static void register(RateLimiter limiter, String prefix) {
+        MetricRegistry registry = Metrics.getRegistry();
+        registry.gauge(prefix + "rate", () -> limiter.getStats().getRate());
+        registry.gauge(prefix + "utilization", () -> limiter.getStats().getUtilization());
+        registry.gauge(prefix + "delayed", () -> limiter.getStats().getDelayed());
+        registry.gauge(prefix + "waitMillis", () -> limiter.getStats().getWaitMillis());
+        registry.gauge(prefix + "rateLimited", () -> limiter.getStats().getRateLimited());
+    }
+
+    /**
+     * Set the quota of a source.
+     *
+     * @param source           The name of the source.
+     * @param permitsPerSecond The maximum number of permits per second.
+     * @param burst            The maximum number of permits acquired at once.
+     *
+     * @return The {@link RateLimiter} of the source.
+     */
+    public static RateLimiter configure(String source, double permitsPerSecond, double burst) {
+        RateLimiter limiter = get(source);
+        limiter.configure(permitsPerSecond, burst);
+        return limiter;
+    }
+
+    /**
+     * Get the statistics of all the limiters.
+     *
+     * @return A {@link List} of {@link RateLimiterStats}.
+     */
+    public static List<RateLimiterStats> getStats() {
+        List<RateLimiterStats> stats = new ArrayList<>(limiters.size());
+        for (RateLimiter limiter : limiters.values()) {
+            stats.add(limiter.getStats());
+        }
+        return stats;
+    }
+}
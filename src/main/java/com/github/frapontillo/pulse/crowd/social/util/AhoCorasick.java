@@ -0,0 +1,157 @@
+package com.github.frapontillo.pulse.crowd.social.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An Aho-Corasick automaton that checks whether a text contains any of a set of terms in a single
+ * pass over the text, regardless of the number of terms.
+ * <p/>
+ * Transitions of every state are stored as sorted parallel arrays of characters and target
+ * states, looked up with a binary search. Instances are immutable and thread-safe.
+ *
+ * @author Francesco Pontillo
+ */
+public class AhoCorasick {
+    private static final char[] NO_KEYS = new char[0];
+    private static final int[] NO_TARGETS = new int[0];
+
+    private final char[][] keys;
+    private final int[][] targets;
+    private final int[] failure;
+    private final boolean[] terminal;
+    private final boolean matchesEverything;
+
+    /**
+     * Build the automaton for the given terms. Null terms are ignored.
+     *
+     * @param terms The terms to look for.
+     */
+    public AhoCorasick(Collection<String> terms) {
+        // build the trie with growable per-state transitions
+        List<char[]> trieKeys = new ArrayList<>();
+        List<int[]> trieTargets = new ArrayList<>();
+        List<Boolean> trieTerminal = new ArrayList<>();
+        trieKeys.add(NO_KEYS);
+        trieTargets.add(NO_TARGETS);
+        trieTerminal.add(false);
+        boolean hasEmptyTerm = false;
+        for (String term : terms) {
+            if (term == null) {
+                continue;
+            }
+            if (term.isEmpty()) {
+                hasEmptyTerm = true;
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < term.length(); i++) {
+                char c = term.charAt(i);
+                char[] stateKeys = trieKeys.get(state);
+                int index = Arrays.binarySearch(stateKeys, c);
+                if (index >= 0) {
+                    state = trieTargets.get(state)[index];
+                    continue;
+                }
+                int newState = trieKeys.size();
+                trieKeys.add(NO_KEYS);
+                trieTargets.add(NO_TARGETS);
+                trieTerminal.add(false);
+                int insertion = -index - 1;
+                trieKeys.set(state, insert(stateKeys, insertion, c));
+                trieTargets.set(state, insert(trieTargets.get(state), insertion, newState));
+                state = newState;
+            }
+            trieTerminal.set(state, true);
+        }
+        int states = trieKeys.size();
+        keys = trieKeys.toArray(new char[states][]);
+        targets = trieTargets.toArray(new int[states][]);
+        terminal = new boolean[states];
+        for (int i = 0; i < states; i++) {
+            terminal[i] = trieTerminal.get(i);
+        }
+        failure = new int[states];
+        matchesEverything = hasEmptyTerm;
+        buildFailureLinks();
+    }
+
+    /**
+     * Check whether a text contains any of the terms.
+     *
+     * @param text The text to scan, may be null.
+     *
+     * @return true if at least one term occurs in the text.
+     */
+    public boolean containsAny(CharSequence text) {
+        if (matchesEverything) {
+            return true;
+        }
+        if (text == null) {
+            return false;
+        }
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, text.charAt(i));
+            if (terminal[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int step(int state, char c) {
+        while (true) {
+            int index = Arrays.binarySearch(keys[state], c);
+            if (index >= 0) {
+                return targets[state][index];
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = failure[state];
+        }
+    }
+
+    /**
+     * Compute the failure link of every state with a breadth-first visit of the trie, and
+     * propagate terminal states along the failure links so that a match is detected as soon as
+     * any term ends.
+     */
+    private void buildFailureLinks() {
+        int[] queue = new int[keys.length];
+        int head = 0;
+        int tail = 0;
+        for (int child : targets[0]) {
+            failure[child] = 0;
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            for (int i = 0; i < keys[state].length; i++) {
+                int child = targets[state][i];
+                failure[child] = step(failure[state], keys[state][i]);
+                terminal[child] |= terminal[failure[child]];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    private static char[] insert(char[] array, int index, char value) {
+        char[] result = new char[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static int[] insert(int[] array, int index, int value) {
+        int[] result = new int[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.frapontillo.pulse.crowd.social.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Helpers to replace the content of files atomically, so that a crash never leaves a partially
+ * written file behind.
+ *
+ * @author Francesco Pontillo
+ */
+public class AtomicFiles {
+
+    /**
+     * Write some bytes to a file by writing them to a temporary file in the same directory, syncing
+     * it to disk and then moving it over the target.
+     *
+     * @param file The {@link File} to write.
+     * @param data The new content of the file.
+     *
+     * @throws IOException if the file can't be written.
+     */
+    public static void write(File file, byte[] data) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory " + parent + ".");
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(data);
+            out.getFD().sync();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Write a string to a file atomically, encoded as UTF-8.
+     *
+     * @param file    The {@link File} to write.
+     * @param content The new content of the file.
+     *
+     * @throws IOException if the file can't be written.
+     */
+    public static void write(File file, String content) throws IOException {
+        write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read the whole content of a file as a UTF-8 string.
+     *
+     * @param file The {@link File} to read.
+     *
+     * @return The content of the file, or null if it doesn't exist.
+     * @throws IOException if the file can't be read.
+     */
+    public static String read(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
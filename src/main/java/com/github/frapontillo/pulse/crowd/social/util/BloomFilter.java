@@ -0,0 +1,154 @@
+package com.github.frapontillo.pulse.crowd.social.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A Bloom filter over 64-bit hashes, sized from the expected number of insertions and the desired
+ * false positive probability.
+ * The probe positions are derived from the two 32-bit halves of each hash, so the values given to
+ * the filter must already be well distributed (e.g. computed with {@link Hashing}).
+ * <p/>
+ * This class is not thread-safe.
+ *
+ * @author Francesco Pontillo
+ */
+public class BloomFilter {
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    private long insertions;
+
+    /**
+     * Create a new Bloom filter.
+     *
+     * @param expectedInsertions The expected number of distinct values that will be added.
+     * @param falsePositiveRate  The desired false positive probability, in (0, 1).
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException(
+                    "The false positive rate must be in (0, 1), was " + falsePositiveRate + ".");
+        }
+        long n = Math.max(expectedInsertions, 1);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        m = Math.max(64, Math.min(m, 64L * Integer.MAX_VALUE));
+        bits = new long[(int) ((m + 63) >>> 6)];
+        bitCount = 64L * bits.length;
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    private BloomFilter(long[] bits, int hashCount, long insertions) {
+        this.bits = bits;
+        this.bitCount = 64L * bits.length;
+        this.hashCount = hashCount;
+        this.insertions = insertions;
+    }
+
+    /**
+     * Add a hash to the filter.
+     *
+     * @param hash The hash to add.
+     *
+     * @return true if the hash was definitely not in the filter before, false if it may have been.
+     */
+    public boolean put(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        boolean changed = false;
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+            int word = (int) (bit >>> 6);
+            long flag = 1L << bit;
+            if ((bits[word] & flag) == 0) {
+                bits[word] |= flag;
+                changed = true;
+            }
+        }
+        if (changed) {
+            insertions++;
+        }
+        return changed;
+    }
+
+    /**
+     * Check whether a hash may have been added to the filter.
+     *
+     * @param hash The hash to look for.
+     *
+     * @return false if the hash was definitely never added, true if it may have been.
+     */
+    public boolean mightContain(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of values that changed the filter when added, an approximation of the
+     * distinct values it holds.
+     *
+     * @return The approximate number of distinct values added.
+     */
+    public long getInsertions() {
+        return insertions;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Get an approximation of the heap memory used by this filter.
+     *
+     * @return The used memory, in bytes.
+     */
+    public long getMemoryUsage() {
+        return 8L * bits.length + 40;
+    }
+
+    /**
+     * Write the whole state of the filter, to be restored with {@link #read(DataInputStream)}.
+     *
+     * @param out The {@link DataOutputStream} to write to.
+     *
+     * @throws IOException if the state can't be written.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(hashCount);
+        out.writeLong(insertions);
+        out.writeInt(bits.length);
+        for (long word : bits) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Read a filter written by {@link #write(DataOutputStream)}.
+     *
+     * @param in The {@link DataInputStream} to read from.
+     *
+     * @return The restored {@link BloomFilter}.
+     * @throws IOException if the state can't be read.
+     */
+    public static BloomFilter read(DataInputStream in) throws IOException {
+        int hashCount = in.readInt();
+        long insertions = in.readLong();
+        int length = in.readInt();
+        if (hashCount < 1 || length < 1) {
+            throw new IOException("Invalid Bloom filter state.");
+        }
+        long[] bits = new long[length];
+        for (int i = 0; i < length; i++) {
+            bits[i] = in.readLong();
+        }
+        return new BloomFilter(bits, hashCount, insertions);
+    }
+}
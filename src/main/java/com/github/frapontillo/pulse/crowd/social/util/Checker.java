@@ -2,39 +2,67 @@ package com.github.frapontillo.pulse.crowd.social.util;
 
 import com.github.frapontillo.pulse.crowd.data.entity.Message;
 import com.github.frapontillo.pulse.crowd.social.extraction.ExtractionParameters;
+import com.github.frapontillo.pulse.crowd.social.geo.GeoRegionIndex;
+import com.github.frapontillo.pulse.crowd.social.metrics.Counter;
 import com.github.frapontillo.pulse.util.StringUtil;
 import rx.functions.Func1;
 
 /**
+ * Message predicates to filter extracted messages according to some {@link ExtractionParameters}.
+ * <p/>
+ * When several predicates are needed, prefer {@link #checkAll(ExtractionParameters)}, which
+ * evaluates all of them in a single, precompiled predicate.
+ * Messages without the field required by a predicate, such as the date or the recipients, are
+ * rejected. Every predicate counts the messages it discards in the same
+ * {@code <source>.filter.rejected.<stage>} counters of
+ * {@link com.github.frapontillo.pulse.crowd.social.metrics.Metrics} as the compiled filter, where
+ * the source is the one of the parameters when the predicate is built.
+ *
  * @author Francesco Pontillo
  */
 public class Checker {
+    /**
+     * Build a single predicate equivalent to chaining all the other predicates of this class.
+     *
+     * @param parameters The {@link ExtractionParameters} messages must match.
+     *
+     * @return A {@link CompiledMessageFilter} for the parameters.
+     */
+    public static Func1<Message, Boolean> checkAll(final ExtractionParameters parameters) {
+        return new CompiledMessageFilter(parameters);
+    }
+
     public static Func1<Message, Boolean> checkNonNullMessage() {
-        return message -> (!StringUtil.isNullOrEmpty(message.getText()));
+        return counted(null, "text", message -> (!StringUtil.isNullOrEmpty(message.getText())));
     }
 
     public static Func1<Message, Boolean> checkQuery(final ExtractionParameters parameters) {
-        return message -> parameters.getQuery() == null || parameters.getQuery().size() == 0 ||
-                StringUtil.containsAnyString(message.getText(), parameters.getQuery());
+        return counted(parameters, "query", message -> parameters.getQuery() == null ||
+                parameters.getQuery().size() == 0 ||
+                StringUtil.containsAnyString(message.getText(), parameters.getQuery()));
     }
 
     public static Func1<Message, Boolean> checkFromUser(final ExtractionParameters parameters) {
-        return message -> (StringUtil.isNullOrEmpty(parameters.getFrom()) ||
-                parameters.getFrom().equals(message.getFromUser()));
+        return counted(parameters, "from", message -> (StringUtil.isNullOrEmpty(
+                parameters.getFrom()) || parameters.getFrom().equals(message.getFromUser())));
     }
 
     public static Func1<Message, Boolean> checkToUser(final ExtractionParameters parameters) {
-        return message -> (StringUtil.isNullOrEmpty(parameters.getTo()) ||
-                message.getToUsers().contains(parameters.getTo()));
+        return counted(parameters, "to", message -> (StringUtil.isNullOrEmpty(parameters.getTo()) ||
+                (message.getToUsers() != null &&
+                        message.getToUsers().contains(parameters.getTo()))));
     }
 
     public static Func1<Message, Boolean> checkReferencedUsers(
             final ExtractionParameters parameters) {
-        return message -> {
+        return counted(parameters, "references", message -> {
             // if no referenced users are requested
             if (parameters.getReferences() == null || parameters.getReferences().size() <= 0) {
                 return true;
             }
+            if (message.getRefUsers() == null) {
+                return false;
+            }
             // for each ref user to check
             for (String user : parameters.getReferences()) {
                 // if the message does not contain it, return false
@@ -43,26 +71,65 @@ public class Checker {
                 }
             }
             return true;
-        };
+        });
     }
 
     public static Func1<Message, Boolean> checkUntilDate(final ExtractionParameters parameters) {
-        return message -> parameters.getUntil() == null ||
-                message.getDate().compareTo(parameters.getUntil()) <= 0;
+        return counted(parameters, "date", message -> parameters.getUntil() == null ||
+                (message.getDate() != null &&
+                        message.getDate().compareTo(parameters.getUntil()) <= 0));
     }
 
     public static Func1<Message, Boolean> checkSinceDate(final ExtractionParameters parameters) {
-        return message -> parameters.getSince() == null ||
-                message.getDate().compareTo(parameters.getSince()) >= 0;
+        return counted(parameters, "date", message -> parameters.getSince() == null ||
+                (message.getDate() != null &&
+                        message.getDate().compareTo(parameters.getSince()) >= 0));
     }
 
     public static Func1<Message, Boolean> checkLanguage(final ExtractionParameters parameters) {
-        return message -> parameters.getLanguage() == null ||
-                parameters.getLanguage().equals(message.getLanguage());
+        return counted(parameters, "language", message -> parameters.getLanguage() == null ||
+                parameters.getLanguage().equals(message.getLanguage()));
     }
 
     public static Func1<Message, Boolean> checkLocation(final ExtractionParameters parameters) {
-        return message -> parameters.getGeoLocationBox() == null || parameters.getGeoLocationBox()
-                .contains(message.getLongitude(), message.getLatitude());
+        return counted(parameters, "location", message -> parameters.getGeoLocationBox() == null ||
+                parameters.getGeoLocationBox()
+                        .contains(message.getLongitude(), message.getLatitude()));
+    }
+
+    /**
+     * Build a predicate accepting the messages located in at least one of many regions, tagging
+     * them with the tags of all the regions they are located in, with a single index lookup.
+     * Unlike {@link #checkLocation(ExtractionParameters)}, messages without a location are
+     * rejected.
+     *
+     * @param regions The {@link GeoRegionIndex} of the regions.
+     *
+     * @return A predicate tagging the messages as a side effect, see
+     * {@link GeoRegionIndex#tag(Message)}.
+     */
+    public static Func1<Message, Boolean> checkRegions(final GeoRegionIndex regions) {
+        return regions::tag;
+    }
+
+    /**
+     * Count the messages discarded by a predicate.
+     *
+     * @param parameters The {@link ExtractionParameters} of the predicate, may be null.
+     * @param stage      The name of the stage of the predicate.
+     * @param predicate  The predicate to count the discarded messages of.
+     *
+     * @return A predicate with the same results.
+     */
+    private static Func1<Message, Boolean> counted(ExtractionParameters parameters, String stage,
+            Func1<Message, Boolean> predicate) {
+        Counter rejected = CompiledMessageFilter.getRejectedCounter(parameters, stage);
+        return message -> {
+            if (predicate.call(message)) {
+                return true;
+            }
+            rejected.increment();
+            return false;
+        };
     }
 }
@@ -0,0 +1,126 @@
+package com.github.frapontillo.pulse.crowd.social.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Helpers to save and load binary checkpoints atomically (see {@link AtomicFiles}).
+ * <p/>
+ * Every checkpoint starts with a magic number identifying its type and version, so that a
+ * checkpoint of a different kind or of an older format is never loaded by mistake.
+ *
+ * @author Francesco Pontillo
+ */
+public class CheckpointFile {
+
+    /**
+     * Writes the content of a checkpoint.
+     */
+    public interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Reads the content of a checkpoint.
+     */
+    public interface Reader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * Save a checkpoint, replacing the previous one.
+     *
+     * @param file   The checkpoint {@link File}.
+     * @param magic  The magic number of the checkpoint type.
+     * @param writer The {@link Writer} of the content.
+     *
+     * @throws IOException if the checkpoint can't be written.
+     */
+    public static void save(File file, int magic, Writer writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(magic);
+            writer.write(out);
+        }
+        AtomicFiles.write(file, bytes.toByteArray());
+    }
+
+    /**
+     * Load a checkpoint.
+     *
+     * @param file   The checkpoint {@link File}.
+     * @param magic  The magic number of the checkpoint type.
+     * @param reader The {@link Reader} of the content.
+     * @param <T>    The type of the checkpoint.
+     *
+     * @return The loaded checkpoint, or null if the file doesn't exist.
+     * @throws IOException if the file can't be read or isn't a checkpoint of the given type.
+     */
+    public static <T> T load(File file, int magic, Reader<T> reader) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != magic) {
+                throw new IOException(file + " is not a valid checkpoint.");
+            }
+            return reader.read(in);
+        }
+    }
+
+    /**
+     * Write a nullable string of any length, encoded as UTF-8.
+     */
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by {@link #writeString(DataOutputStream, String)}.
+     */
+    public static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write all the values of a {@link LongHashSet}.
+     */
+    public static void writeSet(DataOutputStream out, LongHashSet set) throws IOException {
+        long[] values = set.toArray();
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    /**
+     * Read a {@link LongHashSet} written by {@link #writeSet(DataOutputStream, LongHashSet)}.
+     */
+    public static LongHashSet readSet(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        LongHashSet set = new LongHashSet(size);
+        for (int i = 0; i < size; i++) {
+            set.add(in.readLong());
+        }
+        return set;
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.frapontillo.pulse.crowd.social.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * Converts the elements of a list in parallel on a {@link ForkJoinPool}, by recursively splitting
+ * the list into chunks of at most a given size. The output keeps the order of the input.
+ *
+ * @author Francesco Pontillo
+ */
+public class ChunkedConversion {
+    public static final int DEFAULT_CHUNK_SIZE = 64;
+
+    /**
+     * Convert all the elements of {@code originals} and append the results to {@code addTo}, in
+     * the same order. Lists that fit in a single chunk are converted on the calling thread.
+     *
+     * @param originals The elements to convert, must support fast random access.
+     * @param addTo     The list to append the converted elements to.
+     * @param converter The conversion function, must be thread-safe.
+     * @param chunkSize The maximum number of elements converted by a single task.
+     * @param pool      The {@link ForkJoinPool} to run the conversion on.
+     * @param <T>       The type of the converted elements.
+     *
+     * @return The {@code addTo} list.
+     */
+    public static <T> List<T> convert(List<?> originals, List<T> addTo,
+            Function<Object, T> converter, int chunkSize, ForkJoinPool pool) {
+        int size = originals.size();
+        if (chunkSize < 1) {
+            chunkSize = DEFAULT_CHUNK_SIZE;
+        }
+        if (size <= chunkSize) {
+            for (Object original : originals) {
+                addTo.add(converter.apply(original));
+            }
+            return addTo;
+        }
+        Object[] converted = new Object[size];
+        pool.invoke(new ChunkTask(originals, converted, converter, chunkSize, 0, size));
+        addTo.addAll((List<T>) Arrays.asList(converted));
+        return addTo;
+    }
+
+    private static class ChunkTask extends RecursiveAction {
+        private final List<?> originals;
+        private final Object[] converted;
+        private final Function<Object, ?> converter;
+        private final int chunkSize;
+        private final int from;
+        private final int to;
+
+        private ChunkTask(List<?> originals, Object[] converted, Function<Object, ?> converter,
+                int chunkSize, int from, int to) {
+            this.originals = originals;
+            this.converted = converted;
+            this.converter = converter;
+            this.chunkSize = chunkSize;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override protected void compute() {
+            if (to - from <= chunkSize) {
+                for (int i = from; i < to; i++) {
+                    converted[i] = converter.apply(originals.get(i));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ChunkTask(originals, converted, converter, chunkSize, from, middle),
+                    new ChunkTask(originals, converted, converter, chunkSize, middle, to));
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.github.frapontillo.pulse.crowd.social.util;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.extraction.ExtractionParameters;
+import com.github.frapontillo.pulse.crowd.social.extraction.GeoLocationBox;
+import com.github.frapontillo.pulse.crowd.social.metrics.Counter;
+import com.github.frapontillo.pulse.crowd.social.metrics.Metrics;
+import com.github.frapontillo.pulse.util.StringUtil;
+import rx.functions.Func1;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single message predicate equivalent to chaining all the {@link Checker} predicates, compiled
+ * once from some {@link ExtractionParameters}.
+ * <p/>
+ * The parameters are read only when the filter is built: dates become epoch milliseconds, query
+ * terms an {@link AhoCorasick} automaton and referenced users a hash index. Only the checks
+ * required by the parameters are evaluated, from the cheapest to the most expensive one.
+ * Instances are thread-safe, so they can be shared among streams; discarded messages are counted
+ * by the {@code <source>.filter.rejected.<stage>} counters of
+ * {@link com.github.frapontillo.pulse.crowd.social.metrics.Metrics}.
+ *
+ * @author Francesco Pontillo
+ */
+public class CompiledMessageFilter implements Func1<Message, Boolean> {
+    private static final String[] STAGES =
+            {"date", "language", "from", "text", "location", "to", "references", "query"};
+    private static final int DATE = 0;
+    private static final int LANGUAGE = 1;
+    private static final int FROM = 2;
+    private static final int TEXT = 3;
+    private static final int LOCATION = 4;
+    private static final int TO = 5;
+    private static final int REFERENCES = 6;
+    private static final int QUERY = 7;
+
+    private final boolean requireText;
+    private final boolean checkSince;
+    private final long since;
+    private final boolean checkUntil;
+    private final long until;
+    private final String language;
+    private final String from;
+    private final GeoLocationBox location;
+    private final String to;
+    private final Map<String, Integer> references;
+    private final AhoCorasick query;
+    private final Counter[] rejected;
+
+    /**
+     * Compile a filter equivalent to all the {@link Checker} predicates, including
+     * {@link Checker#checkNonNullMessage()}.
+     *
+     * @param parameters The {@link ExtractionParameters} messages must match.
+     */
+    public CompiledMessageFilter(ExtractionParameters parameters) {
+        this(parameters, true);
+    }
+
+    /**
+     * Compile a filter equivalent to all the {@link Checker} predicates.
+     *
+     * @param parameters  The {@link ExtractionParameters} messages must match.
+     * @param requireText Whether messages without text must be discarded, as in
+     *                    {@link Checker#checkNonNullMessage()}.
+     */
+    public CompiledMessageFilter(ExtractionParameters parameters, boolean requireText) {
+        this.requireText = requireText;
+        this.checkSince = parameters.getSince() != null;
+        this.since = checkSince ? parameters.getSince().getTime() : 0;
+        this.checkUntil = parameters.getUntil() != null;
+        this.until = checkUntil ? parameters.getUntil().getTime() : 0;
+        this.language = parameters.getLanguage();
+        this.from = StringUtil.isNullOrEmpty(parameters.getFrom()) ? null : parameters.getFrom();
+        this.location = parameters.getGeoLocationBox();
+        this.to = StringUtil.isNullOrEmpty(parameters.getTo()) ? null : parameters.getTo();
+        List<String> referenceList = parameters.getReferences();
+        if (referenceList != null && referenceList.size() > 0) {
+            references = new HashMap<>(referenceList.size() * 2);
+            for (String reference : referenceList) {
+                references.putIfAbsent(reference, references.size());
+            }
+        } else {
+            references = null;
+        }
+        List<String> queryList = parameters.getQuery();
+        if (queryList != null && queryList.size() > 0) {
+            this.query = new AhoCorasick(queryList);
+        } else {
+            this.query = null;
+        }
+        this.rejected = new Counter[STAGES.length];
+        for (int i = 0; i < STAGES.length; i++) {
+            rejected[i] = getRejectedCounter(parameters, STAGES[i]);
+        }
+    }
+
+    @Override public Boolean call(Message message) {
+        return test(message);
+    }
+
+    /**
+     * Check whether a message matches the parameters the filter was compiled from.
+     *
+     * @param message The {@link Message} to check.
+     *
+     * @return true if the message matches.
+     */
+    public boolean test(Message message) {
+        if (checkSince || checkUntil) {
+            if (message.getDate() == null) {
+                return reject(DATE);
+            }
+            long date = message.getDate().getTime();
+            if ((checkSince && date < since) || (checkUntil && date > until)) {
+                return reject(DATE);
+            }
+        }
+        if (language != null && !language.equals(message.getLanguage())) {
+            return reject(LANGUAGE);
+        }
+        if (from != null && !from.equals(message.getFromUser())) {
+            return reject(FROM);
+        }
+        if (requireText && StringUtil.isNullOrEmpty(message.getText())) {
+            return reject(TEXT);
+        }
+        if (location != null && !location.contains(message.getLongitude(), message.getLatitude())) {
+            return reject(LOCATION);
+        }
+        if (to != null && (message.getToUsers() == null || !message.getToUsers().contains(to))) {
+            return reject(TO);
+        }
+        if (references != null && !containsAllReferences(message.getRefUsers())) {
+            return reject(REFERENCES);
+        }
+        return query == null || query.containsAny(message.getText()) || reject(QUERY);
+    }
+
+    /**
+     * Count a message discarded by a stage of the filter.
+     *
+     * @return Always false, to be returned by {@link #test(Message)}.
+     */
+    private boolean reject(int stage) {
+        rejected[stage].increment();
+        return false;
+    }
+
+    /**
+     * Get the counter of the messages discarded by a stage, shared with the {@link Checker}
+     * predicates of the same stage.
+     *
+     * @param parameters The {@link ExtractionParameters} messages are filtered with, may be null.
+     * @param stage      The name of the stage, e.g. {@code date} or {@code query}.
+     *
+     * @return The {@code <source>.filter.rejected.<stage>} {@link Counter}.
+     */
+    static Counter getRejectedCounter(ExtractionParameters parameters, String stage) {
+        String source = (parameters != null && parameters.getSource() != null) ?
+                parameters.getSource() : "messages";
+        return Metrics.getRegistry().counter(source + ".filter.rejected." + stage);
+    }
+
+    /**
+     * Check whether the referenced users of a message include all the required ones, with a
+     * single pass over the message references.
+     */
+    private boolean containsAllReferences(List<String> messageReferences) {
+        if (messageReferences == null || messageReferences.size() < references.size()) {
+            return false;
+        }
+        int required = references.size();
+        if (required <= 64) {
+            long found = 0;
+            for (String reference : messageReferences) {
+                Integer index = references.get(reference);
+                if (index != null) {
+                    found |= 1L << index;
+                }
+            }
+            return Long.bitCount(found) == required;
+        }
+        BitSet found = new BitSet(required);
+        for (String reference : messageReferences) {
+            Integer index = references.get(reference);
+            if (index != null) {
+                found.set(index);
+            }
+        }
+        return found.cardinality() == required;
+    }
+}
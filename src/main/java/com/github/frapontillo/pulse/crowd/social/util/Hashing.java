@@ -0,0 +1,66 @@
+package com.github.frapontillo.pulse.crowd.social.util;
+
+/**
+ * Fast, non-cryptographic 64-bit hashing of strings, used to store keys in compact primitive
+ * structures instead of keeping the original objects around.
+ *
+ * @author Francesco Pontillo
+ */
+public class Hashing {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Compute the 64-bit hash of a string, as a FNV-1a hash of its characters followed by the
+     * MurmurHash3 finalizer, so that both halves of the result are well distributed.
+     *
+     * @param value The {@link CharSequence} to hash, may be null.
+     *
+     * @return The 64-bit hash of the string.
+     */
+    public static long hash64(CharSequence value) {
+        long hash = FNV_OFFSET_BASIS;
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+                hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+            }
+        } else {
+            hash = ~hash;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Compute the 64-bit hash of multiple strings, so that different splits of the same characters
+     * produce different hashes.
+     *
+     * @param values The {@link CharSequence}s to hash.
+     *
+     * @return The combined 64-bit hash.
+     */
+    public static long hash64(CharSequence... values) {
+        long hash = FNV_OFFSET_BASIS;
+        for (CharSequence value : values) {
+            hash = (hash ^ hash64(value)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Apply the MurmurHash3 64-bit finalizer to a value.
+     *
+     * @param hash The value to mix.
+     *
+     * @return The mixed value.
+     */
+    public static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,204 @@
+package com.github.frapontillo.pulse.crowd.social.util;
+
+import java.util.Arrays;
+
+/**
+ * A set of primitive {@code long}s backed by an open-addressing table with linear probing.
+ * It uses 8 bytes per slot and no per-element objects, making it much more compact than a
+ * {@link java.util.HashSet} of boxed values or of the original keys.
+ * <p/>
+ * This class is not thread-safe.
+ *
+ * @author Francesco Pontillo
+ */
+public class LongHashSet {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+    // 0 marks empty slots, so it is tracked separately
+    private static final long EMPTY = 0L;
+
+    private long[] table;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    private boolean containsEmpty;
+
+    public LongHashSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a set able to hold the given number of elements without resizing.
+     *
+     * @param expectedSize The expected number of elements.
+     */
+    public LongHashSet(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * Add a value to the set.
+     *
+     * @param value The value to add.
+     *
+     * @return true if the value was not already in the set.
+     */
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsEmpty) {
+                return false;
+            }
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+        int index = indexOf(value);
+        while (table[index] != EMPTY) {
+            if (table[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        table[index] = value;
+        if (++size > resizeThreshold) {
+            rehash(table.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Check if a value is in the set.
+     *
+     * @param value The value to look for.
+     *
+     * @return true if the set contains the value.
+     */
+    public boolean contains(long value) {
+        if (value == EMPTY) {
+            return containsEmpty;
+        }
+        int index = indexOf(value);
+        while (table[index] != EMPTY) {
+            if (table[index] == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Remove a value from the set, shifting back the following entries of its probe sequence so
+     * that no tombstones are needed.
+     *
+     * @param value The value to remove.
+     *
+     * @return true if the value was in the set.
+     */
+    public boolean remove(long value) {
+        if (value == EMPTY) {
+            if (!containsEmpty) {
+                return false;
+            }
+            containsEmpty = false;
+            size--;
+            return true;
+        }
+        int index = indexOf(value);
+        while (table[index] != value) {
+            if (table[index] == EMPTY) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        int gap = index;
+        int next = (gap + 1) & mask;
+        while (table[next] != EMPTY) {
+            int home = indexOf(table[next]);
+            // move the entry back if its home slot isn't cyclically in (gap, next]
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                table[gap] = table[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[gap] = EMPTY;
+        size--;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(table, EMPTY);
+        containsEmpty = false;
+        size = 0;
+    }
+
+    /**
+     * Get an approximation of the heap memory used by this set.
+     *
+     * @return The used memory, in bytes.
+     */
+    public long getMemoryUsage() {
+        return 8L * table.length + 32;
+    }
+
+    /**
+     * Copy all the values of the set into a new array, in no particular order.
+     *
+     * @return A new array containing all the values.
+     */
+    public long[] toArray() {
+        long[] values = new long[size];
+        int i = 0;
+        if (containsEmpty) {
+            values[i++] = EMPTY;
+        }
+        for (long value : table) {
+            if (value != EMPTY) {
+                values[i++] = value;
+            }
+        }
+        return values;
+    }
+
+    private int indexOf(long value) {
+        return (int) Hashing.mix(value) & mask;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldTable = table;
+        allocate(newCapacity);
+        for (long value : oldTable) {
+            if (value != EMPTY) {
+                int index = indexOf(value);
+                while (table[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                table[index] = value;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR) + 1;
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < needed && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
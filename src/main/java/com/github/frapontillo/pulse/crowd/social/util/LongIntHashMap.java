@@ -0,0 +1,197 @@
+package com.github.frapontillo.pulse.crowd.social.util;
+
+import java.util.Arrays;
+
+/**
+ * A map from primitive {@code long}s to non-negative {@code int}s, backed by an open-addressing
+ * table with linear probing like {@link LongHashSet}, with no per-entry objects.
+ * <p/>
+ * This class is not thread-safe.
+ *
+ * @author Francesco Pontillo
+ */
+public class LongIntHashMap {
+    /**
+     * The value returned for missing keys.
+     */
+    public static final int MISSING = -1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+    // 0 marks empty slots, so its value is tracked separately
+    private static final long EMPTY = 0L;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    private int emptyKeyValue = MISSING;
+
+    public LongIntHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a map able to hold the given number of entries without resizing.
+     *
+     * @param expectedSize The expected number of entries.
+     */
+    public LongIntHashMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * Get the value of a key.
+     *
+     * @param key The key to look for.
+     *
+     * @return The value of the key, or {@link #MISSING} if the map doesn't contain it.
+     */
+    public int get(long key) {
+        if (key == EMPTY) {
+            return emptyKeyValue;
+        }
+        int index = indexOf(key);
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    /**
+     * Set the value of a key, replacing the previous one.
+     *
+     * @param key   The key to set.
+     * @param value The non-negative value of the key.
+     */
+    public void put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Values must be non-negative, was " + value + ".");
+        }
+        if (key == EMPTY) {
+            if (emptyKeyValue == MISSING) {
+                size++;
+            }
+            emptyKeyValue = value;
+            return;
+        }
+        int index = indexOf(key);
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    /**
+     * Remove a key from the map, shifting back the following entries of its probe sequence so
+     * that no tombstones are needed.
+     *
+     * @param key The key to remove.
+     *
+     * @return The previous value of the key, or {@link #MISSING} if the map didn't contain it.
+     */
+    public int remove(long key) {
+        if (key == EMPTY) {
+            int previous = emptyKeyValue;
+            if (previous != MISSING) {
+                emptyKeyValue = MISSING;
+                size--;
+            }
+            return previous;
+        }
+        int index = indexOf(key);
+        while (keys[index] != key) {
+            if (keys[index] == EMPTY) {
+                return MISSING;
+            }
+            index = (index + 1) & mask;
+        }
+        int previous = values[index];
+        int gap = index;
+        int next = (gap + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = indexOf(keys[next]);
+            // move the entry back if its home slot isn't cyclically in (gap, next]
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        size--;
+        return previous;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        emptyKeyValue = MISSING;
+        size = 0;
+    }
+
+    /**
+     * Get an approximation of the heap memory used by this map.
+     *
+     * @return The used memory, in bytes.
+     */
+    public long getMemoryUsage() {
+        return 12L * keys.length + 48;
+    }
+
+    private int indexOf(long key) {
+        return (int) Hashing.mix(key) & mask;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int index = indexOf(oldKeys[i]);
+                while (keys[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR) + 1;
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < needed && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,134 @@
+package com.github.frapontillo.pulse.crowd.social.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * MinHash signatures of texts, estimating the Jaccard similarity of their sets of character
+ * shingles, split into bands for locality-sensitive hashing.
+ * <p/>
+ * Two texts with similarity {@code s} share at least one band key with probability
+ * {@code 1 - (1 - s^rows)^bands}, so that candidates for near-duplicates can be found by looking
+ * up the band keys only, and then confirmed with {@link #similarity(long[], long[])}.
+ * <p/>
+ * Instances are immutable and thread-safe.
+ *
+ * @author Francesco Pontillo
+ */
+public class MinHash {
+    private static final long SEED = 0x5DEECE66DL;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int bands;
+    private final int rows;
+    private final int shingleSize;
+    private final long[] multipliers;
+    private final long[] increments;
+
+    /**
+     * Create a new MinHash function family.
+     *
+     * @param bands       The number of bands of a signature.
+     * @param rows        The number of hashes per band.
+     * @param shingleSize The number of characters per shingle.
+     */
+    public MinHash(int bands, int rows, int shingleSize) {
+        if (bands < 1 || rows < 1 || shingleSize < 1) {
+            throw new IllegalArgumentException(
+                    "Bands, rows and shingle size must be positive.");
+        }
+        this.bands = bands;
+        this.rows = rows;
+        this.shingleSize = shingleSize;
+        int length = bands * rows;
+        multipliers = new long[length];
+        increments = new long[length];
+        // a fixed seed makes signatures comparable across instances and runs
+        Random random = new Random(SEED);
+        for (int i = 0; i < length; i++) {
+            multipliers[i] = random.nextLong() | 1;
+            increments[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Compute the signature of a text: for every hash function, the minimum hash of its
+     * shingles. Texts shorter than a shingle are treated as a single shingle.
+     *
+     * @param text The text, usually normalized.
+     *
+     * @return The signature of {@code bands * rows} hashes, or null if the text is empty.
+     */
+    public long[] signature(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return null;
+        }
+        long[] signature = new long[multipliers.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        int shingles = Math.max(1, text.length() - shingleSize + 1);
+        for (int start = 0; start < shingles; start++) {
+            long shingle = hashShingle(text, start, Math.min(start + shingleSize, text.length()));
+            for (int i = 0; i < signature.length; i++) {
+                long hash = multipliers[i] * shingle + increments[i];
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Get the key of every band of a signature. Keys of different bands are different even if
+     * their hashes are equal, so they can be stored in the same table.
+     *
+     * @param signature A signature computed by {@link #signature(CharSequence)}.
+     *
+     * @return The {@code bands} keys of the signature.
+     */
+    public long[] getBandKeys(long[] signature) {
+        long[] keys = new long[bands];
+        for (int band = 0; band < bands; band++) {
+            long key = band + 1;
+            for (int row = band * rows; row < (band + 1) * rows; row++) {
+                key = (key ^ signature[row]) * FNV_PRIME;
+            }
+            keys[band] = Hashing.mix(key);
+        }
+        return keys;
+    }
+
+    /**
+     * Estimate the Jaccard similarity of two texts from their signatures.
+     *
+     * @param first  The signature of the first text.
+     * @param second The signature of the second text, with the same length.
+     *
+     * @return The fraction of equal hashes, in [0, 1].
+     */
+    public static double similarity(long[] first, long[] second) {
+        int equal = 0;
+        for (int i = 0; i < first.length; i++) {
+            if (first[i] == second[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / first.length;
+    }
+
+    public int getBands() {
+        return bands;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    private static long hashShingle(CharSequence text, int start, int end) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        return Hashing.mix(hash);
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.frapontillo.pulse.crowd.social.test;
+
+import org.junit.Assert;
+import rx.Observable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the elements a fake plugin reports as started and ended, so that tests can check that
+ * every started element is also ended, even when the plugin fails.
+ * <p/>
+ * Fake plugins delegate their {@code reportElementAsStarted} and {@code reportElementAsEnded}
+ * methods to {@link #started(String)} and {@link #ended(String)}.
+ *
+ * @author Francesco Pontillo
+ */
+public class ElementReports {
+    private final AtomicInteger started = new AtomicInteger();
+    private final AtomicInteger ended = new AtomicInteger();
+
+    public void started(String id) {
+        started.incrementAndGet();
+    }
+
+    public void ended(String id) {
+        ended.incrementAndGet();
+    }
+
+    public int getStarted() {
+        return started.get();
+    }
+
+    public int getEnded() {
+        return ended.get();
+    }
+
+    /**
+     * Wait for the elements still being processed, e.g. by concurrent fetches that were running
+     * when the pipeline failed.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void awaitEnded() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (ended.get() < started.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Run a pipeline that must fail, and check that some elements were started and all of them
+     * were ended.
+     *
+     * @param pipeline The {@link Observable} that must fail.
+     * @param message  The message of the {@link IllegalStateException} the pipeline fails with.
+     *
+     * @throws InterruptedException if interrupted while waiting for the running elements.
+     */
+    public void assertStartedAndEndedOnError(Observable<?> pipeline, String message)
+            throws InterruptedException {
+        try {
+            pipeline.toList().toBlocking().single();
+            Assert.fail("The failing fetch should have been propagated.");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals(message, e.getMessage());
+        }
+        awaitEnded();
+        Assert.assertTrue(started.get() > 0);
+        Assert.assertEquals(started.get(), ended.get());
+    }
+}
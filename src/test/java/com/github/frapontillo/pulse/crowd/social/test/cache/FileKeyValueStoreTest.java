@@ -0,0 +1,109 @@
+package com.github.frapontillo.pulse.crowd.social.test.cache;
+
+import com.github.frapontillo.pulse.crowd.social.cache.FileKeyValueStore;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class FileKeyValueStoreTest {
+
+    private String read(FileKeyValueStore store, String key, long minTime) throws IOException {
+        String[] value = new String[1];
+        store.get(key, minTime, (v, time) -> value[0] = v);
+        return value[0];
+    }
+
+    @Test public void testPersistence() throws IOException {
+        File file = File.createTempFile("store", ".db");
+        file.deleteOnExit();
+        try (FileKeyValueStore store = new FileKeyValueStore(file, 100)) {
+            store.put("a", "first", 10);
+            store.put("b", "second", 20);
+            store.put("a", "third", 30);
+            store.remove("b");
+            Assert.assertEquals("third", read(store, "a", 0));
+            Assert.assertNull(read(store, "b", 0));
+        }
+        try (FileKeyValueStore store = new FileKeyValueStore(file, 100)) {
+            Assert.assertEquals(1, store.size());
+            Assert.assertEquals("third", read(store, "a", 0));
+            Assert.assertNull(read(store, "a", 31));
+        }
+    }
+
+    @Test public void testCompaction() throws IOException {
+        File file = File.createTempFile("store", ".db");
+        file.deleteOnExit();
+        try (FileKeyValueStore store = new FileKeyValueStore(file, 10)) {
+            for (int i = 0; i < 20; i++) {
+                store.put("key" + i, "value" + i, i);
+            }
+            Assert.assertTrue(store.needsCompaction());
+            // keys 0 and 1 expire, keys 2 to 9 exceed the size
+            Assert.assertEquals(8, store.compact(2));
+            Assert.assertEquals(10, store.size());
+            Assert.assertNull(read(store, "key9", 0));
+            Assert.assertEquals("value10", read(store, "key10", 0));
+            store.put("key20", "value20", 20);
+            Assert.assertEquals("value20", read(store, "key20", 0));
+        }
+    }
+
+    private void append(File file, byte[] bytes) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(out.length());
+            out.write(bytes);
+        }
+    }
+
+    @Test public void testTruncatedLengthPrefix() throws IOException {
+        File file = File.createTempFile("store", ".db");
+        file.deleteOnExit();
+        try (FileKeyValueStore store = new FileKeyValueStore(file, 100)) {
+            store.put("a", "first", 10);
+        }
+        long valid = file.length();
+        // the process died after writing two bytes of the next key length
+        append(file, new byte[]{0, 0});
+        try (FileKeyValueStore store = new FileKeyValueStore(file, 100)) {
+            Assert.assertEquals(valid, file.length());
+            store.put("b", "second", 20);
+        }
+        try (FileKeyValueStore store = new FileKeyValueStore(file, 100)) {
+            Assert.assertEquals(2, store.size());
+            Assert.assertEquals("first", read(store, "a", 0));
+            Assert.assertEquals("second", read(store, "b", 0));
+        }
+    }
+
+    @Test public void testCorruptedLengths() throws IOException {
+        File file = File.createTempFile("store", ".db");
+        file.deleteOnExit();
+        try (FileKeyValueStore store = new FileKeyValueStore(file, 100)) {
+            store.put("a", "first", 10);
+        }
+        long valid = file.length();
+        // a negative key length, followed by enough bytes to look like a record
+        append(file, new byte[]{-1, -1, -1, -2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+        try (FileKeyValueStore store = new FileKeyValueStore(file, 100)) {
+            Assert.assertEquals(valid, file.length());
+            Assert.assertEquals("first", read(store, "a", 0));
+        }
+        // a value length exceeding the file
+        append(file, new byte[]{0, 0, 0, 1, 'b', 0, 0, 0, 0, 0, 0, 0, 1, 0x7f, 0, 0, 0, 'x'});
+        try (FileKeyValueStore store = new FileKeyValueStore(file, 100)) {
+            Assert.assertEquals(valid, file.length());
+            Assert.assertEquals(1, store.size());
+            store.put("c", "third", 30);
+        }
+        try (FileKeyValueStore store = new FileKeyValueStore(file, 100)) {
+            Assert.assertEquals("third", read(store, "c", 0));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.frapontillo.pulse.crowd.social.test.cache;
+
+import com.github.frapontillo.pulse.crowd.social.cache.CachedResponse;
+import com.github.frapontillo.pulse.crowd.social.cache.EndpointType;
+import com.github.frapontillo.pulse.crowd.social.cache.ResponseCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class ResponseCacheTest {
+
+    private File newFile() throws IOException {
+        File file = File.createTempFile("responses", ".db");
+        file.deleteOnExit();
+        return file;
+    }
+
+    @Test public void testRequestKey() {
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("q", "pulse");
+        first.put("lang", "en");
+        first.put("ids", Arrays.asList("2", "1"));
+        first.put("cursor", null);
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("ids", Arrays.asList("1", "2"));
+        second.put("lang", " en");
+        second.put("q", "pulse");
+        Assert.assertEquals(ResponseCache.getRequestKey("/search", first),
+                ResponseCache.getRequestKey("/search ", second));
+        Assert.assertEquals("/search?ids=1,2&lang=en&q=pulse",
+                ResponseCache.getRequestKey("/search", second));
+    }
+
+    @Test public void testSharedUntilReleased() throws IOException {
+        File file = newFile();
+        ResponseCache first = ResponseCache.open(file, 100, 1 << 20, null);
+        ResponseCache second = ResponseCache.open(file, 100, 1 << 20, null);
+        Assert.assertSame(first, second);
+        first.release();
+        // still used by the second user
+        ResponseCache third = ResponseCache.open(file, 100, 1 << 20, null);
+        Assert.assertSame(first, third);
+        second.release();
+        third.release();
+        ResponseCache reopened = ResponseCache.open(file, 100, 1 << 20, null);
+        Assert.assertNotSame(first, reopened);
+        reopened.release();
+    }
+
+    @Test public void testHitsArePersisted() throws IOException {
+        File file = newFile();
+        AtomicInteger fetches = new AtomicInteger();
+        try (ResponseCache cache = new ResponseCache(file, 100, 1 << 20, null)) {
+            for (int i = 0; i < 3; i++) {
+                Assert.assertEquals("body", cache.fetch(EndpointType.PROFILE, "user", stale -> {
+                    fetches.incrementAndGet();
+                    return new CachedResponse("body", null, -1);
+                }));
+            }
+            Assert.assertEquals(2, cache.getStats().getHits());
+        }
+        try (ResponseCache cache = new ResponseCache(file, 100, 1 << 20, null)) {
+            Assert.assertEquals("body", cache.fetch(EndpointType.PROFILE, "user",
+                    stale -> new CachedResponse("other", null, -1)));
+        }
+        Assert.assertEquals(1, fetches.get());
+    }
+
+    @Test public void testRevalidation() throws IOException {
+        Map<EndpointType, Long> ttls = new EnumMap<>(EndpointType.class);
+        ttls.put(EndpointType.SEARCH, 0L);
+        try (ResponseCache cache = new ResponseCache(newFile(), 100, 1 << 20, ttls)) {
+            Assert.assertEquals("page", cache.fetch(EndpointType.SEARCH, "query", stale -> {
+                Assert.assertNull(stale);
+                return new CachedResponse("page", "v1", -1);
+            }));
+            Assert.assertEquals("page", cache.fetch(EndpointType.SEARCH, "query", stale -> {
+                Assert.assertEquals("v1", stale.getEtag());
+                return CachedResponse.notModified();
+            }));
+            Assert.assertEquals("new page", cache.fetch(EndpointType.SEARCH, "query",
+                    stale -> new CachedResponse("new page", "v2", -1)));
+            Assert.assertEquals(1, cache.getStats().getRevalidations());
+            Assert.assertEquals(2, cache.getStats().getMisses());
+        }
+    }
+
+    @Test public void testEviction() throws IOException {
+        try (ResponseCache cache = new ResponseCache(newFile(), 10, 1 << 20,
+                Collections.emptyMap())) {
+            for (int i = 0; i < 20; i++) {
+                String body = "body" + i;
+                cache.fetch(EndpointType.OTHER, "request" + i,
+                        stale -> new CachedResponse(body, null, -1));
+            }
+            Assert.assertTrue(cache.getStats().getEvictions() >= 10);
+            Map<String, Boolean> fetched = new HashMap<>();
+            cache.fetch(EndpointType.OTHER, "request19", stale -> {
+                fetched.put("request19", true);
+                return new CachedResponse("body19", null, -1);
+            });
+            Assert.assertTrue(fetched.isEmpty());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.frapontillo.pulse.crowd.social.test.distinct;
+
+import com.github.frapontillo.pulse.crowd.social.distinct.BloomDistinctFilter;
+import com.github.frapontillo.pulse.crowd.social.distinct.Distinct;
+import com.github.frapontillo.pulse.crowd.social.distinct.DistinctFilter;
+import com.github.frapontillo.pulse.crowd.social.distinct.ExactDistinctFilter;
+import com.github.frapontillo.pulse.crowd.social.distinct.WindowedDistinctFilter;
+import com.github.frapontillo.pulse.crowd.social.util.Hashing;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class DistinctFilterTest {
+
+    @Test public void testExact() {
+        DistinctFilter filter = new ExactDistinctFilter();
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertTrue(filter.add(Hashing.hash64("user" + i)));
+        }
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertFalse(filter.add(Hashing.hash64("user" + i)));
+        }
+        Assert.assertEquals(10000, filter.size());
+    }
+
+    @Test public void testApproximateFalsePositiveRate() {
+        int keys = 100000;
+        DistinctFilter filter = new BloomDistinctFilter(keys, 0.01);
+        int falsePositives = 0;
+        for (int i = 0; i < keys; i++) {
+            if (!filter.add(Hashing.hash64("user" + i))) {
+                falsePositives++;
+            }
+        }
+        for (int i = 0; i < keys; i++) {
+            Assert.assertFalse(filter.add(Hashing.hash64("user" + i)));
+        }
+        Assert.assertTrue("Too many false positives: " + falsePositives,
+                falsePositives < keys * 0.01);
+    }
+
+    @Test public void testWindowedForgetsOldKeys() {
+        DistinctFilter filter = new WindowedDistinctFilter(100, 0);
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(filter.add(Hashing.hash64("user" + i)));
+        }
+        // the last window is still remembered, the first keys are forgotten
+        Assert.assertFalse(filter.add(Hashing.hash64("user999")));
+        Assert.assertTrue(filter.add(Hashing.hash64("user0")));
+        Assert.assertTrue(filter.size() <= 200);
+    }
+
+    @Test public void testPersistence() throws IOException {
+        DistinctFilter[] filters = new DistinctFilter[]{new ExactDistinctFilter(),
+                new BloomDistinctFilter(10000, 0.01), new WindowedDistinctFilter(5000, 0)};
+        for (DistinctFilter filter : filters) {
+            for (int i = 0; i < 1000; i++) {
+                filter.add(Hashing.hash64("user" + i));
+            }
+            DistinctFilter restored = writeAndRead(filter);
+            Assert.assertEquals(filter.getMode(), restored.getMode());
+            Assert.assertEquals(filter.size(), restored.size());
+            for (int i = 0; i < 1000; i++) {
+                Assert.assertFalse(restored.add(Hashing.hash64("user" + i)));
+            }
+            Assert.assertTrue(restored.add(Hashing.hash64("new user")));
+        }
+    }
+
+    private DistinctFilter writeAndRead(DistinctFilter filter) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            Distinct.write(out, filter);
+        }
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            return Distinct.read(in);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.frapontillo.pulse.crowd.social.test.distinct;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.distinct.MessageDeduplicator;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class MessageDeduplicatorTest {
+
+    private Message buildMessage(String source, String oId, String text) {
+        Message message = new Message();
+        message.setSource(source);
+        message.setoId(oId);
+        message.setText(text);
+        return message;
+    }
+
+    @Test public void testNormalize() {
+        Assert.assertEquals("crowd pulse is out",
+                MessageDeduplicator.normalize("  Crowd-Pulse is OUT!! http://t.co/abc "));
+        Assert.assertEquals("see www example", MessageDeduplicator.normalize(
+                "see www.example.org/page www example"));
+        Assert.assertEquals("", MessageDeduplicator.normalize("https://example.org ..."));
+        Assert.assertEquals("", MessageDeduplicator.normalize(null));
+    }
+
+    @Test public void testFingerprintAcrossSources() {
+        Message tweet = buildMessage("twitter", "1", "Crowd Pulse is out! https://t.co/x");
+        Message post = buildMessage("facebook", "1_2", "crowd pulse is out https://fb.me/y");
+        Message other = buildMessage("facebook", "1_3", "crowd pulse is in");
+        Assert.assertEquals(MessageDeduplicator.getFingerprint(tweet),
+                MessageDeduplicator.getFingerprint(post));
+        Assert.assertNotEquals(MessageDeduplicator.getFingerprint(tweet),
+                MessageDeduplicator.getFingerprint(other));
+        Assert.assertNotEquals(MessageDeduplicator.getIdHash(tweet),
+                MessageDeduplicator.getIdHash(post));
+    }
+
+    @Test public void testFingerprintWithoutText() {
+        Message first = buildMessage("twitter", "1", "http://t.co/x");
+        Message second = buildMessage("twitter", "2", null);
+        Assert.assertEquals(MessageDeduplicator.getIdHash(first),
+                MessageDeduplicator.getFingerprint(first));
+        Assert.assertNotEquals(MessageDeduplicator.getFingerprint(first),
+                MessageDeduplicator.getFingerprint(second));
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.frapontillo.pulse.crowd.social.test.distinct;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.distinct.NearDuplicateCollapser;
+import com.github.frapontillo.pulse.crowd.social.distinct.NearDuplicateIndex;
+import com.github.frapontillo.pulse.crowd.social.distinct.NearDuplicateMode;
+import com.github.frapontillo.pulse.crowd.social.util.MinHash;
+import org.junit.Assert;
+import org.junit.Test;
+import rx.Observable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class NearDuplicateIndexTest {
+    private static final String TEXT =
+            "The new release of Crowd Pulse extracts and analyzes social messages in real time";
+
+    private final MinHash minHash = new MinHash(16, 4, 5);
+
+    @Test public void testClusters() {
+        NearDuplicateIndex index = new NearDuplicateIndex(minHash, 0.8, 100);
+        NearDuplicateIndex.Cluster original = index.add("1", TEXT + " http://t.co/abc");
+        NearDuplicateIndex.Cluster retweet = index.add("2", "RT @pulse: " + TEXT);
+        NearDuplicateIndex.Cluster copy = index.add("3", TEXT.toUpperCase() + "!!");
+        NearDuplicateIndex.Cluster other =
+                index.add("4", "Crowd Pulse was presented at the conference yesterday");
+        Assert.assertSame(original, retweet);
+        Assert.assertSame(original, copy);
+        Assert.assertEquals("1", copy.getId());
+        Assert.assertEquals(3, copy.getSize());
+        Assert.assertNotSame(original, other);
+        Assert.assertEquals(1, other.getSize());
+    }
+
+    @Test public void testWindow() {
+        NearDuplicateIndex index = new NearDuplicateIndex(minHash, 0.8, 10);
+        index.add("0", TEXT);
+        for (int i = 1; i <= 10; i++) {
+            index.add(String.valueOf(i), "Unrelated message number " + i + " about topic " + i * 7);
+        }
+        Assert.assertEquals(10, index.size());
+        Assert.assertEquals(1, index.add("11", TEXT).getSize());
+        Assert.assertEquals(2, index.add("12", TEXT).getSize());
+    }
+
+    @Test public void testEmptyText() {
+        NearDuplicateIndex index = new NearDuplicateIndex(minHash, 0.8, 10);
+        Assert.assertEquals(1, index.add("1", null).getSize());
+        Assert.assertEquals(1, index.add("2", "http://t.co/abc").getSize());
+        Assert.assertEquals(0, index.size());
+    }
+
+    @Test public void testTag() {
+        NearDuplicateIndex index = new NearDuplicateIndex(minHash, 0.8, 10);
+        Message message = new Message();
+        message.setCustomTags(Collections.unmodifiableList(Arrays.asList("job", "cluster:0")));
+        index.add("1", TEXT);
+        NearDuplicateCollapser.tag(message, index.add("2", TEXT));
+        Assert.assertEquals(Arrays.asList("job", "cluster:1", "cluster-index:2"),
+                message.getCustomTags());
+    }
+
+    private static Message buildMessage(String oId, String text) {
+        Message message = new Message();
+        message.setoId(oId);
+        message.setText(text);
+        message.setCustomTags(Collections.singletonList("job"));
+        return message;
+    }
+
+    @Test public void testCollapseDropTagsCluster() {
+        List<Message> output = Observable.just(buildMessage("1", TEXT),
+                buildMessage("2", "RT @pulse: " + TEXT), buildMessage("3", "Something else"))
+                .compose(new NearDuplicateCollapser("collapse-drop", NearDuplicateMode.DROP,
+                        null, null).collapse()).toList().toBlocking().single();
+        Assert.assertEquals(2, output.size());
+        Assert.assertEquals(Arrays.asList("job", "cluster:1"), output.get(0).getCustomTags());
+        Assert.assertEquals(Arrays.asList("job", "cluster:3"), output.get(1).getCustomTags());
+    }
+
+    @Test public void testCollapseMarkTagsPosition() {
+        List<Message> output = Observable.just(buildMessage("1", TEXT),
+                buildMessage("2", "RT @pulse: " + TEXT))
+                .compose(new NearDuplicateCollapser("collapse-mark", NearDuplicateMode.MARK,
+                        null, null).collapse()).toList().toBlocking().single();
+        Assert.assertEquals(Arrays.asList("job", "cluster:1", "cluster-index:1"),
+                output.get(0).getCustomTags());
+        Assert.assertEquals(Arrays.asList("job", "cluster:1", "cluster-index:2"),
+                output.get(1).getCustomTags());
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.frapontillo.pulse.crowd.social.test.execution;
+
+import com.github.frapontillo.pulse.crowd.social.execution.ExecutionMode;
+import com.github.frapontillo.pulse.crowd.social.execution.ExecutionStrategies;
+import com.github.frapontillo.pulse.crowd.social.execution.ExecutionStrategy;
+import com.github.frapontillo.pulse.crowd.social.execution.SourceServices;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class ExecutionStrategyTest {
+
+    @Test public void testMaxConcurrentCalls() throws InterruptedException {
+        ExecutionStrategy strategy = new ExecutionStrategy("test", null, 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    strategy.execute(() -> {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        Thread.sleep(20);
+                        return running.decrementAndGet();
+                    });
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(2, maxRunning.get());
+        Assert.assertEquals(0, strategy.getActiveCalls());
+        Assert.assertEquals(0, strategy.getWaitingCalls());
+    }
+
+    @Test public void testFailedCallReleasesPermit() {
+        ExecutionStrategy strategy = new ExecutionStrategy("test", null, 1);
+        try {
+            strategy.execute(() -> {
+                throw new IOException("unavailable");
+            });
+            Assert.fail("The exception of the call must be thrown.");
+        } catch (IOException e) {
+            Assert.assertEquals("unavailable", e.getMessage());
+        }
+        Assert.assertEquals("ok", strategy.execute(() -> "ok"));
+    }
+
+    @Test public void testModePerSource() {
+        System.setProperty("pulse.execution.mode.mode-fixed", "fixed");
+        System.setProperty("pulse.execution.mode.mode-unknown", "unknown");
+        try {
+            Assert.assertEquals(ExecutionMode.FIXED, ExecutionStrategies.getMode("mode-fixed"));
+            Assert.assertEquals(ExecutionMode.ELASTIC,
+                    ExecutionStrategies.getMode("mode-unknown"));
+        } finally {
+            System.clearProperty("pulse.execution.mode.mode-fixed");
+            System.clearProperty("pulse.execution.mode.mode-unknown");
+        }
+    }
+
+    @Test public void testModeChosenBySourceServices() {
+        SourceServices services = SourceServices.register(new SourceServices("mode-services") {
+            @Override protected ExecutionMode getExecutionMode() {
+                return ExecutionMode.FIXED;
+            }
+        });
+        Assert.assertSame(services, SourceServices.get("mode-services"));
+        ExecutionStrategy strategy = services.getExecutionStrategy();
+        Assert.assertSame(strategy, ExecutionStrategies.get("mode-services"));
+        Assert.assertEquals(ExecutionMode.FIXED, ExecutionStrategies.getMode("mode-services"));
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.frapontillo.pulse.crowd.social.test.extraction;
+
+import com.github.frapontillo.pulse.crowd.social.extraction.ExtractionCheckpoint;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class ExtractionCheckpointTest {
+
+    private File createFile() throws IOException {
+        File file = File.createTempFile("checkpoint", ".bin");
+        file.deleteOnExit();
+        file.delete();
+        return file;
+    }
+
+    @Test public void testCursorWaitsForDelivery() throws IOException {
+        ExtractionCheckpoint checkpoint = ExtractionCheckpoint.create(createFile());
+        ExtractionCheckpoint.Progress progress = checkpoint.track("task");
+        progress.fetch();
+        progress.fetch();
+        progress.cursor("page2");
+        progress.fetch();
+        progress.cursor("page3");
+        // the messages of the first page weren't delivered yet
+        Assert.assertNull(checkpoint.getCursor("task"));
+        progress.deliver();
+        progress.deliver();
+        Assert.assertEquals("page2", checkpoint.getCursor("task"));
+        Assert.assertEquals(3, progress.finish());
+        Assert.assertNull(checkpoint.getCompletedCount("task"));
+        progress.deliver();
+        Assert.assertEquals(Long.valueOf(3), checkpoint.getCompletedCount("task"));
+        Assert.assertNull(checkpoint.getCursor("task"));
+    }
+
+    @Test public void testPersistence() throws IOException {
+        File file = createFile();
+        ExtractionCheckpoint checkpoint = ExtractionCheckpoint.create(file);
+        ExtractionCheckpoint.Progress done = checkpoint.track("done");
+        done.fetch();
+        done.deliver();
+        done.finish();
+        ExtractionCheckpoint.Progress running = checkpoint.track("running");
+        running.cursor("next");
+        checkpoint.getEmitted().add(42);
+        checkpoint.save();
+
+        ExtractionCheckpoint loaded = ExtractionCheckpoint.load(file);
+        Assert.assertEquals(Long.valueOf(1), loaded.getCompletedCount("done"));
+        Assert.assertEquals("next", loaded.getCursor("running"));
+        Assert.assertTrue(loaded.getEmitted().contains(42));
+
+        loaded.delete();
+        Assert.assertFalse(file.exists());
+    }
+}
@@ -0,0 +1,244 @@
+package com.github.frapontillo.pulse.crowd.social.test.extraction;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.extraction.ExtractionMultiplexer;
+import com.github.frapontillo.pulse.crowd.social.extraction.ExtractionParameters;
+import com.github.frapontillo.pulse.crowd.social.extraction.IExtractor;
+import com.github.frapontillo.pulse.crowd.social.extraction.MessageCopier;
+import org.junit.Assert;
+import org.junit.Test;
+import rx.Observable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class ExtractionMultiplexerTest {
+
+    /**
+     * An extractor answering from an in-memory list of messages, recording the time interval of
+     * every upstream extraction.
+     */
+    private static class FakeExtractor extends IExtractor {
+        private final String name;
+        private final List<Message> messages = new ArrayList<>();
+        private final List<List<Long>> intervals =
+                Collections.synchronizedList(new ArrayList<>());
+
+        private FakeExtractor(String name) {
+            this.name = name;
+        }
+
+        private void add(String oId, String text, long date) {
+            Message message = new Message();
+            message.setoId(oId);
+            message.setSource(name);
+            message.setText(text);
+            message.setDate(new Date(date));
+            messages.add(message);
+        }
+
+        @Override public String getName() {
+            return name;
+        }
+
+        @Override public long getMaximumQueryParameters() {
+            return 0;
+        }
+
+        @Override public boolean getSupportQuery() {
+            return true;
+        }
+
+        @Override public boolean getSupportGeoLocation() {
+            return false;
+        }
+
+        @Override public boolean getSupportFrom() {
+            return false;
+        }
+
+        @Override public boolean getSupportTo() {
+            return false;
+        }
+
+        @Override public boolean getSupportReference() {
+            return false;
+        }
+
+        @Override public boolean getSupportSince() {
+            return true;
+        }
+
+        @Override public boolean getSupportUntil() {
+            return true;
+        }
+
+        @Override public boolean getSupportLanguage() {
+            return false;
+        }
+
+        @Override public boolean getSupportLocale() {
+            return false;
+        }
+
+        @Override public boolean mustSpecifyToOrFrom() {
+            return false;
+        }
+
+        @Override protected Observable<Message> getMessages(ExtractionParameters parameters) {
+            return Observable.defer(() -> {
+                long since = parameters.getSince().getTime();
+                long until = parameters.getUntil().getTime();
+                intervals.add(Arrays.asList(since, until));
+                List<Message> output = new ArrayList<>();
+                for (Message message : messages) {
+                    long date = message.getDate().getTime();
+                    if (date >= since && date <= until) {
+                        output.add(message);
+                    }
+                }
+                return Observable.from(output);
+            });
+        }
+    }
+
+    private static List<String> getIds(List<Message> messages) {
+        List<String> ids = new ArrayList<>(messages.size());
+        messages.forEach(message -> ids.add(message.getoId()));
+        return ids;
+    }
+
+    private ExtractionParameters buildJob(String language, long since, long until,
+            String... query) {
+        ExtractionParameters job = new ExtractionParameters();
+        job.setLanguage(language);
+        job.setSince(new Date(since));
+        job.setUntil(new Date(until));
+        job.setQuery((query.length > 0) ? Arrays.asList(query) : null);
+        job.setTags("job");
+        return job;
+    }
+
+    @Test public void testGroupKey() {
+        ExtractionParameters first = buildJob("en", 0, 10, "pulse", "crowd");
+        ExtractionParameters second = buildJob("en", 5, 20, "social");
+        ExtractionParameters third = buildJob("it", 0, 10, "pulse");
+        Assert.assertEquals(ExtractionMultiplexer.getGroupKey(first),
+                ExtractionMultiplexer.getGroupKey(second));
+        Assert.assertNotEquals(ExtractionMultiplexer.getGroupKey(first),
+                ExtractionMultiplexer.getGroupKey(third));
+    }
+
+    @Test public void testMerge() {
+        ExtractionParameters merged = ExtractionMultiplexer.merge(Arrays.asList(
+                buildJob("en", 5, 10, "pulse", "crowd"), buildJob("en", 0, 20, "Pulse", "social")));
+        Assert.assertEquals(Arrays.asList("pulse", "crowd", "social"), merged.getQuery());
+        Assert.assertEquals(0, merged.getSince().getTime());
+        Assert.assertEquals(20, merged.getUntil().getTime());
+        Assert.assertNull(merged.getTags());
+        Assert.assertEquals("en", merged.getLanguage());
+    }
+
+    @Test public void testMergeUnbounded() {
+        ExtractionParameters unbounded = buildJob("en", 0, 10);
+        unbounded.setSince(null);
+        ExtractionParameters merged = ExtractionMultiplexer.merge(Arrays.asList(
+                buildJob("en", 5, 10, "pulse"), unbounded));
+        Assert.assertNull(merged.getQuery());
+        Assert.assertNull(merged.getSince());
+        Assert.assertEquals(10, merged.getUntil().getTime());
+    }
+
+    @Test public void testGroupOverlappingIntervals() {
+        List<List<Integer>> groups = ExtractionMultiplexer.group(Arrays.asList(
+                buildJob("en", 0, 10, "pulse"), buildJob("en", 100, 200, "crowd"),
+                buildJob("en", 10, 20, "social"), buildJob("it", 5, 15, "pulse"),
+                buildJob("en", 150, 300, "pulse")));
+        Assert.assertEquals(Arrays.asList(Arrays.asList(0, 2), Arrays.asList(1, 4),
+                Collections.singletonList(3)), groups);
+    }
+
+    @Test public void testGroupUnboundedIntervals() {
+        ExtractionParameters unbounded = buildJob("en", 0, 10, "crowd");
+        unbounded.setSince(null);
+        unbounded.setUntil(null);
+        List<List<Integer>> groups = ExtractionMultiplexer.group(Arrays.asList(
+                buildJob("en", 0, 10, "pulse"), buildJob("en", 1000, 2000, "social"),
+                unbounded));
+        Assert.assertEquals(Collections.singletonList(Arrays.asList(0, 1, 2)), groups);
+    }
+
+    @Test public void testCopyKeepsMilliseconds() {
+        Message original = new Message();
+        original.setoId("1");
+        original.setText("pulse");
+        original.setDate(new Date(1234567891L));
+        ExtractionParameters job = buildJob("en", 0, 10, "pulse");
+        job.setSource("copier");
+        Message copy = new MessageCopier(job).fromExtractor(original);
+        Assert.assertNotSame(original, copy);
+        Assert.assertEquals(1234567891L, copy.getDate().getTime());
+        Assert.assertEquals("pulse", copy.getText());
+        Assert.assertEquals(Collections.singletonList("job"), copy.getCustomTags());
+        Assert.assertNull(original.getCustomTags());
+    }
+
+    @Test public void testCopySharesNoLists() {
+        Message original = new Message();
+        original.setoId("1");
+        original.setToUsers(new ArrayList<>(Collections.singletonList("alice")));
+        original.setRefUsers(new ArrayList<>(Collections.singletonList("bob")));
+        original.setCustomTags(new ArrayList<>(Collections.singletonList("original")));
+        original.setDate(new Date(1000));
+        ExtractionParameters job = buildJob("en", 0, 10, "pulse");
+        Message copy = new MessageCopier(job).fromExtractor(original);
+        Assert.assertNotSame(original.getToUsers(), copy.getToUsers());
+        Assert.assertNotSame(original.getRefUsers(), copy.getRefUsers());
+        Assert.assertNotSame(original.getDate(), copy.getDate());
+        copy.getToUsers().add("carol");
+        copy.getRefUsers().clear();
+        Assert.assertEquals(Collections.singletonList("alice"), original.getToUsers());
+        Assert.assertEquals(Collections.singletonList("bob"), original.getRefUsers());
+        Assert.assertEquals(Collections.singletonList("original"), original.getCustomTags());
+        Assert.assertEquals(Collections.singletonList("job"), copy.getCustomTags());
+    }
+
+    @Test public void testRouteToJobs() {
+        FakeExtractor extractor = new FakeExtractor("multiplexer-route");
+        extractor.add("m1", "pulse rocks", 10);
+        extractor.add("m2", "crowd pulse", 60);
+        extractor.add("m3", "crowd", 150);
+        extractor.add("m4", "pulse", 500);
+        extractor.add("m5", "pulse again", 1500);
+        List<ExtractionParameters> jobs = Arrays.asList(buildJob(null, 0, 100, "pulse"),
+                buildJob(null, 50, 200, "crowd"), buildJob(null, 1000, 2000, "pulse"));
+        jobs.get(1).setTags("second");
+        List<Observable<Message>> outputs = new ExtractionMultiplexer(extractor).extract(jobs);
+        List<List<Message>> results = new ArrayList<>();
+        for (int i = 0; i < outputs.size(); i++) {
+            results.add(Collections.synchronizedList(new ArrayList<>()));
+        }
+        Observable.range(0, outputs.size())
+                .flatMap(job -> outputs.get(job).doOnNext(results.get(job)::add))
+                .toList().toBlocking().single();
+        Assert.assertEquals(Arrays.asList("m1", "m2"), getIds(results.get(0)));
+        Assert.assertEquals(Arrays.asList("m2", "m3"), getIds(results.get(1)));
+        Assert.assertEquals(Collections.singletonList("m5"), getIds(results.get(2)));
+        // overlapping jobs share an upstream extraction, the disjoint one runs on its own
+        Assert.assertEquals(new HashSet<>(Arrays.asList(Arrays.asList(0L, 200L),
+                Arrays.asList(1000L, 2000L))), new HashSet<>(extractor.intervals));
+        // every job receives its own copy, with its own tags
+        Assert.assertNotSame(results.get(0).get(1), results.get(1).get(0));
+        Assert.assertEquals(Collections.singletonList("job"),
+                results.get(0).get(1).getCustomTags());
+        Assert.assertEquals(Collections.singletonList("second"),
+                results.get(1).get(0).getCustomTags());
+    }
+}
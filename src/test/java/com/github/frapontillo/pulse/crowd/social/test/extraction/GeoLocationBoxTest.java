@@ -31,4 +31,23 @@ public class GeoLocationBoxTest {
         Assert.assertEquals(lat, lngLatDisBox.getLatitude(), 0);
         Assert.assertEquals(dis, lngLatDisBox.getDistance(), 10E-5);
     }
+
+    @Test public void testContainsPartialLocation() {
+        GeoLocationBox box = new GeoLocationBox(lng, lat, dis);
+        Assert.assertTrue(box.contains(null, null));
+        Assert.assertFalse(box.contains(lng, null));
+        Assert.assertFalse(box.contains(null, lat));
+        Assert.assertTrue(box.contains(lng, lat));
+    }
+
+    @Test public void testContainsAcrossAntimeridian() {
+        GeoLocationBox box = new GeoLocationBox(170, -10, -170, 10);
+        Assert.assertEquals(180, Math.abs(box.getLongitude()), 10E-9);
+        Assert.assertTrue(box.contains(175.0, 0.0));
+        Assert.assertTrue(box.contains(-175.0, 0.0));
+        Assert.assertFalse(box.contains(0.0, 0.0));
+        GeoLocationBox centered = new GeoLocationBox(179.9, 0, 50);
+        Assert.assertTrue(centered.contains(-179.9, 0.0));
+        Assert.assertFalse(centered.contains(179.9, 5.0));
+    }
 }
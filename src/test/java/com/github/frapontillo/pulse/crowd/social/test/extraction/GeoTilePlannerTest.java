@@ -0,0 +1,85 @@
+package com.github.frapontillo.pulse.crowd.social.test.extraction;
+
+import com.github.frapontillo.pulse.crowd.social.extraction.ExtractionParameters;
+import com.github.frapontillo.pulse.crowd.social.extraction.GeoLocationBox;
+import com.github.frapontillo.pulse.crowd.social.extraction.GeoTilePlanner;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class GeoTilePlannerTest {
+
+    private ExtractionParameters buildParameters(int tiles, int saturation) {
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setGeoLocationBox(new GeoLocationBox(0, 0, 8, 8));
+        parameters.setTiles(tiles);
+        parameters.setTileSaturation(saturation);
+        parameters.setTileDepth(2);
+        return parameters;
+    }
+
+    private List<ExtractionParameters> pollAll(GeoTilePlanner planner) {
+        List<ExtractionParameters> tiles = new ArrayList<>();
+        ExtractionParameters tile;
+        while ((tile = planner.poll()) != null) {
+            tiles.add(tile);
+        }
+        return tiles;
+    }
+
+    @Test public void testInitialTiles() {
+        GeoTilePlanner planner = new GeoTilePlanner(buildParameters(1, 0), null);
+        Assert.assertTrue(planner.isSplit());
+        List<ExtractionParameters> tiles = pollAll(planner);
+        Assert.assertEquals(4, tiles.size());
+        // the north-east tile
+        double[][] box = tiles.get(3).getGeoLocationBox().getBoundingBox();
+        Assert.assertEquals(4, box[0][0], 0);
+        Assert.assertEquals(4, box[0][1], 0);
+        Assert.assertEquals(8, box[1][0], 0);
+        Assert.assertEquals(8, box[1][1], 0);
+        Assert.assertFalse(planner.isDone());
+        tiles.forEach(tile -> planner.record(tile, 0));
+        Assert.assertTrue(planner.isDone());
+    }
+
+    @Test public void testSaturatedTilesAreSplit() {
+        GeoTilePlanner planner = new GeoTilePlanner(buildParameters(0, 100), null);
+        List<ExtractionParameters> root = pollAll(planner);
+        Assert.assertEquals(1, root.size());
+        planner.record(root.get(0), 100);
+        List<ExtractionParameters> children = pollAll(planner);
+        Assert.assertEquals(4, children.size());
+        planner.record(children.get(0), 100);
+        children.subList(1, 4).forEach(tile -> planner.record(tile, 10));
+        List<ExtractionParameters> grandChildren = pollAll(planner);
+        Assert.assertEquals(4, grandChildren.size());
+        // the maximum depth is reached, so saturated tiles aren't split anymore
+        grandChildren.forEach(tile -> planner.record(tile, 100));
+        Assert.assertTrue(planner.isDone());
+    }
+
+    @Test public void testTilesAcrossAntimeridian() {
+        ExtractionParameters parameters = buildParameters(1, 0);
+        parameters.setGeoLocationBox(new GeoLocationBox(170, 0, -170, 8));
+        List<ExtractionParameters> tiles = pollAll(new GeoTilePlanner(parameters, null));
+        Assert.assertEquals(4, tiles.size());
+        // the south-west tile stays east of the antimeridian
+        double[][] west = tiles.get(0).getGeoLocationBox().getBoundingBox();
+        Assert.assertEquals(170, west[0][0], 0);
+        Assert.assertEquals(180, west[1][0], 0);
+        // the south-east tile is west of it
+        double[][] east = tiles.get(1).getGeoLocationBox().getBoundingBox();
+        Assert.assertEquals(180, east[0][0], 0);
+        Assert.assertEquals(-170, east[1][0], 0);
+        Assert.assertTrue(tiles.get(0).getGeoLocationBox().contains(175.0, 2.0));
+        Assert.assertFalse(tiles.get(0).getGeoLocationBox().contains(0.0, 2.0));
+        Assert.assertTrue(tiles.get(1).getGeoLocationBox().contains(-175.0, 2.0));
+        Assert.assertFalse(tiles.get(1).getGeoLocationBox().contains(5.0, 2.0));
+    }
+}
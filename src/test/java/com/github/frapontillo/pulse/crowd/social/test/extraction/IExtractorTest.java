@@ -0,0 +1,181 @@
+package com.github.frapontillo.pulse.crowd.social.test.extraction;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.exception.TooComplexParametersSocialException;
+import com.github.frapontillo.pulse.crowd.social.extraction.ExtractionParameters;
+import com.github.frapontillo.pulse.crowd.social.extraction.IExtractor;
+import org.junit.Assert;
+import org.junit.Test;
+import rx.Observable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class IExtractorTest {
+
+    /**
+     * An extractor answering every query term with a fixed list of message identifiers.
+     */
+    private static class FakeExtractor extends IExtractor {
+        private final String name;
+        private final long maximum;
+        private final Map<String, List<String>> results = new HashMap<>();
+        private final List<List<String>> queries = Collections.synchronizedList(new ArrayList<>());
+
+        private FakeExtractor(String name, long maximum) {
+            this.name = name;
+            this.maximum = maximum;
+        }
+
+        private void answer(String term, String... ids) {
+            results.put(term, Arrays.asList(ids));
+        }
+
+        @Override public String getName() {
+            return name;
+        }
+
+        @Override public long getMaximumQueryParameters() {
+            return maximum;
+        }
+
+        @Override public boolean getSupportQuery() {
+            return true;
+        }
+
+        @Override public boolean getSupportGeoLocation() {
+            return false;
+        }
+
+        @Override public boolean getSupportFrom() {
+            return false;
+        }
+
+        @Override public boolean getSupportTo() {
+            return false;
+        }
+
+        @Override public boolean getSupportReference() {
+            return true;
+        }
+
+        @Override public boolean getSupportSince() {
+            return false;
+        }
+
+        @Override public boolean getSupportUntil() {
+            return false;
+        }
+
+        @Override public boolean getSupportLanguage() {
+            return false;
+        }
+
+        @Override public boolean getSupportLocale() {
+            return false;
+        }
+
+        @Override public boolean mustSpecifyToOrFrom() {
+            return false;
+        }
+
+        @Override protected Observable<Message> getMessages(ExtractionParameters parameters) {
+            return Observable.defer(() -> {
+                queries.add(parameters.getQuery());
+                List<Message> messages = new ArrayList<>();
+                for (String term : parameters.getQuery()) {
+                    for (String id : results.getOrDefault(term, Collections.emptyList())) {
+                        Message message = new Message();
+                        message.setSource(name);
+                        message.setoId(id);
+                        messages.add(message);
+                    }
+                }
+                return Observable.from(messages);
+            });
+        }
+    }
+
+    private static ExtractionParameters buildParameters(List<String> query,
+            List<String> references) {
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setQuery(query);
+        parameters.setReferences(references);
+        return parameters;
+    }
+
+    @Test public void testNoSplitWithinMaximum() throws TooComplexParametersSocialException {
+        FakeExtractor extractor = new FakeExtractor("extractor-within", 4);
+        ExtractionParameters parameters =
+                buildParameters(Arrays.asList("q1", "q2"), Arrays.asList("r1", "r2"));
+        List<ExtractionParameters> split = extractor.splitParameters(parameters);
+        Assert.assertEquals(1, split.size());
+        Assert.assertSame(parameters, split.get(0));
+    }
+
+    @Test public void testNoSplitWithoutMaximum() throws TooComplexParametersSocialException {
+        FakeExtractor extractor = new FakeExtractor("extractor-unlimited", 0);
+        ExtractionParameters parameters =
+                buildParameters(Arrays.asList("q1", "q2", "q3", "q4", "q5"), null);
+        Assert.assertEquals(1, extractor.splitParameters(parameters).size());
+    }
+
+    @Test public void testSplitKeepsReferences() throws TooComplexParametersSocialException {
+        FakeExtractor extractor = new FakeExtractor("extractor-split", 4);
+        List<String> references = Arrays.asList("r1", "r2");
+        ExtractionParameters parameters =
+                buildParameters(Arrays.asList("q1", "q2", "q3", "q4", "q5"), references);
+        List<ExtractionParameters> split = extractor.splitParameters(parameters);
+        Assert.assertEquals(3, split.size());
+        Assert.assertEquals(Arrays.asList("q1", "q2"), split.get(0).getQuery());
+        Assert.assertEquals(Arrays.asList("q3", "q4"), split.get(1).getQuery());
+        Assert.assertEquals(Collections.singletonList("q5"), split.get(2).getQuery());
+        for (ExtractionParameters subQuery : split) {
+            Assert.assertEquals(references, subQuery.getReferences());
+            Assert.assertTrue(
+                    subQuery.getQuery().size() + subQuery.getReferences().size() <= 4);
+        }
+        // the original parameters are left untouched
+        Assert.assertEquals(5, parameters.getQuery().size());
+    }
+
+    @Test public void testTooManyReferences() {
+        FakeExtractor extractor = new FakeExtractor("extractor-references", 2);
+        try {
+            extractor.splitParameters(
+                    buildParameters(Arrays.asList("q1"), Arrays.asList("r1", "r2")));
+            Assert.fail("The references alone should have exceeded the maximum.");
+        } catch (TooComplexParametersSocialException ignored) {
+        }
+        try {
+            extractor.splitParameters(buildParameters(null, Arrays.asList("r1", "r2", "r3")));
+            Assert.fail("The references alone should have exceeded the maximum.");
+        } catch (TooComplexParametersSocialException ignored) {
+        }
+    }
+
+    @Test public void testSplitExtractionIsMergedAndDeduplicated() {
+        FakeExtractor extractor = new FakeExtractor("extractor-merge", 2);
+        extractor.answer("q1", "m1", "m2");
+        extractor.answer("q3", "m2", "m3");
+        extractor.answer("q4", "m4");
+        ExtractionParameters parameters =
+                buildParameters(Arrays.asList("q1", "q2", "q3", "q4"), null);
+        parameters.setParallelism(2);
+        List<Message> messages = Observable.<Void>empty()
+                .compose(extractor.transform(parameters)).toList().toBlocking().single();
+        Set<String> ids = new HashSet<>();
+        messages.forEach(message -> Assert.assertTrue(ids.add(message.getoId())));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("m1", "m2", "m3", "m4")), ids);
+        Assert.assertEquals(2, extractor.queries.size());
+    }
+}
@@ -0,0 +1,241 @@
+package com.github.frapontillo.pulse.crowd.social.test.extraction;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.extraction.ExtractionParameters;
+import com.github.frapontillo.pulse.crowd.social.extraction.IReplyExtractor;
+import com.github.frapontillo.pulse.crowd.social.extraction.ReplyParameters;
+import com.github.frapontillo.pulse.crowd.social.test.ElementReports;
+import org.junit.Assert;
+import org.junit.Test;
+import rx.Observable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class IReplyExtractorTest {
+
+    /**
+     * A source answering from an in-memory map of replies, slower for the first messages so
+     * that concurrent fetches complete out of order.
+     */
+    private static class FakeReplyExtractor extends IReplyExtractor {
+        private final String name;
+        private final Map<String, List<Message>> replies = new HashMap<>();
+        private final Set<String> failing = new HashSet<>();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final ElementReports reports = new ElementReports();
+        private volatile ExtractionParameters lastParameters;
+
+        private FakeReplyExtractor(String name) {
+            this.name = name;
+        }
+
+        private void reply(String parent, String... children) {
+            List<Message> list = new ArrayList<>(children.length);
+            for (String child : children) {
+                list.add(buildMessage(child));
+            }
+            replies.put(parent, list);
+        }
+
+        @Override public String getName() {
+            return name;
+        }
+
+        @Override
+        public List<Message> getReplies(Message message, ExtractionParameters parameters) {
+            calls.incrementAndGet();
+            lastParameters = parameters;
+            if (failing.contains(message.getoId())) {
+                throw new IllegalStateException("Cannot fetch " + message.getoId() + ".");
+            }
+            String oId = message.getoId();
+            try {
+                Thread.sleep(oId.length() > 1 ? 1 : 20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            List<Message> converted = new ArrayList<>();
+            for (Message child : replies.getOrDefault(oId, Collections.emptyList())) {
+                Message reply = buildMessage(child.getoId());
+                reply.setCustomTags(parameters.getTags());
+                converted.add(reply);
+            }
+            return converted;
+        }
+
+        @Override public Map<String, List<Message>> getReplies(List<Message> messages,
+                ExtractionParameters parameters) {
+            for (Message message : messages) {
+                Assert.assertEquals(parameters.getTags(), message.getCustomTags());
+            }
+            return super.getReplies(messages, parameters);
+        }
+
+        @Override public void reportElementAsStarted(String id) {
+            reports.started(id);
+        }
+
+        @Override public void reportElementAsEnded(String id) {
+            reports.ended(id);
+        }
+    }
+
+    private static Message buildMessage(String oId) {
+        Message message = new Message();
+        message.setoId(oId);
+        message.setSource("test");
+        return message;
+    }
+
+    private static Observable<Message> buildMessages(String... oIds) {
+        List<Message> messages = new ArrayList<>(oIds.length);
+        for (String oId : oIds) {
+            messages.add(buildMessage(oId));
+        }
+        return Observable.from(messages);
+    }
+
+    private static List<String> getIds(List<Message> messages) {
+        List<String> ids = new ArrayList<>(messages.size());
+        messages.forEach(message -> ids.add(message.getoId()));
+        return ids;
+    }
+
+    @Test public void testSequentialThreads() {
+        FakeReplyExtractor extractor = new FakeReplyExtractor("replies-sequential");
+        extractor.reply("a", "a1", "a2");
+        extractor.reply("cc", "cc1");
+        List<Message> output = buildMessages("a", "b", "cc")
+                .compose(extractor.transform(null)).toList().toBlocking().single();
+        Assert.assertEquals(Arrays.asList("a", "a1", "a2", "b", "cc", "cc1"), getIds(output));
+        Assert.assertEquals(3, extractor.reports.getStarted());
+        Assert.assertEquals(3, extractor.reports.getEnded());
+    }
+
+    @Test public void testBatchUsesGivenParameters() {
+        FakeReplyExtractor extractor = new FakeReplyExtractor("replies-parameters");
+        extractor.reply("a", "a1");
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setSource("caller");
+        parameters.setTags("caller");
+        Message message = buildMessage("a");
+        message.setCustomTags(parameters.getTags());
+        Map<String, List<Message>> replies =
+                extractor.getReplies(Collections.singletonList(message), parameters);
+        Assert.assertSame(parameters, extractor.lastParameters);
+        Assert.assertEquals(Collections.singletonList("a1"), getIds(replies.get("a")));
+        Assert.assertEquals(parameters.getTags(), replies.get("a").get(0).getCustomTags());
+    }
+
+    @Test public void testConcurrentThreadsKeepOrder() {
+        FakeReplyExtractor extractor = new FakeReplyExtractor("replies-ordered");
+        extractor.reply("a", "a1", "a2");
+        extractor.reply("b", "b1");
+        extractor.reply("cc", "cc1");
+        ReplyParameters params = new ReplyParameters();
+        params.setConcurrency(4);
+        List<Message> output = buildMessages("a", "b", "cc", "dd")
+                .compose(extractor.transform(params)).toList().toBlocking().single();
+        Assert.assertEquals(
+                Arrays.asList("a", "a1", "a2", "b", "b1", "cc", "cc1", "dd"),
+                getIds(output));
+        Assert.assertEquals(4, extractor.calls.get());
+    }
+
+    @Test public void testConcurrentThreadsUnordered() {
+        FakeReplyExtractor extractor = new FakeReplyExtractor("replies-unordered");
+        extractor.reply("a", "a1", "a2");
+        extractor.reply("cc", "cc1");
+        ReplyParameters params = new ReplyParameters();
+        params.setConcurrency(4);
+        params.setOrdered(false);
+        List<String> output = getIds(buildMessages("a", "b", "cc")
+                .compose(extractor.transform(params)).toList().toBlocking().single());
+        Assert.assertEquals(6, output.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("a", "a1", "a2", "b", "cc", "cc1")),
+                new HashSet<>(output));
+        // every message still precedes its own replies
+        Assert.assertTrue(output.indexOf("a") < output.indexOf("a1"));
+        Assert.assertTrue(output.indexOf("cc") < output.indexOf("cc1"));
+    }
+
+    @Test public void testStartedAndEndedOnError() throws InterruptedException {
+        FakeReplyExtractor extractor = new FakeReplyExtractor("replies-error");
+        extractor.failing.add("b");
+        ReplyParameters params = new ReplyParameters();
+        params.setConcurrency(2);
+        extractor.reports.assertStartedAndEndedOnError(
+                buildMessages("a", "b", "cc").compose(extractor.transform(params)),
+                "Cannot fetch b.");
+    }
+
+    @Test public void testExpansionDepth() {
+        FakeReplyExtractor extractor = new FakeReplyExtractor("replies-depth");
+        extractor.reply("a", "a1", "a2");
+        extractor.reply("a1", "a11");
+        extractor.reply("a11", "a111");
+        extractor.reply("b", "a1", "b1");
+        ReplyParameters params = new ReplyParameters();
+        params.setDepth(2);
+        List<Message> output = buildMessages("a", "b")
+                .compose(extractor.transform(params)).toList().toBlocking().single();
+        // replies at the maximum depth aren't expanded, and repeated replies are dropped
+        Assert.assertEquals(Arrays.asList("a", "a1", "a2", "a11", "b", "b1"), getIds(output));
+        Assert.assertEquals(5, extractor.calls.get());
+    }
+
+    @Test public void testExpansionFanOut() {
+        FakeReplyExtractor extractor = new FakeReplyExtractor("replies-fan-out");
+        extractor.reply("a", "a1", "a2", "a3");
+        extractor.reply("a2", "a21", "a22", "a23");
+        extractor.reply("a3", "a31");
+        ReplyParameters params = new ReplyParameters();
+        params.setDepth(3);
+        params.setFanOut(2);
+        List<Message> output = buildMessages("a").compose(extractor.transform(params)).toList()
+                .toBlocking().single();
+        Assert.assertEquals(Arrays.asList("a", "a1", "a2", "a21", "a22"), getIds(output));
+    }
+
+    @Test public void testExpansionKeepsTags() {
+        FakeReplyExtractor extractor = new FakeReplyExtractor("replies-tags");
+        extractor.reply("a", "a1");
+        extractor.reply("a1", "a11");
+        extractor.reply("b", "b1");
+        ReplyParameters params = new ReplyParameters();
+        params.setDepth(3);
+        Message first = buildMessage("a");
+        first.setCustomTags(Collections.singletonList("first"));
+        Message second = buildMessage("b");
+        second.setCustomTags(Collections.singletonList("second"));
+        List<Message> output = Observable.just(first, second)
+                .compose(extractor.transform(params)).toList().toBlocking().single();
+        Map<String, List<String>> tags = new HashMap<>();
+        output.forEach(message -> tags.put(message.getoId(), message.getCustomTags()));
+        Assert.assertEquals(Collections.singletonList("first"), tags.get("a1"));
+        Assert.assertEquals(Collections.singletonList("first"), tags.get("a11"));
+        Assert.assertEquals(Collections.singletonList("second"), tags.get("b1"));
+    }
+
+    @Test public void testExpansionStartedAndEndedOnError() throws InterruptedException {
+        FakeReplyExtractor extractor = new FakeReplyExtractor("replies-expansion-error");
+        extractor.reply("a", "a1", "a2");
+        extractor.failing.add("a2");
+        ReplyParameters params = new ReplyParameters();
+        params.setDepth(2);
+        params.setConcurrency(2);
+        extractor.reports.assertStartedAndEndedOnError(
+                buildMessages("a", "b").compose(extractor.transform(params)), "Cannot fetch a2.");
+    }
+}
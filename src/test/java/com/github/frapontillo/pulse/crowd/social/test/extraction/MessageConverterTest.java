@@ -0,0 +1,78 @@
+package com.github.frapontillo.pulse.crowd.social.test.extraction;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.extraction.ExtractionParameters;
+import com.github.frapontillo.pulse.crowd.social.extraction.MessageConverter;
+import org.junit.Assert;
+import org.junit.Test;
+import rx.Observable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class MessageConverterTest {
+
+    /**
+     * A converter of plain texts.
+     */
+    private static class TextConverter extends MessageConverter<String> {
+        private TextConverter(ExtractionParameters parameters) {
+            super(parameters);
+        }
+
+        @Override protected Message fromSpecificExtractor(String original,
+                HashMap<String, Object> additionalData) {
+            Message message = new Message();
+            message.setText(original);
+            return message;
+        }
+    }
+
+    private static ExtractionParameters buildParameters(String... tags) {
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setSource("converter");
+        parameters.setTags(new ArrayList<>(Arrays.asList(tags)));
+        return parameters;
+    }
+
+    @Test public void testListTagsAreModifiable() {
+        ExtractionParameters parameters = buildParameters("job");
+        TextConverter converter = new TextConverter(parameters);
+        List<Message> messages = converter.fromExtractor(Arrays.asList("a", "b"));
+        Assert.assertEquals(Collections.singletonList("job"), messages.get(0).getCustomTags());
+        Assert.assertEquals("converter", messages.get(0).getSource());
+        // list conversions keep setting the list of the parameters, as they always did
+        messages.get(0).getCustomTags().add("more");
+        Assert.assertEquals(Arrays.asList("job", "more"), parameters.getTags());
+    }
+
+    @Test public void testListTagsFollowParameters() {
+        ExtractionParameters parameters = buildParameters("first");
+        TextConverter converter = new TextConverter(parameters);
+        Assert.assertEquals(Collections.singletonList("first"),
+                converter.fromExtractor("a").getCustomTags());
+        parameters.setTags("second");
+        Assert.assertEquals(Collections.singletonList("second"),
+                converter.fromExtractor("b").getCustomTags());
+    }
+
+    @Test public void testStreamSharesImmutableTags() {
+        ExtractionParameters parameters = buildParameters("job");
+        List<Message> messages = new TextConverter(parameters)
+                .stream(Observable.just("a", "b"), null).toList().toBlocking().single();
+        Assert.assertSame(messages.get(0).getCustomTags(), messages.get(1).getCustomTags());
+        Assert.assertEquals(Collections.singletonList("job"), messages.get(0).getCustomTags());
+        try {
+            messages.get(0).getCustomTags().add("more");
+            Assert.fail("The tags of streamed messages should be immutable.");
+        } catch (UnsupportedOperationException e) {
+            Assert.assertEquals(Collections.singletonList("job"), parameters.getTags());
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.github.frapontillo.pulse.crowd.social.test.extraction;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.exception.RateLimitedException;
+import com.github.frapontillo.pulse.crowd.social.extraction.ExtractionParameters;
+import com.github.frapontillo.pulse.crowd.social.extraction.Page;
+import com.github.frapontillo.pulse.crowd.social.extraction.PaginatedExtractor;
+import com.github.frapontillo.pulse.crowd.social.ratelimit.RateLimiter;
+import org.junit.Assert;
+import org.junit.Test;
+import rx.Observable;
+import rx.Subscriber;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class PaginatedExtractorTest {
+    private static final int PAGES = 10;
+    private static final int PAGE_SIZE = 2;
+
+    /**
+     * A source with a fixed number of pages, rejecting the first requests if asked to.
+     */
+    private static class FakePaginatedExtractor extends PaginatedExtractor {
+        private final String name;
+        private final AtomicInteger fetches = new AtomicInteger();
+        private final AtomicInteger rejected = new AtomicInteger();
+
+        private FakePaginatedExtractor(String name) {
+            this.name = name;
+        }
+
+        @Override public String getName() {
+            return name;
+        }
+
+        @Override protected Page fetchPage(ExtractionParameters parameters, String cursor) {
+            fetches.incrementAndGet();
+            if (rejected.getAndDecrement() > 0) {
+                throw new RateLimitedException("Too many requests.", 0);
+            }
+            int page = (cursor != null) ? Integer.parseInt(cursor) : 0;
+            List<Message> messages = new ArrayList<>(PAGE_SIZE);
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                Message message = new Message();
+                message.setSource(name);
+                message.setoId(page + "-" + i);
+                messages.add(message);
+            }
+            return (page + 1 < PAGES) ? new Page(messages, String.valueOf(page + 1)) :
+                    Page.last(messages);
+        }
+
+        @Override public long getMaximumQueryParameters() {
+            return 0;
+        }
+
+        @Override public boolean getSupportQuery() {
+            return true;
+        }
+
+        @Override public boolean getSupportGeoLocation() {
+            return false;
+        }
+
+        @Override public boolean getSupportFrom() {
+            return false;
+        }
+
+        @Override public boolean getSupportTo() {
+            return false;
+        }
+
+        @Override public boolean getSupportReference() {
+            return false;
+        }
+
+        @Override public boolean getSupportSince() {
+            return false;
+        }
+
+        @Override public boolean getSupportUntil() {
+            return false;
+        }
+
+        @Override public boolean getSupportLanguage() {
+            return false;
+        }
+
+        @Override public boolean getSupportLocale() {
+            return false;
+        }
+
+        @Override public boolean mustSpecifyToOrFrom() {
+            return false;
+        }
+    }
+
+    /**
+     * A subscriber requesting a single message on start, and then only when asked to.
+     */
+    private static class SlowSubscriber extends Subscriber<Message> {
+        private final List<Message> received = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch terminated = new CountDownLatch(1);
+
+        @Override public void onStart() {
+            request(1);
+        }
+
+        private void more(long n) {
+            request(n);
+        }
+
+        @Override public void onCompleted() {
+            terminated.countDown();
+        }
+
+        @Override public void onError(Throwable e) {
+            terminated.countDown();
+        }
+
+        @Override public void onNext(Message message) {
+            received.add(message);
+        }
+    }
+
+    private static void awaitFetches(FakePaginatedExtractor extractor, int fetches)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (extractor.fetches.get() < fetches && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // give any unexpected fetch the time to happen
+        Thread.sleep(100);
+    }
+
+    private static List<Message> extract(FakePaginatedExtractor extractor) {
+        return Observable.<Void>empty().compose(extractor.transform(new ExtractionParameters()))
+                .toList().toBlocking().single();
+    }
+
+    @Test public void testPrefetchBoundedBySlowSubscriber() throws InterruptedException {
+        FakePaginatedExtractor extractor = new FakePaginatedExtractor("paginated-prefetch");
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setPrefetch(3);
+        SlowSubscriber subscriber = new SlowSubscriber();
+        extractor.getMessages(parameters).subscribe(subscriber);
+
+        awaitFetches(extractor, 3);
+        Assert.assertEquals(3, extractor.fetches.get());
+        Assert.assertEquals(1, subscriber.received.size());
+
+        // consuming the first page makes room for a single new one
+        subscriber.more(PAGE_SIZE - 1);
+        awaitFetches(extractor, 4);
+        Assert.assertEquals(4, extractor.fetches.get());
+        Assert.assertEquals(PAGE_SIZE, subscriber.received.size());
+
+        subscriber.more(Long.MAX_VALUE);
+        Assert.assertTrue(subscriber.terminated.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(PAGES, extractor.fetches.get());
+        Assert.assertEquals(PAGES * PAGE_SIZE, subscriber.received.size());
+    }
+
+    @Test public void testNoFetchAfterUnsubscribe() throws InterruptedException {
+        FakePaginatedExtractor extractor = new FakePaginatedExtractor("paginated-unsubscribe");
+        SlowSubscriber subscriber = new SlowSubscriber();
+        extractor.getMessages(new ExtractionParameters()).subscribe(subscriber);
+        awaitFetches(extractor, ExtractionParameters.DEFAULT_PREFETCH);
+        subscriber.unsubscribe();
+        subscriber.more(Long.MAX_VALUE);
+        Thread.sleep(100);
+        Assert.assertEquals(ExtractionParameters.DEFAULT_PREFETCH, extractor.fetches.get());
+    }
+
+    @Test public void testRateLimitedPageRetried() {
+        FakePaginatedExtractor extractor = new FakePaginatedExtractor("paginated-retried");
+        extractor.rejected.set(RateLimiter.DEFAULT_RETRIES);
+        Assert.assertEquals(PAGES * PAGE_SIZE, extract(extractor).size());
+        Assert.assertEquals(PAGES + RateLimiter.DEFAULT_RETRIES, extractor.fetches.get());
+    }
+
+    @Test public void testRateLimitedPageRetriedInOnePlace() {
+        FakePaginatedExtractor extractor = new FakePaginatedExtractor("paginated-rejected");
+        extractor.rejected.set(Integer.MAX_VALUE);
+        try {
+            extract(extractor);
+            Assert.fail("The rejected page should have been propagated.");
+        } catch (RateLimitedException ignored) {
+        }
+        // the extraction isn't subscribed again after the page has been retried
+        Assert.assertEquals(RateLimiter.DEFAULT_RETRIES + 1, extractor.fetches.get());
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.frapontillo.pulse.crowd.social.test.extraction;
+
+import com.github.frapontillo.pulse.crowd.social.extraction.ExtractionParameters;
+import com.github.frapontillo.pulse.crowd.social.extraction.TimeShardPlanner;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class TimeShardPlannerTest {
+    private static final long HOUR = 3600 * 1000;
+
+    private ExtractionParameters buildParameters(int shards, String mode) {
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setSince(new Date(0));
+        parameters.setUntil(new Date(10 * HOUR));
+        parameters.setShards(shards);
+        parameters.setShardMode(mode);
+        parameters.setShardTarget(100);
+        return parameters;
+    }
+
+    @Test public void testNotSharded() {
+        ExtractionParameters parameters = buildParameters(1, null);
+        TimeShardPlanner planner = new TimeShardPlanner(parameters);
+        Assert.assertFalse(planner.isSplit());
+        Assert.assertSame(parameters, planner.poll());
+        Assert.assertTrue(planner.isDone());
+    }
+
+    @Test public void testFixedWindowsCoverInterval() {
+        TimeShardPlanner planner = new TimeShardPlanner(buildParameters(4, "fixed"));
+        Assert.assertTrue(planner.isSplit());
+        long expectedStart = 0;
+        int windows = 0;
+        while (!planner.isDone()) {
+            ExtractionParameters window = planner.poll();
+            Assert.assertEquals(expectedStart, window.getSince().getTime());
+            Assert.assertEquals(expectedStart + 10 * HOUR / 4, window.getUntil().getTime());
+            expectedStart = window.getUntil().getTime();
+            windows++;
+        }
+        Assert.assertEquals(4, windows);
+        Assert.assertEquals(10 * HOUR, expectedStart);
+    }
+
+    @Test public void testAdaptiveWindowsFollowDensity() {
+        TimeShardPlanner planner = new TimeShardPlanner(buildParameters(10, "adaptive"));
+        ExtractionParameters first = planner.poll();
+        Assert.assertEquals(HOUR, first.getUntil().getTime() - first.getSince().getTime());
+        // 400 messages in an hour, so 100 messages should take a quarter of an hour
+        planner.record(first, 400);
+        ExtractionParameters second = planner.poll();
+        Assert.assertEquals(HOUR / 4, second.getUntil().getTime() - second.getSince().getTime());
+        // an empty window makes the following ones grow, up to a bound
+        planner.record(second, 0);
+        ExtractionParameters third = planner.poll();
+        Assert.assertEquals(4 * HOUR, third.getUntil().getTime() - third.getSince().getTime());
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.frapontillo.pulse.crowd.social.test.extraction;
+
+import com.github.frapontillo.pulse.crowd.social.extraction.ExtractionParameters;
+import com.github.frapontillo.pulse.crowd.social.extraction.WatermarkStore;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class WatermarkStoreTest {
+
+    private ExtractionParameters buildParameters(String... query) {
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setSource("twitter");
+        parameters.setQuery(Arrays.asList(query));
+        parameters.setLanguage("it");
+        return parameters;
+    }
+
+    @Test public void testQueryKey() {
+        ExtractionParameters first = buildParameters("Pizza", "burrata");
+        ExtractionParameters second = buildParameters("burrata ", "pizza");
+        second.setSince(new Date());
+        second.setParallelism(4);
+        Assert.assertEquals(WatermarkStore.getQueryKey(first),
+                WatermarkStore.getQueryKey(second));
+        Assert.assertNotEquals(WatermarkStore.getQueryKey(first),
+                WatermarkStore.getQueryKey(buildParameters("pizza")));
+    }
+
+    private static File createFile() throws IOException {
+        File file = File.createTempFile("watermarks", ".json");
+        file.deleteOnExit();
+        file.delete();
+        new File(file.getPath() + ".lock").deleteOnExit();
+        return file;
+    }
+
+    private static WatermarkStore.Watermark buildWatermark(long date, String... ids) {
+        return new WatermarkStore.Watermark(date, Arrays.asList(ids));
+    }
+
+    @Test public void testPersistence() throws IOException {
+        File file = createFile();
+        WatermarkStore store = WatermarkStore.load(file);
+        Assert.assertNull(store.get("key"));
+        store.update("key", buildWatermark(20, "b"));
+        // older messages never move the watermark back
+        store.update("key", buildWatermark(10, "a"));
+        store.save();
+
+        WatermarkStore loaded = WatermarkStore.load(file);
+        Assert.assertEquals(20, loaded.get("key").getDate());
+        Assert.assertEquals("b", loaded.get("key").getId());
+    }
+
+    @Test public void testSameInstant() throws IOException {
+        WatermarkStore store = WatermarkStore.load(createFile());
+        store.update("key", buildWatermark(20, "a", "b"));
+        store.update("key", buildWatermark(20, "b", "c"));
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), store.get("key").getIds());
+        Assert.assertEquals("c", store.get("key").getId());
+        // newer messages replace all the identifiers
+        store.update("key", buildWatermark(30, "d"));
+        Assert.assertEquals(Collections.singletonList("d"), store.get("key").getIds());
+    }
+
+    @Test public void testConcurrentStores() throws IOException {
+        File file = createFile();
+        WatermarkStore first = WatermarkStore.load(file);
+        WatermarkStore second = WatermarkStore.load(file);
+        first.update("first", buildWatermark(10, "a"));
+        first.update("shared", buildWatermark(30, "c"));
+        second.update("second", buildWatermark(20, "b"));
+        second.update("shared", buildWatermark(25, "x"));
+        first.save();
+        second.save();
+
+        // the last save keeps the entries of the other store and the newest shared watermark
+        WatermarkStore loaded = WatermarkStore.load(file);
+        Assert.assertEquals("a", loaded.get("first").getId());
+        Assert.assertEquals("b", loaded.get("second").getId());
+        Assert.assertEquals(30, loaded.get("shared").getDate());
+        Assert.assertEquals("c", loaded.get("shared").getId());
+        Assert.assertEquals(30, second.get("shared").getDate());
+    }
+}
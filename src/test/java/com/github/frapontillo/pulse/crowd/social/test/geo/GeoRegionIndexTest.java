@@ -0,0 +1,62 @@
+package com.github.frapontillo.pulse.crowd.social.test.geo;
+
+import com.github.frapontillo.pulse.crowd.social.extraction.GeoLocationBox;
+import com.github.frapontillo.pulse.crowd.social.geo.GeoRegion;
+import com.github.frapontillo.pulse.crowd.social.geo.GeoRegionIndex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class GeoRegionIndexTest {
+
+    @Test public void testMatchesLinearScan() {
+        Random random = new Random(42);
+        List<GeoLocationBox> boxes = new ArrayList<>();
+        List<GeoRegion> regions = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            GeoLocationBox box = new GeoLocationBox(-10 + random.nextDouble() * 40,
+                    35 + random.nextDouble() * 25, 5 + random.nextDouble() * 50);
+            boxes.add(box);
+            regions.add(GeoRegion.box("region" + i, box));
+        }
+        GeoRegionIndex index = new GeoRegionIndex(regions);
+        for (int p = 0; p < 5000; p++) {
+            double longitude = -12 + random.nextDouble() * 44;
+            double latitude = 33 + random.nextDouble() * 29;
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < boxes.size(); i++) {
+                if (boxes.get(i).contains(longitude, latitude)) {
+                    expected.add("region" + i);
+                }
+            }
+            Assert.assertEquals(expected, index.getTags(longitude, latitude));
+        }
+    }
+
+    @Test public void testAntimeridian() {
+        GeoRegionIndex index = new GeoRegionIndex(Arrays.asList(
+                GeoRegion.box("fiji", new GeoLocationBox(177, -19, -178, -16)),
+                GeoRegion.polygon("strait", new double[][]{{175, 60}, {190, 60}, {190, 70}})));
+        Assert.assertEquals(Collections.singletonList("fiji"), index.getTags(179.5, -17.0));
+        Assert.assertEquals(Collections.singletonList("fiji"), index.getTags(-179.0, -18.0));
+        Assert.assertTrue(index.getTags(170.0, -17.0).isEmpty());
+        Assert.assertEquals(Collections.singletonList("strait"), index.getTags(-172.0, 62.0));
+        Assert.assertTrue(index.getTags(176.0, 69.0).isEmpty());
+    }
+
+    @Test public void testPolygon() {
+        GeoRegionIndex index = new GeoRegionIndex(Collections.singletonList(
+                GeoRegion.polygon("triangle", new double[][]{{0, 0}, {10, 0}, {0, 10}})));
+        Assert.assertEquals(1, index.getTags(2.0, 2.0).size());
+        Assert.assertEquals(0, index.getTags(8.0, 8.0).size());
+        Assert.assertEquals(0, index.getTags(null, 2.0).size());
+    }
+}
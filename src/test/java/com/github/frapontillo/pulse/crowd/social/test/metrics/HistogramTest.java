@@ -0,0 +1,62 @@
+package com.github.frapontillo.pulse.crowd.social.test.metrics;
+
+import com.github.frapontillo.pulse.crowd.social.metrics.Histogram;
+import com.github.frapontillo.pulse.crowd.social.metrics.MetricRegistry;
+import com.github.frapontillo.pulse.crowd.social.metrics.MetricValues;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.SortedMap;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class HistogramTest {
+
+    @Test public void testEmpty() {
+        Histogram.Snapshot snapshot = new Histogram().getSnapshot();
+        Assert.assertEquals(0, snapshot.getCount());
+        Assert.assertEquals(0, snapshot.getQuantile(0.99));
+        Assert.assertEquals(0, snapshot.getMean(), 0);
+    }
+
+    @Test public void testSmallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        Histogram.Snapshot snapshot = histogram.getSnapshot();
+        Assert.assertEquals(10, snapshot.getCount());
+        Assert.assertEquals(5.5, snapshot.getMean(), 0.001);
+        Assert.assertEquals(5, snapshot.getQuantile(0.5));
+        Assert.assertEquals(10, snapshot.getQuantile(1));
+        Assert.assertEquals(10, snapshot.getMax());
+    }
+
+    @Test public void testQuantileError() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100000; i++) {
+            histogram.record(i);
+        }
+        Histogram.Snapshot snapshot = histogram.getSnapshot();
+        for (double quantile : new double[]{0.5, 0.95, 0.99}) {
+            long expected = (long) (quantile * 100000);
+            long actual = snapshot.getQuantile(quantile);
+            Assert.assertTrue(actual >= expected);
+            Assert.assertTrue(actual <= expected * 1.125);
+        }
+        Assert.assertEquals(100000, snapshot.getMax());
+    }
+
+    @Test public void testFlatten() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("test.elements").add(3);
+        registry.histogram("test.batchSize").record(7);
+        registry.gauge("test.inFlight", () -> 2);
+        SortedMap<String, Double> values = MetricValues.flatten(registry);
+        Assert.assertEquals(3, values.get("test.elements"), 0);
+        Assert.assertEquals(1, values.get("test.batchSize.count"), 0);
+        Assert.assertEquals(7, values.get("test.batchSize.p99"), 0);
+        Assert.assertEquals(2, values.get("test.inFlight"), 0);
+    }
+}
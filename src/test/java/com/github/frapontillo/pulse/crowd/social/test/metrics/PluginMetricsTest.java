@@ -0,0 +1,38 @@
+package com.github.frapontillo.pulse.crowd.social.test.metrics;
+
+import com.github.frapontillo.pulse.crowd.social.metrics.Gauge;
+import com.github.frapontillo.pulse.crowd.social.metrics.Metrics;
+import com.github.frapontillo.pulse.crowd.social.metrics.PluginMetrics;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class PluginMetricsTest {
+
+    private static long getValue(String name) {
+        return ((Gauge) Metrics.getRegistry().getMetrics().get(name)).getValue().longValue();
+    }
+
+    @Test public void testGaugeSummedOverPipelines() {
+        PluginMetrics metrics = new PluginMetrics("metrics-test", "getProfiles");
+        AtomicLong first = new AtomicLong(3);
+        AtomicLong second = new AtomicLong(4);
+        Runnable removeFirst = metrics.addToGauge("buffered", first::get);
+        Runnable removeSecond = metrics.addToGauge("buffered", second::get);
+        Assert.assertEquals(7, getValue("metrics-test.buffered"));
+
+        second.set(10);
+        Assert.assertEquals(13, getValue("metrics-test.buffered"));
+
+        // terminated pipelines are not retained nor reported anymore
+        removeFirst.run();
+        Assert.assertEquals(10, getValue("metrics-test.buffered"));
+        removeSecond.run();
+        removeSecond.run();
+        Assert.assertEquals(0, getValue("metrics-test.buffered"));
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.frapontillo.pulse.crowd.social.test.profile;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Profile;
+import com.github.frapontillo.pulse.crowd.social.profile.IProfileGrapher;
+import com.github.frapontillo.pulse.crowd.social.profile.ProfileParameters;
+import com.github.frapontillo.pulse.crowd.social.test.ElementReports;
+import org.junit.Assert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A source answering from an in-memory graph, converting the connections with the tags of the
+ * parameters it is called with.
+ *
+ * @author Francesco Pontillo
+ */
+class FakeGrapher extends IProfileGrapher {
+    final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+    final ElementReports reports = new ElementReports();
+    volatile String failing;
+
+    private final String name;
+    private final Map<String, List<String>> graph = new HashMap<>();
+
+    FakeGrapher(String name) {
+        this.name = name;
+    }
+
+    static Profile buildProfile(String username, String... tags) {
+        Profile profile = new Profile();
+        profile.setUsername(username);
+        if (tags.length > 0) {
+            profile.setCustomTags(Arrays.asList(tags));
+        }
+        return profile;
+    }
+
+    void connect(String username, String... connections) {
+        graph.put(username, Arrays.asList(connections));
+    }
+
+    @Override public String getName() {
+        return name;
+    }
+
+    @Override
+    public List<Profile> getConnections(Profile profile, ProfileParameters parameters) {
+        if (profile.getUsername().equals(failing)) {
+            try {
+                // give the profiles of the previous batches the time to be emitted
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("Cannot fetch " + failing + ".");
+        }
+        List<Profile> connections = new ArrayList<>();
+        for (String username : graph.getOrDefault(profile.getUsername(),
+                Collections.emptyList())) {
+            Profile connection = buildProfile(username);
+            connection.setCustomTags(parameters.getTags());
+            connections.add(connection);
+        }
+        return connections;
+    }
+
+    @Override public Map<String, List<Profile>> getConnections(List<Profile> profiles,
+            ProfileParameters parameters) {
+        List<String> usernames = new ArrayList<>(profiles.size());
+        for (Profile profile : profiles) {
+            Assert.assertEquals(parameters.getTags(), profile.getCustomTags());
+            usernames.add(profile.getUsername());
+        }
+        batches.add(usernames);
+        Map<String, List<Profile>> connections = new HashMap<>();
+        for (Profile profile : profiles) {
+            connections.put(profile.getUsername(), getConnections(profile, parameters));
+        }
+        return connections;
+    }
+
+    @Override public void reportElementAsStarted(String id) {
+        reports.started(id);
+    }
+
+    @Override public void reportElementAsEnded(String id) {
+        reports.ended(id);
+    }
+}
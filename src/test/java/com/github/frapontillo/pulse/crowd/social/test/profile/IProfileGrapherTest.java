@@ -0,0 +1,72 @@
+package com.github.frapontillo.pulse.crowd.social.test.profile;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Profile;
+import com.github.frapontillo.pulse.crowd.social.profile.ProfileParameters;
+import org.junit.Assert;
+import org.junit.Test;
+import rx.Observable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class IProfileGrapherTest {
+
+    private static List<String> getUsernames(List<Profile> profiles) {
+        List<String> usernames = new ArrayList<>(profiles.size());
+        profiles.forEach(profile -> usernames.add(profile.getUsername()));
+        return usernames;
+    }
+
+    @Test public void testOneProfilePerBatchByDefault() {
+        FakeGrapher grapher = new FakeGrapher("grapher-default");
+        grapher.connect("a", "b", "c");
+        grapher.connect("d", "c", "e");
+        List<Profile> output = Observable
+                .just(FakeGrapher.buildProfile("a"), FakeGrapher.buildProfile("d"))
+                .compose(grapher.transform(null)).toList().toBlocking().single();
+        Assert.assertEquals(Arrays.asList(Collections.singletonList("a"),
+                Collections.singletonList("d")), grapher.batches);
+        // connections come before their profile, and only once per expansion
+        Assert.assertEquals(Arrays.asList("b", "c", "a", "e", "d"), getUsernames(output));
+        Assert.assertEquals(Arrays.asList("b", "c"), output.get(2).getConnections());
+    }
+
+    @Test public void testBatchesKeepProfileTags() {
+        FakeGrapher grapher = new FakeGrapher("grapher-tags");
+        grapher.connect("a", "a1");
+        grapher.connect("b", "b1");
+        grapher.connect("c", "c1");
+        ProfileParameters params = new ProfileParameters();
+        params.setBatchSize(3);
+        params.setTags(Collections.singletonList("ignored"));
+        List<Profile> output = Observable.just(FakeGrapher.buildProfile("a", "first"),
+                FakeGrapher.buildProfile("b", "second"), FakeGrapher.buildProfile("c", "first"))
+                .compose(grapher.transform(params)).toList().toBlocking().single();
+        Assert.assertEquals(Arrays.asList(Arrays.asList("a", "c"), Collections.singletonList("b")),
+                grapher.batches);
+        Map<String, List<String>> tags = new HashMap<>();
+        output.forEach(profile -> tags.put(profile.getUsername(), profile.getCustomTags()));
+        Assert.assertEquals(Collections.singletonList("first"), tags.get("a1"));
+        Assert.assertEquals(Collections.singletonList("second"), tags.get("b1"));
+        Assert.assertEquals(Collections.singletonList("first"), tags.get("c1"));
+    }
+
+    @Test public void testStartedAndEndedOnError() throws InterruptedException {
+        FakeGrapher grapher = new FakeGrapher("grapher-error");
+        grapher.failing = "b";
+        ProfileParameters params = new ProfileParameters();
+        params.setBatchSize(2);
+        grapher.reports.assertStartedAndEndedOnError(Observable.just(FakeGrapher.buildProfile("a"),
+                FakeGrapher.buildProfile("b"), FakeGrapher.buildProfile("c"))
+                .compose(grapher.transform(params)), "Cannot fetch b.");
+        // the batch after the failing one is never started
+        Assert.assertEquals(2, grapher.reports.getStarted());
+    }
+}
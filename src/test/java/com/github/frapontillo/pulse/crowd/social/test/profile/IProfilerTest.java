@@ -0,0 +1,146 @@
+package com.github.frapontillo.pulse.crowd.social.test.profile;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.data.entity.Profile;
+import com.github.frapontillo.pulse.crowd.social.profile.IProfiler;
+import com.github.frapontillo.pulse.crowd.social.profile.ProfileParameters;
+import com.github.frapontillo.pulse.crowd.social.test.ElementReports;
+import org.junit.Assert;
+import org.junit.Test;
+import rx.Observable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class IProfilerTest {
+
+    /**
+     * A source building a profile for every requested username.
+     */
+    private static class FakeProfiler extends IProfiler {
+        private final String name;
+        private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxRunning = new AtomicInteger();
+        private final ElementReports reports = new ElementReports();
+        private volatile String failing;
+        private volatile CountDownLatch overlap;
+
+        private FakeProfiler(String name) {
+            this.name = name;
+        }
+
+        @Override public String getName() {
+            return name;
+        }
+
+        @Override public List<Profile> getProfiles(ProfileParameters parameters) {
+            int current = running.incrementAndGet();
+            maxRunning.accumulateAndGet(current, Math::max);
+            try {
+                batches.add(parameters.getProfiles());
+                CountDownLatch latch = overlap;
+                if (latch != null) {
+                    // wait for other batches to run at the same time
+                    latch.countDown();
+                    latch.await(5, TimeUnit.SECONDS);
+                }
+                if (parameters.getProfiles().contains(failing)) {
+                    throw new IllegalStateException("Cannot fetch " + failing + ".");
+                }
+                Thread.sleep(5);
+                List<Profile> profiles = new ArrayList<>(parameters.getProfiles().size());
+                for (String username : parameters.getProfiles()) {
+                    Profile profile = new Profile();
+                    profile.setUsername(username);
+                    profiles.add(profile);
+                }
+                return profiles;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Collections.emptyList();
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        @Override public void reportElementAsStarted(String id) {
+            reports.started(id);
+        }
+
+        @Override public void reportElementAsEnded(String id) {
+            reports.ended(id);
+        }
+    }
+
+    private static Observable<Message> buildMessages(int users, int repetitions) {
+        List<Message> messages = new ArrayList<>(users * repetitions);
+        for (int r = 0; r < repetitions; r++) {
+            for (int u = 0; u < users; u++) {
+                Message message = new Message();
+                message.setFromUser("user" + u);
+                messages.add(message);
+            }
+        }
+        return Observable.from(messages);
+    }
+
+    private static Set<String> getUsernames(List<Profile> profiles) {
+        Set<String> usernames = new HashSet<>();
+        profiles.forEach(profile -> usernames.add(profile.getUsername()));
+        return usernames;
+    }
+
+    @Test public void testBatchesOfDistinctUsernames() {
+        FakeProfiler profiler = new FakeProfiler("profiler-batches");
+        ProfileParameters params = new ProfileParameters();
+        params.setBatchSize(4);
+        List<Profile> profiles = buildMessages(10, 3).compose(profiler.transform(params))
+                .toList().toBlocking().single();
+        Assert.assertEquals(10, profiles.size());
+        Assert.assertEquals(10, getUsernames(profiles).size());
+        Assert.assertEquals(3, profiler.batches.size());
+        Assert.assertEquals(Arrays.asList("user0", "user1", "user2", "user3"),
+                profiler.batches.get(0));
+        Assert.assertEquals(Arrays.asList("user8", "user9"), profiler.batches.get(2));
+        Assert.assertEquals(10, profiler.reports.getStarted());
+        Assert.assertEquals(10, profiler.reports.getEnded());
+    }
+
+    @Test public void testConcurrentBatches() {
+        FakeProfiler profiler = new FakeProfiler("profiler-concurrent");
+        ProfileParameters params = new ProfileParameters();
+        params.setBatchSize(2);
+        params.setConcurrency(3);
+        profiler.overlap = new CountDownLatch(3);
+        List<Profile> profiles = buildMessages(20, 1).compose(profiler.transform(params))
+                .toList().toBlocking().single();
+        Assert.assertEquals(20, getUsernames(profiles).size());
+        Assert.assertEquals(10, profiler.batches.size());
+        // the first batches only complete once three of them run together
+        Assert.assertTrue(profiler.maxRunning.get() > 1);
+        Assert.assertTrue(profiler.maxRunning.get() <= params.getConcurrency());
+        Assert.assertEquals(3, profiler.maxRunning.get());
+    }
+
+    @Test public void testStartedAndEndedOnError() throws InterruptedException {
+        FakeProfiler profiler = new FakeProfiler("profiler-error");
+        profiler.failing = "user5";
+        ProfileParameters params = new ProfileParameters();
+        params.setBatchSize(2);
+        profiler.reports.assertStartedAndEndedOnError(
+                buildMessages(10, 1).compose(profiler.transform(params)), "Cannot fetch user5.");
+        // batches are fetched one at a time, so no batch is started after the failing one
+        Assert.assertEquals(6, profiler.reports.getStarted());
+    }
+}
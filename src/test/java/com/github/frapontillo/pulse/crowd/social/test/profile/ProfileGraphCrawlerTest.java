@@ -0,0 +1,123 @@
+package com.github.frapontillo.pulse.crowd.social.test.profile;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Profile;
+import com.github.frapontillo.pulse.crowd.social.profile.ProfileParameters;
+import org.junit.Assert;
+import org.junit.Test;
+import rx.Observable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class ProfileGraphCrawlerTest {
+
+    private static Set<String> getUsernames(List<Profile> profiles) {
+        Set<String> usernames = new HashSet<>();
+        profiles.forEach(profile -> Assert.assertTrue("Profile emitted twice.",
+                usernames.add(profile.getUsername())));
+        return usernames;
+    }
+
+    private static List<Profile> crawl(FakeGrapher grapher, ProfileParameters params,
+            String... seeds) {
+        Profile[] profiles = new Profile[seeds.length];
+        for (int i = 0; i < seeds.length; i++) {
+            profiles[i] = FakeGrapher.buildProfile(seeds[i]);
+        }
+        return Observable.from(profiles).compose(grapher.transform(params)).toList()
+                .toBlocking().single();
+    }
+
+    private static FakeGrapher buildGrapher(String name) {
+        FakeGrapher grapher = new FakeGrapher(name);
+        grapher.connect("a", "b", "c");
+        grapher.connect("b", "d", "a");
+        grapher.connect("c", "e");
+        grapher.connect("d", "f");
+        grapher.connect("e", "f");
+        return grapher;
+    }
+
+    @Test public void testDepth() {
+        FakeGrapher grapher = buildGrapher("crawler-depth");
+        ProfileParameters params = new ProfileParameters();
+        params.setDepth(2);
+        List<Profile> output = crawl(grapher, params, "a");
+        Assert.assertEquals(new HashSet<>(Arrays.asList("a", "b", "c", "d", "e")),
+                getUsernames(output));
+        // profiles at the maximum depth are not expanded
+        for (List<String> batch : grapher.batches) {
+            Assert.assertFalse(batch.contains("d") || batch.contains("e"));
+        }
+        Assert.assertEquals(grapher.reports.getStarted(), grapher.reports.getEnded());
+    }
+
+    @Test public void testBreadthFirst() {
+        FakeGrapher grapher = buildGrapher("crawler-bfs");
+        ProfileParameters params = new ProfileParameters();
+        params.setDepth(3);
+        params.setBatchSize(1);
+        List<Profile> output = crawl(grapher, params, "a");
+        Assert.assertEquals(new HashSet<>(Arrays.asList("a", "b", "c", "d", "e", "f")),
+                getUsernames(output));
+        // with a single batch at a time, levels are expanded in order
+        Assert.assertEquals(Arrays.asList(Arrays.asList("a"), Arrays.asList("b"),
+                Arrays.asList("c"), Arrays.asList("d"), Arrays.asList("e")), grapher.batches);
+    }
+
+    @Test public void testOneProfilePerBatchByDefault() {
+        FakeGrapher grapher = buildGrapher("crawler-default-batch");
+        ProfileParameters params = new ProfileParameters();
+        params.setDepth(2);
+        crawl(grapher, params, "a");
+        // the same default batch size as a single-level expansion
+        Assert.assertEquals(Arrays.asList(Arrays.asList("a"), Arrays.asList("b"),
+                Arrays.asList("c")), grapher.batches);
+    }
+
+    @Test public void testMaxProfiles() {
+        FakeGrapher grapher = buildGrapher("crawler-max");
+        ProfileParameters params = new ProfileParameters();
+        params.setDepth(3);
+        params.setMaxProfiles(3L);
+        List<Profile> output = crawl(grapher, params, "a");
+        Assert.assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), getUsernames(output));
+        Assert.assertEquals(Arrays.asList(Arrays.asList("a")), grapher.batches);
+    }
+
+    @Test public void testResumeFromCheckpoint() throws IOException {
+        File checkpoint = File.createTempFile("crawl", ".checkpoint");
+        Assert.assertTrue(checkpoint.delete());
+        FakeGrapher grapher = buildGrapher("crawler-resume");
+        grapher.failing = "c";
+        ProfileParameters params = new ProfileParameters();
+        params.setDepth(3);
+        params.setBatchSize(2);
+        params.setCheckpoint(checkpoint.getAbsolutePath());
+        params.setResume(true);
+        try {
+            crawl(grapher, params, "a");
+            Assert.fail("The failing batch should have been propagated.");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("Cannot fetch c.", e.getMessage());
+        }
+        Assert.assertTrue(checkpoint.exists());
+
+        // the first crawl only emitted the seed, the second one continues from its connections
+        grapher.failing = null;
+        grapher.batches.clear();
+        List<Profile> output = crawl(grapher, params, "a");
+        Assert.assertEquals(new HashSet<>(Arrays.asList("b", "c", "d", "e", "f")),
+                getUsernames(output));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("b", "c")),
+                new HashSet<>(grapher.batches.get(0)));
+        Assert.assertFalse(checkpoint.exists());
+    }
+}
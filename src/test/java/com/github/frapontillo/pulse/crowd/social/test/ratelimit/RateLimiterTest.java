@@ -0,0 +1,48 @@
+package com.github.frapontillo.pulse.crowd.social.test.ratelimit;
+
+import com.github.frapontillo.pulse.crowd.social.ratelimit.RateLimiter;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class RateLimiterTest {
+
+    @Test public void testUnlimited() {
+        RateLimiter limiter = new RateLimiter("test", Double.POSITIVE_INFINITY, 1);
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(0, limiter.reserve(1));
+        }
+        Assert.assertEquals(1000, limiter.getStats().getAcquired());
+    }
+
+    @Test public void testReservationsQueueUp() {
+        RateLimiter limiter = new RateLimiter("test", 1, 2);
+        Assert.assertEquals(0, limiter.reserve(1));
+        Assert.assertEquals(0, limiter.reserve(1));
+        long third = limiter.reserve(1);
+        long fourth = limiter.reserve(1);
+        Assert.assertTrue(third > 900 && third <= 1000);
+        Assert.assertTrue(fourth > 1900 && fourth <= 2000);
+        Assert.assertEquals(2, limiter.getStats().getDelayed());
+    }
+
+    @Test public void testRateLimited() {
+        RateLimiter limiter = new RateLimiter("test", 10, 10);
+        limiter.onRateLimited(5000);
+        Assert.assertEquals(5, limiter.getStats().getRate(), 0.001);
+        Assert.assertTrue(limiter.reserve(1) > 4900);
+        limiter.onSuccess();
+        Assert.assertEquals(5.5, limiter.getStats().getRate(), 0.001);
+    }
+
+    @Test public void testUpdate() {
+        RateLimiter limiter = new RateLimiter("test", 100, 10);
+        limiter.update(30, 60000);
+        Assert.assertEquals(0.5, limiter.getStats().getRate(), 0.001);
+        limiter.update(0, 3000);
+        long wait = limiter.reserve(1);
+        Assert.assertTrue(wait > 2900);
+    }
+}
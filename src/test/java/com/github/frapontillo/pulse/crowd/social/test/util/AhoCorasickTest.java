@@ -0,0 +1,56 @@
+package com.github.frapontillo.pulse.crowd.social.test.util;
+
+import com.github.frapontillo.pulse.crowd.social.util.AhoCorasick;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class AhoCorasickTest {
+
+    @Test public void testContainsAny() {
+        AhoCorasick automaton = new AhoCorasick(Arrays.asList("he", "she", "hers", "his"));
+        Assert.assertTrue(automaton.containsAny("ushers"));
+        Assert.assertTrue(automaton.containsAny("this"));
+        Assert.assertFalse(automaton.containsAny("hxsx"));
+        Assert.assertFalse(automaton.containsAny(""));
+        Assert.assertFalse(automaton.containsAny(null));
+    }
+
+    @Test public void testEmptyTerm() {
+        Assert.assertTrue(new AhoCorasick(Collections.singletonList("")).containsAny("text"));
+        Assert.assertFalse(new AhoCorasick(Collections.emptyList()).containsAny("text"));
+    }
+
+    @Test public void testMatchesNaiveSearch() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            List<String> terms = new ArrayList<>();
+            for (int i = 0; i < 1 + random.nextInt(10); i++) {
+                terms.add(randomString(random, 1 + random.nextInt(4)));
+            }
+            AhoCorasick automaton = new AhoCorasick(terms);
+            String text = randomString(random, random.nextInt(40));
+            boolean expected = false;
+            for (String term : terms) {
+                expected |= text.contains(term);
+            }
+            Assert.assertEquals(expected, automaton.containsAny(text));
+        }
+    }
+
+    private String randomString(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(3)));
+        }
+        return builder.toString();
+    }
+}
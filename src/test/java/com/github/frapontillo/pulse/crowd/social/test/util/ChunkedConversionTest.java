@@ -0,0 +1,46 @@
+package com.github.frapontillo.pulse.crowd.social.test.util;
+
+import com.github.frapontillo.pulse.crowd.social.util.ChunkedConversion;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class ChunkedConversionTest {
+
+    @Test public void testKeepsOrder() {
+        List<Integer> originals = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            originals.add(i);
+        }
+        List<String> converted = new ArrayList<>();
+        converted.add("first");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ChunkedConversion.convert(originals, converted, Object::toString, 7, pool);
+        } finally {
+            pool.shutdown();
+        }
+        Assert.assertEquals(10001, converted.size());
+        Assert.assertEquals("first", converted.get(0));
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertEquals(Integer.toString(i), converted.get(i + 1));
+        }
+    }
+
+    @Test public void testSmallListOnCallingThread() {
+        Thread caller = Thread.currentThread();
+        List<Thread> threads = new ArrayList<>();
+        ChunkedConversion.convert(Collections.nCopies(10, "x"), new ArrayList<>(), original -> {
+            threads.add(Thread.currentThread());
+            return original;
+        }, 64, ForkJoinPool.commonPool());
+        Assert.assertEquals(Collections.nCopies(10, caller), threads);
+    }
+}
@@ -0,0 +1,227 @@
+package com.github.frapontillo.pulse.crowd.social.test.util;
+
+import com.github.frapontillo.pulse.crowd.data.entity.Message;
+import com.github.frapontillo.pulse.crowd.social.extraction.ExtractionParameters;
+import com.github.frapontillo.pulse.crowd.social.extraction.GeoLocationBox;
+import com.github.frapontillo.pulse.crowd.social.metrics.Metrics;
+import com.github.frapontillo.pulse.crowd.social.util.Checker;
+import com.github.frapontillo.pulse.util.StringUtil;
+import org.junit.Assert;
+import org.junit.Test;
+import rx.functions.Func1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class CompiledMessageFilterTest {
+    private static final List<String> MANY_REFERENCES = buildUsers("ref", 70);
+
+    private static List<String> buildUsers(String prefix, int count) {
+        List<String> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(prefix + i);
+        }
+        return users;
+    }
+
+    private static Message buildMessage(String text, long date, String language, String from,
+            List<String> to, List<String> references, Double longitude, Double latitude) {
+        Message message = new Message();
+        message.setText(text);
+        message.setDate(new Date(date));
+        message.setLanguage(language);
+        message.setFromUser(from);
+        message.setToUsers(to);
+        message.setRefUsers(references);
+        message.setLongitude(longitude);
+        message.setLatitude(latitude);
+        return message;
+    }
+
+    private static List<Message> buildCorpus() {
+        List<Message> corpus = new ArrayList<>();
+        corpus.add(buildMessage("Crowd Pulse rocks", 10, "en", "alice",
+                Arrays.asList("bob", "carol"), Arrays.asList("ref0", "ref1"), 5.0, 5.0));
+        corpus.add(buildMessage("crowdpulse is here", 20, "it", "bob",
+                Collections.singletonList("alice"), Collections.singletonList("ref0"), 15.0, 5.0));
+        corpus.add(buildMessage("PULSE in capitals", 30, "en", "carol", null, null, null, null));
+        corpus.add(buildMessage("nothing to see", 40, "en", "alice",
+                Collections.emptyList(), Collections.emptyList(), 5.0, null));
+        corpus.add(buildMessage("", 15, "en", "alice", Collections.singletonList("bob"),
+                Collections.singletonList("ref0"), 5.0, 5.0));
+        corpus.add(buildMessage(null, 15, "en", "alice", Collections.singletonList("bob"),
+                Collections.singletonList("ref0"), 5.0, 5.0));
+        corpus.add(buildMessage("all the references", 25, "en", "dave", null,
+                MANY_REFERENCES, 5.0, 5.0));
+        List<String> reversed = new ArrayList<>(MANY_REFERENCES);
+        Collections.reverse(reversed);
+        reversed.add("someone-else");
+        corpus.add(buildMessage("all the references, reversed", 25, "en", "dave", null,
+                reversed, 5.0, 5.0));
+        // as many references as required, but one is repeated instead of the last one
+        List<String> repeated = new ArrayList<>(MANY_REFERENCES.subList(0, 69));
+        repeated.add("ref0");
+        corpus.add(buildMessage("a missing reference", 25, "en", "dave", null,
+                repeated, 5.0, 5.0));
+        return corpus;
+    }
+
+    /**
+     * Chain predicates as extractors do, stopping at the first one rejecting the message.
+     */
+    @SafeVarargs
+    private static Func1<Message, Boolean> chain(Func1<Message, Boolean>... predicates) {
+        return message -> {
+            for (Func1<Message, Boolean> predicate : predicates) {
+                if (!predicate.call(message)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    private static Func1<Message, Boolean> chainAll(ExtractionParameters parameters) {
+        return chain(Checker.checkNonNullMessage(), Checker.checkQuery(parameters),
+                Checker.checkFromUser(parameters), Checker.checkToUser(parameters),
+                Checker.checkReferencedUsers(parameters), Checker.checkSinceDate(parameters),
+                Checker.checkUntilDate(parameters), Checker.checkLanguage(parameters),
+                Checker.checkLocation(parameters));
+    }
+
+    /**
+     * Assert that the compiled filter and some chained predicates accept the same messages, and
+     * that at least one message is accepted and one rejected, so that the check is exercised.
+     */
+    private static void assertSameResults(ExtractionParameters parameters,
+            Func1<Message, Boolean> chained) {
+        Func1<Message, Boolean> compiled = Checker.checkAll(parameters);
+        boolean anyAccepted = false;
+        boolean anyRejected = false;
+        List<Message> corpus = buildCorpus();
+        for (int i = 0; i < corpus.size(); i++) {
+            boolean expected = chained.call(corpus.get(i));
+            Assert.assertEquals("Message " + i, expected, compiled.call(corpus.get(i)));
+            anyAccepted |= expected;
+            anyRejected |= !expected;
+        }
+        Assert.assertTrue(anyAccepted);
+        Assert.assertTrue(anyRejected);
+    }
+
+    @Test public void testNonNullMessage() {
+        assertSameResults(new ExtractionParameters(), Checker.checkNonNullMessage());
+    }
+
+    @Test public void testQuery() {
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setQuery(Arrays.asList("pulse", "nothing"));
+        assertSameResults(parameters,
+                chain(Checker.checkNonNullMessage(), Checker.checkQuery(parameters)));
+    }
+
+    @Test public void testFromUser() {
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setFrom("alice");
+        assertSameResults(parameters,
+                chain(Checker.checkNonNullMessage(), Checker.checkFromUser(parameters)));
+    }
+
+    @Test public void testToUser() {
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setTo("bob");
+        assertSameResults(parameters,
+                chain(Checker.checkNonNullMessage(), Checker.checkToUser(parameters)));
+    }
+
+    @Test public void testReferencedUsers() {
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setReferences(Arrays.asList("ref0", "ref1"));
+        assertSameResults(parameters,
+                chain(Checker.checkNonNullMessage(), Checker.checkReferencedUsers(parameters)));
+    }
+
+    @Test public void testManyReferencedUsers() {
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setReferences(MANY_REFERENCES);
+        assertSameResults(parameters,
+                chain(Checker.checkNonNullMessage(), Checker.checkReferencedUsers(parameters)));
+    }
+
+    @Test public void testDates() {
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setSince(new Date(15));
+        parameters.setUntil(new Date(25));
+        assertSameResults(parameters, chain(Checker.checkNonNullMessage(),
+                Checker.checkSinceDate(parameters), Checker.checkUntilDate(parameters)));
+    }
+
+    @Test public void testLanguage() {
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setLanguage("it");
+        assertSameResults(parameters,
+                chain(Checker.checkNonNullMessage(), Checker.checkLanguage(parameters)));
+    }
+
+    @Test public void testLocation() {
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setGeoLocationBox(new GeoLocationBox(0, 0, 10, 10));
+        assertSameResults(parameters,
+                chain(Checker.checkNonNullMessage(), Checker.checkLocation(parameters)));
+    }
+
+    @Test public void testAllChecks() {
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setQuery(Collections.singletonList("Pulse"));
+        parameters.setFrom("alice");
+        parameters.setTo("bob");
+        parameters.setReferences(Collections.singletonList("ref0"));
+        parameters.setSince(new Date(5));
+        parameters.setUntil(new Date(50));
+        parameters.setLanguage("en");
+        parameters.setGeoLocationBox(new GeoLocationBox(0, 0, 10, 10));
+        assertSameResults(parameters, chainAll(parameters));
+    }
+
+    @Test public void testQuerySemantics() {
+        // terms match anywhere in the text, case-sensitively
+        List<String> terms = Collections.singletonList("pulse");
+        Assert.assertTrue(StringUtil.containsAnyString("crowdpulse is here", terms));
+        Assert.assertFalse(StringUtil.containsAnyString("Crowd Pulse rocks", terms));
+        Assert.assertFalse(StringUtil.containsAnyString("PULSE in capitals", terms));
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setQuery(terms);
+        Func1<Message, Boolean> compiled = Checker.checkAll(parameters);
+        for (Message message : buildCorpus()) {
+            if (!StringUtil.isNullOrEmpty(message.getText())) {
+                Assert.assertEquals(message.getText(),
+                        StringUtil.containsAnyString(message.getText(), terms),
+                        compiled.call(message));
+            }
+        }
+    }
+
+    @Test public void testRejectedCounts() {
+        ExtractionParameters parameters = new ExtractionParameters();
+        parameters.setSource("checker-counts");
+        parameters.setLanguage("it");
+        Func1<Message, Boolean> chained = Checker.checkLanguage(parameters);
+        Func1<Message, Boolean> compiled = Checker.checkAll(parameters);
+        long rejected = 0;
+        for (Message message : buildCorpus()) {
+            rejected += chained.call(message) ? 0 : 1;
+            compiled.call(message);
+        }
+        // both the chained predicate and the compiled filter count their rejections
+        Assert.assertEquals(2 * rejected, Metrics.getRegistry()
+                .counter("checker-counts.filter.rejected.language").getCount());
+        Assert.assertEquals(0, Metrics.getRegistry()
+                .counter("checker-counts.filter.rejected.query").getCount());
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.frapontillo.pulse.crowd.social.test.util;
+
+import com.github.frapontillo.pulse.crowd.social.util.LongHashSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class LongHashSetTest {
+
+    @Test public void testAddContains() {
+        LongHashSet set = new LongHashSet();
+        Assert.assertTrue(set.add(42));
+        Assert.assertTrue(set.add(0));
+        Assert.assertFalse(set.add(42));
+        Assert.assertFalse(set.add(0));
+        Assert.assertTrue(set.contains(42));
+        Assert.assertTrue(set.contains(0));
+        Assert.assertFalse(set.contains(43));
+        Assert.assertEquals(2, set.size());
+    }
+
+    @Test public void testMatchesHashSet() {
+        Random random = new Random(1234);
+        LongHashSet set = new LongHashSet();
+        Set<Long> reference = new HashSet<>();
+        for (int i = 0; i < 100000; i++) {
+            // a small range, so that values repeat and get removed
+            long value = random.nextInt(5000) - 2500;
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(reference.remove(value), set.remove(value));
+            } else {
+                Assert.assertEquals(reference.add(value), set.add(value));
+            }
+        }
+        Assert.assertEquals(reference.size(), set.size());
+        for (long value = -2500; value < 2500; value++) {
+            Assert.assertEquals(reference.contains(value), set.contains(value));
+        }
+        Assert.assertEquals(reference.size(), set.toArray().length);
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.frapontillo.pulse.crowd.social.test.util;
+
+import com.github.frapontillo.pulse.crowd.social.util.LongIntHashMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * @author Francesco Pontillo
+ */
+public class LongIntHashMapTest {
+
+    @Test public void testMatchesHashMap() {
+        Random random = new Random(1234);
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long, Integer> reference = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            // a small range, so that keys repeat and get removed
+            long key = random.nextInt(5000) - 2500;
+            if (random.nextInt(3) == 0) {
+                Integer expected = reference.remove(key);
+                Assert.assertEquals((expected != null) ? expected : LongIntHashMap.MISSING,
+                        map.remove(key));
+            } else {
+                reference.put(key, i);
+                map.put(key, i);
+            }
+        }
+        Assert.assertEquals(reference.size(), map.size());
+        for (long key = -2500; key < 2500; key++) {
+            Integer expected = reference.get(key);
+            Assert.assertEquals((expected != null) ? expected : LongIntHashMap.MISSING,
+                    map.get(key));
+        }
+    }
+}